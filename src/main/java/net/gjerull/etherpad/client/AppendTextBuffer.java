@@ -0,0 +1,470 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers the text appended to each pad and sends it with one
+ * {@link EPLiteClient#appendText(String, String)}, for log-like pads
+ * that get many small appends.<br />
+ * <br />
+ * The first append to a pad starts a window; when it ends, or when
+ * the text gathered reaches maxBytes, the text is sent as a single
+ * call, making a single revision. The text of a pad is sent in the
+ * order it was appended, one call at a time, while different pads
+ * are sent in parallel. When maxPendingBytes wait to be sent,
+ * {@link #append(String, String)} blocks until some are sent.<br />
+ * <br />
+ * A failed call keeps its text, and the pad is held back: appends
+ * to it throw, and nothing more is sent for it until the next
+ * {@link #flush()} or {@link #close()} sends it again, throwing if
+ * it fails again. The text of a pad thus never reaches the server
+ * with a gap in it.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * AppendTextBuffer log = new AppendTextBuffer(client, 500, 65536,
+ * <br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;1048576, 2);<br />
+ * log.append("build_log", "step 1 done\n");<br />
+ * ...<br />
+ * log.close();
+ * </code>
+ */
+public final class AppendTextBuffer {
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** How long text is gathered, in milliseconds. */
+    private final long window;
+
+    /** The size at which a pad's text is sent at once, in bytes. */
+    private final int maxBytes;
+
+    /** The most bytes waiting to be sent. */
+    private final long maxPendingBytes;
+
+    /** Sends the text. */
+    private final ScheduledExecutorService executor;
+
+    /** The buffers by pad id. */
+    private final ConcurrentMap<String, PadBuffer> buffers =
+            new ConcurrentHashMap<>();
+
+    /** The bytes waiting to be sent, guarded by this. */
+    private long pendingBytes;
+
+    /** Whether the buffer is closed, guarded by this. */
+    private boolean closed;
+
+    /**
+     * The number of appends past {@link #reserve(long)} that have
+     * not gathered their text yet, guarded by this.
+     */
+    private int appending;
+
+    /** The number of appends. */
+    private final AtomicLong appendCount = new AtomicLong();
+
+    /** The number of calls made. */
+    private final AtomicLong sendCount = new AtomicLong();
+
+    /**
+     * Instantiates a new append buffer with its own pool of daemon
+     * threads.
+     *
+     * @param nClient          the client
+     * @param nWindow          how long text is gathered, in
+     *                         milliseconds
+     * @param nMaxBytes        the size at which a pad's text is sent
+     *                         at once, in bytes
+     * @param nMaxPendingBytes the most bytes waiting to be sent
+     *                         before appends block
+     * @param threads          the number of calls made at once
+     */
+    public AppendTextBuffer(final EPLiteClient nClient,
+            final long nWindow, final int nMaxBytes,
+            final long nMaxPendingBytes, final int threads) {
+        if (nWindow < 0 || nMaxBytes <= 0
+                || nMaxPendingBytes < nMaxBytes || threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid window, sizes or threads");
+        }
+        this.client = nClient;
+        this.window = nWindow;
+        this.maxBytes = nMaxBytes;
+        this.maxPendingBytes = nMaxPendingBytes;
+        ScheduledThreadPoolExecutor pool =
+                new ScheduledThreadPoolExecutor(threads,
+                        new DaemonThreadFactory());
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = pool;
+    }
+
+    /**
+     * Appends text to a pad, blocking while too many bytes wait to
+     * be sent.
+     *
+     * @param padId the pad's id string
+     * @param text  the text
+     * @throws EPLiteException if the buffer is closed, the last call
+     *                         for the pad failed, or interrupted
+     *                         while blocked
+     */
+    public void append(final String padId, final String text) {
+        int bytes = utf8Length(text);
+        this.reserve(bytes);
+        try {
+            this.gather(padId, text, bytes);
+        } finally {
+            this.appended();
+        }
+    }
+
+    /**
+     * Adds text to the buffer of a pad and schedules it to be sent.
+     *
+     * @param padId the pad's id string
+     * @param text  the text
+     * @param bytes the size of the text in UTF-8, reserved
+     */
+    private void gather(final String padId, final String text,
+            final int bytes) {
+        while (true) {
+            PadBuffer buffer = this.buffers.get(padId);
+            if (buffer == null) {
+                PadBuffer created = new PadBuffer(padId);
+                buffer = this.buffers.putIfAbsent(padId, created);
+                if (buffer == null) {
+                    buffer = created;
+                }
+            }
+            boolean first = false;
+            boolean full = false;
+            RuntimeException failed;
+            synchronized (buffer) {
+                if (buffer.removed) {
+                    continue;
+                }
+                failed = buffer.failure;
+                if (failed == null) {
+                    first = buffer.text.length() == 0;
+                    buffer.text.append(text);
+                    buffer.bytes += bytes;
+                    full = buffer.bytes >= this.maxBytes;
+                }
+            }
+            if (failed != null) {
+                this.release(bytes);
+                throw new EPLiteException("Unable to append to " + padId
+                        + " until it is flushed: " + failed.getMessage(),
+                        failed);
+            }
+            this.appendCount.incrementAndGet();
+            try {
+                if (full) {
+                    this.executor.execute(buffer);
+                } else if (first) {
+                    this.executor.schedule(buffer, this.window,
+                            TimeUnit.MILLISECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                // Not before close() has waited for this append, so
+                // its flush sends the text and releases the bytes
+                throw new EPLiteException("The append buffer is closed",
+                        e);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Sends the text gathered for all pads, including the pads held
+     * back by a failed call, and waits for it.
+     *
+     * @throws EPLiteException if the text of a pad still can't be
+     *                         sent
+     */
+    public void flush() {
+        RuntimeException failed = null;
+        for (PadBuffer buffer : this.buffers.values()) {
+            RuntimeException e = buffer.send(true);
+            if (failed == null) {
+                failed = e;
+            }
+        }
+        if (failed != null) {
+            throw new EPLiteException(
+                    "Unable to append text: " + failed.getMessage(),
+                    failed);
+        }
+    }
+
+    /**
+     * Sends the text gathered for all pads, once the appends under
+     * way have gathered theirs, and stops the threads. Later appends
+     * fail.
+     *
+     * @throws EPLiteException if the text of a pad can't be sent; it
+     *                         is then lost
+     */
+    public void close() {
+        boolean interrupted = false;
+        synchronized (this) {
+            this.closed = true;
+            this.notifyAll();
+            while (this.appending > 0) {
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.flush();
+        } finally {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reserves room for bytes to send, waiting for it if needed. A
+     * single append larger than the limit goes through alone.
+     *
+     * @param bytes the number of bytes
+     */
+    private synchronized void reserve(final long bytes) {
+        while (!this.closed && this.pendingBytes > 0
+                && this.pendingBytes + bytes > this.maxPendingBytes) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException(
+                        "Interrupted while waiting to append", e);
+            }
+        }
+        if (this.closed) {
+            throw new EPLiteException("The append buffer is closed");
+        }
+        this.pendingBytes += bytes;
+        this.appending++;
+    }
+
+    /**
+     * Ends an append past {@link #reserve(long)}.
+     */
+    private synchronized void appended() {
+        this.appending--;
+        if (this.appending == 0) {
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Releases the room of bytes sent.
+     *
+     * @param bytes the number of bytes
+     */
+    private synchronized void release(final long bytes) {
+        this.pendingBytes -= bytes;
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the length of text in UTF-8.
+     *
+     * @param text the text
+     * @return the number of bytes
+     */
+    private static int utf8Length(final String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // The pair takes four bytes
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the number of bytes waiting to be sent.
+     *
+     * @return the pending bytes
+     */
+    public synchronized long getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    /**
+     * Gets the number of appends.
+     *
+     * @return the append count
+     */
+    public long getAppendCount() {
+        return this.appendCount.get();
+    }
+
+    /**
+     * Gets the number of calls made.
+     *
+     * @return the send count
+     */
+    public long getSendCount() {
+        return this.sendCount.get();
+    }
+
+    /**
+     * Returns the append and call counts.
+     *
+     * @return a description of the buffer
+     */
+    @Override
+    public String toString() {
+        return "AppendTextBuffer[appends=" + this.getAppendCount()
+                + ", sends=" + this.getSendCount() + ", pendingBytes="
+                + this.getPendingBytes() + "]";
+    }
+
+    /**
+     * The text gathered for a pad. Running it sends the text.
+     */
+    private final class PadBuffer implements Runnable {
+
+        /** The pad's id string. */
+        private final String padId;
+
+        /** Held while sending, so the pad's calls keep their order. */
+        private final Object sendLock = new Object();
+
+        /** The text gathered, guarded by this. */
+        private final StringBuilder text = new StringBuilder();
+
+        /** The size of the text in UTF-8, guarded by this. */
+        private int bytes;
+
+        /**
+         * The size of the text sent by a failed call, which no longer
+         * counts as pending, guarded by this.
+         */
+        private int heldBytes;
+
+        /** The failure of the last call, guarded by this. */
+        private RuntimeException failure;
+
+        /** Whether the buffer left the map, guarded by this. */
+        private boolean removed;
+
+        /**
+         * Instantiates a new pad buffer.
+         *
+         * @param nPadId the pad's id string
+         */
+        PadBuffer(final String nPadId) {
+            this.padId = nPadId;
+        }
+
+        /**
+         * Sends the text gathered, if any, unless the last call
+         * failed.
+         */
+        public void run() {
+            this.send(false);
+        }
+
+        /**
+         * Sends the text gathered, if any. A failed call puts the
+         * text back ahead of the text appended meanwhile.
+         *
+         * @param retry whether to send the text of a failed call
+         * @return the failure of the last call, or null
+         */
+        RuntimeException send(final boolean retry) {
+            synchronized (this.sendLock) {
+                String sent;
+                int sentBytes;
+                int reservedBytes;
+                synchronized (this) {
+                    if (this.text.length() == 0
+                            || (this.failure != null && !retry)) {
+                        return this.failure;
+                    }
+                    sent = this.text.toString();
+                    sentBytes = this.bytes;
+                    reservedBytes = this.bytes - this.heldBytes;
+                    this.text.setLength(0);
+                    this.bytes = 0;
+                    this.heldBytes = 0;
+                    this.failure = null;
+                }
+                RuntimeException failed = null;
+                try {
+                    client.appendText(this.padId, sent);
+                    sendCount.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed = e;
+                } finally {
+                    release(reservedBytes);
+                }
+                synchronized (this) {
+                    if (failed != null) {
+                        this.text.insert(0, sent);
+                        this.bytes += sentBytes;
+                        this.heldBytes = sentBytes;
+                        this.failure = failed;
+                    } else if (this.text.length() == 0) {
+                        this.removed = true;
+                        buffers.remove(this.padId, this);
+                    }
+                }
+                return failed;
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads, so an unclosed buffer doesn't keep the
+     * JVM alive.
+     */
+    private static final class DaemonThreadFactory
+            implements ThreadFactory {
+
+        /** The thread counter. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable
+         * @return the thread
+         */
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    "eplite-append-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
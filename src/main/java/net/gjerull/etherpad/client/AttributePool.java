@@ -0,0 +1,158 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The attribute pool of a pad, as returned by
+ * {@link EPLiteClient#getAttributePool(String)}. Changesets refer to
+ * attributes such as <code>["author", "a.x3VZ2"]</code> by their
+ * number in the pool. A pool only grows, so numbers never change
+ * meaning.
+ */
+public final class AttributePool {
+
+    /** The keys, by attribute number. */
+    private final String[] keys;
+
+    /** The values, by attribute number. */
+    private final String[] values;
+
+    /** The number the next attribute will get. */
+    private final int nextNumber;
+
+    /**
+     * Instantiates a new attribute pool.
+     *
+     * @param nKeys       the keys, by attribute number
+     * @param nValues     the values, by attribute number
+     * @param nNextNumber the number the next attribute will get
+     */
+    private AttributePool(final String[] nKeys, final String[] nValues,
+            final int nNextNumber) {
+        this.keys = nKeys;
+        this.values = nValues;
+        this.nextNumber = nNextNumber;
+    }
+
+    /**
+     * Reads a pool from a getAttributePool response.
+     *
+     * @param response the response, or its "pool" member
+     * @return the pool
+     * @throws EPLiteException if the response holds no pool
+     */
+    public static AttributePool fromMap(final Map response) {
+        Map pool = response;
+        if (pool != null && pool.get("pool") instanceof Map) {
+            pool = (Map) pool.get("pool");
+        }
+        if (pool == null || !(pool.get("numToAttrib") instanceof Map)) {
+            throw new EPLiteException(
+                    "Response holds no attribute pool: " + response);
+        }
+        Map numToAttrib = (Map) pool.get("numToAttrib");
+        int size = 0;
+        if (pool.get("nextNum") instanceof Number) {
+            size = ((Number) pool.get("nextNum")).intValue();
+        }
+        for (Object number : numToAttrib.keySet()) {
+            size = Math.max(size, parseNumber(number) + 1);
+        }
+        String[] keys = new String[size];
+        String[] values = new String[size];
+        for (Object entry : numToAttrib.entrySet()) {
+            Map.Entry attrib = (Map.Entry) entry;
+            int number = parseNumber(attrib.getKey());
+            if (!(attrib.getValue() instanceof List)
+                    || ((List) attrib.getValue()).size() != 2) {
+                throw new EPLiteException("Malformed attribute "
+                        + number + ": " + attrib.getValue());
+            }
+            List pair = (List) attrib.getValue();
+            keys[number] = String.valueOf(pair.get(0));
+            values[number] = String.valueOf(pair.get(1));
+        }
+        return new AttributePool(keys, values, size);
+    }
+
+    /**
+     * Parses an attribute number.
+     *
+     * @param number the number, as a member name
+     * @return the number
+     */
+    private static int parseNumber(final Object number) {
+        try {
+            int n = Integer.parseInt(String.valueOf(number));
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new EPLiteException("Malformed attribute number: "
+                + number);
+    }
+
+    /**
+     * Returns whether the pool has an attribute of this number.
+     *
+     * @param number the attribute number
+     * @return true if it has
+     */
+    public boolean contains(final int number) {
+        return number >= 0 && number < this.keys.length
+                && this.keys[number] != null;
+    }
+
+    /**
+     * Gets the key of an attribute, like "author" or "bold".
+     *
+     * @param number the attribute number
+     * @return the key, or null if there is no such attribute
+     */
+    public String getKey(final int number) {
+        return this.contains(number) ? this.keys[number] : null;
+    }
+
+    /**
+     * Gets the value of an attribute.
+     *
+     * @param number the attribute number
+     * @return the value, or null if there is no such attribute
+     */
+    public String getValue(final int number) {
+        return this.contains(number) ? this.values[number] : null;
+    }
+
+    /**
+     * Gets the number the next attribute will get.
+     *
+     * @return the next number
+     */
+    public int getNextNumber() {
+        return nextNumber;
+    }
+
+    /**
+     * Returns the attributes as number=[key, value] pairs.
+     *
+     * @return the attributes
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                if (result.length() > 1) {
+                    result.append(", ");
+                }
+                result.append(i).append('=').append(Arrays.asList(
+                        this.keys[i], this.values[i]));
+            }
+        }
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,525 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An Etherpad easysync changeset, as returned by
+ * {@link EPLiteClient#getRevisionChangeset(String, long)}.<br />
+ * <br />
+ * A changeset such as <code>Z:8&gt;3=2*0|1+4-1$abc\n</code> turns a
+ * text of the old length into a text of the new length: "=" keeps
+ * characters, "-" removes them and "+" inserts the next characters
+ * of the char bank after the "$". Numbers are base 36, "|" counts
+ * the newlines an operation spans and "*" refers to an attribute in
+ * the pad's {@link AttributePool}. Characters the operations don't
+ * reach are kept.<br />
+ * <br />
+ * A changeset is checked when it is parsed, so applying it to a
+ * text of the old length cannot fail half-way.
+ */
+public final class Changeset {
+
+    /** The Constant PREFIX. */
+    private static final String PREFIX = "Z:";
+
+    /** The Constant RADIX of the numbers. */
+    private static final int RADIX = 36;
+
+    /** The Constant KEEP. */
+    public static final char KEEP = '=';
+
+    /** The Constant INSERT. */
+    public static final char INSERT = '+';
+
+    /** The Constant REMOVE. */
+    public static final char REMOVE = '-';
+
+    /** The Constant NO_ATTRIBUTES. */
+    private static final int[] NO_ATTRIBUTES = new int[0];
+
+    /** The length of the text the changeset applies to. */
+    private final int oldLength;
+
+    /** The length of the text the changeset produces. */
+    private final int newLength;
+
+    /** The number of operations. */
+    private final int count;
+
+    /** The opcode of each operation. */
+    private final char[] opcodes;
+
+    /** The number of characters of each operation. */
+    private final int[] chars;
+
+    /** The number of newlines of each operation. */
+    private final int[] lines;
+
+    /** The attributes of each operation, like "*0*3", or null. */
+    private final String[] attributes;
+
+    /** The inserted characters. */
+    private final String charBank;
+
+    /**
+     * Instantiates a new changeset.
+     *
+     * @param nOldLength  the length of the text it applies to
+     * @param nNewLength  the length of the text it produces
+     * @param nCount      the number of operations
+     * @param nOpcodes    the opcodes
+     * @param nChars      the numbers of characters
+     * @param nLines      the numbers of newlines
+     * @param nAttributes the attributes
+     * @param nCharBank   the inserted characters
+     */
+    private Changeset(final int nOldLength, final int nNewLength,
+            final int nCount, final char[] nOpcodes, final int[] nChars,
+            final int[] nLines, final String[] nAttributes,
+            final String nCharBank) {
+        this.oldLength = nOldLength;
+        this.newLength = nNewLength;
+        this.count = nCount;
+        this.opcodes = nOpcodes;
+        this.chars = nChars;
+        this.lines = nLines;
+        this.attributes = nAttributes;
+        this.charBank = nCharBank;
+    }
+
+    /**
+     * Parses a changeset.
+     *
+     * @param changeset the changeset string
+     * @return the changeset
+     * @throws EPLiteException if the changeset is malformed
+     */
+    public static Changeset parse(final String changeset) {
+        if (changeset == null || !changeset.startsWith(PREFIX)) {
+            throw malformed(changeset, "no Z: header");
+        }
+        Parser parser = new Parser(changeset);
+        parser.pos = PREFIX.length();
+        int oldLength = parser.nextNumber();
+        char sign = parser.next();
+        if (sign != '>' && sign != '<') {
+            throw malformed(changeset, "no length change");
+        }
+        int change = parser.nextNumber();
+        int newLength = sign == '>' ? oldLength + change
+                : oldLength - change;
+
+        int capacity = 4;
+        char[] opcodes = new char[capacity];
+        int[] chars = new int[capacity];
+        int[] lines = new int[capacity];
+        String[] attributes = new String[capacity];
+        int count = 0;
+        long consumed = 0;
+        long inserted = 0;
+        long removed = 0;
+        while (parser.pos < changeset.length()
+                && changeset.charAt(parser.pos) != '$') {
+            String attribs = null;
+            if (changeset.charAt(parser.pos) == '*') {
+                int start = parser.pos;
+                while (parser.peek() == '*') {
+                    parser.pos++;
+                    parser.nextNumber();
+                }
+                attribs = changeset.substring(start, parser.pos);
+            }
+            int newlines = 0;
+            if (parser.peek() == '|') {
+                parser.pos++;
+                newlines = parser.nextNumber();
+            }
+            char opcode = parser.next();
+            int n = parser.nextNumber();
+            switch (opcode) {
+            case KEEP:
+                consumed += n;
+                break;
+            case REMOVE:
+                consumed += n;
+                removed += n;
+                break;
+            case INSERT:
+                inserted += n;
+                break;
+            default:
+                throw malformed(changeset,
+                        "unknown operation '" + opcode + "'");
+            }
+            if (count == capacity) {
+                capacity *= 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                chars = Arrays.copyOf(chars, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                attributes = Arrays.copyOf(attributes, capacity);
+            }
+            opcodes[count] = opcode;
+            chars[count] = n;
+            lines[count] = newlines;
+            attributes[count] = attribs;
+            count++;
+        }
+        String charBank = parser.pos < changeset.length()
+                ? changeset.substring(parser.pos + 1) : "";
+
+        if (consumed > oldLength) {
+            throw malformed(changeset,
+                    "operations span more than the old length");
+        }
+        if (inserted != charBank.length()) {
+            throw malformed(changeset,
+                    "insertions don't match the char bank");
+        }
+        if (oldLength - removed + inserted != newLength) {
+            throw malformed(changeset,
+                    "operations don't produce the new length");
+        }
+        return new Changeset(oldLength, newLength, count, opcodes,
+                chars, lines, attributes, charBank);
+    }
+
+    /**
+     * Applies the changeset to a text.
+     *
+     * @param text the text, of the old length
+     * @return the new text
+     * @throws EPLiteException if the text has another length
+     */
+    public String applyTo(final String text) {
+        this.checkLength(text.length());
+        StringBuilder result = new StringBuilder(this.newLength);
+        int pos = 0;
+        int bank = 0;
+        for (int i = 0; i < this.count; i++) {
+            int n = this.chars[i];
+            switch (this.opcodes[i]) {
+            case KEEP:
+                result.append(text, pos, pos + n);
+                pos += n;
+                break;
+            case REMOVE:
+                pos += n;
+                break;
+            default:
+                result.append(this.charBank, bank, bank + n);
+                bank += n;
+                break;
+            }
+        }
+        result.append(text, pos, text.length());
+        return result.toString();
+    }
+
+    /**
+     * Applies the changeset to a text in place. Only the edited
+     * parts are touched, the kept characters stay where they are.
+     *
+     * @param text the text, of the old length
+     * @throws EPLiteException if the text has another length
+     */
+    public void applyTo(final StringBuilder text) {
+        this.checkLength(text.length());
+        int pos = 0;
+        int bank = 0;
+        for (int i = 0; i < this.count; i++) {
+            int n = this.chars[i];
+            switch (this.opcodes[i]) {
+            case KEEP:
+                pos += n;
+                break;
+            case REMOVE:
+                text.delete(pos, pos + n);
+                break;
+            default:
+                text.insert(pos, this.charBank, bank, bank + n);
+                pos += n;
+                bank += n;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Checks the length of the text the changeset is applied to.
+     *
+     * @param length the length of the text
+     */
+    private void checkLength(final int length) {
+        if (length != this.oldLength) {
+            throw new EPLiteException(String.format(
+                    "Changeset applies to a text of length %d, not %d",
+                    this.oldLength, length));
+        }
+    }
+
+    /**
+     * Gets the length of the text the changeset applies to.
+     *
+     * @return the old length
+     */
+    public int getOldLength() {
+        return oldLength;
+    }
+
+    /**
+     * Gets the length of the text the changeset produces.
+     *
+     * @return the new length
+     */
+    public int getNewLength() {
+        return newLength;
+    }
+
+    /**
+     * Gets the inserted characters.
+     *
+     * @return the char bank
+     */
+    public String getCharBank() {
+        return charBank;
+    }
+
+    /**
+     * Gets the number of operations.
+     *
+     * @return the number of operations
+     */
+    public int getOperationCount() {
+        return count;
+    }
+
+    /**
+     * Gets the opcode of an operation, {@link #KEEP},
+     * {@link #INSERT} or {@link #REMOVE}.
+     *
+     * @param op the index of the operation
+     * @return the opcode
+     */
+    public char getOpcode(final int op) {
+        this.checkIndex(op);
+        return this.opcodes[op];
+    }
+
+    /**
+     * Gets the number of characters an operation spans.
+     *
+     * @param op the index of the operation
+     * @return the number of characters
+     */
+    public int getChars(final int op) {
+        this.checkIndex(op);
+        return this.chars[op];
+    }
+
+    /**
+     * Gets the number of newlines an operation spans.
+     *
+     * @param op the index of the operation
+     * @return the number of newlines
+     */
+    public int getLines(final int op) {
+        this.checkIndex(op);
+        return this.lines[op];
+    }
+
+    /**
+     * Gets the pool numbers of the attributes of an operation.
+     *
+     * @param op the index of the operation
+     * @return the attribute numbers, maybe empty
+     */
+    public int[] getAttributeNumbers(final int op) {
+        this.checkIndex(op);
+        String attribs = this.attributes[op];
+        if (attribs == null) {
+            return NO_ATTRIBUTES;
+        }
+        int n = 0;
+        for (int i = 0; i < attribs.length(); i++) {
+            if (attribs.charAt(i) == '*') {
+                n++;
+            }
+        }
+        int[] numbers = new int[n];
+        Parser parser = new Parser(attribs);
+        for (int i = 0; i < n; i++) {
+            parser.pos++;
+            numbers[i] = parser.nextNumber();
+        }
+        return numbers;
+    }
+
+    /**
+     * Gets the attributes of an operation, looked up in the pad's
+     * attribute pool.
+     *
+     * @param op   the index of the operation
+     * @param pool the attribute pool of the pad
+     * @return the attributes by key, in changeset order
+     * @throws EPLiteException if the pool lacks an attribute
+     */
+    public Map<String, String> getAttributes(final int op,
+            final AttributePool pool) {
+        int[] numbers = this.getAttributeNumbers(op);
+        Map<String, String> result =
+                new LinkedHashMap<>(numbers.length * 2);
+        for (int number : numbers) {
+            if (!pool.contains(number)) {
+                throw new EPLiteException(
+                        "Attribute " + number + " is not in the pool");
+            }
+            result.put(pool.getKey(number), pool.getValue(number));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the highest attribute number the changeset refers to,
+     * so a cached pool can be checked for staleness.
+     *
+     * @return the highest attribute number, or -1
+     */
+    public int getMaxAttributeNumber() {
+        int max = -1;
+        for (int i = 0; i < this.count; i++) {
+            if (this.attributes[i] != null) {
+                for (int number : this.getAttributeNumbers(i)) {
+                    max = Math.max(max, number);
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Checks an operation index.
+     *
+     * @param op the index of the operation
+     */
+    private void checkIndex(final int op) {
+        if (op < 0 || op >= this.count) {
+            throw new IndexOutOfBoundsException(
+                    "Operation " + op + " of " + this.count);
+        }
+    }
+
+    /**
+     * Returns the changeset string.
+     *
+     * @return the changeset string
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(PREFIX);
+        result.append(Integer.toString(this.oldLength, RADIX));
+        if (this.newLength >= this.oldLength) {
+            result.append('>').append(Integer.toString(
+                    this.newLength - this.oldLength, RADIX));
+        } else {
+            result.append('<').append(Integer.toString(
+                    this.oldLength - this.newLength, RADIX));
+        }
+        for (int i = 0; i < this.count; i++) {
+            if (this.attributes[i] != null) {
+                result.append(this.attributes[i]);
+            }
+            if (this.lines[i] != 0) {
+                result.append('|').append(
+                        Integer.toString(this.lines[i], RADIX));
+            }
+            result.append(this.opcodes[i]).append(
+                    Integer.toString(this.chars[i], RADIX));
+        }
+        return result.append('$').append(this.charBank).toString();
+    }
+
+    /**
+     * Creates the exception for a malformed changeset.
+     *
+     * @param changeset the changeset string
+     * @param reason    what is wrong with it
+     * @return the exception
+     */
+    private static EPLiteException malformed(final String changeset,
+            final String reason) {
+        return new EPLiteException(String.format(
+                "Malformed changeset '%s': %s", changeset, reason));
+    }
+
+    /**
+     * Reads the parts of a changeset string.
+     */
+    private static final class Parser {
+
+        /** The changeset string. */
+        private final String source;
+
+        /** The position of the next character. */
+        private int pos;
+
+        /**
+         * Instantiates a new parser.
+         *
+         * @param nSource the changeset string
+         */
+        Parser(final String nSource) {
+            this.source = nSource;
+        }
+
+        /**
+         * Returns the next character without consuming it.
+         *
+         * @return the character, or 0 at the end
+         */
+        char peek() {
+            return this.pos < this.source.length()
+                    ? this.source.charAt(this.pos) : 0;
+        }
+
+        /**
+         * Consumes the next character.
+         *
+         * @return the character
+         */
+        char next() {
+            if (this.pos >= this.source.length()) {
+                throw malformed(this.source, "unexpected end");
+            }
+            return this.source.charAt(this.pos++);
+        }
+
+        /**
+         * Consumes a base 36 number.
+         *
+         * @return the number
+         */
+        int nextNumber() {
+            int start = this.pos;
+            long value = 0;
+            while (this.pos < this.source.length()) {
+                int digit = Character.digit(
+                        this.source.charAt(this.pos), RADIX);
+                if (digit < 0) {
+                    break;
+                }
+                value = value * RADIX + digit;
+                if (value > Integer.MAX_VALUE) {
+                    throw malformed(this.source, "number too large");
+                }
+                this.pos++;
+            }
+            if (this.pos == start) {
+                throw malformed(this.source,
+                        "number expected at " + start);
+            }
+            return (int) value;
+        }
+    }
+}
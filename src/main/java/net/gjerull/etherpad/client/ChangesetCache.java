@@ -0,0 +1,512 @@
+package net.gjerull.etherpad.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A cache of revision changesets, for
+ * {@link EPLiteClient#getRevisionChangeset(String, long)}.<br />
+ * <br />
+ * Changesets are stored as UTF-8 bytes, deflated when that makes
+ * them smaller, in one ring buffer of a fixed number of bytes:
+ * the memory budget. The buffer can live on the Java heap or, to
+ * keep a large history out of the garbage collector's way, in
+ * direct (off-heap) memory. New changesets are appended, and when
+ * the ring wraps around the oldest ones are evicted, which suits
+ * replays that walk revision ranges in order. Together with
+ * {@link EPLiteClient#prefetchRevisionChangesets(String, long, long)}
+ * a replay of N revisions costs N lookups instead of N calls.<br />
+ * <br />
+ * As revisions never change, the client only invalidates a pad
+ * when it is deleted, moved or overwritten.
+ */
+public final class ChangesetCache {
+
+    /** The Constant MIN_COMPRESSED_LENGTH, smaller ones are kept raw. */
+    private static final int MIN_COMPRESSED_LENGTH = 128;
+
+    /** The Constant SCRATCH_SIZE. */
+    private static final int SCRATCH_SIZE = 4096;
+
+    /** The Constant MAX_RETAINED_SCRATCH, larger ones are dropped. */
+    private static final int MAX_RETAINED_SCRATCH = 65536;
+
+    /** The ring buffer. */
+    private final ByteBuffer ring;
+
+    /** The entries by key. */
+    private final Map<Key, Slot> slots = new HashMap<>();
+
+    /** The entries in the order they were written, dead or alive. */
+    private final ArrayDeque<Slot> order = new ArrayDeque<>();
+
+    /** The compressor. */
+    private final Deflater deflater =
+            new Deflater(Deflater.BEST_SPEED, true);
+
+    /** The decompressor. */
+    private final Inflater inflater = new Inflater(true);
+
+    /** The scratch buffer for encoding and decoding. */
+    private byte[] scratch = new byte[SCRATCH_SIZE];
+
+    /** The offset the next entry is written at. */
+    private int tail;
+
+    /** The bytes used by live entries. */
+    private long storedBytes;
+
+    /** The UTF-8 bytes of the live entries before compression. */
+    private long rawBytes;
+
+    /** Incremented by every invalidation. */
+    private long epoch;
+
+    /** The number of hits. */
+    private long hitCount;
+
+    /** The number of misses. */
+    private long missCount;
+
+    /** The number of evicted entries. */
+    private long evictionCount;
+
+    /**
+     * Instantiates a new cache on the Java heap.
+     *
+     * @param capacity the memory budget in bytes
+     */
+    public ChangesetCache(final int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Instantiates a new cache.
+     *
+     * @param capacity the memory budget in bytes
+     * @param offHeap  whether to store the changesets in direct
+     *                 memory instead of on the Java heap
+     */
+    public ChangesetCache(final int capacity, final boolean offHeap) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "The capacity must be positive");
+        }
+        this.ring = offHeap ? ByteBuffer.allocateDirect(capacity)
+                : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Returns a cached changeset.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return the changeset, or null
+     */
+    synchronized String get(final String padId, final long rev) {
+        Slot slot = this.slots.get(new Key(padId, rev));
+        if (slot == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return this.read(slot);
+    }
+
+    /**
+     * Whether a changeset is cached. Doesn't count as a lookup.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return true if it is
+     */
+    synchronized boolean contains(final String padId, final long rev) {
+        return this.slots.containsKey(new Key(padId, rev));
+    }
+
+    /**
+     * Returns a token to pass to
+     * {@link #put(String, long, String, long)}, taken before the
+     * changeset is fetched.
+     *
+     * @return the token
+     */
+    synchronized long epoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Caches a changeset, unless a pad has been invalidated since
+     * the epoch was taken, as the changeset may then be stale.
+     *
+     * @param padId     the pad's id string
+     * @param rev       the revision number
+     * @param changeset the changeset
+     * @param since     the epoch taken before the changeset was
+     *                  fetched
+     */
+    synchronized void put(final String padId, final long rev,
+            final String changeset, final long since) {
+        Key key = new Key(padId, rev);
+        if (since != this.epoch || this.slots.containsKey(key)) {
+            return;
+        }
+        byte[] utf8 = changeset.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = utf8;
+        int length = utf8.length;
+        boolean compressed = false;
+        if (utf8.length >= MIN_COMPRESSED_LENGTH) {
+            int deflated = this.deflate(utf8);
+            if (deflated < utf8.length) {
+                bytes = this.scratch;
+                length = deflated;
+                compressed = true;
+            }
+        }
+        if (length > this.ring.capacity()) {
+            return;
+        }
+        int offset = this.allocate(length);
+        ByteBuffer target = this.ring.duplicate();
+        target.position(offset);
+        target.put(bytes, 0, length);
+        if (this.scratch.length > MAX_RETAINED_SCRATCH) {
+            this.scratch = new byte[SCRATCH_SIZE];
+        }
+        Slot slot = new Slot(key, offset, length,
+                compressed ? utf8.length : -1);
+        this.slots.put(key, slot);
+        this.order.addLast(slot);
+        this.storedBytes += length;
+        this.rawBytes += utf8.length;
+    }
+
+    /**
+     * Forgets all changesets of a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void invalidatePad(final String padId) {
+        this.epoch++;
+        List<Key> keys = new ArrayList<>();
+        for (Key key : this.slots.keySet()) {
+            if (key.padId.equals(padId)) {
+                keys.add(key);
+            }
+        }
+        for (Key key : keys) {
+            this.kill(this.slots.remove(key));
+        }
+    }
+
+    /**
+     * Forgets all changesets of the pads of a group.
+     *
+     * @param groupID the group's id string
+     */
+    public synchronized void invalidateGroup(final String groupID) {
+        this.epoch++;
+        String prefix = groupID + "$";
+        List<Key> keys = new ArrayList<>();
+        for (Key key : this.slots.keySet()) {
+            if (key.padId.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        for (Key key : keys) {
+            this.kill(this.slots.remove(key));
+        }
+    }
+
+    /**
+     * Forgets all changesets.
+     */
+    public synchronized void invalidateAll() {
+        this.epoch++;
+        this.slots.clear();
+        this.order.clear();
+        this.tail = 0;
+        this.storedBytes = 0;
+        this.rawBytes = 0;
+    }
+
+    /**
+     * Gets the number of cached changesets.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Gets the memory budget.
+     *
+     * @return the capacity in bytes
+     */
+    public int getCapacity() {
+        return this.ring.capacity();
+    }
+
+    /**
+     * Whether the changesets are stored off the Java heap.
+     *
+     * @return true if they are
+     */
+    public boolean isOffHeap() {
+        return this.ring.isDirect();
+    }
+
+    /**
+     * Gets the bytes the cached changesets take in the buffer.
+     *
+     * @return the stored bytes
+     */
+    public synchronized long getStoredBytes() {
+        return this.storedBytes;
+    }
+
+    /**
+     * Gets the UTF-8 size of the cached changesets, before
+     * compression.
+     *
+     * @return the raw bytes
+     */
+    public synchronized long getRawBytes() {
+        return this.rawBytes;
+    }
+
+    /**
+     * Gets the number of lookups that found a changeset.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that didn't find a changeset.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Gets the number of changesets evicted to make room.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ChangesetCache{size=" + this.slots.size()
+                + ", storedBytes=" + this.storedBytes + ", rawBytes="
+                + this.rawBytes + ", capacity=" + this.ring.capacity()
+                + ", offHeap=" + this.ring.isDirect() + ", hitCount="
+                + this.hitCount + ", missCount=" + this.missCount
+                + ", evictionCount=" + this.evictionCount + "}";
+    }
+
+    /**
+     * Finds room for an entry at the tail of the ring, wrapping
+     * around and evicting the oldest entries as needed. Entries of
+     * the previous lap are at the head of the order, in ascending
+     * offsets from the tail on.
+     *
+     * @param length the length of the entry
+     * @return the offset to write at
+     */
+    private int allocate(final int length) {
+        if (this.tail + length > this.ring.capacity()) {
+            // Wrap around: the rest of the previous lap goes
+            while (!this.order.isEmpty()
+                    && this.order.peekFirst().offset >= this.tail) {
+                this.evictFirst();
+            }
+            this.tail = 0;
+        }
+        while (!this.order.isEmpty()
+                && this.order.peekFirst().offset >= this.tail
+                && this.order.peekFirst().offset < this.tail + length) {
+            this.evictFirst();
+        }
+        int offset = this.tail;
+        this.tail += length;
+        return offset;
+    }
+
+    /**
+     * Evicts the oldest entry, unless it was already invalidated.
+     */
+    private void evictFirst() {
+        Slot slot = this.order.removeFirst();
+        if (slot.alive) {
+            this.slots.remove(slot.key);
+            this.kill(slot);
+            this.evictionCount++;
+        }
+    }
+
+    /**
+     * Marks an entry dead. Its bytes are reused when the ring comes
+     * around.
+     *
+     * @param slot the entry
+     */
+    private void kill(final Slot slot) {
+        slot.alive = false;
+        this.storedBytes -= slot.length;
+        this.rawBytes -= (slot.rawLength < 0) ? slot.length
+                : slot.rawLength;
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param slot the entry
+     * @return the changeset
+     */
+    private String read(final Slot slot) {
+        ByteBuffer source = this.ring.duplicate();
+        source.position(slot.offset);
+        byte[] bytes = new byte[slot.length];
+        source.get(bytes);
+        if (slot.rawLength < 0) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        byte[] utf8 = new byte[slot.rawLength];
+        this.inflater.reset();
+        this.inflater.setInput(bytes);
+        try {
+            int n = 0;
+            while (n < utf8.length) {
+                int inflated = this.inflater.inflate(utf8, n,
+                        utf8.length - n);
+                if (inflated == 0 && (this.inflater.finished()
+                        || this.inflater.needsInput())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != utf8.length) {
+                throw new DataFormatException("Truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new EPLiteException(
+                    "Corrupt changeset in the cache", e);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deflates into the scratch buffer.
+     *
+     * @param input the bytes
+     * @return the deflated length, or the input length if
+     *         deflating doesn't make it smaller
+     */
+    private int deflate(final byte[] input) {
+        if (this.scratch.length < input.length) {
+            this.scratch = new byte[input.length];
+        }
+        this.deflater.reset();
+        this.deflater.setInput(input);
+        this.deflater.finish();
+        int n = 0;
+        while (!this.deflater.finished() && n < input.length) {
+            n += this.deflater.deflate(this.scratch, n,
+                    input.length - n);
+        }
+        return this.deflater.finished() ? n : input.length;
+    }
+
+    /**
+     * The key of a cached changeset.
+     */
+    private static final class Key {
+
+        /** The pad's id string. */
+        private final String padId;
+
+        /** The revision number. */
+        private final long rev;
+
+        /**
+         * Instantiates a new key.
+         *
+         * @param nPadId the pad's id string
+         * @param nRev   the revision number
+         */
+        Key(final String nPadId, final long nRev) {
+            this.padId = nPadId;
+            this.rev = nRev;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.padId.hashCode() * 31
+                    + (int) (this.rev ^ (this.rev >>> 32));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.rev == other.rev
+                    && this.padId.equals(other.padId);
+        }
+    }
+
+    /**
+     * Where a changeset is stored in the ring.
+     */
+    private static final class Slot {
+
+        /** The key. */
+        private final Key key;
+
+        /** The offset in the ring. */
+        private final int offset;
+
+        /** The stored length. */
+        private final int length;
+
+        /** The UTF-8 length if deflated, -1 if stored raw. */
+        private final int rawLength;
+
+        /** False once evicted or invalidated. */
+        private boolean alive = true;
+
+        /**
+         * Instantiates a new slot.
+         *
+         * @param nKey       the key
+         * @param nOffset    the offset in the ring
+         * @param nLength    the stored length
+         * @param nRawLength the UTF-8 length if deflated, else -1
+         */
+        Slot(final Key nKey, final int nOffset, final int nLength,
+                final int nRawLength) {
+            this.key = nKey;
+            this.offset = nOffset;
+            this.length = nLength;
+            this.rawLength = nRawLength;
+        }
+    }
+}
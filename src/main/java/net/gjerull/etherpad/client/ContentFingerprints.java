@@ -0,0 +1,300 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers a 64-bit fingerprint of the last text and HTML written
+ * to or read from each pad, so that
+ * {@link EPLiteClient#setText(String, String)} and
+ * {@link EPLiteClient#setHTML(String, String)} skip writes that
+ * would not change the pad.<br />
+ * <br />
+ * The table takes 16 bytes a pad and holds a fixed number of them,
+ * in buckets of four; a pad that doesn't fit replaces another one
+ * of its bucket. Pads are only known by the hash of their id, so
+ * {@link #invalidateGroup(String)} forgets all pads.<br />
+ * <br />
+ * The fingerprints only follow the changes made through the client,
+ * so the table suits pads written by the client alone, like the
+ * targets of sync jobs. A pad edited elsewhere is written again
+ * once its content is read, or once it is invalidated.
+ */
+public final class ContentFingerprints {
+
+    /** The Constant TEXT, the kind of text fingerprints. */
+    static final int TEXT = 1;
+
+    /** The Constant HTML, the kind of HTML fingerprints. */
+    static final int HTML = 2;
+
+    /** The Constant WAYS, the number of pads in a bucket. */
+    private static final int WAYS = 4;
+
+    /** The Constant FNV_OFFSET, the FNV-1a offset basis. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** The Constant FNV_PRIME, the FNV-1a prime. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The hashed pad ids and kinds, 0 for an empty slot. */
+    private final long[] keys;
+
+    /** The fingerprints of the content. */
+    private final long[] fingerprints;
+
+    /** The number of buckets, less one. */
+    private final int mask;
+
+    /** The way replaced next when a bucket is full. */
+    private int victim;
+
+    /** Incremented by every invalidation, guarded by this. */
+    private long epoch;
+
+    /** The number of writes skipped. */
+    private final AtomicLong skipCount = new AtomicLong();
+
+    /**
+     * Instantiates a new table.
+     *
+     * @param nCapacity the most fingerprints kept, rounded up to a
+     *                  power of two
+     */
+    public ContentFingerprints(final int nCapacity) {
+        if (nCapacity <= 0 || nCapacity > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "The capacity must be between 1 and 2^30");
+        }
+        int buckets = Integer.highestOneBit(
+                Math.max(1, (nCapacity + WAYS - 1) / WAYS) * 2 - 1);
+        this.keys = new long[buckets * WAYS];
+        this.fingerprints = new long[buckets * WAYS];
+        this.mask = buckets - 1;
+    }
+
+    /**
+     * Returns whether content is the last one known for a pad, and
+     * counts a skipped write if it is.
+     *
+     * @param padId       the pad's id string
+     * @param kind        {@link #TEXT} or {@link #HTML}
+     * @param fingerprint the fingerprint of the content
+     * @return true if the write can be skipped
+     */
+    synchronized boolean isUnchanged(final String padId,
+            final int kind, final long fingerprint) {
+        int slot = this.find(key(padId, kind));
+        if (slot >= 0 && this.fingerprints[slot] == fingerprint) {
+            this.skipCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a token to pass to
+     * {@link #put(String, int, long, long)}, taken before the content
+     * is written or read.
+     *
+     * @return the token
+     */
+    synchronized long epoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Remembers the content of a pad, unless a pad has been
+     * invalidated since the epoch was taken, as the content may then
+     * be stale.
+     *
+     * @param padId       the pad's id string
+     * @param kind        {@link #TEXT} or {@link #HTML}
+     * @param fingerprint the fingerprint of the content
+     * @param since       the epoch taken before the content was
+     *                    written or read
+     */
+    synchronized void put(final String padId, final int kind,
+            final long fingerprint, final long since) {
+        if (since != this.epoch) {
+            return;
+        }
+        long key = key(padId, kind);
+        int slot = this.find(key);
+        if (slot < 0) {
+            int bucket = this.bucket(key);
+            for (int i = bucket; i < bucket + WAYS && slot < 0; i++) {
+                if (this.keys[i] == 0L) {
+                    slot = i;
+                }
+            }
+            if (slot < 0) {
+                slot = bucket + this.victim;
+                this.victim = (this.victim + 1) % WAYS;
+            }
+            this.keys[slot] = key;
+        }
+        this.fingerprints[slot] = fingerprint;
+    }
+
+    /**
+     * Remembers the content read from a pad, like
+     * {@link #put(String, int, long, long)}. Unless the content is
+     * the last one known for its kind, the pad has been edited
+     * elsewhere, so the fingerprint of the other kind is forgotten.
+     *
+     * @param padId       the pad's id string
+     * @param kind        {@link #TEXT} or {@link #HTML}
+     * @param fingerprint the fingerprint of the content
+     * @param since       the epoch taken before the content was read
+     */
+    synchronized void putRead(final String padId, final int kind,
+            final long fingerprint, final long since) {
+        if (since != this.epoch) {
+            return;
+        }
+        int slot = this.find(key(padId, kind));
+        if (slot < 0 || this.fingerprints[slot] != fingerprint) {
+            int other = this.find(key(padId, TEXT + HTML - kind));
+            if (other >= 0) {
+                this.keys[other] = 0L;
+            }
+        }
+        this.put(padId, kind, fingerprint, since);
+    }
+
+    /**
+     * Forgets a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void invalidatePad(final String padId) {
+        this.epoch++;
+        for (int kind = TEXT; kind <= HTML; kind++) {
+            int slot = this.find(key(padId, kind));
+            if (slot >= 0) {
+                this.keys[slot] = 0L;
+            }
+        }
+    }
+
+    /**
+     * Forgets the pads of a group. As the table only holds hashes of
+     * pad ids, this forgets all pads.
+     *
+     * @param groupID the group's id string
+     */
+    public void invalidateGroup(final String groupID) {
+        this.invalidateAll();
+    }
+
+    /**
+     * Forgets all pads.
+     */
+    public synchronized void invalidateAll() {
+        this.epoch++;
+        Arrays.fill(this.keys, 0L);
+    }
+
+    /**
+     * Returns the slot of a key.
+     *
+     * @param key the key
+     * @return the slot, or -1 if the key is not there
+     */
+    private int find(final long key) {
+        int bucket = this.bucket(key);
+        for (int i = bucket; i < bucket + WAYS; i++) {
+            if (this.keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first slot of the bucket of a key.
+     *
+     * @param key the key
+     * @return the slot
+     */
+    private int bucket(final long key) {
+        return ((int) (key >>> 32) & this.mask) * WAYS;
+    }
+
+    /**
+     * Returns the key of a pad and kind, never 0.
+     *
+     * @param padId the pad's id string
+     * @param kind  the kind
+     * @return the key
+     */
+    private static long key(final String padId, final int kind) {
+        return (fingerprint(padId) ^ ((long) kind << 1)) | 1L;
+    }
+
+    /**
+     * Returns the 64-bit fingerprint of content, an FNV-1a hash with
+     * a final mix.
+     *
+     * @param content the content
+     * @return the fingerprint
+     */
+    static long fingerprint(final String content) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < content.length(); i++) {
+            h ^= content.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Gets the number of fingerprints kept.
+     *
+     * @return the number of fingerprints
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (long key : this.keys) {
+            if (key != 0L) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the most fingerprints kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Gets the number of writes skipped.
+     *
+     * @return the skip count
+     */
+    public long getSkipCount() {
+        return this.skipCount.get();
+    }
+
+    /**
+     * Returns the capacity and skip count.
+     *
+     * @return a description of the table
+     */
+    @Override
+    public String toString() {
+        return "ContentFingerprints[capacity=" + this.getCapacity()
+                + ", skipped=" + this.getSkipCount() + "]";
+    }
+}
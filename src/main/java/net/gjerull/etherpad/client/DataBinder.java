@@ -0,0 +1,23 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+
+/**
+ * Decodes the data member of an API response straight from the
+ * response stream.
+ *
+ * @param <T> the type of the result
+ */
+interface DataBinder<T> {
+
+    /**
+     * Reads the data value. Called only for successful responses,
+     * with the reader positioned before the value, which may be
+     * null.
+     *
+     * @param reader the reader
+     * @return the result
+     * @throws IOException on read errors
+     */
+    T bind(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,155 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * The {@link DataBinder}s used by {@link EPLiteClient}.
+ */
+final class DataBinders {
+
+    /** Reads the data as json-simple objects. */
+    static final DataBinder<Object> VALUE = new DataBinder<Object>() {
+        public Object bind(final JsonReader reader)
+                throws IOException {
+            return reader.readValue();
+        }
+    };
+
+    /**
+     * Utility class.
+     */
+    private DataBinders() {
+    }
+
+    /**
+     * Creates a binder that writes a string member of the data,
+     * as it arrives, to a writer. Other members are skipped.
+     *
+     * @param field the name of the member
+     * @param out   the writer
+     * @return the binder
+     */
+    static DataBinder<Void> stringTo(final String field,
+            final Writer out) {
+        return new StringFieldBinder(field, null, out);
+    }
+
+    /**
+     * Creates a binder that writes a string member of the data,
+     * as it arrives and UTF-8 encoded, to a stream. Other members
+     * are skipped.
+     *
+     * @param field the name of the member
+     * @param out   the stream
+     * @return the binder
+     */
+    static DataBinder<Void> stringTo(final String field,
+            final OutputStream out) {
+        return new StringFieldBinder(field, out, null);
+    }
+
+    /**
+     * Creates a binder that writes the strings of an array member of
+     * the data, as they arrive, to a writer, one per line. Other
+     * members are skipped.
+     *
+     * @param field the name of the member
+     * @param out   the writer
+     * @return the binder
+     */
+    static DataBinder<Void> linesTo(final String field,
+            final Writer out) {
+        return new DataBinder<Void>() {
+            public Void bind(final JsonReader reader)
+                    throws IOException {
+                boolean found = false;
+                if (!reader.consumeNull()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals(field) && !found) {
+                            found = true;
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                out.write(reader.nextString());
+                                out.write('\n');
+                            }
+                            reader.endArray();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                if (!found) {
+                    throw new EPLiteException(
+                            "The response has no " + field);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Writes a string member of the data to a sink.
+     */
+    private static final class StringFieldBinder
+            implements DataBinder<Void> {
+
+        /** The name of the member. */
+        private final String field;
+
+        /** The stream, or null. */
+        private final OutputStream byteSink;
+
+        /** The writer, or null. */
+        private final Writer charSink;
+
+        /**
+         * Instantiates a new binder.
+         *
+         * @param nField    the name of the member
+         * @param nByteSink the stream, or null
+         * @param nCharSink the writer, or null
+         */
+        StringFieldBinder(final String nField,
+                final OutputStream nByteSink, final Writer nCharSink) {
+            this.field = nField;
+            this.byteSink = nByteSink;
+            this.charSink = nCharSink;
+        }
+
+        /**
+         * Streams the member to the sink.
+         *
+         * @param reader the reader
+         * @return null
+         * @throws IOException on read or write errors
+         */
+        public Void bind(final JsonReader reader) throws IOException {
+            boolean found = false;
+            if (!reader.consumeNull()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals(field) && !found) {
+                        found = true;
+                        if (byteSink != null) {
+                            reader.nextString(byteSink);
+                        } else {
+                            reader.nextString(charSink);
+                        }
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            if (!found) {
+                throw new EPLiteException(
+                        "The response has no " + field);
+            }
+            return null;
+        }
+    }
+}
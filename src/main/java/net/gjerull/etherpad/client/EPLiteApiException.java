@@ -0,0 +1,53 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * An error reported by the server in the code of a response, such
+ * as a pad that does not exist, as opposed to a call that did not
+ * get a response.
+ */
+public class EPLiteApiException extends EPLiteException {
+
+    /** The serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The response code. */
+    private final int code;
+
+    /**
+     * Instantiates a new EP lite API exception.
+     *
+     * @param nCode   the response code
+     * @param message the message
+     */
+    public EPLiteApiException(final int nCode, final String message) {
+        super(message);
+        this.code = nCode;
+    }
+
+    /**
+     * Gets the response code, one of the CODE_ constants of
+     * {@link EPLiteConnection} but CODE_OK.
+     *
+     * @return the code
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Whether an error, or one of its causes, reports invalid
+     * parameters, e.g. a pad that doesn't exist (any more).
+     *
+     * @param e the error
+     * @return true if it does
+     */
+    static boolean isInvalidParameters(final Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof EPLiteApiException) {
+                return ((EPLiteApiException) t).getCode()
+                        == EPLiteConnection.CODE_INVALID_PARAMETERS;
+            }
+        }
+        return false;
+    }
+}
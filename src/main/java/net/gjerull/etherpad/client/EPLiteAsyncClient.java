@@ -0,0 +1,1534 @@
+package net.gjerull.etherpad.client;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An asynchronous client for Etherpad Lite's HTTP JSON API.<br />
+ * <br />
+ * Every method of {@link EPLiteClient} is available here,
+ * returning an {@link EPLiteFuture} instead of blocking the
+ * calling thread. Calls run on an executor, and at most
+ * maxInFlight of them are sent at the same time; further calls
+ * are queued (without blocking the caller) until one of the
+ * running calls completes.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * EPLiteAsyncClient api = new EPLiteAsyncClient(client, 200);
+ * <br />
+ * api.getText("my_pad").addCallback(<br />
+ * new EPLiteCallback&lt;Map&gt;() {<br />
+ * &nbsp;&nbsp;public void onSuccess(Map pad) { ... }<br />
+ * &nbsp;&nbsp;public void onFailure(Throwable e) { ... }<br />
+ * });
+ * </code>
+ */
+public class EPLiteAsyncClient {
+
+    /** The Constant SHUTDOWN_TIMEOUT_SECONDS. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    /** The blocking client that does the calls. */
+    private final EPLiteClient client;
+
+    /** The executor the calls run on. */
+    private final Executor executor;
+
+    /** The executor to shut down on close, if we created it. */
+    private final ExecutorService ownedExecutor;
+
+    /** Permits for calls in flight. */
+    private final Semaphore inFlight;
+
+    /** Calls waiting for a permit. */
+    private final Queue<EPLiteFuture<?>> queued =
+            new ConcurrentLinkedQueue<>();
+
+    /** Calls submitted but not yet completed. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * Instantiates a new asynchronous client with its own pool of
+     * maxInFlight daemon threads.
+     *
+     * @param nClient     the client doing the calls
+     * @param maxInFlight the max number of concurrent calls
+     */
+    public EPLiteAsyncClient(final EPLiteClient nClient,
+            final int maxInFlight) {
+        this(nClient, Executors.newFixedThreadPool(maxInFlight,
+                new DaemonThreadFactory()), maxInFlight, true);
+    }
+
+    /**
+     * Instantiates a new asynchronous client running its calls on
+     * the given executor. The executor is not shut down by
+     * {@link #close()}.
+     *
+     * @param nClient     the client doing the calls
+     * @param nExecutor   the executor
+     * @param maxInFlight the max number of concurrent calls
+     */
+    public EPLiteAsyncClient(final EPLiteClient nClient,
+            final Executor nExecutor, final int maxInFlight) {
+        this(nClient, nExecutor, maxInFlight, false);
+    }
+
+    /**
+     * Instantiates a new asynchronous client.
+     *
+     * @param nClient     the client doing the calls
+     * @param nExecutor   the executor
+     * @param maxInFlight the max number of concurrent calls
+     * @param owned       whether close() shuts the executor down
+     */
+    private EPLiteAsyncClient(final EPLiteClient nClient,
+            final Executor nExecutor, final int maxInFlight,
+            final boolean owned) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                    "maxInFlight must be at least 1");
+        }
+        this.client = nClient;
+        this.executor = nExecutor;
+        this.ownedExecutor = owned ? (ExecutorService) nExecutor
+                : null;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Gets the blocking client used for the calls.
+     *
+     * @return the client
+     */
+    public final EPLiteClient getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the number of calls currently waiting for a free
+     * in-flight slot.
+     *
+     * @return the queue length
+     */
+    public final int getQueuedCalls() {
+        return queued.size();
+    }
+
+    /**
+     * Waits for the queued and running calls to complete, then
+     * shuts down the executor if it was created by this client.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public final void close() throws InterruptedException {
+        synchronized (outstanding) {
+            while (outstanding.get() > 0) {
+                outstanding.wait();
+            }
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            ownedExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#createGroup()}.
+     *
+     * @return a future of Map with groupID
+     */
+    public final EPLiteFuture<Map> createGroup() {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createGroup();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createGroupIfNotExistsFor(String)}.
+     *
+     * @param groupMapper your group mapper string
+     * @return a future of Map with groupID
+     */
+    public final EPLiteFuture<Map> createGroupIfNotExistsFor(
+            final String groupMapper) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client
+                        .createGroupIfNotExistsFor(groupMapper);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#deleteGroup(String)}.
+     *
+     * @param groupID string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> deleteGroup(
+            final String groupID) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.deleteGroup(groupID);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listPads(String)}.
+     *
+     * @param groupID string
+     * @return a future of Map
+     */
+    public final EPLiteFuture<Map> listPads(
+            final String groupID) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listPads(groupID);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createGroupPad(String, String)}.
+     *
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @return a future of the map
+     */
+    public final EPLiteFuture<Map> createGroupPad(
+            final String groupID, final String padName) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createGroupPad(groupID, padName);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createGroupPad(String, String,
+     * String)}.
+     *
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @param text    Initial text in the pad
+     * @return a future of the map
+     */
+    public final EPLiteFuture<Map> createGroupPad(
+            final String groupID, final String padName,
+            final String text) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createGroupPad(groupID, padName,
+                        text);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listAllGroups()}.
+     *
+     * @return a future of Map with list of groupIDs
+     */
+    public final EPLiteFuture<Map> listAllGroups() {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listAllGroups();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createAuthor()}.
+     *
+     * @return a future of Map with authorID
+     */
+    public final EPLiteFuture<Map> createAuthor() {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createAuthor();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createAuthor(String)}.
+     *
+     * @param name string
+     * @return a future of Map with authorID
+     */
+    public final EPLiteFuture<Map> createAuthor(
+            final String name) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createAuthor(name);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createAuthorIfNotExistsFor(String)}.
+     *
+     * @param authorMapper string
+     * @return a future of Map with authorID
+     */
+    public final EPLiteFuture<Map> createAuthorIfNotExistsFor(
+            final String authorMapper) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client
+                        .createAuthorIfNotExistsFor(authorMapper);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createAuthorIfNotExistsFor(String,
+     * String)}.
+     *
+     * @param authorMapper string
+     * @param name         string
+     * @return a future of Map with authorID
+     */
+    public final EPLiteFuture<Map> createAuthorIfNotExistsFor(
+            final String authorMapper, final String name) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client
+                        .createAuthorIfNotExistsFor(authorMapper,
+                                name);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listPadsOfAuthor(String)}.
+     *
+     * @param authorId the authors's id string
+     * @return a future of Map
+     */
+    public final EPLiteFuture<Map> listPadsOfAuthor(
+            final String authorId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listPadsOfAuthor(authorId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getAuthorName(String)}.
+     *
+     * @param authorId the author's id string
+     * @return a future of authorName
+     */
+    public final EPLiteFuture<String> getAuthorName(
+            final String authorId) {
+        return submit(new Callable<String>() {
+            public String call() {
+                return client.getAuthorName(authorId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createSession(String, String, long)}.
+     *
+     * @param groupID    string
+     * @param authorID   string
+     * @param validUntil long UNIX timestamp <strong>in
+     *                   seconds</strong>
+     * @return a future of Map with sessionID
+     */
+    public final EPLiteFuture<Map> createSession(
+            final String groupID, final String authorID,
+            final long validUntil) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createSession(groupID, authorID,
+                        validUntil);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createSession(String, String, int)}.
+     *
+     * @param groupID         string
+     * @param authorID        string
+     * @param sessionDuration int duration of session in hours
+     * @return a future of Map with sessionID
+     */
+    public final EPLiteFuture<Map> createSession(
+            final String groupID, final String authorID,
+            final int sessionDuration) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createSession(groupID, authorID,
+                        sessionDuration);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createSession(String, String, Date)}.
+     *
+     * @param groupID    string
+     * @param authorID   string
+     * @param validUntil Date
+     * @return a future of Map with sessionID
+     */
+    public final EPLiteFuture<Map> createSession(
+            final String groupID, final String authorID,
+            final Date validUntil) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createSession(groupID, authorID,
+                        validUntil);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#deleteSession(String)}.
+     *
+     * @param sessionID string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> deleteSession(
+            final String sessionID) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.deleteSession(sessionID);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getSessionInfo(String)}.
+     *
+     * @param sessionID string
+     * @return a future of Map
+     */
+    public final EPLiteFuture<Map> getSessionInfo(
+            final String sessionID) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getSessionInfo(sessionID);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getSession(String)}.
+     *
+     * @param sessionID string
+     * @return a future of the session
+     */
+    public final EPLiteFuture<SessionInfo> getSession(
+            final String sessionID) {
+        return submit(new Callable<SessionInfo>() {
+            public SessionInfo call() {
+                return client.getSession(sessionID);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listSessionsOfGroup(String)}.
+     *
+     * @param groupID string
+     * @return a future of Map
+     */
+    public final EPLiteFuture<Map> listSessionsOfGroup(
+            final String groupID) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listSessionsOfGroup(groupID);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listSessionsOfAuthor(String)}.
+     *
+     * @param authorID string
+     * @return a future of Map
+     */
+    public final EPLiteFuture<Map> listSessionsOfAuthor(
+            final String authorID) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listSessionsOfAuthor(authorID);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getText(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the text content of pad
+     */
+    public final EPLiteFuture<Map> getText(final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getText(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getText(String,
+     * long)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return a future of a Map with the text content of pad in
+     *         given revision
+     */
+    public final EPLiteFuture<Map> getText(final String padId,
+            final long rev) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getText(padId, rev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getText(String,
+     * Writer)}.
+     *
+     * @param padId the pad's id string
+     * @param out   the writer, which is not closed
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> getText(final String padId,
+            final Writer out) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.getText(padId, out);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getText(String,
+     * long, Writer)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @param out   the writer, which is not closed
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> getText(final String padId,
+            final long rev, final Writer out) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.getText(padId, rev, out);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getPadText(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the text content of pad
+     */
+    public final EPLiteFuture<PadText> getPadText(
+            final String padId) {
+        return submit(new Callable<PadText>() {
+            public PadText call() {
+                return client.getPadText(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getPadText(String, long)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return a future of the text content of pad in
+     *         given revision
+     */
+    public final EPLiteFuture<PadText> getPadText(
+            final String padId, final long rev) {
+        return submit(new Callable<PadText>() {
+            public PadText call() {
+                return client.getPadText(padId, rev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#setText(String,
+     * String)}.
+     *
+     * @param padId the pad's id string
+     * @param text  the pad's new text
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> setText(final String padId,
+            final String text) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.setText(padId, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#appendText(String, String)}.
+     *
+     * @param padId the pad's id string
+     * @param text  the pad's new text
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> appendText(final String padId,
+            final String text) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.appendText(padId, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getHTML(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the HTML content of pad
+     */
+    public final EPLiteFuture<Map> getHTML(final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getHTML(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getHTML(String,
+     * long)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return a future of a Map with the HTML content of pad in
+     *         given revision
+     */
+    public final EPLiteFuture<Map> getHTML(final String padId,
+            final long rev) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getHTML(padId, rev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getHTML(String,
+     * OutputStream)}.
+     *
+     * @param padId the pad's id string
+     * @param out   the stream, which is not closed
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> getHTML(final String padId,
+            final OutputStream out) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.getHTML(padId, out);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#getHTML(String,
+     * long, OutputStream)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @param out   the stream, which is not closed
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> getHTML(final String padId,
+            final long rev, final OutputStream out) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.getHTML(padId, rev, out);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#setHTML(String,
+     * String)}.
+     *
+     * @param padId the pad's id string
+     * @param html  the pad's new html text
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> setHTML(final String padId,
+            final String html) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.setHTML(padId, html);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getAttributePool(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the attribute pool of a pad
+     */
+    public final EPLiteFuture<Map> getAttributePool(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getAttributePool(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getRevisionChangeset(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the changeset at the last revision.
+     */
+    public final EPLiteFuture<String> getRevisionChangeset(
+            final String padId) {
+        return submit(new Callable<String>() {
+            public String call() {
+                return client.getRevisionChangeset(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getRevisionChangeset(String, long)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return a future of the changeset at a given revision.
+     */
+    public final EPLiteFuture<String> getRevisionChangeset(
+            final String padId, final long rev) {
+        return submit(new Callable<String>() {
+            public String call() {
+                return client.getRevisionChangeset(padId, rev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#prefetchRevisionChangesets(String, long, long)}.
+     *
+     * @param padId   the pad's id string
+     * @param fromRev the first revision number
+     * @param toRev   the last revision number, inclusive
+     * @return a future of the number of changesets fetched
+     */
+    public final EPLiteFuture<Integer> prefetchRevisionChangesets(
+            final String padId, final long fromRev, final long toRev) {
+        return submit(new Callable<Integer>() {
+            public Integer call() {
+                return client.prefetchRevisionChangesets(padId,
+                        fromRev, toRev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createDiffHTML(String, long, long)}.
+     *
+     * @param padId    the pad's id string
+     * @param startRev the start revision number
+     * @param endRev   the end revision number
+     * @return a future of a Map of diffs from 2 points in a pad
+     */
+    public final EPLiteFuture<Map> createDiffHTML(
+            final String padId, final long startRev,
+            final long endRev) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createDiffHTML(padId, startRev,
+                        endRev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createDiff(String, long, long)}.
+     *
+     * @param padId    the pad's id string
+     * @param startRev the start revision number
+     * @param endRev   the end revision number
+     * @return a future of the diff
+     */
+    public final EPLiteFuture<PadDiff> createDiff(final String padId,
+            final long startRev, final long endRev) {
+        return submit(new Callable<PadDiff>() {
+            public PadDiff call() {
+                return client.createDiff(padId, startRev, endRev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createDiffHTMLLocally(String, long, long)}.
+     *
+     * @param padId    the pad's id string
+     * @param startRev the start revision number
+     * @param endRev   the end revision number
+     * @return a future of a Map with the html and authors of the
+     *         diff
+     */
+    public final EPLiteFuture<Map> createDiffHTMLLocally(
+            final String padId, final long startRev,
+            final long endRev) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.createDiffHTMLLocally(padId, startRev,
+                        endRev);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getChatHistory(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the whole chat histroy
+     */
+    public final EPLiteFuture<Map> getChatHistory(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getChatHistory(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getChatHistory(String, long, long)}.
+     *
+     * @param padId the pad's id string
+     * @param start the start index
+     * @param end   the end index
+     * @return a future of a part of the chat history, between
+     *         start and end
+     */
+    public final EPLiteFuture<Map> getChatHistory(
+            final String padId, final long start,
+            final long end) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getChatHistory(padId, start, end);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getChatHead(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the last number of the last
+     *         chat-message
+     */
+    public final EPLiteFuture<Map> getChatHead(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getChatHead(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#appendChatMessage(String, String,
+     * String)}.
+     *
+     * @param padId    the pad's id string
+     * @param text     the text of this chat entry
+     * @param authorId the author of this chat entry
+     * @return a future of the map
+     */
+    public final EPLiteFuture<Map> appendChatMessage(
+            final String padId, final String text,
+            final String authorId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.appendChatMessage(padId, text,
+                        authorId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#appendChatMessage(String, String,
+     * String, long)}.
+     *
+     * @param padId    the pad's id string
+     * @param text     the text of this chat entry
+     * @param authorId the author of this chat entry
+     * @param time     the timestamp of this chat entry
+     * @return a future of the map
+     */
+    public final EPLiteFuture<Map> appendChatMessage(
+            final String padId, final String text,
+            final String authorId, final long time) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client
+                        .appendChatMessage(padId, text, authorId,
+                                time);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#listAllPads()}.
+     *
+     * @return a future of a Map with list of pad id's
+     */
+    public final EPLiteFuture<Map> listAllPads() {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listAllPads();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createPad(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> createPad(
+            final String padId) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.createPad(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#createPad(String, String)}.
+     *
+     * @param padId the pad's id string
+     * @param text  the initial text string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> createPad(final String padId,
+            final String text) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.createPad(padId, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getRevisionsCount(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the number of revisions
+     */
+    public final EPLiteFuture<Map> getRevisionsCount(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getRevisionsCount(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getRevisionCount(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the number of revisions
+     */
+    public final EPLiteFuture<RevisionCount> getRevisionCount(
+            final String padId) {
+        return submit(new Callable<RevisionCount>() {
+            public RevisionCount call() {
+                return client.getRevisionCount(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getSavedRevisionsCount(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with number of saved revisions
+     */
+    public final EPLiteFuture<Map> getSavedRevisionsCount(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getSavedRevisionsCount(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getSavedRevisionCount(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the number of saved
+     *         revisions
+     */
+    public final EPLiteFuture<RevisionCount> getSavedRevisionCount(
+            final String padId) {
+        return submit(new Callable<RevisionCount>() {
+            public RevisionCount call() {
+                return client.getSavedRevisionCount(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listSavedRevisions(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the list of saved revision
+     *         numbers
+     */
+    public final EPLiteFuture<Map> listSavedRevisions(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listSavedRevisions(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#saveRevision(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> saveRevision(
+            final String padId) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.saveRevision(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#saveRevision(String, long)}.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision to be saved
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> saveRevision(
+            final String padId, final long rev) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.saveRevision(padId, rev);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#padUsersCount(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the padUsersCount
+     */
+    public final EPLiteFuture<Map> padUsersCount(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.padUsersCount(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#padUsers(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with a List of pad user maps
+     */
+    public final EPLiteFuture<Map> padUsers(final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.padUsers(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getPadUsers(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of the users
+     */
+    public final EPLiteFuture<PadUsers> getPadUsers(
+            final String padId) {
+        return submit(new Callable<PadUsers>() {
+            public PadUsers call() {
+                return client.getPadUsers(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#deletePad(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> deletePad(
+            final String padId) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.deletePad(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#copyPad(String,
+     * String)}.
+     *
+     * @param sourcePadId      the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> copyPad(
+            final String sourcePadId,
+            final String destinationPadId) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.copyPad(sourcePadId, destinationPadId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#copyPad(String,
+     * String, boolean)}.
+     *
+     * @param sourcePadId      the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force            if force is true and the
+     *                         destination pad exists it will be
+     *                         overwritten.
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> copyPad(
+            final String sourcePadId,
+            final String destinationPadId, final boolean force) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client
+                        .copyPad(sourcePadId, destinationPadId,
+                                force);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#movePad(String,
+     * String)}.
+     *
+     * @param sourcePadId      the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> movePad(
+            final String sourcePadId,
+            final String destinationPadId) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.movePad(sourcePadId, destinationPadId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#movePad(String,
+     * String, boolean)}.
+     *
+     * @param sourcePadId      the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force            if force is true and the
+     *                         destination pad exists, it will be
+     *                         overwritten.
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> movePad(
+            final String sourcePadId,
+            final String destinationPadId, final boolean force) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client
+                        .movePad(sourcePadId, destinationPadId,
+                                force);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getReadOnlyID(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the readOnlyID
+     */
+    public final EPLiteFuture<Map> getReadOnlyID(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getReadOnlyID(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#warmUpReadOnlyIDs()}.
+     *
+     * @return a future of the number of read-only ids fetched
+     */
+    public final EPLiteFuture<Integer> warmUpReadOnlyIDs() {
+        return submit(new Callable<Integer>() {
+            public Integer call() {
+                return client.warmUpReadOnlyIDs();
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getPadID(String)}.
+     *
+     * @param readOnlyPadId the pad's read only id string
+     * @return a future of a Map with the padID
+     */
+    public final EPLiteFuture<Map> getPadID(
+            final String readOnlyPadId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getPadID(readOnlyPadId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#setPublicStatus(String, Boolean)}.
+     *
+     * @param padId        the pad's id string
+     * @param publicStatus boolean
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> setPublicStatus(
+            final String padId, final Boolean publicStatus) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.setPublicStatus(padId, publicStatus);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getPublicStatus(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the Boolean publicStatus
+     */
+    public final EPLiteFuture<Map> getPublicStatus(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getPublicStatus(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#setPassword(String, String)}.
+     *
+     * @param padId    the pad's id string
+     * @param password string
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> setPassword(
+            final String padId, final String password) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.setPassword(padId, password);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#isPasswordProtected(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the Boolean
+     *         passwordProtection
+     */
+    public final EPLiteFuture<Map> isPasswordProtected(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.isPasswordProtected(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#listAuthorsOfPad(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with a List of author ids
+     */
+    public final EPLiteFuture<Map> listAuthorsOfPad(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.listAuthorsOfPad(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#getLastEdited(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with lastEdited timestamp.
+     */
+    public final EPLiteFuture<Map> getLastEdited(
+            final String padId) {
+        return submit(new Callable<Map>() {
+            public Map call() {
+                return client.getLastEdited(padId);
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link EPLiteClient#sendClientsMessage(String, String)}.
+     *
+     * @param padId the pad's id string
+     * @param msg   the message to send
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> sendClientsMessage(
+            final String padId, final String msg) {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.sendClientsMessage(padId, msg);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link EPLiteClient#checkToken()}.
+     *
+     * @return a future that completes when the call is done
+     */
+    public final EPLiteFuture<Void> checkToken() {
+        return submit(new Callable<Void>() {
+            public Void call() {
+                client.checkToken();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Queues a call and starts as many queued calls as the
+     * in-flight limit allows.
+     *
+     * @param <T>  the result type
+     * @param call the call
+     * @return the future of the call
+     */
+    private <T> EPLiteFuture<T> submit(final Callable<T> call) {
+        EPLiteFuture<T> future = new EPLiteFuture<>(call);
+        outstanding.incrementAndGet();
+        queued.offer(future);
+        dispatch();
+        return future;
+    }
+
+    /**
+     * Hands queued calls to the executor while there are free
+     * in-flight permits.
+     */
+    private void dispatch() {
+        while (!queued.isEmpty() && inFlight.tryAcquire()) {
+            final EPLiteFuture<?> next = queued.poll();
+            if (next == null) {
+                inFlight.release();
+                continue;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            next.run();
+                        } finally {
+                            inFlight.release();
+                            completed();
+                            dispatch();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.release();
+                next.fail(e);
+                completed();
+            }
+        }
+    }
+
+    /**
+     * Records that a call has completed, waking up close().
+     */
+    private void completed() {
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (outstanding) {
+                outstanding.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads, so an unclosed client doesn't keep
+     * the JVM alive.
+     */
+    private static final class DaemonThreadFactory
+            implements ThreadFactory {
+
+        /** The thread counter. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable
+         * @return the thread
+         */
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    "eplite-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Receives the outcome of an asynchronous call made through
+ * {@link EPLiteAsyncClient}.
+ *
+ * @param <T> the result type
+ */
+public interface EPLiteCallback<T> {
+
+    /**
+     * Called with the result of a successful call.
+     *
+     * @param result the result (null for calls without one)
+     */
+    void onSuccess(T result);
+
+    /**
+     * Called when the call failed or was cancelled.
+     *
+     * @param cause the failure, usually an
+     *              {@link EPLiteException}
+     */
+    void onFailure(Throwable cause);
+}
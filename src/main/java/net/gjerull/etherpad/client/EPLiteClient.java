@@ -1,9 +1,16 @@
 package net.gjerull.etherpad.client;
 
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.json.simple.JSONObject;
+
 /**
  * A client for talking to Etherpad Lite's HTTP JSON API.<br />
  * <br />
@@ -37,6 +44,21 @@ public class EPLiteClient {
     /** The connection. */
     private final EPLiteConnection connection;
 
+    /** The cache of fixed revisions, or null. */
+    private final RevisionCache revisionCache;
+
+    /** The cache of revision changesets, or null. */
+    private final ChangesetCache changesetCache;
+
+    /** The cache of read-only ids, or null. */
+    private final ReadOnlyIdCache readOnlyIdCache;
+
+    /** The cache of group and author mappers, or null. */
+    private final MapperCache mapperCache;
+
+    /** The fingerprints of pad contents, or null. */
+    private final ContentFingerprints contentFingerprints;
+
     /**
      * Initializes a new net.gjerull.etherpad.client.EPLiteClient
      * object. The default Etherpad Lite API version (in
@@ -47,8 +69,7 @@ public class EPLiteClient {
      * @param apiKey the API Key
      */
     public EPLiteClient(final String url, final String apiKey) {
-        this.connection = new EPLiteConnection(url, apiKey,
-                DEFAULT_API_VERSION, DEFAULT_ENCODING);
+        this(builder(url, apiKey));
     }
 
     /**
@@ -64,8 +85,115 @@ public class EPLiteClient {
      */
     public EPLiteClient(final String url, final String apiKey,
             final String apiVersion, final String encoding) {
-        this.connection = new EPLiteConnection(url, apiKey,
-                apiVersion, encoding);
+        this(builder(url, apiKey).apiVersion(apiVersion)
+                .encoding(encoding));
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteClient
+     * object as configured by a builder.
+     *
+     * @param builder the builder
+     */
+    private EPLiteClient(final Builder builder) {
+        if (builder.connection != null) {
+            this.connection = builder.connection;
+        } else if (builder.transport != null) {
+            this.connection = new EPLiteConnection(builder.url,
+                    builder.apiKey, builder.apiVersion,
+                    builder.encoding, builder.transport);
+        } else {
+            this.connection = new EPLiteConnection(builder.url,
+                    builder.apiKey, builder.apiVersion,
+                    builder.encoding);
+        }
+        this.revisionCache = builder.revisionCache;
+        this.changesetCache = builder.changesetCache;
+        this.readOnlyIdCache = builder.readOnlyIdCache;
+        this.mapperCache = builder.mapperCache;
+        this.contentFingerprints = builder.contentFingerprints;
+    }
+
+    /**
+     * Returns a builder of a client for an Etherpad Lite instance,
+     * to set a transport or caches. The default API version and
+     * encoding are used unless set.<br />
+     * <br />
+     * Example:<br />
+     * <br />
+     * <code>
+     * EPLiteClient client = EPLiteClient.builder(url, apiKey)<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;.transport(new PooledTransport())<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;.revisionCache(new RevisionCache(size))
+     * <br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;.build();
+     * </code>
+     *
+     * @param url    an absolute url, including protocol, to the
+     *               EPL api
+     * @param apiKey the API Key
+     * @return the builder
+     */
+    public static Builder builder(final String url,
+            final String apiKey) {
+        return new Builder(url, apiKey, null);
+    }
+
+    /**
+     * Returns a builder of a client on top of an already configured
+     * connection, e.g. one with its own codec or a
+     * {@link RequestCoalescer}, to set caches.
+     *
+     * @param connection the connection
+     * @return the builder
+     */
+    public static Builder builder(final EPLiteConnection connection) {
+        return new Builder(null, null, connection);
+    }
+
+    /**
+     * Gets the revision cache.
+     *
+     * @return the revision cache, or null
+     */
+    public final RevisionCache getRevisionCache() {
+        return revisionCache;
+    }
+
+    /**
+     * Gets the changeset cache.
+     *
+     * @return the changeset cache, or null
+     */
+    public final ChangesetCache getChangesetCache() {
+        return changesetCache;
+    }
+
+    /**
+     * Gets the read-only id cache.
+     *
+     * @return the read-only id cache, or null
+     */
+    public final ReadOnlyIdCache getReadOnlyIdCache() {
+        return readOnlyIdCache;
+    }
+
+    /**
+     * Gets the mapper cache.
+     *
+     * @return the mapper cache, or null
+     */
+    public final MapperCache getMapperCache() {
+        return mapperCache;
+    }
+
+    /**
+     * Gets the fingerprints of pad contents.
+     *
+     * @return the fingerprints, or null
+     */
+    public final ContentFingerprints getContentFingerprints() {
+        return contentFingerprints;
     }
 
     // Groups
@@ -87,17 +215,31 @@ public class EPLiteClient {
      * Creates a new Group for groupMapper if one doesn't already
      * exist. Helps you map your application's groups to Etherpad
      * Lite's groups. the group id is returned in "groupID" in
-     * the Map.
+     * the Map. With a mapper cache, each mapper is only sent
+     * once.
      *
      * @param groupMapper your group mapper string
      * @return Map with groupID
      */
+    @SuppressWarnings("unchecked")
     public final Map createGroupIfNotExistsFor(
             final String groupMapper) {
-        Map<String, Object> args = new HashMap<>();
+        final Map<String, Object> args = new HashMap<>();
         args.put("groupMapper", groupMapper);
-        return this.connection.post("createGroupIfNotExistsFor",
-                args);
+        if (this.mapperCache == null) {
+            return this.connection.post("createGroupIfNotExistsFor",
+                    args);
+        }
+        JSONObject result = new JSONObject();
+        result.put("groupID", this.mapperCache.getGroupId(groupMapper,
+                new MapperCache.Loader() {
+                    public String load() {
+                        return (String) connection.post(
+                                "createGroupIfNotExistsFor", args)
+                                .get("groupID");
+                    }
+                }));
+        return result;
     }
 
     /**
@@ -108,7 +250,25 @@ public class EPLiteClient {
     public final void deleteGroup(final String groupID) {
         Map<String, Object> args = new HashMap<>();
         args.put("groupID", groupID);
-        this.connection.post("deleteGroup", args);
+        try {
+            this.connection.post("deleteGroup", args);
+        } finally {
+            if (this.revisionCache != null) {
+                this.revisionCache.invalidateGroup(groupID);
+            }
+            if (this.changesetCache != null) {
+                this.changesetCache.invalidateGroup(groupID);
+            }
+            if (this.readOnlyIdCache != null) {
+                this.readOnlyIdCache.invalidateGroup(groupID);
+            }
+            if (this.mapperCache != null) {
+                this.mapperCache.invalidateGroup(groupID);
+            }
+            if (this.contentFingerprints != null) {
+                this.contentFingerprints.invalidateGroup(groupID);
+            }
+        }
     }
 
     /**
@@ -197,7 +357,8 @@ public class EPLiteClient {
      * Creates a new Author for authorMapper if one doesn't
      * already exist. Helps you map your application's authors to
      * Etherpad Lite's authors. The author id is returned in
-     * "authorID".
+     * "authorID". With a mapper cache, each mapper is only sent
+     * once, or again when the name changes.
      *
      * @param authorMapper string
      * @return Map with authorID
@@ -206,7 +367,7 @@ public class EPLiteClient {
             final String authorMapper) {
         Map<String, Object> args = new HashMap<>();
         args.put("authorMapper", authorMapper);
-        return this.connection.post("createAuthorIfNotExistsFor",
+        return this.createAuthorIfNotExistsFor(authorMapper, null,
                 args);
     }
 
@@ -214,7 +375,8 @@ public class EPLiteClient {
      * Creates a new Author for authorMapper if one doesn't
      * already exist. Helps you map your application's authors to
      * Etherpad Lite's authors. The author id is returned in
-     * "authorID".
+     * "authorID". With a mapper cache, each mapper is only sent
+     * once, or again when the name changes.
      *
      * @param authorMapper string
      * @param name         string
@@ -225,10 +387,38 @@ public class EPLiteClient {
         Map<String, Object> args = new HashMap<>();
         args.put("authorMapper", authorMapper);
         args.put("name", name);
-        return this.connection.post("createAuthorIfNotExistsFor",
+        return this.createAuthorIfNotExistsFor(authorMapper, name,
                 args);
     }
 
+    /**
+     * Creates or looks up the author of an authorMapper, through
+     * the mapper cache if there is one.
+     *
+     * @param authorMapper string
+     * @param name         string, or null
+     * @param args         the arguments of the call
+     * @return Map with authorID
+     */
+    @SuppressWarnings("unchecked")
+    private Map createAuthorIfNotExistsFor(final String authorMapper,
+            final String name, final Map<String, Object> args) {
+        if (this.mapperCache == null) {
+            return this.connection.post("createAuthorIfNotExistsFor",
+                    args);
+        }
+        JSONObject result = new JSONObject();
+        result.put("authorID", this.mapperCache.getAuthorId(
+                authorMapper, name, new MapperCache.Loader() {
+                    public String load() {
+                        return (String) connection.post(
+                                "createAuthorIfNotExistsFor", args)
+                                .get("authorID");
+                    }
+                }));
+        return result;
+    }
+
     /**
      * List the ids of pads the author has edited. They will be
      * in an array inside "padIDs".
@@ -374,6 +564,20 @@ public class EPLiteClient {
         return this.connection.get("getSessionInfo", args);
     }
 
+    /**
+     * Returns information about a session, decoded straight from
+     * the response instead of through a Map.
+     *
+     * @param sessionID string
+     * @return the session
+     */
+    public final SessionInfo getSession(final String sessionID) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("sessionID", sessionID);
+        return this.connection.get("getSessionInfo", args,
+                SessionInfo.BINDER);
+    }
+
     /**
      * List all the sessions IDs in a group. Returned as a Map of
      * sessionIDs keys, with values of Maps containing groupID,
@@ -415,7 +619,11 @@ public class EPLiteClient {
     public final Map getText(final String padId) {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
-        return this.connection.get("getText", args);
+        long epoch = this.contentEpoch();
+        Map response = this.connection.get("getText", args);
+        this.rememberContent(padId, ContentFingerprints.TEXT,
+                response.get("text"), epoch);
+        return response;
     }
 
     /**
@@ -429,24 +637,194 @@ public class EPLiteClient {
      */
     public final Map getText(final String padId,
             final long rev) {
+        return this.getRevision("getText", "text", padId, rev);
+    }
+
+    /**
+     * Writes the latest revision of the pad's text to the given
+     * writer, while it is received. Unlike {@link #getText(String)}
+     * the text is never held in memory as a whole, so this is the
+     * way to export very large pads.
+     *
+     * @param padId the pad's id string
+     * @param out   the writer, which is not closed
+     */
+    public final void getText(final String padId, final Writer out) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.get("getText", args,
+                DataBinders.stringTo("text", out));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text to the given
+     * writer, while it is received.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @param out   the writer, which is not closed
+     */
+    public final void getText(final String padId, final long rev,
+            final Writer out) {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return this.connection.get("getText", args);
+        this.connection.get("getText", args,
+                DataBinders.stringTo("text", out));
     }
 
     /**
-     * Creates a new revision with the given text.
+     * Returns the latest revision of the pad's text, decoded
+     * straight from the response instead of through a Map.
+     *
+     * @param padId the pad's id string
+     * @return the text content of pad
+     */
+    public final PadText getPadText(final String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        long epoch = this.contentEpoch();
+        PadText padText = this.connection.get("getText", args,
+                PadText.BINDER);
+        if (padText != null) {
+            this.rememberContent(padId, ContentFingerprints.TEXT,
+                    padText.getText(), epoch);
+        }
+        return padText;
+    }
+
+    /**
+     * Returns a specific revision of the pad's text, decoded
+     * straight from the response instead of through a Map.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return the text content of pad in given revision
+     */
+    public final PadText getPadText(final String padId,
+            final long rev) {
+        if (this.revisionCache == null) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("padID", padId);
+            args.put("rev", rev);
+            return this.connection.get("getText", args,
+                    PadText.BINDER);
+        }
+        return new PadText((String) this
+                .getRevision("getText", "text", padId, rev)
+                .get("text"));
+    }
+
+    /**
+     * Returns a fixed revision of the pad's text or HTML, from the
+     * revision cache if there is one.
+     *
+     * @param apiMethod getText or getHTML
+     * @param field     the member holding the text or HTML
+     * @param padId     the pad's id string
+     * @param rev       the revision number
+     * @return a Map with the content of pad in given revision
+     */
+    @SuppressWarnings("unchecked")
+    private Map getRevision(final String apiMethod,
+            final String field, final String padId, final long rev) {
+        long epoch = 0;
+        if (this.revisionCache != null) {
+            String cached = this.revisionCache.get(padId, field, rev);
+            if (cached != null) {
+                Map response = new JSONObject();
+                response.put(field, cached);
+                return response;
+            }
+            epoch = this.revisionCache.epoch();
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        Map response = this.connection.get(apiMethod, args);
+        if (this.revisionCache != null
+                && response.get(field) instanceof String) {
+            this.revisionCache.put(padId, field, rev,
+                    (String) response.get(field), epoch);
+        }
+        return response;
+    }
+
+    /**
+     * Creates a new revision with the given text. With content
+     * fingerprints, nothing is sent if the pad is known to hold
+     * this text already.
      *
      * @param padId the pad's id string
      * @param text  the pad's new text
      */
     public final void setText(final String padId,
             final String text) {
+        this.setContent("setText", "text", ContentFingerprints.TEXT,
+                padId, text);
+    }
+
+    /**
+     * Sets the text or HTML of a pad, unless the fingerprints show
+     * it is already there.
+     *
+     * @param apiMethod setText or setHTML
+     * @param field     the argument holding the text or HTML
+     * @param kind      the kind of fingerprint
+     * @param padId     the pad's id string
+     * @param content   the text or HTML
+     */
+    private void setContent(final String apiMethod,
+            final String field, final int kind, final String padId,
+            final String content) {
+        long fingerprint = 0;
+        long epoch = 0;
+        if (this.contentFingerprints != null) {
+            fingerprint = ContentFingerprints.fingerprint(content);
+            if (this.contentFingerprints.isUnchanged(padId, kind,
+                    fingerprint)) {
+                return;
+            }
+            this.contentFingerprints.invalidatePad(padId);
+            epoch = this.contentFingerprints.epoch();
+        }
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
-        args.put("text", text);
-        this.connection.post("setText", args);
+        args.put(field, content);
+        this.connection.post(apiMethod, args);
+        if (this.contentFingerprints != null) {
+            this.contentFingerprints.put(padId, kind, fingerprint,
+                    epoch);
+        }
+    }
+
+    /**
+     * Returns the epoch of the content fingerprints, taken before
+     * the content of a pad is read.
+     *
+     * @return the epoch, or 0 without fingerprints
+     */
+    private long contentEpoch() {
+        return this.contentFingerprints == null ? 0
+                : this.contentFingerprints.epoch();
+    }
+
+    /**
+     * Remembers the content read from a pad.
+     *
+     * @param padId   the pad's id string
+     * @param kind    the kind of fingerprint
+     * @param content the text or HTML read
+     * @param epoch   the epoch taken before the read
+     */
+    private void rememberContent(final String padId, final int kind,
+            final Object content, final long epoch) {
+        if (this.contentFingerprints != null
+                && content instanceof String) {
+            this.contentFingerprints.putRead(padId, kind,
+                    ContentFingerprints.fingerprint((String) content),
+                    epoch);
+        }
     }
 
     /**
@@ -463,7 +841,13 @@ public class EPLiteClient {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("text", text);
-        this.connection.post("appendText", args);
+        try {
+            this.connection.post("appendText", args);
+        } finally {
+            if (this.contentFingerprints != null) {
+                this.contentFingerprints.invalidatePad(padId);
+            }
+        }
     }
 
     /**
@@ -476,7 +860,11 @@ public class EPLiteClient {
     public final Map getHTML(final String padId) {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
-        return this.connection.get("getHTML", args);
+        long epoch = this.contentEpoch();
+        Map response = this.connection.get("getHTML", args);
+        this.rememberContent(padId, ContentFingerprints.HTML,
+                response.get("html"), epoch);
+        return response;
     }
 
     /**
@@ -490,24 +878,70 @@ public class EPLiteClient {
      */
     public final Map getHTML(final String padId,
             final long rev) {
+        return this.getRevision("getHTML", "html", padId, rev);
+    }
+
+    /**
+     * Writes the current revision of the pad's text as HTML,
+     * UTF-8 encoded, to the given stream while it is received.
+     * Unlike {@link #getHTML(String)} the HTML is never held in
+     * memory as a whole, so this is the way to export very large
+     * pads.
+     *
+     * @param padId the pad's id string
+     * @param out   the stream, which is not closed
+     */
+    public final void getHTML(final String padId,
+            final OutputStream out) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.get("getHTML", args,
+                DataBinders.stringTo("html", out));
+    }
+
+    /**
+     * Writes the current revision of the pad's text as HTML to the
+     * given writer, while it is received.
+     *
+     * @param padId the pad's id string
+     * @param out   the writer, which is not closed
+     */
+    public final void getHTML(final String padId, final Writer out) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.get("getHTML", args,
+                DataBinders.stringTo("html", out));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text as HTML, UTF-8
+     * encoded, to the given stream while it is received.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @param out   the stream, which is not closed
+     */
+    public final void getHTML(final String padId, final long rev,
+            final OutputStream out) {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return this.connection.get("getHTML", args);
+        this.connection.get("getHTML", args,
+                DataBinders.stringTo("html", out));
     }
 
     /**
-     * Creates a new revision with the given html.
+     * Creates a new revision with the given html. With content
+     * fingerprints, nothing is sent if the pad is known to hold
+     * this html already.
      *
      * @param padId the pad's id string
      * @param html  the pad's new html text
      */
     public final void setHTML(final String padId,
             final String html) {
-        Map<String, Object> args = new HashMap<>();
-        args.put("padID", padId);
-        args.put("html", html);
-        this.connection.post("setHTML", args);
+        this.setContent("setHTML", "html", ContentFingerprints.HTML,
+                padId, html);
     }
 
     /**
@@ -551,11 +985,66 @@ public class EPLiteClient {
      */
     public final String getRevisionChangeset(final String padId,
             final long rev) {
+        if (this.changesetCache != null) {
+            String cached = this.changesetCache.get(padId, rev);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return this.fetchRevisionChangeset(padId, rev);
+    }
+
+    /**
+     * Fetches the changesets of a range of revisions that are not
+     * in the changeset cache yet, so that replaying the range
+     * afterwards needs no calls. Does nothing without a changeset
+     * cache.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId   the pad's id string
+     * @param fromRev the first revision number
+     * @param toRev   the last revision number, inclusive
+     * @return the number of changesets fetched
+     */
+    public final int prefetchRevisionChangesets(final String padId,
+            final long fromRev, final long toRev) {
+        int fetched = 0;
+        if (this.changesetCache == null) {
+            return fetched;
+        }
+        for (long rev = fromRev; rev <= toRev; rev++) {
+            if (!this.changesetCache.contains(padId, rev)) {
+                this.fetchRevisionChangeset(padId, rev);
+                fetched++;
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Fetches the changeset at a given revision, and caches it if
+     * there is a changeset cache.
+     *
+     * @param padId the pad's id string
+     * @param rev   the revision number
+     * @return the changeset at a given revision.
+     */
+    private String fetchRevisionChangeset(final String padId,
+            final long rev) {
+        long epoch = 0;
+        if (this.changesetCache != null) {
+            epoch = this.changesetCache.epoch();
+        }
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return (String) this.connection
+        String changeset = (String) this.connection
                 .getObject("getRevisionChangeset", args);
+        if (this.changesetCache != null && changeset != null) {
+            this.changesetCache.put(padId, rev, changeset, epoch);
+        }
+        return changeset;
     }
 
     /**
@@ -577,6 +1066,79 @@ public class EPLiteClient {
         return this.connection.get("createDiffHTML", args);
     }
 
+    /**
+     * Works out the differences between 2 points in a pad on the
+     * client, from the text of the start revision and the
+     * changesets up to the end revision, so the server only serves
+     * what it may already have cached.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId    the pad's id string
+     * @param startRev the start revision number
+     * @param endRev   the end revision number
+     * @return the diff
+     */
+    public final PadDiff createDiff(final String padId,
+            final long startRev, final long endRev) {
+        String startText = this.getPadText(padId, startRev).getText();
+        List<Changeset> changesets = new ArrayList<>();
+        for (long rev = startRev + 1; rev <= endRev; rev++) {
+            changesets.add(Changeset.parse(
+                    this.getRevisionChangeset(padId, rev)));
+        }
+        // The pool only grows, so fetched last it knows every
+        // attribute of the changesets
+        PadDiff diff = new PadDiff(startText, AttributePool
+                .fromMap(this.getAttributePool(padId)));
+        for (Changeset changeset : changesets) {
+            diff.apply(changeset);
+        }
+        return diff;
+    }
+
+    /**
+     * Returns an object of diffs from 2 points in a pad, like
+     * {@link #createDiffHTML(String, long, long)}, but rendered on
+     * the client from {@link #createDiff(String, long, long)}.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId    the pad's id string
+     * @param startRev the start revision number
+     * @param endRev   the end revision number
+     * @return a Map with the html and authors of the diff
+     */
+    public final Map createDiffHTMLLocally(final String padId,
+            final long startRev, final long endRev) {
+        return this.createDiffHTMLLocally(padId, startRev, endRev,
+                Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Returns an object of diffs from 2 points in a pad, like
+     * {@link #createDiffHTMLLocally(String, long, long)}, with the
+     * author colors that the server would put in the style block.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId        the pad's id string
+     * @param startRev     the start revision number
+     * @param endRev       the end revision number
+     * @param authorColors the CSS colors of the authors by author id
+     * @return a Map with the html and authors of the diff
+     */
+    @SuppressWarnings("unchecked")
+    public final Map createDiffHTMLLocally(final String padId,
+            final long startRev, final long endRev,
+            final Map<String, String> authorColors) {
+        PadDiff diff = this.createDiff(padId, startRev, endRev);
+        JSONObject result = new JSONObject();
+        result.put("html", diff.toHTML(authorColors));
+        result.put("authors", diff.getAuthors());
+        return result;
+    }
+
     // Chat
 
     /**
@@ -687,6 +1249,19 @@ public class EPLiteClient {
         return this.connection.get("listAllPads");
     }
 
+    /**
+     * Writes the ids of all pads to the given writer, one per line,
+     * while they are received. Unlike {@link #listAllPads()} the
+     * list is never held in memory, so this is the way to list the
+     * pads of very large instances.
+     *
+     * @param out the writer, which is not closed
+     */
+    public final void listAllPads(final Writer out) {
+        this.connection.get("listAllPads", new HashMap<String, Object>(),
+                DataBinders.linesTo("padIDs", out));
+    }
+
     /**
      * Create a new pad.
      *
@@ -725,6 +1300,20 @@ public class EPLiteClient {
         return this.connection.get("getRevisionsCount", args);
     }
 
+    /**
+     * Returns the number of revisions of this pad, decoded
+     * straight from the response instead of through a Map.
+     *
+     * @param padId the pad's id string
+     * @return the number of revisions
+     */
+    public final RevisionCount getRevisionCount(final String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.get("getRevisionsCount", args,
+                RevisionCount.REVISIONS_BINDER);
+    }
+
     /**
      * Returns the number of saved revisions of this pad.
      *
@@ -740,6 +1329,23 @@ public class EPLiteClient {
                 args);
     }
 
+    /**
+     * Returns the number of saved revisions of this pad, decoded
+     * straight from the response instead of through a Map.
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     * @return the number of saved revisions
+     */
+    public final RevisionCount getSavedRevisionCount(
+            final String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.get("getSavedRevisionsCount", args,
+                RevisionCount.SAVED_REVISIONS_BINDER);
+    }
+
     /**
      * returns the list of saved revisions of this pad.
      *
@@ -809,6 +1415,21 @@ public class EPLiteClient {
         return this.connection.get("padUsers", args);
     }
 
+    /**
+     * Returns the users that are currently editing this pad,
+     * decoded straight from the response instead of through a
+     * Map.
+     *
+     * @param padId the pad's id string
+     * @return the users
+     */
+    public final PadUsers getPadUsers(final String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.get("padUsers", args,
+                PadUsers.BINDER);
+    }
+
     /**
      * Deletes a pad.
      *
@@ -817,7 +1438,11 @@ public class EPLiteClient {
     public final void deletePad(final String padId) {
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
-        this.connection.post("deletePad", args);
+        try {
+            this.connection.post("deletePad", args);
+        } finally {
+            this.invalidatePad(padId);
+        }
     }
 
     /**
@@ -851,7 +1476,13 @@ public class EPLiteClient {
         args.put("sourceID", sourcePadId);
         args.put("destinationID", destinationPadId);
         args.put("force", force);
-        this.connection.post("copyPad", args);
+        try {
+            this.connection.post("copyPad", args);
+        } finally {
+            if (force) {
+                this.invalidatePad(destinationPadId);
+            }
+        }
     }
 
     /**
@@ -864,7 +1495,11 @@ public class EPLiteClient {
      */
     public final void movePad(final String sourcePadId,
             final String destinationPadId) {
-        copyPad(sourcePadId, destinationPadId, false);
+        try {
+            copyPad(sourcePadId, destinationPadId, false);
+        } finally {
+            this.invalidatePad(sourcePadId);
+        }
     }
 
     /**
@@ -884,33 +1519,136 @@ public class EPLiteClient {
         args.put("sourceID", sourcePadId);
         args.put("destinationID", destinationPadId);
         args.put("force", force);
-        this.connection.post("movePad", args);
+        try {
+            this.connection.post("movePad", args);
+        } finally {
+            this.invalidatePad(sourcePadId);
+            if (force) {
+                this.invalidatePad(destinationPadId);
+            }
+        }
     }
 
     /**
-     * Get the pad's read-only id.
+     * Forgets the cached revisions of a pad that was deleted, moved
+     * or overwritten. Called whether or not the call succeeded, as
+     * a failed call may still have changed the pad.
+     *
+     * @param padId the pad's id string
+     */
+    private void invalidatePad(final String padId) {
+        if (this.revisionCache != null) {
+            this.revisionCache.invalidatePad(padId);
+        }
+        if (this.changesetCache != null) {
+            this.changesetCache.invalidatePad(padId);
+        }
+        if (this.readOnlyIdCache != null) {
+            this.readOnlyIdCache.invalidatePad(padId);
+        }
+        if (this.contentFingerprints != null) {
+            this.contentFingerprints.invalidatePad(padId);
+        }
+    }
+
+    /**
+     * Get the pad's read-only id. With a read-only id cache, each
+     * pad is only looked up once.
      *
      * @param padId the pad's id string
      * @return a Map with the readOnlyID
      */
+    @SuppressWarnings("unchecked")
     public final Map getReadOnlyID(final String padId) {
+        if (this.readOnlyIdCache == null) {
+            return this.fetchReadOnlyID(padId);
+        }
+        String readOnlyId = this.readOnlyIdCache.getReadOnlyId(padId);
+        if (readOnlyId == null) {
+            return this.fetchReadOnlyID(padId);
+        }
+        JSONObject result = new JSONObject();
+        result.put("readOnlyID", readOnlyId);
+        return result;
+    }
+
+    /**
+     * Fetches the pad's read-only id, and caches the pair if there
+     * is a read-only id cache.
+     *
+     * @param padId the pad's id string
+     * @return a Map with the readOnlyID
+     */
+    private Map fetchReadOnlyID(final String padId) {
+        long epoch = 0;
+        if (this.readOnlyIdCache != null) {
+            epoch = this.readOnlyIdCache.epoch();
+        }
         Map<String, Object> args = new HashMap<>();
         args.put("padID", padId);
-        return this.connection.get("getReadOnlyID", args);
+        Map result = this.connection.get("getReadOnlyID", args);
+        if (this.readOnlyIdCache != null && result != null
+                && result.get("readOnlyID") instanceof String) {
+            this.readOnlyIdCache.put(padId,
+                    (String) result.get("readOnlyID"), epoch);
+        }
+        return result;
+    }
+
+    /**
+     * Fetches the read-only ids of all pads that are not in the
+     * read-only id cache yet. Does nothing without a read-only id
+     * cache.
+     *
+     * @return the number of read-only ids fetched
+     */
+    public final int warmUpReadOnlyIDs() {
+        int fetched = 0;
+        if (this.readOnlyIdCache == null) {
+            return fetched;
+        }
+        Object padIds = this.listAllPads().get("padIDs");
+        if (padIds instanceof List) {
+            for (Object padId : (List) padIds) {
+                if (!this.readOnlyIdCache.contains((String) padId)) {
+                    this.fetchReadOnlyID((String) padId);
+                    fetched++;
+                }
+            }
+        }
+        return fetched;
     }
 
     /**
-     * Get the pad's id from the read only id.
+     * Get the pad's id from the read only id. With a read-only id
+     * cache, each pad is only looked up once.
      *
      * API >= 1.2.10
      *
      * @param readOnlyPadId the pad's read only id string
      * @return a Map with the padID
      */
+    @SuppressWarnings("unchecked")
     public final Map getPadID(final String readOnlyPadId) {
+        long epoch = 0;
+        if (this.readOnlyIdCache != null) {
+            String padId = this.readOnlyIdCache.getPadId(readOnlyPadId);
+            if (padId != null) {
+                JSONObject result = new JSONObject();
+                result.put("padID", padId);
+                return result;
+            }
+            epoch = this.readOnlyIdCache.epoch();
+        }
         Map<String, Object> args = new HashMap<>();
         args.put("roID", readOnlyPadId);
-        return this.connection.get("getPadID", args);
+        Map result = this.connection.get("getPadID", args);
+        if (this.readOnlyIdCache != null && result != null
+                && result.get("padID") instanceof String) {
+            this.readOnlyIdCache.put((String) result.get("padID"),
+                    readOnlyPadId, epoch);
+        }
+        return result;
     }
 
     /**
@@ -1024,4 +1762,174 @@ public class EPLiteClient {
         return (this.connection.getUri()
                 .getPort() == SECURE_PORT);
     }
+
+    /**
+     * Builds a client. Every setting is optional; caches that are not
+     * set are not used.
+     */
+    public static final class Builder {
+
+        /** The url, or null with a connection. */
+        private final String url;
+
+        /** The API key, or null with a connection. */
+        private final String apiKey;
+
+        /** The connection, or null to open one. */
+        private final EPLiteConnection connection;
+
+        /** The API version. */
+        private String apiVersion = DEFAULT_API_VERSION;
+
+        /** The encoding. */
+        private String encoding = DEFAULT_ENCODING;
+
+        /** The transport, or null for the default. */
+        private Transport transport;
+
+        /** The cache of fixed revisions, or null. */
+        private RevisionCache revisionCache;
+
+        /** The cache of revision changesets, or null. */
+        private ChangesetCache changesetCache;
+
+        /** The cache of read-only ids, or null. */
+        private ReadOnlyIdCache readOnlyIdCache;
+
+        /** The cache of group and author mappers, or null. */
+        private MapperCache mapperCache;
+
+        /** The fingerprints of pad contents, or null. */
+        private ContentFingerprints contentFingerprints;
+
+        /**
+         * Instantiates a new builder.
+         *
+         * @param nUrl        the url, or null with a connection
+         * @param nApiKey     the API key, or null with a connection
+         * @param nConnection the connection, or null to open one
+         */
+        private Builder(final String nUrl, final String nApiKey,
+                final EPLiteConnection nConnection) {
+            this.url = nUrl;
+            this.apiKey = nApiKey;
+            this.connection = nConnection;
+        }
+
+        /**
+         * Sets the API version.
+         *
+         * @param nApiVersion the API version
+         * @return this builder
+         */
+        public Builder apiVersion(final String nApiVersion) {
+            this.checkUrl();
+            this.apiVersion = nApiVersion;
+            return this;
+        }
+
+        /**
+         * Sets the encoding.
+         *
+         * @param nEncoding the encoding
+         * @return this builder
+         */
+        public Builder encoding(final String nEncoding) {
+            this.checkUrl();
+            this.encoding = nEncoding;
+            return this;
+        }
+
+        /**
+         * Sets the transport the requests are sent through, e.g. a
+         * {@link PooledTransport}.
+         *
+         * @param nTransport the transport
+         * @return this builder
+         */
+        public Builder transport(final Transport nTransport) {
+            this.checkUrl();
+            this.transport = nTransport;
+            return this;
+        }
+
+        /**
+         * Keeps fixed revisions of text and HTML in a cache.
+         *
+         * @param nRevisionCache the cache
+         * @return this builder
+         */
+        public Builder revisionCache(final RevisionCache nRevisionCache) {
+            this.revisionCache = nRevisionCache;
+            return this;
+        }
+
+        /**
+         * Keeps revision changesets in a cache.
+         *
+         * @param nChangesetCache the cache
+         * @return this builder
+         */
+        public Builder changesetCache(
+                final ChangesetCache nChangesetCache) {
+            this.changesetCache = nChangesetCache;
+            return this;
+        }
+
+        /**
+         * Keeps read-only ids in a cache.
+         *
+         * @param nReadOnlyIdCache the cache
+         * @return this builder
+         */
+        public Builder readOnlyIdCache(
+                final ReadOnlyIdCache nReadOnlyIdCache) {
+            this.readOnlyIdCache = nReadOnlyIdCache;
+            return this;
+        }
+
+        /**
+         * Keeps the ids of group and author mappers in a cache.
+         *
+         * @param nMapperCache the cache
+         * @return this builder
+         */
+        public Builder mapperCache(final MapperCache nMapperCache) {
+            this.mapperCache = nMapperCache;
+            return this;
+        }
+
+        /**
+         * Skips writes of unchanged pad contents, as recorded in the
+         * fingerprints.
+         *
+         * @param nContentFingerprints the fingerprints
+         * @return this builder
+         */
+        public Builder contentFingerprints(
+                final ContentFingerprints nContentFingerprints) {
+            this.contentFingerprints = nContentFingerprints;
+            return this;
+        }
+
+        /**
+         * Builds the client.
+         *
+         * @return the client
+         */
+        public EPLiteClient build() {
+            return new EPLiteClient(this);
+        }
+
+        /**
+         * Checks that the connection is opened by the builder, so its
+         * settings are not silently ignored.
+         */
+        private void checkUrl() {
+            if (this.connection != null) {
+                throw new IllegalStateException(
+                        "The connection is already configured");
+            }
+        }
+    }
 }
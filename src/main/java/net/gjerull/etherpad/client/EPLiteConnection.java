@@ -1,23 +1,15 @@
 package net.gjerull.etherpad.client;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLEncoder;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Iterator;
-
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
 
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -43,6 +35,19 @@ public class EPLiteConnection {
     /** The Constant CODE_INVALID_API_KEY. */
     public static final int CODE_INVALID_API_KEY = 4;
 
+    /** The members of a response. */
+    private static final String[] ENVELOPE = {"code", "message",
+            "data" };
+
+    /** The index of code in ENVELOPE. */
+    private static final int CODE = 0;
+
+    /** The index of message in ENVELOPE. */
+    private static final int MESSAGE = 1;
+
+    /** The index of data in ENVELOPE. */
+    private static final int DATA = 2;
+
     /**
      * The url of the API.
      */
@@ -63,6 +68,31 @@ public class EPLiteConnection {
      */
     private final String encoding;
 
+    /**
+     * The transport used to send requests.
+     */
+    private final Transport transport;
+
+    /**
+     * The codec used to decode responses.
+     */
+    private final JsonCodec codec;
+
+    /**
+     * The encoder for the API arguments.
+     */
+    private final FormEncoder formEncoder;
+
+    /**
+     * The endpoints of the API methods.
+     */
+    private final EndpointTable endpoints;
+
+    /**
+     * The coalescer of identical GET calls, or null.
+     */
+    private final RequestCoalescer coalescer;
+
     /**
      * Initializes a new
      * net.gjerull.etherpad.client.EPLiteConnection object.
@@ -76,6 +106,71 @@ public class EPLiteConnection {
     public EPLiteConnection(final String url,
             final String nApiKey, final String nApiVersion,
             final String nEncoding) {
+        this(url, nApiKey, nApiVersion, nEncoding,
+                new URLConnectionTransport());
+    }
+
+    /**
+     * Initializes a new
+     * net.gjerull.etherpad.client.EPLiteConnection object that
+     * sends its requests through the given transport.
+     *
+     * @param url         an absolute url, including protocol, to
+     *                    the EPL api
+     * @param nApiKey     the API Key
+     * @param nApiVersion the API version
+     * @param nEncoding   the encoding
+     * @param nTransport  the transport
+     */
+    public EPLiteConnection(final String url,
+            final String nApiKey, final String nApiVersion,
+            final String nEncoding, final Transport nTransport) {
+        this(url, nApiKey, nApiVersion, nEncoding, nTransport,
+                new StreamingJsonCodec());
+    }
+
+    /**
+     * Initializes a new
+     * net.gjerull.etherpad.client.EPLiteConnection object that
+     * sends its requests through the given transport and decodes
+     * the responses with the given codec.
+     *
+     * @param url         an absolute url, including protocol, to
+     *                    the EPL api
+     * @param nApiKey     the API Key
+     * @param nApiVersion the API version
+     * @param nEncoding   the encoding
+     * @param nTransport  the transport
+     * @param nCodec      the codec
+     */
+    public EPLiteConnection(final String url,
+            final String nApiKey, final String nApiVersion,
+            final String nEncoding, final Transport nTransport,
+            final JsonCodec nCodec) {
+        this(url, nApiKey, nApiVersion, nEncoding, nTransport, nCodec,
+                null);
+    }
+
+    /**
+     * Initializes a new
+     * net.gjerull.etherpad.client.EPLiteConnection object that
+     * sends its requests through the given transport, decodes the
+     * responses with the given codec and lets concurrent identical
+     * GET calls share one request.
+     *
+     * @param url         an absolute url, including protocol, to
+     *                    the EPL api
+     * @param nApiKey     the API Key
+     * @param nApiVersion the API version
+     * @param nEncoding   the encoding
+     * @param nTransport  the transport
+     * @param nCodec      the codec
+     * @param nCoalescer  the coalescer, or null to send every call
+     */
+    public EPLiteConnection(final String url,
+            final String nApiKey, final String nApiVersion,
+            final String nEncoding, final Transport nTransport,
+            final JsonCodec nCodec, final RequestCoalescer nCoalescer) {
 
         String modifiedUrl = url;
 
@@ -87,6 +182,11 @@ public class EPLiteConnection {
         this.apiKey = nApiKey;
         this.apiVersion = nApiVersion;
         this.encoding = nEncoding;
+        this.transport = nTransport;
+        this.codec = nCodec;
+        this.formEncoder = new FormEncoder(nApiKey, nEncoding);
+        this.endpoints = new EndpointTable(this);
+        this.coalescer = nCoalescer;
     }
 
     /**
@@ -125,6 +225,33 @@ public class EPLiteConnection {
         return encoding;
     }
 
+    /**
+     * Gets the transport.
+     *
+     * @return the transport
+     */
+    public final Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Gets the codec.
+     *
+     * @return the codec
+     */
+    public final JsonCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the coalescer.
+     *
+     * @return the coalescer, or null
+     */
+    public final RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
     /**
      * GETs from the HTTP JSON API.
      *
@@ -157,11 +284,36 @@ public class EPLiteConnection {
      */
     public final Object getObject(final String apiMethod,
             final Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, false);
-        URL url = apiUrl(path, query);
-        Request request = new GETRequest(url);
-        return this.call(request);
+        return this.get(apiMethod, apiArgs, DataBinders.VALUE);
+    }
+
+    /**
+     * GETs from the HTTP JSON API, decoding the data with the
+     * given binder while the response arrives.
+     *
+     * @param <T>       the type of the result
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs   a HashMap of url/form parameters. apikey
+     *                  will be set automatically
+     * @param binder    the binder for the data
+     * @return the result of the binder
+     */
+    final <T> T get(final String apiMethod,
+            final Map<String, Object> apiArgs,
+            final DataBinder<T> binder) {
+        final URL url = this.endpoints.get(apiMethod).withQuery(
+                this.formEncoder.encodeToString(apiArgs));
+        if (this.coalescer == null) {
+            return this.call(this.transport.createGetRequest(url),
+                    binder);
+        }
+        return this.coalescer.execute(url.toString(), binder,
+                new RequestCoalescer.Fetch<T>() {
+                    public T send() {
+                        return call(transport.createGetRequest(url),
+                                binder);
+                    }
+                });
     }
 
     /**
@@ -210,11 +362,27 @@ public class EPLiteConnection {
      */
     public final Object postObject(final String apiMethod,
             final Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, true);
-        URL url = apiUrl(path, null);
-        Request request = new POSTRequest(url, query);
-        return this.call(request);
+        return this.post(apiMethod, apiArgs, DataBinders.VALUE);
+    }
+
+    /**
+     * POSTs to the HTTP JSON API, decoding the data with the given
+     * binder while the response arrives.
+     *
+     * @param <T>       the type of the result
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs   a HashMap of url/form parameters. apikey
+     *                  will be set automatically
+     * @param binder    the binder for the data
+     * @return the result of the binder
+     */
+    final <T> T post(final String apiMethod,
+            final Map<String, Object> apiArgs,
+            final DataBinder<T> binder) {
+        URL url = this.endpoints.get(apiMethod).getUrl();
+        Request request = this.transport.createPostRequest(url,
+                this.formEncoder.encode(apiArgs));
+        return this.call(request, binder);
     }
 
     /**
@@ -242,34 +410,9 @@ public class EPLiteConnection {
         try {
             JSONParser parser = new JSONParser();
             Map response = (Map) parser.parse(jsonString);
-            // Act on the response code
-            if (response.get("code") != null) {
-                int code = ((Long) response.get("code"))
-                        .intValue();
-                switch (code) {
-                // Valid code, parse the response
-                case CODE_OK:
-                    return response.get("data");
-                // Invalid code, throw an exception with the
-                // message
-                case CODE_INVALID_PARAMETERS:
-                case CODE_INTERNAL_ERROR:
-                case CODE_INVALID_METHOD:
-                case CODE_INVALID_API_KEY:
-                    throw new EPLiteException(
-                            (String) response.get("message"));
-                default:
-                    throw new EPLiteException(
-                            "An unknown error has occurred while "
-                                    + "handling the response: "
-                                    + jsonString);
-                }
-                // No response code, something's really wrong
-            } else {
-                throw new EPLiteException(
-                        "An unexpected response from the server: "
-                                + jsonString);
-            }
+            return unwrap(response.get("code"),
+                    response.get("message"), response.get("data"),
+                    jsonString);
         } catch (ParseException e) {
             throw new EPLiteException(
                     "Unable to parse JSON response ("
@@ -278,6 +421,142 @@ public class EPLiteConnection {
         }
     }
 
+    /**
+     * Handle error condition and returns the parsed content,
+     * reading the response as it arrives. With the default
+     * {@link StreamingJsonCodec} only the data member is decoded
+     * into objects, with a reader reused by the calling thread, so
+     * a large response is held in memory about once. Other codecs
+     * decode the whole response.
+     *
+     * @param body the response body, UTF-8 encoded
+     * @return Object
+     * @throws IOException on read errors
+     */
+    protected final Object handleResponse(final InputStream body)
+            throws IOException {
+        return this.handleResponse(body, DataBinders.VALUE);
+    }
+
+    /**
+     * Handle error condition and returns the data of a successful
+     * response as decoded by the binder, reading the response as
+     * it arrives. Binders other than the one behind the Map API
+     * always read with the built-in {@link JsonReader}.
+     *
+     * @param <T>    the type of the result
+     * @param body   the response body, UTF-8 encoded
+     * @param binder the binder for the data
+     * @return the result of the binder
+     * @throws IOException on read errors
+     */
+    @SuppressWarnings("unchecked")
+    final <T> T handleResponse(final InputStream body,
+            final DataBinder<T> binder) throws IOException {
+        if (binder == DataBinders.VALUE
+                && !(this.codec instanceof StreamingJsonCodec)) {
+            Object response = this.codec.decode(body);
+            if (!(response instanceof Map)) {
+                throw new EPLiteException(
+                        "An unexpected response from the server: "
+                                + response);
+            }
+            Map map = (Map) response;
+            Object code = map.get("code");
+            Object message = map.get("message");
+            return (T) unwrap(code, message, map.get("data"),
+                    "{code=" + code + ", message=" + message + "}");
+        }
+        JsonReader reader = StreamingJsonCodec.reader(body);
+        try {
+            Object code = null;
+            Object message = null;
+            Object data = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName(ENVELOPE)) {
+                case CODE:
+                    code = reader.readValue();
+                    break;
+                case MESSAGE:
+                    if (isOk(code)) {
+                        reader.skipValue();
+                    } else {
+                        message = reader.readValue();
+                    }
+                    break;
+                case DATA:
+                    if (code == null || isOk(code)) {
+                        data = binder.bind(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+                }
+            }
+            reader.endObject();
+            reader.endDocument();
+            return (T) unwrap(code, message, data,
+                    "{code=" + code + ", message=" + message + "}");
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * Whether a response code is CODE_OK.
+     *
+     * @param code the response code
+     * @return true if it is
+     */
+    private static boolean isOk(final Object code) {
+        return code instanceof Long && (Long) code == CODE_OK;
+    }
+
+    /**
+     * Returns the data of a response, or throws the error it
+     * reports.
+     *
+     * @param code     the response code
+     * @param message  the response message
+     * @param data     the response data
+     * @param response the response, for error messages
+     * @return Object
+     */
+    private static Object unwrap(final Object code,
+            final Object message, final Object data,
+            final String response) {
+        // Act on the response code
+        if (code != null) {
+            switch (((Long) code).intValue()) {
+            // Valid code, parse the response
+            case CODE_OK:
+                return data;
+            // Invalid code, throw an exception with the
+            // message
+            case CODE_INVALID_PARAMETERS:
+            case CODE_INTERNAL_ERROR:
+            case CODE_INVALID_METHOD:
+            case CODE_INVALID_API_KEY:
+                throw new EPLiteApiException(((Long) code).intValue(),
+                        (String) message);
+            default:
+                throw new EPLiteException(
+                        "An unknown error has occurred while "
+                                + "handling the response: "
+                                + response);
+            }
+            // No response code, something's really wrong
+        } else {
+            throw new EPLiteException(
+                    "An unexpected response from the server: "
+                            + response);
+        }
+    }
+
     /**
      * Returns the URL for the api path and query.
      *
@@ -311,7 +590,8 @@ public class EPLiteConnection {
     }
 
     /**
-     * Returns a query string made from HashMap keys and values.
+     * Returns a query string made from HashMap keys and values,
+     * after the apikey. The map is not modified.
      *
      * @param apiArgs   the api arguments in a HashMap
      * @param urlEncode whether the url is encoded or not
@@ -320,32 +600,15 @@ public class EPLiteConnection {
     protected final String queryString(
             final Map<String, Object> apiArgs,
             final boolean urlEncode) {
-        StringBuilder strArgs = new StringBuilder();
-        apiArgs.put("apikey", this.apiKey);
-        Iterator i = apiArgs.entrySet().iterator();
-        while (i.hasNext()) {
-            Map.Entry entry = (Map.Entry) i.next();
-            Object key = entry.getKey();
-            Object value = entry.getValue();
-            if (urlEncode) {
-                try {
-                    if (key instanceof String) {
-                        URLEncoder.encode((String) key,
-                                this.encoding);
-                    }
-                    if (value instanceof String) {
-                        value = URLEncoder.encode((String) value,
-                                this.encoding);
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    throw new EPLiteException(String.format(
-                            "Unable to URLEncode using encoding '%s'",
-                            this.encoding), e);
-                }
-            }
-            strArgs.append(key).append("=").append(value);
-            if (i.hasNext()) {
-                strArgs.append("&");
+        if (urlEncode) {
+            return this.formEncoder.encodeToString(apiArgs);
+        }
+        StringBuilder strArgs = new StringBuilder("apikey=")
+                .append(this.apiKey);
+        for (Map.Entry<String, Object> entry : apiArgs.entrySet()) {
+            if (!"apikey".equals(entry.getKey())) {
+                strArgs.append("&").append(entry.getKey())
+                        .append("=").append(entry.getValue());
             }
         }
         return strArgs.toString();
@@ -354,15 +617,27 @@ public class EPLiteConnection {
     /**
      * Calls the HTTP JSON API.
      *
+     * @param <T>     the type of the result
      * @param request the request object to send
-     * @return HashMap
+     * @param binder  the binder for the data
+     * @return the result of the binder
      */
-    private Object call(final Request request) {
-        trustServerAndCertificate();
-
+    private <T> T call(final Request request,
+            final DataBinder<T> binder) {
         try {
-            String response = request.send();
-            return this.handleResponse(response);
+            InputStream body;
+            if (request instanceof StreamingRequest) {
+                body = ((StreamingRequest) request).open();
+            } else {
+                String response = request.send();
+                body = new ByteArrayInputStream(
+                        response.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                return this.handleResponse(body, binder);
+            } finally {
+                body.close();
+            }
         } catch (EPLiteException e) {
             throw e;
         } catch (Exception e) {
@@ -372,51 +647,4 @@ public class EPLiteConnection {
                             + e.getMessage());
         }
     }
-
-    /**
-     * Creates a trust manager to trust all certificates if you
-     * open a ssl connection.
-     */
-    private void trustServerAndCertificate() {
-        // Create a trust manager that does not validate
-        // certificate chains
-        TrustManager[] trustAllCerts = new TrustManager[] {
-                new X509TrustManager() {
-                    public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                        return null;
-                    }
-
-                    public void checkClientTrusted(
-                            final java.security.cert.X509Certificate[] certs,
-                            final String authType) {
-                    }
-
-                    public void checkServerTrusted(
-                            final java.security.cert.X509Certificate[] certs,
-                            final String authType) {
-                    }
-                } };
-
-        // Install the all-trusting trust manager
-        try {
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts,
-                    new java.security.SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(
-                    sc.getSocketFactory());
-        } catch (NoSuchAlgorithmException
-                | KeyManagementException e) {
-            throw new EPLiteException(
-                    "Unable to create SSL context", e);
-        }
-
-        HostnameVerifier hv = new HostnameVerifier() {
-            // @Override
-            public boolean verify(final String hostname,
-                    final SSLSession session) {
-                return true;
-            }
-        };
-        HttpsURLConnection.setDefaultHostnameVerifier(hv);
-    }
 }
@@ -0,0 +1,102 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The pending result of an asynchronous Etherpad Lite call.<br />
+ * <br />
+ * Besides the usual {@link java.util.concurrent.Future} methods,
+ * callbacks can be registered that run once the call completes,
+ * so no thread has to block in {@link #get()}.
+ *
+ * @param <T> the result type
+ */
+public class EPLiteFuture<T> extends FutureTask<T> {
+
+    /** Callbacks waiting for completion, null once completed. */
+    private List<EPLiteCallback<? super T>> callbacks =
+            new ArrayList<>();
+
+    /**
+     * Instantiates a new future for the given call.
+     *
+     * @param callable the call
+     */
+    public EPLiteFuture(final Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Registers a callback. If the call has already completed
+     * the callback runs immediately in the calling thread,
+     * otherwise it runs in the thread that completes the call.
+     *
+     * @param callback the callback
+     * @return this future
+     */
+    public final EPLiteFuture<T> addCallback(
+            final EPLiteCallback<? super T> callback) {
+        synchronized (this) {
+            // get() returns before done() runs, so check isDone()
+            // too, or a caller could see the result and still have
+            // its callback deferred to the completing thread
+            if (callbacks != null && !isDone()) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notify(callback);
+        return this;
+    }
+
+    /**
+     * Completes the future with a failure, e.g. when the call
+     * could not be scheduled.
+     *
+     * @param cause the failure
+     */
+    final void fail(final Throwable cause) {
+        setException(cause);
+    }
+
+    @Override
+    protected final void done() {
+        List<EPLiteCallback<? super T>> pending;
+        synchronized (this) {
+            pending = callbacks;
+            callbacks = null;
+        }
+        for (EPLiteCallback<? super T> callback : pending) {
+            notify(callback);
+        }
+    }
+
+    /**
+     * Passes the outcome of the completed call to a callback.
+     *
+     * @param callback the callback
+     */
+    private void notify(final EPLiteCallback<? super T> callback) {
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            callback.onFailure(e.getCause());
+            return;
+        } catch (CancellationException e) {
+            callback.onFailure(e);
+            return;
+        } catch (InterruptedException e) {
+            // Can't happen, the task is done
+            Thread.currentThread().interrupt();
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(result);
+    }
+}
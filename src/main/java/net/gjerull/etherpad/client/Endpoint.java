@@ -0,0 +1,67 @@
+package net.gjerull.etherpad.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * The validated URL of one API method, from which the URL of each
+ * call is derived without parsing the whole URL again.
+ */
+final class Endpoint {
+
+    /** The URL of the API method, without a query. */
+    private final URL url;
+
+    /** The protocol of the URL. */
+    private final String protocol;
+
+    /** The host of the URL. */
+    private final String host;
+
+    /** The port of the URL, or -1. */
+    private final int port;
+
+    /** The encoded path of the URL. */
+    private final String path;
+
+    /**
+     * Instantiates a new endpoint.
+     *
+     * @param nUrl the URL of the API method, without a query
+     */
+    Endpoint(final URL nUrl) {
+        this.url = nUrl;
+        this.protocol = nUrl.getProtocol();
+        this.host = nUrl.getHost();
+        this.port = nUrl.getPort();
+        this.path = nUrl.getPath();
+    }
+
+    /**
+     * Gets the URL of the API method, for POST requests.
+     *
+     * @return the url
+     */
+    URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the URL of the API method with a query, for GET
+     * requests.
+     *
+     * @param encodedQuery the form-encoded query string
+     * @return URL
+     */
+    URL withQuery(final String encodedQuery) {
+        try {
+            return new URL(this.protocol, this.host, this.port,
+                    this.path + "?" + encodedQuery);
+        } catch (MalformedURLException e) {
+            throw new EPLiteException(
+                    "Error in the URL to the Etherpad Lite instance ("
+                            + e.getClass() + "): "
+                            + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link Endpoint}s of the API methods {@link EPLiteClient}
+ * calls, built once per {@link EPLiteConnection}.
+ */
+final class EndpointTable {
+
+    /** The API methods called by EPLiteClient. */
+    static final String[] API_METHODS = {"appendChatMessage",
+            "appendText", "checkToken", "copyPad", "createAuthor",
+            "createAuthorIfNotExistsFor", "createDiffHTML",
+            "createGroup", "createGroupIfNotExistsFor",
+            "createGroupPad", "createPad", "createSession",
+            "deleteGroup", "deletePad", "deleteSession",
+            "getAttributePool", "getAuthorName", "getChatHead",
+            "getChatHistory", "getHTML", "getLastEdited", "getPadID",
+            "getPublicStatus", "getReadOnlyID",
+            "getRevisionChangeset", "getRevisionsCount",
+            "getSavedRevisionsCount", "getSessionInfo", "getText",
+            "isPasswordProtected", "listAllGroups", "listAllPads",
+            "listAuthorsOfPad", "listPads", "listPadsOfAuthor",
+            "listSavedRevisions", "listSessionsOfAuthor",
+            "listSessionsOfGroup", "movePad", "padUsers",
+            "padUsersCount", "saveRevision", "sendClientsMessage",
+            "setHTML", "setPassword", "setPublicStatus", "setText" };
+
+    /** The endpoints by API method. */
+    private final Map<String, Endpoint> endpoints;
+
+    /** The connection the endpoints belong to. */
+    private final EPLiteConnection connection;
+
+    /**
+     * Builds the endpoints of a connection. If its URL is invalid
+     * the table stays empty, and the error is reported by the
+     * first call, as before.
+     *
+     * @param nConnection the connection
+     */
+    EndpointTable(final EPLiteConnection nConnection) {
+        this.connection = nConnection;
+        Map<String, Endpoint> table = new HashMap<>();
+        try {
+            for (String apiMethod : API_METHODS) {
+                table.put(apiMethod, create(nConnection, apiMethod));
+            }
+        } catch (EPLiteException e) {
+            table.clear();
+        }
+        this.endpoints = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Gets the endpoint of an API method. Methods missing from the
+     * table get a new endpoint on every call.
+     *
+     * @param apiMethod the API method
+     * @return the endpoint
+     */
+    Endpoint get(final String apiMethod) {
+        Endpoint endpoint = this.endpoints.get(apiMethod);
+        return (endpoint != null) ? endpoint
+                : create(this.connection, apiMethod);
+    }
+
+    /**
+     * Creates the endpoint of an API method.
+     *
+     * @param connection the connection
+     * @param apiMethod  the API method
+     * @return the endpoint
+     */
+    private static Endpoint create(final EPLiteConnection connection,
+            final String apiMethod) {
+        return new Endpoint(connection.apiUrl(
+                connection.apiPath(apiMethod), null));
+    }
+}
@@ -0,0 +1,379 @@
+package net.gjerull.etherpad.client;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes API arguments as application/x-www-form-urlencoded
+ * bytes, for POST bodies and GET query strings.<br />
+ * <br />
+ * The output is what URLEncoder produces, with the apikey
+ * argument first. Arguments are percent-encoded straight into a
+ * byte buffer that each thread reuses, and the apikey segment is
+ * encoded once, when the encoder is created. UTF-8 is encoded
+ * without intermediate Strings, other encodings go through
+ * URLEncoder.
+ */
+final class FormEncoder {
+
+    /** The Constant INITIAL_CAPACITY. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * The Constant MAX_RETAINED_BYTES. A larger buffer is dropped
+     * after use, so one big pad doesn't pin its size in memory for
+     * the life of the thread.
+     */
+    private static final int MAX_RETAINED_BYTES = 65536;
+
+    /** The Constant MAX_ENCODED_CHAR, %XX for 4 UTF-8 bytes. */
+    private static final int MAX_ENCODED_CHAR = 12;
+
+    /** The Constant ASCII_LIMIT. */
+    private static final int ASCII_LIMIT = 0x80;
+
+    /** The Constant TWO_BYTE_LIMIT. */
+    private static final int TWO_BYTE_LIMIT = 0x800;
+
+    /** The Constant LEAD_2, lead bits of a 2-byte sequence. */
+    private static final int LEAD_2 = 0xc0;
+
+    /** The Constant LEAD_3, lead bits of a 3-byte sequence. */
+    private static final int LEAD_3 = 0xe0;
+
+    /** The Constant LEAD_4, lead bits of a 4-byte sequence. */
+    private static final int LEAD_4 = 0xf0;
+
+    /** The Constant CONTINUATION, lead bits of a trailing byte. */
+    private static final int CONTINUATION = 0x80;
+
+    /** The Constant SIX_BITS. */
+    private static final int SIX_BITS = 0x3f;
+
+    /** The Constant NIBBLE. */
+    private static final int NIBBLE = 0xf;
+
+    /** The Constant DECIMAL_RADIX. */
+    private static final int DECIMAL_RADIX = 10;
+
+    /** The Constant MAX_LONG_CHARS, "-9223372036854775808". */
+    private static final int MAX_LONG_CHARS = 20;
+
+    /** The hex digits URLEncoder uses. */
+    private static final byte[] HEX = "0123456789ABCDEF"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    /** The ASCII characters URLEncoder leaves as they are. */
+    private static final boolean[] UNRESERVED =
+            new boolean[ASCII_LIMIT];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c : ".-*_".toCharArray()) {
+            UNRESERVED[c] = true;
+        }
+    }
+
+    /** The buffers, one per calling thread. */
+    private static final ThreadLocal<Buffer> BUFFERS =
+            new ThreadLocal<Buffer>() {
+                @Override
+                protected Buffer initialValue() {
+                    return new Buffer();
+                }
+            };
+
+    /** The character encoding of the arguments. */
+    private final String encoding;
+
+    /** Whether the encoding is UTF-8. */
+    private final boolean utf8;
+
+    /** "apikey=" and the encoded API key. */
+    private final byte[] apiKeySegment;
+
+    /**
+     * Instantiates a new form encoder.
+     *
+     * @param apiKey    the API key
+     * @param nEncoding the character encoding of the arguments
+     */
+    FormEncoder(final String apiKey, final String nEncoding) {
+        this.encoding = nEncoding;
+        this.utf8 = "UTF-8".equalsIgnoreCase(nEncoding)
+                || "UTF8".equalsIgnoreCase(nEncoding);
+        byte[] segment;
+        try {
+            Buffer buffer = new Buffer();
+            buffer.appendAscii("apikey=");
+            this.appendEncoded(buffer, apiKey);
+            segment = Arrays.copyOf(buffer.bytes, buffer.length);
+        } catch (EPLiteException e) {
+            // An unsupported encoding is reported when encoding
+            // arguments, as it always has been
+            segment = null;
+        }
+        this.apiKeySegment = segment;
+    }
+
+    /**
+     * Encodes the arguments, after the apikey, as a form body.
+     *
+     * @param args the arguments
+     * @return the encoded bytes
+     */
+    byte[] encode(final Map<String, Object> args) {
+        Buffer buffer = this.fill(args);
+        try {
+            return Arrays.copyOf(buffer.bytes, buffer.length);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Encodes the arguments, after the apikey, as a query string.
+     *
+     * @param args the arguments
+     * @return the query string
+     */
+    String encodeToString(final Map<String, Object> args) {
+        Buffer buffer = this.fill(args);
+        try {
+            return new String(buffer.bytes, 0, buffer.length,
+                    StandardCharsets.US_ASCII);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Encodes the arguments into the buffer of the calling thread.
+     *
+     * @param args the arguments
+     * @return the buffer
+     */
+    private Buffer fill(final Map<String, Object> args) {
+        if (this.apiKeySegment == null) {
+            throw unsupportedEncoding(this.encoding, null);
+        }
+        Buffer buffer = BUFFERS.get();
+        buffer.length = 0;
+        buffer.append(this.apiKeySegment);
+        for (Map.Entry<String, Object> entry : args.entrySet()) {
+            if ("apikey".equals(entry.getKey())) {
+                continue;
+            }
+            buffer.appendByte('&');
+            this.appendEncoded(buffer, entry.getKey());
+            buffer.appendByte('=');
+            Object value = entry.getValue();
+            if (value instanceof Integer || value instanceof Long) {
+                buffer.appendLong(((Number) value).longValue());
+            } else {
+                this.appendEncoded(buffer, String.valueOf(value));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Appends a form-encoded string.
+     *
+     * @param buffer the buffer
+     * @param value  the string
+     */
+    private void appendEncoded(final Buffer buffer, final String value) {
+        if (!this.utf8) {
+            try {
+                buffer.appendAscii(URLEncoder.encode(value,
+                        this.encoding));
+            } catch (UnsupportedEncodingException e) {
+                throw unsupportedEncoding(this.encoding, e);
+            }
+            return;
+        }
+        int length = value.length();
+        byte[] bytes = buffer.bytes;
+        int pos = buffer.length;
+        for (int i = 0; i < length; i++) {
+            if (pos + MAX_ENCODED_CHAR > bytes.length) {
+                // Room for the rest if it needs no escapes
+                buffer.length = pos;
+                buffer.ensureCapacity(pos + MAX_ENCODED_CHAR
+                        + length - i);
+                bytes = buffer.bytes;
+            }
+            int c = value.charAt(i);
+            if (c < ASCII_LIMIT) {
+                if (UNRESERVED[c]) {
+                    bytes[pos++] = (byte) c;
+                } else if (c == ' ') {
+                    bytes[pos++] = '+';
+                } else {
+                    pos = percent(bytes, pos, c);
+                }
+            } else if (c < TWO_BYTE_LIMIT) {
+                pos = percent(bytes, pos, LEAD_2 | c >> 6);
+                pos = percent(bytes, pos, CONTINUATION | c & SIX_BITS);
+            } else if (Character.isHighSurrogate((char) c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint((char) c,
+                        value.charAt(++i));
+                pos = percent(bytes, pos, LEAD_4 | codePoint >> 18);
+                pos = percent(bytes, pos,
+                        CONTINUATION | codePoint >> 12 & SIX_BITS);
+                pos = percent(bytes, pos,
+                        CONTINUATION | codePoint >> 6 & SIX_BITS);
+                pos = percent(bytes, pos,
+                        CONTINUATION | codePoint & SIX_BITS);
+            } else if (Character.isSurrogate((char) c)) {
+                // A lone surrogate, which URLEncoder turns into '?'
+                pos = percent(bytes, pos, '?');
+            } else {
+                pos = percent(bytes, pos, LEAD_3 | c >> 12);
+                pos = percent(bytes, pos,
+                        CONTINUATION | c >> 6 & SIX_BITS);
+                pos = percent(bytes, pos, CONTINUATION | c & SIX_BITS);
+            }
+        }
+        buffer.length = pos;
+    }
+
+    /**
+     * Writes a byte as %XX.
+     *
+     * @param bytes the destination
+     * @param pos   the position to write at
+     * @param b     the byte
+     * @return the position after the escape
+     */
+    private static int percent(final byte[] bytes, final int pos,
+            final int b) {
+        bytes[pos] = '%';
+        bytes[pos + 1] = HEX[b >> 4 & NIBBLE];
+        bytes[pos + 2] = HEX[b & NIBBLE];
+        return pos + 3;
+    }
+
+    /**
+     * Creates the exception for an unsupported encoding.
+     *
+     * @param encoding the encoding
+     * @param cause    the cause, or null
+     * @return the exception
+     */
+    private static EPLiteException unsupportedEncoding(
+            final String encoding, final Exception cause) {
+        return new EPLiteException(String.format(
+                "Unable to URLEncode using encoding '%s'", encoding),
+                cause);
+    }
+
+    /**
+     * A growable byte buffer.
+     */
+    private static final class Buffer {
+
+        /** The bytes. */
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        /** The number of bytes used. */
+        private int length;
+
+        /**
+         * Appends bytes.
+         *
+         * @param source the bytes
+         */
+        void append(final byte[] source) {
+            this.ensureCapacity(this.length + source.length);
+            System.arraycopy(source, 0, this.bytes, this.length,
+                    source.length);
+            this.length += source.length;
+        }
+
+        /**
+         * Appends an ASCII string.
+         *
+         * @param ascii the string
+         */
+        void appendAscii(final String ascii) {
+            this.ensureCapacity(this.length + ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                this.bytes[this.length++] = (byte) ascii.charAt(i);
+            }
+        }
+
+        /**
+         * Appends a byte.
+         *
+         * @param b the byte
+         */
+        void appendByte(final char b) {
+            this.ensureCapacity(this.length + 1);
+            this.bytes[this.length++] = (byte) b;
+        }
+
+        /**
+         * Appends the decimal digits of a number.
+         *
+         * @param value the number
+         */
+        void appendLong(final long value) {
+            if (value == Long.MIN_VALUE) {
+                this.appendAscii(Long.toString(value));
+                return;
+            }
+            this.ensureCapacity(this.length + MAX_LONG_CHARS);
+            long rest = value;
+            if (rest < 0) {
+                this.bytes[this.length++] = '-';
+                rest = -rest;
+            }
+            int start = this.length;
+            do {
+                this.bytes[this.length++] =
+                        (byte) ('0' + rest % DECIMAL_RADIX);
+                rest /= DECIMAL_RADIX;
+            } while (rest != 0);
+            for (int i = start, j = this.length - 1; i < j; i++, j--) {
+                byte b = this.bytes[i];
+                this.bytes[i] = this.bytes[j];
+                this.bytes[j] = b;
+            }
+        }
+
+        /**
+         * Grows the buffer to hold at least the given number of
+         * bytes.
+         *
+         * @param needed the number of bytes
+         */
+        void ensureCapacity(final int needed) {
+            if (needed > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes,
+                        Math.max(needed, this.bytes.length * 2));
+            }
+        }
+
+        /**
+         * Drops a buffer that has grown too large to keep.
+         */
+        void release() {
+            if (this.bytes.length > MAX_RETAINED_BYTES) {
+                this.bytes = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+}
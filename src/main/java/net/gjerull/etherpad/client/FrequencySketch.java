@@ -0,0 +1,170 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A count-min sketch of recent access frequencies, the TinyLFU
+ * admission filter of the client side caches.<br />
+ * <br />
+ * Each key has four 4-bit counters, picked by four hash functions
+ * from a single long of the table, so a frequency costs one cache
+ * line. When the number of increments reaches ten times the table
+ * size all counters are halved, so old popularity fades. Not
+ * thread-safe: callers synchronize.
+ */
+final class FrequencySketch {
+
+    /** The Constant MIN_TABLE_SIZE. */
+    private static final int MIN_TABLE_SIZE = 16;
+
+    /** The Constant MAX_TABLE_SIZE. */
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    /** The Constant SAMPLE_FACTOR, increments per slot before aging. */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /** The Constant MAX_COUNT of a 4-bit counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** The Constant COUNTER_MASK. */
+    private static final long COUNTER_MASK = 0xfL;
+
+    /** The Constant RESET_MASK, clears the top bit of each counter. */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /** The Constant ONE_MASK, the low bit of each counter. */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /** The seeds of the four hash functions. */
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L,
+            0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+
+    /** The counters, sixteen per long. */
+    private long[] table;
+
+    /** The table size minus one. */
+    private int tableMask;
+
+    /** The number of increments before the counters are aged. */
+    private int sampleSize;
+
+    /** The number of increments since the last aging. */
+    private int size;
+
+    /**
+     * Instantiates a new sketch sized for the given number of
+     * entries.
+     *
+     * @param expectedSize the expected number of entries
+     */
+    FrequencySketch(final long expectedSize) {
+        this.ensureCapacity(expectedSize);
+    }
+
+    /**
+     * Grows the sketch to track the given number of entries. The
+     * counts are lost when the table grows.
+     *
+     * @param expectedSize the expected number of entries
+     */
+    void ensureCapacity(final long expectedSize) {
+        int wanted = (int) Math.max(MIN_TABLE_SIZE,
+                Math.min(expectedSize, MAX_TABLE_SIZE));
+        int tableSize = Integer.highestOneBit(wanted - 1) << 1;
+        if (this.table != null && this.table.length >= tableSize) {
+            return;
+        }
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = SAMPLE_FACTOR * tableSize;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the estimated number of recent accesses, at most 15.
+     *
+     * @param hash the hash of the key
+     * @return the frequency
+     */
+    int frequency(final int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            int count = (int) (this.table[index] >>> ((start + i) << 2)
+                    & COUNTER_MASK);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access.
+     *
+     * @param hash the hash of the key
+     */
+    void increment(final int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            added |= this.incrementAt(index, start + i);
+        }
+        if (added && ++this.size == this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Increments a counter unless it is saturated.
+     *
+     * @param index   the index of the long
+     * @param counter the counter within the long
+     * @return whether the counter was incremented
+     */
+    private boolean incrementAt(final int index, final int counter) {
+        int offset = counter << 2;
+        long mask = COUNTER_MASK << offset;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves all counters.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            odd += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size - (odd >>> 2)) >>> 1;
+    }
+
+    /**
+     * Returns the table index for one of the hash functions.
+     *
+     * @param hash the hash of the key
+     * @param i    the hash function
+     * @return the index
+     */
+    private int indexOf(final int hash, final int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & this.tableMask;
+    }
+
+    /**
+     * Spreads the bits of a hash code, so similar keys use
+     * different counters.
+     *
+     * @param hashCode the hash code
+     * @return the hash
+     */
+    static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -2,7 +2,9 @@ package net.gjerull.etherpad.client;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 
 import etm.core.configuration.EtmManager;
@@ -19,10 +21,13 @@ import etm.core.monitor.EtmPoint;
  * String resp = req.send();<br />
  * </code>
  */
-public class GETRequest implements Request {
+public class GETRequest implements StreamingRequest {
     /** The url. */
     private final URL url;
 
+    /** The TLS configuration, null for the JVM defaults. */
+    private final TlsConfig tlsConfig;
+
     /** The Constant ETM_MONITOR. */
     private static final EtmMonitor ETM_MONITOR = EtmManager
             .getEtmMonitor();
@@ -33,7 +38,19 @@ public class GETRequest implements Request {
      * @param nUrl the URL object
      */
     public GETRequest(final URL nUrl) {
+        this(nUrl, null);
+    }
+
+    /**
+     * Instantiates a new GETRequest.
+     *
+     * @param nUrl       the URL object
+     * @param nTlsConfig the TLS configuration for HTTPS urls, or
+     *                   null for the JVM defaults
+     */
+    public GETRequest(final URL nUrl, final TlsConfig nTlsConfig) {
         this.url = nUrl;
+        this.tlsConfig = nTlsConfig;
     }
 
     /**
@@ -49,7 +66,7 @@ public class GETRequest implements Request {
 
         try {
             BufferedReader in = new BufferedReader(
-                    new InputStreamReader(url.openStream(),
+                    new InputStreamReader(openStream(),
                             StandardCharsets.UTF_8));
             StringBuilder response = new StringBuilder();
             String buffer;
@@ -64,4 +81,35 @@ public class GETRequest implements Request {
             point.collect();
         }
     }
+
+    /**
+     * Sends the request and returns the response body.
+     *
+     * @return the response body
+     * @throws Exception the exception
+     */
+    public final InputStream open() throws Exception {
+        EtmPoint point = ETM_MONITOR
+                .createPoint("Monitor point in GETRequest.open");
+        try {
+            return openStream();
+        } finally {
+            point.collect();
+        }
+    }
+
+    /**
+     * Opens the response stream.
+     *
+     * @return the input stream
+     * @throws Exception the exception
+     */
+    private InputStream openStream() throws Exception {
+        if (tlsConfig == null) {
+            return url.openStream();
+        }
+        URLConnection con = url.openConnection();
+        tlsConfig.configure(con);
+        return con.getInputStream();
+    }
 }
@@ -0,0 +1,82 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * A transport built on java.net.http.HttpClient, multiplexing
+ * concurrent requests over a shared HTTP/2 connection and
+ * falling back to HTTP/1.1 with keep-alive.<br />
+ * <br />
+ * The implementation needs Java 11 or later and is shipped in
+ * META-INF/versions/11 of the (multi-release) jar. This class is
+ * what older runtimes see: use {@link #isAvailable()} to check
+ * before creating one.
+ */
+public class HttpClientTransport implements Transport {
+
+    /** The Constant UNAVAILABLE. */
+    private static final String UNAVAILABLE =
+            "HttpClientTransport requires Java 11 or later";
+
+    /**
+     * Instantiates a new transport preferring HTTP/2, with HTTPS
+     * certificates checked against the JVM's default trust store.
+     */
+    public HttpClientTransport() {
+        throw new EPLiteException(UNAVAILABLE);
+    }
+
+    /**
+     * Instantiates a new transport.
+     *
+     * @param tlsConfig            the TLS configuration for HTTPS
+     *                             connections
+     * @param http2                whether to try HTTP/2 before
+     *                             falling back to HTTP/1.1
+     * @param connectTimeoutMillis the connect timeout
+     * @param requestTimeoutMillis the timeout for a whole request,
+     *                             0 for none
+     */
+    public HttpClientTransport(final TlsConfig tlsConfig,
+            final boolean http2, final int connectTimeoutMillis,
+            final int requestTimeoutMillis) {
+        throw new EPLiteException(UNAVAILABLE);
+    }
+
+    /**
+     * Whether this transport can be used on the running JVM.
+     *
+     * @return false, this is the pre-Java 11 version
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL, including the query string
+     * @return the request
+     */
+    public Request createGetRequest(final URL url) {
+        throw new EPLiteException(UNAVAILABLE);
+    }
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url  the URL
+     * @param body url-encoded request body
+     * @return the request
+     */
+    public Request createPostRequest(final URL url,
+            final byte[] body) {
+        throw new EPLiteException(UNAVAILABLE);
+    }
+
+    /**
+     * Nothing to release.
+     */
+    public void close() {
+    }
+}
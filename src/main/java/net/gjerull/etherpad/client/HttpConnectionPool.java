@@ -0,0 +1,402 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * A bounded, per-host pool of keep-alive HTTP connections.
+ * <br />
+ * At most maxConnectionsPerHost sockets (busy or idle) are open
+ * to a host at any time. Idle connections are reused most
+ * recently used first and closed once they have been idle for
+ * longer than the idle timeout.
+ */
+final class HttpConnectionPool {
+
+    /** The Constant HTTPS. */
+    private static final String HTTPS = "https";
+
+    /** The max connections per host. */
+    private final int maxConnectionsPerHost;
+
+    /** The idle timeout in millis. */
+    private final long idleTimeoutMillis;
+
+    /** The connect timeout in millis. */
+    private final int connectTimeoutMillis;
+
+    /** The read timeout in millis. */
+    private final int readTimeoutMillis;
+
+    /** The TLS configuration for https connections. */
+    private final TlsConfig tlsConfig;
+
+    /** The host pools, keyed by scheme://host:port. */
+    private final ConcurrentMap<String, HostPool> hosts =
+            new ConcurrentHashMap<>();
+
+    /** Connections taken from the idle list. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Connections that had to be opened. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Idle connections closed because they went stale. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Whether the pool has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new connection pool.
+     *
+     * @param nMaxConnectionsPerHost the max connections per host
+     * @param nIdleTimeoutMillis     the idle timeout in millis
+     * @param nConnectTimeoutMillis  the connect timeout in millis,
+     *                               also used as the max wait for
+     *                               a free connection
+     * @param nReadTimeoutMillis     the socket read timeout in
+     *                               millis, 0 for none
+     * @param nTlsConfig             the TLS configuration for
+     *                               https connections
+     */
+    HttpConnectionPool(final int nMaxConnectionsPerHost,
+            final long nIdleTimeoutMillis,
+            final int nConnectTimeoutMillis,
+            final int nReadTimeoutMillis,
+            final TlsConfig nTlsConfig) {
+        if (nMaxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException(
+                    "maxConnectionsPerHost must be at least 1");
+        }
+        this.maxConnectionsPerHost = nMaxConnectionsPerHost;
+        this.idleTimeoutMillis = nIdleTimeoutMillis;
+        this.connectTimeoutMillis = nConnectTimeoutMillis;
+        this.readTimeoutMillis = nReadTimeoutMillis;
+        this.tlsConfig = nTlsConfig;
+    }
+
+    /**
+     * Returns an idle connection to the host, or opens a new one
+     * if none is idle and the host limit allows it. Waits for a
+     * connection to be released otherwise.
+     *
+     * @param scheme the URL scheme (http or https)
+     * @param host   the host
+     * @param port   the port
+     * @return a connection, which must be handed back through
+     *         {@link #release} or {@link #discard}
+     * @throws IOException if no connection could be obtained
+     */
+    PooledConnection acquire(final String scheme,
+            final String host, final int port) throws IOException {
+        String key = scheme + "://" + host + ":" + port;
+        HostPool pool = hostPool(key);
+        PooledConnection idle = pool.take(key);
+        if (idle != null) {
+            hits.incrementAndGet();
+            return idle;
+        }
+        misses.incrementAndGet();
+        try {
+            return new PooledConnection(key,
+                    connect(scheme, host, port));
+        } catch (IOException | RuntimeException e) {
+            pool.closed();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a fully read connection back to the pool.
+     *
+     * @param connection       the connection
+     * @param keepAliveMillis  how long the server keeps the
+     *                         connection open, or a negative
+     *                         value if it didn't say
+     */
+    void release(final PooledConnection connection,
+            final long keepAliveMillis) {
+        long idleFor = idleTimeoutMillis;
+        if (keepAliveMillis >= 0 && keepAliveMillis < idleFor) {
+            idleFor = keepAliveMillis;
+        }
+        if (idleFor <= 0 || closed) {
+            discard(connection);
+            return;
+        }
+        connection.markIdle(System.currentTimeMillis() + idleFor);
+        hostPool(connection.getKey()).offer(connection);
+    }
+
+    /**
+     * Closes a connection that can't be reused.
+     *
+     * @param connection the connection
+     */
+    void discard(final PooledConnection connection) {
+        connection.closeQuietly();
+        hostPool(connection.getKey()).closed();
+    }
+
+    /**
+     * Closes all idle connections that have expired.
+     */
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (HostPool pool : hosts.values()) {
+            pool.evict(now, false);
+        }
+    }
+
+    /**
+     * Closes all idle connections, and stops pooling connections
+     * released afterwards.
+     */
+    void close() {
+        closed = true;
+        for (HostPool pool : hosts.values()) {
+            pool.evict(0L, true);
+        }
+    }
+
+    /**
+     * Gets the number of connections reused from the pool.
+     *
+     * @return the hits
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of connections that had to be opened.
+     *
+     * @return the misses
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of idle connections closed as stale.
+     *
+     * @return the evictions
+     */
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of idle connections over all hosts.
+     *
+     * @return the idle count
+     */
+    int getIdleCount() {
+        int count = 0;
+        for (HostPool pool : hosts.values()) {
+            count += pool.idleCount();
+        }
+        return count;
+    }
+
+    /**
+     * Opens a socket to the host, layering TLS on top for https.
+     *
+     * @param scheme the URL scheme
+     * @param host   the host
+     * @param port   the port
+     * @return the connected socket
+     * @throws IOException if the connection fails
+     */
+    private Socket connect(final String scheme, final String host,
+            final int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(readTimeoutMillis);
+            socket.connect(new InetSocketAddress(host, port),
+                    connectTimeoutMillis);
+            if (!HTTPS.equalsIgnoreCase(scheme)) {
+                return socket;
+            }
+            SSLSocket ssl = (SSLSocket) tlsConfig.getSocketFactory()
+                    .createSocket(socket, host, port, true);
+            if (!tlsConfig.isTrustAll()) {
+                SSLParameters params = ssl.getSSLParameters();
+                params.setEndpointIdentificationAlgorithm("HTTPS");
+                ssl.setSSLParameters(params);
+            }
+            ssl.startHandshake();
+            return ssl;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets or creates the pool for a host key.
+     *
+     * @param key the host key
+     * @return the host pool
+     */
+    private HostPool hostPool(final String key) {
+        HostPool pool = hosts.get(key);
+        if (pool == null) {
+            HostPool created = new HostPool();
+            pool = hosts.putIfAbsent(key, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * The connections to a single host.
+     */
+    private final class HostPool {
+
+        /** The lock. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Signalled when a connection is released or closed. */
+        private final Condition available = lock.newCondition();
+
+        /** Idle connections, most recently used first. */
+        private final Deque<PooledConnection> idle =
+                new ArrayDeque<>();
+
+        /** Open connections, busy or idle. */
+        private int open;
+
+        /**
+         * Takes an idle connection, or reserves room for a new one
+         * (returning null).
+         *
+         * @param key the host key, for error messages
+         * @return an idle connection, or null if the caller should
+         *         open one
+         * @throws IOException if the wait for a free connection
+         *                     times out or is interrupted
+         */
+        PooledConnection take(final String key) throws IOException {
+            long waitNanos = TimeUnit.MILLISECONDS
+                    .toNanos(connectTimeoutMillis);
+            lock.lock();
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    PooledConnection connection;
+                    while ((connection = idle.pollFirst()) != null) {
+                        if (!connection.isStale(now)) {
+                            return connection;
+                        }
+                        connection.closeQuietly();
+                        evictions.incrementAndGet();
+                        open--;
+                    }
+                    if (open < maxConnectionsPerHost) {
+                        open++;
+                        return null;
+                    }
+                    if (waitNanos <= 0L) {
+                        throw new IOException("Timed out waiting "
+                                + "for a pooled connection to "
+                                + key);
+                    }
+                    waitNanos = available.awaitNanos(waitNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting "
+                        + "for a pooled connection to " + key, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Puts a connection on the idle list.
+         *
+         * @param connection the connection
+         */
+        void offer(final PooledConnection connection) {
+            lock.lock();
+            try {
+                idle.offerFirst(connection);
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Records that a busy connection was closed.
+         */
+        void closed() {
+            lock.lock();
+            try {
+                open--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Closes stale (or all) idle connections.
+         *
+         * @param now the current time in millis
+         * @param all whether to close every idle connection
+         */
+        void evict(final long now, final boolean all) {
+            lock.lock();
+            try {
+                Iterator<PooledConnection> it =
+                        idle.descendingIterator();
+                while (it.hasNext()) {
+                    PooledConnection connection = it.next();
+                    if (all || connection.isStale(now)) {
+                        it.remove();
+                        connection.closeQuietly();
+                        evictions.incrementAndGet();
+                        open--;
+                        available.signal();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the number of idle connections.
+         *
+         * @return the idle count
+         */
+        int idleCount() {
+            lock.lock();
+            try {
+                return idle.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
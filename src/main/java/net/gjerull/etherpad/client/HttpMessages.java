@@ -0,0 +1,164 @@
+package net.gjerull.etherpad.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for writing HTTP/1.1 requests and reading response
+ * heads on a raw socket.
+ */
+final class HttpMessages {
+
+    /** The Constant CRLF. */
+    static final String CRLF = "\r\n";
+
+    /** The Constant MAX_LINE_LENGTH. */
+    private static final int MAX_LINE_LENGTH = 65536;
+
+    /** The Constant HEX_DIGITS. */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF"
+            .toCharArray();
+
+    /** The Constant ASCII_LIMIT. */
+    private static final int ASCII_LIMIT = 0x80;
+
+    /** The Constant NIBBLE. */
+    private static final int NIBBLE = 4;
+
+    /** The Constant NIBBLE_MASK. */
+    private static final int NIBBLE_MASK = 0x0f;
+
+    /** The Constant BYTE_MASK. */
+    private static final int BYTE_MASK = 0xff;
+
+    /**
+     * Utility class.
+     */
+    private HttpMessages() {
+    }
+
+    /**
+     * Reads a CRLF (or LF) terminated ASCII line, without the
+     * line terminator.
+     *
+     * @param in the input
+     * @return the line
+     * @throws IOException if the stream ends before the line does
+     */
+    static String readLine(final InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException("Connection closed while "
+                        + "reading the response");
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("HTTP header line too long");
+            }
+            line.append((char) c);
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Writes the request line and headers.
+     *
+     * @param out           the output
+     * @param method        GET or POST
+     * @param url           the URL
+     * @param contentLength the body length, or -1 for no body
+     * @throws IOException on write errors
+     */
+    static void writeHead(final OutputStream out, final String method,
+            final URL url, final int contentLength) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append(method).append(' ');
+        appendTarget(head, url);
+        head.append(" HTTP/1.1").append(CRLF);
+        head.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1
+                && url.getPort() != url.getDefaultPort()) {
+            head.append(':').append(url.getPort());
+        }
+        head.append(CRLF);
+        head.append("Accept: application/json, */*").append(CRLF);
+        head.append("Connection: keep-alive").append(CRLF);
+        if (contentLength >= 0) {
+            head.append("Content-Type: "
+                    + "application/x-www-form-urlencoded")
+                    .append(CRLF);
+            head.append("Content-Length: ").append(contentLength)
+                    .append(CRLF);
+        }
+        head.append(CRLF);
+        out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the whole body into a String.
+     *
+     * @param body the body stream, closed afterwards
+     * @return the body, decoded as UTF-8
+     * @throws IOException on read errors
+     */
+    static String readFully(final InputStream body)
+            throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[MAX_LINE_LENGTH / 8];
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return new String(bytes.toByteArray(),
+                    StandardCharsets.UTF_8);
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Appends the origin-form request target (path and query),
+     * percent-encoding anything that isn't printable ASCII.
+     *
+     * @param head the head being built
+     * @param url  the URL
+     */
+    private static void appendTarget(final StringBuilder head,
+            final URL url) {
+        String file = url.getFile();
+        if (file.isEmpty()) {
+            head.append('/');
+            return;
+        }
+        for (int i = 0; i < file.length(); i++) {
+            char c = file.charAt(i);
+            if (c > ' ' && c < ASCII_LIMIT) {
+                head.append(c);
+                continue;
+            }
+            int end = i + 1;
+            if (Character.isHighSurrogate(c) && end < file.length()) {
+                end++;
+            }
+            byte[] bytes = file.substring(i, end)
+                    .getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                head.append('%')
+                        .append(HEX_DIGITS[(b & BYTE_MASK) >> NIBBLE])
+                        .append(HEX_DIGITS[b & NIBBLE_MASK]);
+            }
+            i = end - 1;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.gjerull.etherpad.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The body of a response read from a {@link PooledConnection}.
+ * <br />
+ * Handles Content-Length, chunked and read-until-close bodies.
+ * Once the body has been read to the end the connection is
+ * handed back to the pool; closing the stream early discards the
+ * connection instead.
+ */
+final class HttpResponseBody extends InputStream {
+
+    /** The Constant UNTIL_CLOSE. */
+    static final long UNTIL_CLOSE = -1L;
+
+    /** The Constant CHUNKED. */
+    static final long CHUNKED = -2L;
+
+    /** The Constant HEX. */
+    private static final int HEX = 16;
+
+    /** The pool the connection belongs to. */
+    private final HttpConnectionPool pool;
+
+    /** The connection. */
+    private final PooledConnection connection;
+
+    /** The socket input. */
+    private final InputStream in;
+
+    /** Whether the connection may be reused afterwards. */
+    private final boolean keepAlive;
+
+    /** The server's keep-alive timeout, negative if unknown. */
+    private final long keepAliveMillis;
+
+    /** Whether the body is chunked. */
+    private final boolean chunked;
+
+    /** Bytes left in the body or the current chunk. */
+    private long remaining;
+
+    /** Whether the end of the body has been reached. */
+    private boolean finished;
+
+    /** Whether the connection has been released or discarded. */
+    private boolean done;
+
+    /**
+     * Instantiates a new response body.
+     *
+     * @param nPool            the pool
+     * @param nConnection      the connection
+     * @param length           the content length, or
+     *                         {@link #UNTIL_CLOSE} or
+     *                         {@link #CHUNKED}
+     * @param nKeepAlive       whether the connection may be
+     *                         reused
+     * @param nKeepAliveMillis the server's keep-alive timeout,
+     *                         negative if unknown
+     */
+    HttpResponseBody(final HttpConnectionPool nPool,
+            final PooledConnection nConnection, final long length,
+            final boolean nKeepAlive,
+            final long nKeepAliveMillis) {
+        this.pool = nPool;
+        this.connection = nConnection;
+        this.in = nConnection.getInputStream();
+        this.keepAlive = nKeepAlive && length != UNTIL_CLOSE;
+        this.keepAliveMillis = nKeepAliveMillis;
+        this.chunked = length == CHUNKED;
+        this.remaining = chunked ? 0L : length;
+        if (!chunked && length == 0L) {
+            finish();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+            throws IOException {
+        if (finished || done) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            return readBody(b, off, len);
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!done) {
+            discard();
+        }
+    }
+
+    /**
+     * Reads from the current chunk or the remaining body.
+     *
+     * @param b   the buffer
+     * @param off the offset
+     * @param len the max number of bytes
+     * @return the number of bytes read, or -1 at the end
+     * @throws IOException on read errors
+     */
+    private int readBody(final byte[] b, final int off,
+            final int len) throws IOException {
+        if (chunked && remaining == 0L) {
+            remaining = nextChunkSize();
+            if (remaining == 0L) {
+                readTrailers();
+                finish();
+                return -1;
+            }
+        }
+        int max = len;
+        if (remaining >= 0L && remaining < max) {
+            max = (int) remaining;
+        }
+        int n = in.read(b, off, max);
+        if (n < 0) {
+            if (remaining == UNTIL_CLOSE) {
+                finish();
+                return -1;
+            }
+            throw new EOFException("Connection closed before the "
+                    + "end of the response body");
+        }
+        if (remaining > 0L) {
+            remaining -= n;
+            if (remaining == 0L && chunked) {
+                expectLineEnd();
+            } else if (remaining == 0L) {
+                finish();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Reads the size line of the next chunk.
+     *
+     * @return the chunk size
+     * @throws IOException on read errors
+     */
+    private long nextChunkSize() throws IOException {
+        String line = HttpMessages.readLine(in);
+        int semicolon = line.indexOf(';');
+        if (semicolon >= 0) {
+            line = line.substring(0, semicolon);
+        }
+        try {
+            return Long.parseLong(line.trim(), HEX);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + line, e);
+        }
+    }
+
+    /**
+     * Consumes the CRLF after chunk data.
+     *
+     * @throws IOException on read errors
+     */
+    private void expectLineEnd() throws IOException {
+        if (HttpMessages.readLine(in).length() != 0) {
+            throw new IOException("Malformed chunked body");
+        }
+    }
+
+    /**
+     * Consumes trailer headers after the last chunk.
+     *
+     * @throws IOException on read errors
+     */
+    private void readTrailers() throws IOException {
+        while (HttpMessages.readLine(in).length() != 0) {
+            continue;
+        }
+    }
+
+    /**
+     * Marks the body as read and hands the connection back.
+     */
+    private void finish() {
+        finished = true;
+        if (done) {
+            return;
+        }
+        done = true;
+        if (keepAlive) {
+            pool.release(connection, keepAliveMillis);
+        } else {
+            pool.discard(connection);
+        }
+    }
+
+    /**
+     * Closes the connection without reusing it.
+     */
+    private void discard() {
+        if (!done) {
+            done = true;
+            pool.discard(connection);
+        }
+    }
+}
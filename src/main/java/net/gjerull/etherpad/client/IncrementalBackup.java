@@ -0,0 +1,485 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Backs up only the pads that changed since the last backup.<br />
+ * <br />
+ * An index file records the lastEdited time and revision count of
+ * each pad backed up. {@link #backup(Writer)} lists the pads and
+ * asks for the lastEdited time of each, a few at a time and no
+ * faster than the given rate; the revision count is only fetched
+ * when that time changed. A changed pad is written as
+ * newline-delimited JSON, either as its text at the new revision:
+ * <br />
+ * <br />
+ * <code>
+ * {"padID":"my_pad","rev":12,"text":"Hello\n"}
+ * </code><br />
+ * <br />
+ * or, with changesets enabled and an earlier backup of the pad at
+ * most MAX_CHANGESETS revisions back, as the changesets since the
+ * revision backed up, fetched one call each:<br />
+ * <br />
+ * <code>
+ * {"padID":"my_pad","fromRev":10,"rev":12,"changesets":[...]}
+ * </code><br />
+ * <br />
+ * The index is an append-only file: a line is added for each pad
+ * once it is written and the writer flushed, so a stopped backup
+ * loses no work, and the file is rewritten when it holds more stale
+ * lines than live ones. Pads no longer listed by the server are
+ * dropped from the index after a complete backup.<br />
+ * <br />
+ * A pad the server reports as missing, e.g. because it was deleted
+ * meanwhile, is counted and skipped; any other error, such as a lost
+ * connection, stops the backup.
+ */
+public final class IncrementalBackup {
+
+    /** The Constant HEADER, the first line of an index. */
+    private static final String HEADER = "# etherpad backup index 1";
+
+    /** The Constant WINDOW, the pads in flight per thread. */
+    private static final int WINDOW = 4;
+
+    /**
+     * The Constant MAX_CHANGESETS, the most revisions written as
+     * changesets; a pad further ahead is written as text.
+     */
+    static final int MAX_CHANGESETS = 100;
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** The index file. */
+    private final File indexFile;
+
+    /** The number of pads checked at once. */
+    private final int parallelism;
+
+    /** Spaces out the calls. */
+    private final RateLimiter rateLimiter;
+
+    /** Whether changed pads are written as changesets. */
+    private final boolean changesets;
+
+    /** The state of each pad backed up. */
+    private final ConcurrentMap<String, PadState> index =
+            new ConcurrentHashMap<>();
+
+    /** The number of lines in the index file. */
+    private long indexLines;
+
+    /** The number of pads checked. */
+    private final AtomicLong checkedCount = new AtomicLong();
+
+    /** The number of pads written. */
+    private final AtomicLong changedCount = new AtomicLong();
+
+    /** The number of pads skipped as missing. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Instantiates a new incremental backup, and loads the index if
+     * it exists.
+     *
+     * @param nClient         the client
+     * @param nIndexFile      the index file
+     * @param nParallelism    the number of pads checked at once
+     * @param nCallsPerSecond the most calls per second, or 0 for no
+     *                        limit
+     * @param nChangesets     whether pads backed up before are
+     *                        written as changesets
+     * @throws EPLiteException if the index can't be read
+     */
+    public IncrementalBackup(final EPLiteClient nClient,
+            final File nIndexFile, final int nParallelism,
+            final double nCallsPerSecond, final boolean nChangesets) {
+        if (nParallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "The parallelism must be positive");
+        }
+        this.client = nClient;
+        this.indexFile = nIndexFile;
+        this.parallelism = nParallelism;
+        this.rateLimiter = new RateLimiter(nCallsPerSecond);
+        this.changesets = nChangesets;
+        if (nIndexFile.exists()) {
+            this.load();
+        }
+    }
+
+    /**
+     * Writes the pads changed since the last backup. The writer is
+     * flushed but not closed.
+     *
+     * @param out the writer
+     * @return the number of pads written
+     * @throws EPLiteException if the backup failed; the pads written
+     *                         so far are in the index
+     */
+    public long backup(final Writer out) {
+        long changedBefore = this.changedCount.get();
+        File padList = new File(this.indexFile.getPath() + ".pads");
+        try {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(padList),
+                            StandardCharsets.UTF_8))) {
+                this.rateLimiter.acquire();
+                this.client.listAllPads(writer);
+            }
+            this.backupPads(padList, out);
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to back up the pads", e);
+        } finally {
+            padList.delete();
+        }
+        if (this.indexLines > 2 * this.index.size()) {
+            this.compact();
+        }
+        return this.changedCount.get() - changedBefore;
+    }
+
+    /**
+     * Checks the pads of the list and writes the changed ones.
+     *
+     * @param padList the pad list
+     * @param out     the writer
+     * @throws IOException if the list can't be read
+     */
+    private void backupPads(final File padList, final Writer out)
+            throws IOException {
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<>();
+        final Semaphore window = new Semaphore(this.parallelism * WINDOW);
+        Set<String> listed = new HashSet<>();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(this.parallelism);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(padList),
+                        StandardCharsets.UTF_8));
+                Writer indexWriter = new BufferedWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(this.indexFile,
+                                        true),
+                                StandardCharsets.UTF_8))) {
+            if (this.indexLines == 0) {
+                indexWriter.write(HEADER);
+                indexWriter.write('\n');
+                this.indexLines++;
+            }
+            String padId;
+            while ((padId = reader.readLine()) != null
+                    && failure.get() == null) {
+                listed.add(padId);
+                window.acquire();
+                final String id = padId;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            check(id, out, indexWriter);
+                        } catch (RuntimeException e) {
+                            if (EPLiteApiException
+                                    .isInvalidParameters(e)) {
+                                failedCount.incrementAndGet();
+                            } else {
+                                failure.compareAndSet(null, e);
+                            }
+                        } catch (IOException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            window.release();
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw new EPLiteException("Backup stopped: "
+                    + failure.get().getMessage(), failure.get());
+        }
+        if (this.index.keySet().retainAll(listed)) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Checks a pad and writes it if it changed.
+     *
+     * @param padId       the pad's id string
+     * @param out         the writer
+     * @param indexWriter the writer of the index file
+     * @throws IOException if a file can't be written
+     */
+    private void check(final String padId, final Writer out,
+            final Writer indexWriter) throws IOException {
+        this.rateLimiter.acquire();
+        long lastEdited = toLong(this.client.getLastEdited(padId)
+                .get("lastEdited"));
+        this.checkedCount.incrementAndGet();
+        PadState previous = this.index.get(padId);
+        if (previous != null && previous.lastEdited == lastEdited) {
+            return;
+        }
+        this.rateLimiter.acquire();
+        long rev = this.client.getRevisionCount(padId).getCount();
+        String line;
+        if (previous != null && previous.revisions == rev) {
+            // Touched without a new revision, e.g. by a chat message
+            line = null;
+        } else if (this.changesets && previous != null
+                && previous.revisions < rev
+                && rev - previous.revisions <= MAX_CHANGESETS) {
+            line = this.changesetsLine(padId, previous.revisions, rev);
+        } else {
+            this.rateLimiter.acquire();
+            String text = this.client.getPadText(padId, rev).getText();
+            line = "{\"padID\":\"" + JSONValue.escape(padId)
+                    + "\",\"rev\":" + rev + ",\"text\":\""
+                    + JSONValue.escape(text) + "\"}\n";
+        }
+        synchronized (this) {
+            if (line != null) {
+                out.write(line);
+                out.flush();
+                this.changedCount.incrementAndGet();
+            }
+            indexWriter.write(MapperCache.escape(padId));
+            indexWriter.write('\t');
+            indexWriter.write(Long.toString(lastEdited));
+            indexWriter.write('\t');
+            indexWriter.write(Long.toString(rev));
+            indexWriter.write('\n');
+            indexWriter.flush();
+            this.index.put(padId, new PadState(lastEdited, rev));
+            this.indexLines++;
+        }
+    }
+
+    /**
+     * Fetches the changesets of a pad between two revisions and
+     * returns its line.
+     *
+     * @param padId    the pad's id string
+     * @param fromRev  the revision backed up before
+     * @param rev      the revision to back up
+     * @return the JSON object
+     */
+    private String changesetsLine(final String padId,
+            final long fromRev, final long rev) {
+        StringBuilder line = new StringBuilder();
+        line.append("{\"padID\":\"").append(JSONValue.escape(padId))
+                .append("\",\"fromRev\":").append(fromRev)
+                .append(",\"rev\":").append(rev)
+                .append(",\"changesets\":[");
+        for (long r = fromRev + 1; r <= rev; r++) {
+            this.rateLimiter.acquire();
+            String changeset = this.client.getRevisionChangeset(padId,
+                    r);
+            if (r > fromRev + 1) {
+                line.append(',');
+            }
+            line.append('"').append(JSONValue.escape(changeset))
+                    .append('"');
+        }
+        return line.append("]}\n").toString();
+    }
+
+    /**
+     * Converts a number from a response.
+     *
+     * @param value a number or a string
+     * @return the value as a long
+     */
+    private static long toLong(final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value == null) {
+            throw new EPLiteException("The response has no lastEdited");
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    /**
+     * Reads the index file. The last line of a pad wins.
+     */
+    private void load() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                        new FileInputStream(this.indexFile),
+                        StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new EPLiteException(
+                        this.indexFile + " is not a backup index");
+            }
+            this.indexLines = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    // Cut short by a crash
+                    continue;
+                }
+                this.index.put(MapperCache.unescape(fields[0]),
+                        new PadState(Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2])));
+                this.indexLines++;
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new EPLiteException(
+                    "Unable to load the backup index " + this.indexFile,
+                    e);
+        }
+    }
+
+    /**
+     * Rewrites the index file with one line a pad. The file is
+     * replaced at once, so a crash leaves the old or the new one.
+     */
+    private synchronized void compact() {
+        File temporary = new File(this.indexFile.getPath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(
+                            new FileOutputStream(temporary),
+                            StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Map.Entry<String, PadState> entry
+                        : this.index.entrySet()) {
+                    writer.write(MapperCache.escape(entry.getKey()));
+                    writer.write('\t');
+                    writer.write(Long.toString(
+                            entry.getValue().lastEdited));
+                    writer.write('\t');
+                    writer.write(Long.toString(
+                            entry.getValue().revisions));
+                    writer.write('\n');
+                }
+            }
+            Files.move(temporary.toPath(), this.indexFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            this.indexLines = this.index.size() + 1;
+        } catch (IOException e) {
+            throw new EPLiteException(
+                    "Unable to compact the backup index "
+                            + this.indexFile, e);
+        }
+    }
+
+    /**
+     * Gets the index file.
+     *
+     * @return the file
+     */
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Gets the number of pads in the index.
+     *
+     * @return the number of pads
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Gets the number of pads checked.
+     *
+     * @return the checked count
+     */
+    public long getCheckedCount() {
+        return this.checkedCount.get();
+    }
+
+    /**
+     * Gets the number of pads written.
+     *
+     * @return the changed count
+     */
+    public long getChangedCount() {
+        return this.changedCount.get();
+    }
+
+    /**
+     * Gets the number of pads skipped because the server reported
+     * them as missing.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * Returns the backup counts.
+     *
+     * @return a description of the backup
+     */
+    @Override
+    public String toString() {
+        return "IncrementalBackup[pads=" + this.size() + ", checked="
+                + this.getCheckedCount() + ", changed="
+                + this.getChangedCount() + ", failed="
+                + this.getFailedCount() + "]";
+    }
+
+    /**
+     * The state of a pad when it was backed up.
+     */
+    private static final class PadState {
+
+        /** The lastEdited time. */
+        private final long lastEdited;
+
+        /** The revision count. */
+        private final long revisions;
+
+        /**
+         * Instantiates a new pad state.
+         *
+         * @param nLastEdited the lastEdited time
+         * @param nRevisions  the revision count
+         */
+        PadState(final long nLastEdited, final long nRevisions) {
+            this.lastEdited = nLastEdited;
+            this.revisions = nRevisions;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A {@link JsonCodec} built on the streaming parser of Jackson
+ * (jackson-core). jackson-core is an optional dependency of this
+ * client: add it to the classpath to use this codec.
+ */
+public final class JacksonCodec implements JsonCodec {
+
+    /** The parser factory, shared by all calls. */
+    private final JsonFactory factory = new JsonFactory()
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    /**
+     * Decodes a JSON document with a Jackson parser.
+     *
+     * @param body the document, UTF-8 encoded
+     * @return the decoded value
+     * @throws IOException on read errors
+     */
+    public Object decode(final InputStream body) throws IOException {
+        JsonParser parser = factory.createParser(body);
+        try {
+            Object value = readValue(parser, parser.nextToken());
+            if (parser.nextToken() != null) {
+                throw new EPLiteException(
+                        "Unable to parse JSON response (trailing data"
+                                + " at " + parser.getCurrentLocation()
+                                + ")");
+            }
+            return value;
+        } catch (JsonParseException e) {
+            throw new EPLiteException("Unable to parse JSON response ("
+                    + e.getOriginalMessage() + " at "
+                    + e.getLocation() + ")", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads the value starting at the given token.
+     *
+     * @param parser the parser
+     * @param token  the current token
+     * @return the value
+     * @throws IOException on read errors
+     */
+    @SuppressWarnings("unchecked")
+    private static Object readValue(final JsonParser parser,
+            final JsonToken token) throws IOException {
+        if (token == null) {
+            throw new EPLiteException(
+                    "Unable to parse JSON response (end of input at "
+                            + parser.getCurrentLocation() + ")");
+        }
+        switch (token) {
+        case START_OBJECT:
+            JSONObject object = new JSONObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                object.put(name, readValue(parser, parser.nextToken()));
+            }
+            return object;
+        case START_ARRAY:
+            JSONArray array = new JSONArray();
+            JsonToken next;
+            while ((next = parser.nextToken()) != JsonToken.END_ARRAY) {
+                array.add(readValue(parser, next));
+            }
+            return array;
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            if (parser.getNumberType()
+                    == JsonParser.NumberType.BIG_INTEGER) {
+                return parser.getDoubleValue();
+            }
+            return parser.getLongValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        default:
+            throw new EPLiteException(
+                    "Unable to parse JSON response (unexpected " + token
+                            + " at " + parser.getCurrentLocation() + ")");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the JSON responses of the Etherpad Lite server for
+ * {@link EPLiteConnection}.<br />
+ * <br />
+ * A codec turns a whole UTF-8 encoded document into the types
+ * json-simple produces (JSONObject, JSONArray, String, Long,
+ * Double, Boolean and null), which is what the Map-returning
+ * methods of {@link EPLiteClient} hand out. The built-in codecs
+ * are {@link StreamingJsonCodec} (the default),
+ * {@link JsonSimpleCodec} and {@link JacksonCodec}.
+ * Implementations must be safe to use from several threads.
+ */
+public interface JsonCodec {
+
+    /**
+     * Decodes a JSON document.
+     *
+     * @param body the document, UTF-8 encoded. The caller closes
+     *             the stream.
+     * @return the decoded value
+     * @throws IOException on read errors
+     * @throws EPLiteException if the document is malformed
+     */
+    Object decode(InputStream body) throws IOException;
+}
@@ -0,0 +1,967 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * An incremental JSON reader that decodes UTF-8 directly from an
+ * InputStream.<br />
+ * <br />
+ * Values are read as they arrive, without buffering the whole
+ * document first, and come out as the same types json-simple
+ * produces (JSONObject, JSONArray, String, Long, Double, Boolean
+ * and null). A reader keeps its buffers between documents, so
+ * one instance per thread can be reused for every response with
+ * {@link #reset(InputStream)} and {@link #release()}.<br />
+ * <br />
+ * Malformed input raises an {@link EPLiteException}.
+ */
+final class JsonReader {
+
+    /** The Constant BUFFER_SIZE. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The Constant MAX_RETAINED_BYTES. A larger string buffer is
+     * dropped on release, so one big pad doesn't pin its size in
+     * memory for the life of the thread.
+     */
+    private static final int MAX_RETAINED_BYTES = 65536;
+
+    /** The Constant INITIAL_BYTES. */
+    private static final int INITIAL_BYTES = 256;
+
+    /** The Constant INITIAL_DEPTH. */
+    private static final int INITIAL_DEPTH = 16;
+
+    /** The Constant MAX_LONG_DIGITS, digits that always fit a long. */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /** The Constant DECIMAL_RADIX. */
+    private static final int DECIMAL_RADIX = 10;
+
+    /** The Constant HEX_RADIX. */
+    private static final int HEX_RADIX = 16;
+
+    /** The Constant HEX_ESCAPE_LENGTH. */
+    private static final int HEX_ESCAPE_LENGTH = 4;
+
+    /** The Constant BYTE_MASK. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** The Constant ASCII_LIMIT. */
+    private static final int ASCII_LIMIT = 0x80;
+
+    /** The Constant TWO_BYTE_LIMIT. */
+    private static final int TWO_BYTE_LIMIT = 0x800;
+
+    /** The Constant THREE_BYTE_LIMIT. */
+    private static final int THREE_BYTE_LIMIT = 0x10000;
+
+    /** The Constant LEAD_2, lead bits of a 2-byte sequence. */
+    private static final int LEAD_2 = 0xc0;
+
+    /** The Constant LEAD_3, lead bits of a 3-byte sequence. */
+    private static final int LEAD_3 = 0xe0;
+
+    /** The Constant LEAD_4, lead bits of a 4-byte sequence. */
+    private static final int LEAD_4 = 0xf0;
+
+    /** The Constant CONTINUATION, bits of a continuation byte. */
+    private static final int CONTINUATION = 0x80;
+
+    /** The Constant PAYLOAD_MASK, bits of a continuation byte. */
+    private static final int PAYLOAD_MASK = 0x3f;
+
+    /** The Constant PAYLOAD_BITS. */
+    private static final int PAYLOAD_BITS = 6;
+
+    /** The Constant REPLACEMENT_CHAR. */
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    /** The Constant EMPTY_DOCUMENT. */
+    private static final int EMPTY_DOCUMENT = 0;
+
+    /** The Constant NONEMPTY_DOCUMENT. */
+    private static final int NONEMPTY_DOCUMENT = 1;
+
+    /** The Constant EMPTY_OBJECT. */
+    private static final int EMPTY_OBJECT = 2;
+
+    /** The Constant DANGLING_NAME, a name waiting for its value. */
+    private static final int DANGLING_NAME = 3;
+
+    /** The Constant NONEMPTY_OBJECT. */
+    private static final int NONEMPTY_OBJECT = 4;
+
+    /** The Constant EMPTY_ARRAY. */
+    private static final int EMPTY_ARRAY = 5;
+
+    /** The Constant NONEMPTY_ARRAY. */
+    private static final int NONEMPTY_ARRAY = 6;
+
+    /** The input buffer. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * The string being read, still UTF-8 encoded but with escape
+     * sequences resolved.
+     */
+    private byte[] bytes = new byte[INITIAL_BYTES];
+
+    /** The number of bytes in bytes. */
+    private int byteCount;
+
+    /**
+     * A high surrogate from a unicode escape, waiting for the low
+     * surrogate that should follow it; 0 if none.
+     */
+    private char pendingHighSurrogate;
+
+    /** The scopes of the containers being read. */
+    private int[] scopes = new int[INITIAL_DEPTH];
+
+    /** The index of the innermost scope. */
+    private int depth;
+
+    /** The decoder for strings written to a Writer, or null. */
+    private CharsetDecoder decoder;
+
+    /** The output buffer of decoder. */
+    private CharBuffer decoded;
+
+    /** The input. */
+    private InputStream in;
+
+    /** The position of the next byte in the buffer. */
+    private int pos;
+
+    /** The number of bytes in the buffer. */
+    private int limit;
+
+    /** The number of bytes read before the buffer. */
+    private long offset;
+
+    /** The value of the last number scanned as a plain integer. */
+    private long scannedLong;
+
+    /**
+     * Starts reading a new document.
+     *
+     * @param nIn the input, UTF-8 encoded
+     * @return this reader
+     */
+    JsonReader reset(final InputStream nIn) {
+        this.in = nIn;
+        this.pos = 0;
+        this.limit = 0;
+        this.offset = 0L;
+        this.depth = 0;
+        this.scopes[0] = EMPTY_DOCUMENT;
+        return this;
+    }
+
+    /**
+     * Forgets the input, and shrinks the string buffer if a large
+     * value made it grow.
+     */
+    void release() {
+        this.in = null;
+        if (bytes.length > MAX_RETAINED_BYTES) {
+            bytes = new byte[INITIAL_BYTES];
+        }
+    }
+
+    /**
+     * Consumes the start of an object.
+     *
+     * @throws IOException on read errors
+     */
+    void beginObject() throws IOException {
+        beforeValue();
+        expect('{');
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the end of an object.
+     *
+     * @throws IOException on read errors
+     */
+    void endObject() throws IOException {
+        int scope = scopes[depth];
+        if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+            throw syntaxError("Unexpected end of object");
+        }
+        expect('}');
+        depth--;
+    }
+
+    /**
+     * Consumes the start of an array.
+     *
+     * @throws IOException on read errors
+     */
+    void beginArray() throws IOException {
+        beforeValue();
+        expect('[');
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the end of an array.
+     *
+     * @throws IOException on read errors
+     */
+    void endArray() throws IOException {
+        int scope = scopes[depth];
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+            throw syntaxError("Unexpected end of array");
+        }
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Whether the current object or array has more elements.
+     *
+     * @return true if there is another element
+     * @throws IOException on read errors
+     */
+    boolean hasNext() throws IOException {
+        int c = peekNonWhitespace();
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /**
+     * Reads the name of the next object member.
+     *
+     * @return the name
+     * @throws IOException on read errors
+     */
+    String nextName() throws IOException {
+        readName();
+        return new String(bytes, 0, byteCount, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the name of the next object member and looks it up in
+     * the given ASCII names, without creating a String for it.
+     *
+     * @param names the names
+     * @return the index of the name, or -1 if it isn't one of them
+     * @throws IOException on read errors
+     */
+    int nextName(final String[] names) throws IOException {
+        readName();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() != byteCount) {
+                continue;
+            }
+            int j = 0;
+            while (j < byteCount && bytes[j] == name.charAt(j)) {
+                j++;
+            }
+            if (j == byteCount) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the next value as a long, without boxing it.
+     * Fractions are truncated.
+     *
+     * @return the value
+     * @throws IOException on read errors
+     */
+    long nextLong() throws IOException {
+        beforeValue();
+        peekNonWhitespace();
+        if (scanNumber()) {
+            return scannedLong;
+        }
+        return parseNumber().longValue();
+    }
+
+    /**
+     * Reads the name of the next object member into bytes.
+     *
+     * @throws IOException on read errors
+     */
+    private void readName() throws IOException {
+        int scope = scopes[depth];
+        if (scope == NONEMPTY_OBJECT) {
+            expect(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw syntaxError("Unexpected name");
+        }
+        expect('"');
+        readStringBytes(null, null);
+        expect(':');
+        scopes[depth] = DANGLING_NAME;
+    }
+
+    /**
+     * Reads the next value as a string.
+     *
+     * @return the string
+     * @throws IOException on read errors
+     */
+    String nextString() throws IOException {
+        beforeValue();
+        expect('"');
+        return readString();
+    }
+
+    /**
+     * Reads the next value, a string, and writes it UTF-8 encoded
+     * to the given stream while it arrives. At most about
+     * BUFFER_SIZE bytes of it are held in memory at a time.
+     *
+     * @param out the stream
+     * @throws IOException on read or write errors
+     */
+    void nextString(final OutputStream out) throws IOException {
+        beforeValue();
+        expect('"');
+        readStringBytes(out, null);
+    }
+
+    /**
+     * Reads the next value, a string, and writes it to the given
+     * writer while it arrives. At most about BUFFER_SIZE bytes of
+     * it are held in memory at a time.
+     *
+     * @param out the writer
+     * @throws IOException on read or write errors
+     */
+    void nextString(final Writer out) throws IOException {
+        beforeValue();
+        expect('"');
+        readStringBytes(null, out);
+    }
+
+    /**
+     * Consumes the next value if it is null.
+     *
+     * @return true if the value was null
+     * @throws IOException on read errors
+     */
+    boolean consumeNull() throws IOException {
+        int scope = scopes[depth];
+        if ((scope == NONEMPTY_ARRAY ? peekAfterComma()
+                : peekNonWhitespace()) != 'n') {
+            return false;
+        }
+        beforeValue();
+        literal("null");
+        return true;
+    }
+
+    /**
+     * Reads the next value, including any nested objects and
+     * arrays.
+     *
+     * @return the value
+     * @throws IOException on read errors
+     */
+    Object readValue() throws IOException {
+        beforeValue();
+        return decodeValue();
+    }
+
+    /**
+     * Reads the next value, after the scope has been updated for
+     * it.
+     *
+     * @return the value
+     * @throws IOException on read errors
+     */
+    private Object decodeValue() throws IOException {
+        int c = peekNonWhitespace();
+        switch (c) {
+        case '{':
+            pos++;
+            push(EMPTY_OBJECT);
+            JSONObject object = new JSONObject();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> members = object;
+            while (hasNext()) {
+                String name = nextName();
+                members.put(name, readValue());
+            }
+            endObject();
+            return object;
+        case '[':
+            pos++;
+            push(EMPTY_ARRAY);
+            JSONArray array = new JSONArray();
+            @SuppressWarnings("unchecked")
+            List<Object> elements = array;
+            while (hasNext()) {
+                elements.add(readValue());
+            }
+            endArray();
+            return array;
+        case '"':
+            pos++;
+            return readString();
+        case 't':
+            literal("true");
+            return Boolean.TRUE;
+        case 'f':
+            literal("false");
+            return Boolean.FALSE;
+        case 'n':
+            literal("null");
+            return null;
+        default:
+            return readNumber();
+        }
+    }
+
+    /**
+     * Skips the next value, including any nested objects and
+     * arrays, without building it.
+     *
+     * @throws IOException on read errors
+     */
+    void skipValue() throws IOException {
+        beforeValue();
+        int c = peekNonWhitespace();
+        switch (c) {
+        case '{':
+            pos++;
+            push(EMPTY_OBJECT);
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+            break;
+        case '[':
+            pos++;
+            push(EMPTY_ARRAY);
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+            break;
+        case '"':
+            pos++;
+            readStringBytes(null, null);
+            break;
+        default:
+            decodeValue();
+            break;
+        }
+    }
+
+    /**
+     * Consumes the rest of the input, which may only be
+     * whitespace.
+     *
+     * @throws IOException on read errors
+     */
+    void endDocument() throws IOException {
+        if (peekNonWhitespace() != -1) {
+            throw syntaxError("Unexpected data after the document");
+        }
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been
+     * consumed.
+     *
+     * @return the string
+     * @throws IOException on read errors
+     */
+    private String readString() throws IOException {
+        readStringBytes(null, null);
+        return new String(bytes, 0, byteCount,
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the rest of a string whose opening quote has been
+     * consumed into bytes, resolving escape sequences. Other bytes
+     * are copied as they are, in runs: the UTF-8 encoding of a
+     * non-ASCII character never contains a quote or a backslash,
+     * and malformed sequences are left for the decoder to replace.
+     * <br />
+     * With a sink, bytes is emptied into it whenever it holds a
+     * buffer's worth, and at the end of the string.
+     *
+     * @param byteSink where to write the bytes, or null
+     * @param charSink where to write the decoded characters, or
+     *                 null
+     * @throws IOException on read or write errors
+     */
+    private void readStringBytes(final OutputStream byteSink,
+            final Writer charSink) throws IOException {
+        boolean sink = byteSink != null || charSink != null;
+        byteCount = 0;
+        pendingHighSurrogate = 0;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"'
+                    && buffer[pos] != '\\') {
+                pos++;
+            }
+            if (pos > start) {
+                flushHighSurrogate();
+                appendBytes(buffer, start, pos - start);
+            }
+            boolean end = pos < limit && buffer[pos] == '"';
+            if (end) {
+                pos++;
+                flushHighSurrogate();
+            } else if (pos < limit) {
+                pos++;
+                appendEscape(readEscape());
+            }
+            if (sink && (end || byteCount >= BUFFER_SIZE)) {
+                if (byteSink != null) {
+                    byteSink.write(bytes, 0, byteCount);
+                    byteCount = 0;
+                } else {
+                    decode(charSink, end);
+                }
+            }
+            if (end) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decodes bytes to the writer. An incomplete UTF-8 sequence at
+     * the end is kept for the next call, unless this is the end
+     * of the string.
+     *
+     * @param out         the writer
+     * @param endOfString whether no more bytes will follow
+     * @throws IOException on write errors
+     */
+    private void decode(final Writer out, final boolean endOfString)
+            throws IOException {
+        if (decoder == null) {
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoded = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, byteCount);
+        CoderResult result;
+        do {
+            result = decoder.decode(in, decoded, endOfString);
+            if (endOfString && result.isUnderflow()) {
+                result = decoder.flush(decoded);
+            }
+            out.write(decoded.array(), 0, decoded.position());
+            decoded.clear();
+        } while (result.isOverflow());
+        byteCount = in.remaining();
+        System.arraycopy(bytes, in.position(), bytes, 0, byteCount);
+        if (endOfString) {
+            decoder.reset();
+        }
+    }
+
+    /**
+     * Reads the character of an escape sequence whose backslash
+     * has been consumed.
+     *
+     * @return the character
+     * @throws IOException on read errors
+     */
+    private char readEscape() throws IOException {
+        int c = nextByte();
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char) c;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < HEX_ESCAPE_LENGTH; i++) {
+                int digit = Character.digit(nextByte(), HEX_RADIX);
+                if (digit < 0) {
+                    throw syntaxError("Invalid unicode escape");
+                }
+                value = value * HEX_RADIX + digit;
+            }
+            return (char) value;
+        default:
+            throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    /**
+     * Appends an escaped character, pairing surrogates escaped as
+     * two unicode escapes. A lone surrogate becomes U+FFFD.
+     *
+     * @param c the character
+     */
+    private void appendEscape(final char c) {
+        if (Character.isLowSurrogate(c) && pendingHighSurrogate != 0) {
+            appendCodePoint(Character.toCodePoint(pendingHighSurrogate,
+                    c));
+            pendingHighSurrogate = 0;
+            return;
+        }
+        flushHighSurrogate();
+        if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            appendCodePoint(REPLACEMENT_CHAR);
+        } else {
+            appendCodePoint(c);
+        }
+    }
+
+    /**
+     * Appends U+FFFD for a high surrogate that wasn't followed by
+     * a low surrogate.
+     */
+    private void flushHighSurrogate() {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            appendCodePoint(REPLACEMENT_CHAR);
+        }
+    }
+
+    /**
+     * Appends the UTF-8 encoding of a code point to bytes.
+     *
+     * @param codePoint the code point
+     */
+    private void appendCodePoint(final int codePoint) {
+        ensureCapacity(HEX_ESCAPE_LENGTH);
+        if (codePoint < ASCII_LIMIT) {
+            bytes[byteCount++] = (byte) codePoint;
+        } else if (codePoint < TWO_BYTE_LIMIT) {
+            bytes[byteCount++] = (byte) (LEAD_2
+                    | codePoint >> PAYLOAD_BITS);
+            bytes[byteCount++] = continuation(codePoint);
+        } else if (codePoint < THREE_BYTE_LIMIT) {
+            bytes[byteCount++] = (byte) (LEAD_3
+                    | codePoint >> (2 * PAYLOAD_BITS));
+            bytes[byteCount++] = continuation(
+                    codePoint >> PAYLOAD_BITS);
+            bytes[byteCount++] = continuation(codePoint);
+        } else {
+            bytes[byteCount++] = (byte) (LEAD_4
+                    | codePoint >> (3 * PAYLOAD_BITS));
+            bytes[byteCount++] = continuation(
+                    codePoint >> (2 * PAYLOAD_BITS));
+            bytes[byteCount++] = continuation(
+                    codePoint >> PAYLOAD_BITS);
+            bytes[byteCount++] = continuation(codePoint);
+        }
+    }
+
+    /**
+     * Returns the continuation byte for the low 6 bits of a value.
+     *
+     * @param bits the value
+     * @return the byte
+     */
+    private static byte continuation(final int bits) {
+        return (byte) (CONTINUATION | bits & PAYLOAD_MASK);
+    }
+
+    /**
+     * Reads a number: a Long if it is an integer that fits,
+     * otherwise a Double.
+     *
+     * @return the number
+     * @throws IOException on read errors
+     */
+    private Object readNumber() throws IOException {
+        if (scanNumber()) {
+            return Long.valueOf(scannedLong);
+        }
+        return parseNumber();
+    }
+
+    /**
+     * Copies the next number into bytes, and computes its value
+     * if it is a plain integer of at most MAX_LONG_DIGITS digits.
+     *
+     * @return true if the value is in scannedLong
+     * @throws IOException on read errors
+     */
+    private boolean scanNumber() throws IOException {
+        byteCount = 0;
+        boolean integer = true;
+        long value = 0L;
+        int digits = 0;
+        int c;
+        while ((c = peekByte()) != -1) {
+            if (c >= '0' && c <= '9') {
+                value = value * DECIMAL_RADIX + (c - '0');
+                digits++;
+            } else if (c == '.' || c == 'e' || c == 'E'
+                    || c == '+') {
+                integer = false;
+            } else if (c != '-') {
+                break;
+            }
+            ensureCapacity(1);
+            bytes[byteCount++] = (byte) c;
+            pos++;
+        }
+        if (byteCount == 0) {
+            throw syntaxError(c == -1 ? "Unexpected end of input"
+                    : "Unexpected character");
+        }
+        boolean negative = bytes[0] == '-';
+        if (integer && digits > 0 && digits <= MAX_LONG_DIGITS
+                && byteCount == digits + (negative ? 1 : 0)) {
+            scannedLong = negative ? -value : value;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses the number in bytes: a Long if it is an integer that
+     * fits, otherwise a Double.
+     *
+     * @return the number
+     */
+    private Number parseNumber() {
+        String number = new String(bytes, 0, byteCount,
+                StandardCharsets.US_ASCII);
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0
+                    && number.indexOf('E') < 0) {
+                try {
+                    return Long.valueOf(number);
+                } catch (NumberFormatException e) {
+                    return Double.valueOf(number);
+                }
+            }
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + number);
+        }
+    }
+
+    /**
+     * Consumes the given literal.
+     *
+     * @param literal the literal
+     * @throws IOException on read errors
+     */
+    private void literal(final String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (nextByte() != literal.charAt(i)) {
+                throw syntaxError("Unexpected character");
+            }
+        }
+    }
+
+    /**
+     * Updates the current scope for a value about to be read,
+     * consuming the comma before it if there is one.
+     *
+     * @throws IOException on read errors
+     */
+    private void beforeValue() throws IOException {
+        switch (scopes[depth]) {
+        case EMPTY_DOCUMENT:
+            scopes[depth] = NONEMPTY_DOCUMENT;
+            break;
+        case EMPTY_ARRAY:
+            scopes[depth] = NONEMPTY_ARRAY;
+            break;
+        case NONEMPTY_ARRAY:
+            expect(',');
+            break;
+        case DANGLING_NAME:
+            scopes[depth] = NONEMPTY_OBJECT;
+            break;
+        case NONEMPTY_DOCUMENT:
+            throw syntaxError("Unexpected data after the document");
+        default:
+            throw syntaxError("Expected a name");
+        }
+    }
+
+    /**
+     * Opens a nested scope.
+     *
+     * @param scope the scope
+     */
+    private void push(final int scope) {
+        if (++depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, scopes.length * 2);
+        }
+        scopes[depth] = scope;
+    }
+
+    /**
+     * Consumes the given character, after any whitespace.
+     *
+     * @param expected the character
+     * @throws IOException on read errors
+     */
+    private void expect(final char expected) throws IOException {
+        int c = peekNonWhitespace();
+        if (c != expected) {
+            throw syntaxError(c == -1 ? "Unexpected end of input"
+                    : "Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * Appends a run of bytes to bytes.
+     *
+     * @param source the source
+     * @param start  the start of the run in source
+     * @param length the length of the run
+     */
+    private void appendBytes(final byte[] source, final int start,
+            final int length) {
+        ensureCapacity(length);
+        System.arraycopy(source, start, bytes, byteCount, length);
+        byteCount += length;
+    }
+
+    /**
+     * Makes room in bytes for the given number of bytes.
+     *
+     * @param needed the number of bytes to add
+     */
+    private void ensureCapacity(final int needed) {
+        if (byteCount + needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes,
+                    Math.max(bytes.length * 2, byteCount + needed));
+        }
+    }
+
+    /**
+     * Skips whitespace, a comma and more whitespace, and returns
+     * the next byte without consuming it.
+     *
+     * @return the byte, or -1 at the end of the input
+     * @throws IOException on read errors
+     */
+    private int peekAfterComma() throws IOException {
+        if (peekNonWhitespace() != ',') {
+            throw syntaxError("Expected ','");
+        }
+        pos++;
+        scopes[depth] = EMPTY_ARRAY;
+        return peekNonWhitespace();
+    }
+
+    /**
+     * Skips whitespace and returns the next byte without
+     * consuming it.
+     *
+     * @return the byte, or -1 at the end of the input
+     * @throws IOException on read errors
+     */
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            int c = peekByte();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Returns the next byte without consuming it.
+     *
+     * @return the byte, or -1 at the end of the input
+     * @throws IOException on read errors
+     */
+    private int peekByte() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos] & BYTE_MASK;
+    }
+
+    /**
+     * Consumes the next byte.
+     *
+     * @return the byte
+     * @throws IOException on read errors, or at the end of the
+     *                     input
+     */
+    private int nextByte() throws IOException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return buffer[pos++] & BYTE_MASK;
+    }
+
+    /**
+     * Refills the buffer.
+     *
+     * @return false at the end of the input
+     * @throws IOException on read errors
+     */
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Creates the exception for malformed input.
+     *
+     * @param message what is wrong
+     * @return the exception
+     */
+    private EPLiteException syntaxError(final String message) {
+        return new EPLiteException("Unable to parse JSON response ("
+                + message + " at byte " + (offset + pos) + ")");
+    }
+}
@@ -0,0 +1,35 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * A {@link JsonCodec} that uses the json-simple parser, the parser
+ * this client has always used for String responses. Each call
+ * creates a new parser.
+ */
+public final class JsonSimpleCodec implements JsonCodec {
+
+    /**
+     * Decodes a JSON document with json-simple.
+     *
+     * @param body the document, UTF-8 encoded
+     * @return the decoded value
+     * @throws IOException on read errors
+     */
+    public Object decode(final InputStream body) throws IOException {
+        Reader in = new InputStreamReader(body, StandardCharsets.UTF_8);
+        try {
+            return new JSONParser().parse(in);
+        } catch (ParseException e) {
+            throw new EPLiteException(
+                    "Unable to parse JSON response (" + e + ")", e);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the ids Etherpad maps to application ids, for
+ * {@link EPLiteClient#createGroupIfNotExistsFor(String)} and
+ * {@link EPLiteClient#createAuthorIfNotExistsFor(String, String)}.
+ * <br />
+ * <br />
+ * The same mapper always gets the same id, so after the first call
+ * the id comes from memory. Concurrent lookups of a mapper that is
+ * not cached yet share a single call. An author lookup with another
+ * name than the cached one still calls, as the call also renames
+ * the author. When the cache holds its maximum number of mappers an
+ * arbitrary one makes room.<br />
+ * <br />
+ * Given a file, the cache loads it when created and
+ * {@link #save()} writes the mappers back, so a restarted node
+ * starts warm. The client forgets a group when it deletes it.
+ */
+public final class MapperCache {
+
+    /** The Constant GROUP, the key prefix of group mappers. */
+    private static final String GROUP = "g";
+
+    /** The Constant AUTHOR, the key prefix of author mappers. */
+    private static final String AUTHOR = "a";
+
+    /** The Constant HEADER, the first line of a saved cache. */
+    private static final String HEADER = "# etherpad mapper cache 1";
+
+    /** The entries by kind and mapper. */
+    private final ConcurrentMap<String, Entry> entries =
+            new ConcurrentHashMap<>();
+
+    /** The most mappers kept. */
+    private final int maximumSize;
+
+    /** The file the cache is saved to, or null. */
+    private final File file;
+
+    /** Incremented by every invalidation. */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** The number of hits. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** The number of calls made. */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Instantiates a new cache kept in memory only.
+     *
+     * @param nMaximumSize the most mappers kept
+     */
+    public MapperCache(final int nMaximumSize) {
+        this(nMaximumSize, null);
+    }
+
+    /**
+     * Instantiates a new cache saved to a file, and loads the file
+     * if it exists.
+     *
+     * @param nMaximumSize the most mappers kept
+     * @param nFile        the file, or null to keep the cache in
+     *                     memory only
+     * @throws EPLiteException if the file can't be read
+     */
+    public MapperCache(final int nMaximumSize, final File nFile) {
+        if (nMaximumSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum size must be positive");
+        }
+        this.maximumSize = nMaximumSize;
+        this.file = nFile;
+        if (nFile != null && nFile.exists()) {
+            this.load();
+        }
+    }
+
+    /**
+     * Returns the group id of a group mapper, calling the loader if
+     * it isn't cached.
+     *
+     * @param groupMapper the group mapper
+     * @param loader      makes the call
+     * @return the group id
+     */
+    String getGroupId(final String groupMapper, final Loader loader) {
+        return this.get(GROUP + groupMapper, null, loader);
+    }
+
+    /**
+     * Returns the author id of an author mapper, calling the loader
+     * if it isn't cached with this name.
+     *
+     * @param authorMapper the author mapper
+     * @param name         the author's name, or null
+     * @param loader       makes the call
+     * @return the author id
+     */
+    String getAuthorId(final String authorMapper, final String name,
+            final Loader loader) {
+        return this.get(AUTHOR + authorMapper, name, loader);
+    }
+
+    /**
+     * Returns a cached id, or loads it. Only one caller loads a key
+     * at a time, the others wait for its result.
+     *
+     * @param key    the kind and mapper
+     * @param name   the author's name, or null
+     * @param loader makes the call
+     * @return the id
+     */
+    private String get(final String key, final String name,
+            final Loader loader) {
+        while (true) {
+            Entry entry = this.entries.get(key);
+            if (entry == null) {
+                Entry created = new Entry(name);
+                if (this.entries.putIfAbsent(key, created) == null) {
+                    return this.load(key, created, loader);
+                }
+                continue;
+            }
+            entry.await();
+            if (entry.failure != null) {
+                throw new EPLiteException(entry.failure.getMessage(),
+                        entry.failure);
+            }
+            if (name == null || name.equals(entry.name)) {
+                this.hitCount.incrementAndGet();
+                return entry.id;
+            }
+            Entry renamed = new Entry(name);
+            if (this.entries.replace(key, entry, renamed)) {
+                return this.load(key, renamed, loader);
+            }
+        }
+    }
+
+    /**
+     * Loads an id into an entry, and wakes up the callers waiting
+     * for it.
+     *
+     * @param key    the kind and mapper
+     * @param entry  the entry, already in the map
+     * @param loader makes the call
+     * @return the id
+     */
+    private String load(final String key, final Entry entry,
+            final Loader loader) {
+        long since = this.epoch.get();
+        this.loadCount.incrementAndGet();
+        try {
+            entry.id = loader.load();
+        } catch (RuntimeException e) {
+            entry.failure = e;
+            this.entries.remove(key, entry);
+            throw e;
+        } finally {
+            entry.done.countDown();
+        }
+        if (entry.id == null || since != this.epoch.get()) {
+            // Maybe stale, serve it to the waiting callers only
+            this.entries.remove(key, entry);
+        } else {
+            this.evict(key);
+        }
+        return entry.id;
+    }
+
+    /**
+     * Drops arbitrary mappers while there are too many.
+     *
+     * @param keep the key not to drop
+     */
+    private void evict(final String keep) {
+        Iterator<Map.Entry<String, Entry>> iterator =
+                this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maximumSize
+                && iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (!next.getKey().equals(keep)
+                    && next.getValue().done.getCount() == 0) {
+                this.entries.remove(next.getKey(), next.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forgets the mappers of a group.
+     *
+     * @param groupID the group's id string
+     */
+    public void invalidateGroup(final String groupID) {
+        this.epoch.incrementAndGet();
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            if (entry.getKey().startsWith(GROUP)
+                    && groupID.equals(entry.getValue().id)) {
+                this.entries.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forgets all mappers.
+     */
+    public void invalidateAll() {
+        this.epoch.incrementAndGet();
+        this.entries.clear();
+    }
+
+    /**
+     * Writes the cached mappers to the file. The file is replaced
+     * at once, so a crash leaves the old or the new one. Does
+     * nothing without a file.
+     *
+     * @throws EPLiteException if the file can't be written
+     */
+    public void save() {
+        if (this.file == null) {
+            return;
+        }
+        File temporary = new File(this.file.getPath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(
+                            new FileOutputStream(temporary),
+                            StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Map.Entry<String, Entry> entry
+                        : this.entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    if (value.done.getCount() != 0 || value.id == null
+                            || value.failure != null) {
+                        continue;
+                    }
+                    writer.write(escape(entry.getKey()));
+                    writer.write('\t');
+                    writer.write(escape(value.id));
+                    if (value.name != null) {
+                        writer.write('\t');
+                        writer.write(escape(value.name));
+                    }
+                    writer.write('\n');
+                }
+            }
+            Files.move(temporary.toPath(), this.file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new EPLiteException(
+                    "Unable to save the mapper cache to " + this.file,
+                    e);
+        }
+    }
+
+    /**
+     * Reads the file.
+     */
+    private void load() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(this.file),
+                        StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new EPLiteException(
+                        this.file + " is not a mapper cache");
+            }
+            String line;
+            while ((line = reader.readLine()) != null
+                    && this.entries.size() < this.maximumSize) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 2) {
+                    continue;
+                }
+                Entry entry = new Entry(fields.length > 2
+                        ? unescape(fields[2]) : null);
+                entry.id = unescape(fields[1]);
+                entry.done.countDown();
+                this.entries.put(unescape(fields[0]), entry);
+            }
+        } catch (IOException e) {
+            throw new EPLiteException(
+                    "Unable to load the mapper cache from " + this.file,
+                    e);
+        }
+    }
+
+    /**
+     * Escapes tabs, newlines and backslashes.
+     *
+     * @param value the value
+     * @return the escaped value
+     */
+    static String escape(final String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                result.append("\\\\");
+                break;
+            case '\t':
+                result.append("\\t");
+                break;
+            case '\n':
+                result.append("\\n");
+                break;
+            case '\r':
+                result.append("\\r");
+                break;
+            default:
+                result.append(c);
+                break;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reverses {@link #escape(String)}.
+     *
+     * @param value the escaped value
+     * @return the value
+     */
+    static String unescape(final String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = value.charAt(++i);
+                if (c == 't') {
+                    c = '\t';
+                } else if (c == 'n') {
+                    c = '\n';
+                } else if (c == 'r') {
+                    c = '\r';
+                }
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the number of cached mappers.
+     *
+     * @return the number of mappers
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the most mappers kept.
+     *
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the file the cache is saved to.
+     *
+     * @return the file, or null
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache, including
+     * those that waited for another caller's call.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets the number of calls made.
+     *
+     * @return the load count
+     */
+    public long getLoadCount() {
+        return this.loadCount.get();
+    }
+
+    /**
+     * Returns the size and lookup counts.
+     *
+     * @return a description of the cache
+     */
+    @Override
+    public String toString() {
+        return "MapperCache[size=" + this.size() + ", hits="
+                + this.getHitCount() + ", loads="
+                + this.getLoadCount() + "]";
+    }
+
+    /**
+     * Makes the call that maps a mapper to an id.
+     */
+    interface Loader {
+
+        /**
+         * Makes the call.
+         *
+         * @return the id
+         */
+        String load();
+    }
+
+    /**
+     * A mapper's id, or the call that will provide it.
+     */
+    private static final class Entry {
+
+        /** Counted down when the call is done. */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /** The author's name, or null. */
+        private final String name;
+
+        /** The id, once the call is done. */
+        private volatile String id;
+
+        /** What the call threw, or null. */
+        private volatile RuntimeException failure;
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param nName the author's name, or null
+         */
+        Entry(final String nName) {
+            this.name = nName;
+        }
+
+        /**
+         * Waits for the call to be done.
+         */
+        void await() {
+            try {
+                this.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException(
+                        "Interrupted while waiting for a mapper", e);
+            }
+        }
+    }
+}
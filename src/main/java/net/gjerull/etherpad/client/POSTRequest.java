@@ -9,8 +9,9 @@ import etm.core.monitor.EtmMonitor;
 import etm.core.monitor.EtmPoint;
 
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 
 /**
  * A class for easily executing an HTTP POST request.<br />
@@ -22,13 +23,16 @@ import java.io.OutputStreamWriter;
  * String resp = req.send();<br />
  * </code>
  */
-public class POSTRequest implements Request {
+public class POSTRequest implements StreamingRequest {
 
     /** The url. */
     private final URL url;
 
     /** The body. */
-    private final String body;
+    private final byte[] body;
+
+    /** The TLS configuration, null for the JVM defaults. */
+    private final TlsConfig tlsConfig;
 
     /** The Constant ETM_MONITOR. */
     private static final EtmMonitor ETM_MONITOR = EtmManager
@@ -43,8 +47,36 @@ public class POSTRequest implements Request {
      *              body
      */
     public POSTRequest(final URL nUrl, final String nBody) {
+        this(nUrl, nBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Instantiates a new POSTRequest.
+     *
+     * @param nUrl  the URL object
+     * @param nBody url-encoded
+     *              (application/x-www-form-urlencoded) request
+     *              body, already encoded as bytes
+     */
+    public POSTRequest(final URL nUrl, final byte[] nBody) {
+        this(nUrl, nBody, null);
+    }
+
+    /**
+     * Instantiates a new POSTRequest.
+     *
+     * @param nUrl       the URL object
+     * @param nBody      url-encoded
+     *                   (application/x-www-form-urlencoded)
+     *                   request body, already encoded as bytes
+     * @param nTlsConfig the TLS configuration for HTTPS urls, or
+     *                   null for the JVM defaults
+     */
+    public POSTRequest(final URL nUrl, final byte[] nBody,
+            final TlsConfig nTlsConfig) {
         this.url = nUrl;
         this.body = nBody;
+        this.tlsConfig = nTlsConfig;
     }
 
     /**
@@ -59,17 +91,8 @@ public class POSTRequest implements Request {
                 "Monitor point in POSTRequest.send");
 
         try {
-            URLConnection con = this.url.openConnection();
-            con.setDoOutput(true);
-
-            OutputStreamWriter out = new OutputStreamWriter(
-                    con.getOutputStream(),
-                    StandardCharsets.UTF_8);
-            out.write(this.body);
-            out.close();
-
             BufferedReader in = new BufferedReader(
-                    new InputStreamReader(con.getInputStream(),
+                    new InputStreamReader(openStream(),
                             StandardCharsets.UTF_8));
             StringBuilder response = new StringBuilder();
             String buffer;
@@ -82,4 +105,40 @@ public class POSTRequest implements Request {
             point.collect();
         }
     }
+
+    /**
+     * Sends the request and returns the response body.
+     *
+     * @return the response body
+     * @throws Exception the exception
+     */
+    public final InputStream open() throws Exception {
+        EtmPoint point = ETM_MONITOR.createPoint(
+                "Monitor point in POSTRequest.open");
+        try {
+            return openStream();
+        } finally {
+            point.collect();
+        }
+    }
+
+    /**
+     * Writes the body and opens the response stream.
+     *
+     * @return the input stream
+     * @throws Exception the exception
+     */
+    private InputStream openStream() throws Exception {
+        URLConnection con = this.url.openConnection();
+        if (this.tlsConfig != null) {
+            this.tlsConfig.configure(con);
+        }
+        con.setDoOutput(true);
+
+        OutputStream out = con.getOutputStream();
+        out.write(this.body);
+        out.close();
+
+        return con.getInputStream();
+    }
 }
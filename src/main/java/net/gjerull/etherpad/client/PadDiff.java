@@ -0,0 +1,566 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The differences between two revisions of a pad, worked out on the
+ * client from the changesets in between, as a lighter alternative
+ * to {@link EPLiteClient#createDiffHTML(String, long, long)}.<br />
+ * <br />
+ * The diff starts as the text of the first revision and each
+ * changeset is applied to it. Removed text that was there at the
+ * start stays in the diff, marked as removed, and text inserted
+ * after the start is marked as added, with the attributes of its
+ * insert. Text inserted and removed again in between leaves no
+ * trace. {@link #toHTML(Map)} renders the diff with the markup of
+ * createDiffHTML: a style block with a rule for removed text and
+ * each author, then the text, where a <code>&lt;br&gt;</code> ends
+ * each line and spans with the class <code>removed</code> or the
+ * author class mark the changes.
+ */
+public final class PadDiff {
+
+    /** The Constant AUTHOR_KEY. */
+    private static final String AUTHOR_KEY = "author";
+
+    /** The Constant REMOVED_KEY, the attribute of removed text. */
+    private static final String REMOVED_KEY = "removed";
+
+    /** The Constant REMOVED_STYLE, the rule for removed text. */
+    private static final String REMOVED_STYLE = ".removed "
+            + "{text-decoration: line-through; -ms-filter:"
+            + "'progid:DXImageTransform.Microsoft.Alpha(Opacity=80)'; "
+            + "filter: alpha(opacity=80); opacity: 0.8; }\n";
+
+    /** The Constant NO_COLOR, the color of unknown authors. */
+    private static final String NO_COLOR = "transparent";
+
+    /** The segments of the diff, in text order. */
+    private List<Segment> segments = new ArrayList<>();
+
+    /** The attribute pool of the pad, or null. */
+    private final AttributePool pool;
+
+    /** The length of the text at the last revision applied. */
+    private int length;
+
+    /** The authors of the changesets applied. */
+    private final Set<String> authors = new LinkedHashSet<>();
+
+    /**
+     * Instantiates a new diff from a revision.
+     *
+     * @param startText the text of the first revision
+     * @param nPool     the attribute pool of the pad, to find the
+     *                  authors of changes; or null
+     */
+    public PadDiff(final String startText, final AttributePool nPool) {
+        this.pool = nPool;
+        this.length = startText.length();
+        if (!startText.isEmpty()) {
+            this.segments.add(new Segment(Type.UNCHANGED, startText,
+                    null));
+        }
+    }
+
+    /**
+     * Applies the changeset of the next revision.
+     *
+     * @param changeset the changeset
+     * @throws EPLiteException if the changeset doesn't apply to the
+     *                         text of the last revision applied
+     */
+    public void apply(final Changeset changeset) {
+        if (changeset.getOldLength() != this.length) {
+            throw new EPLiteException(String.format(
+                    "Changeset applies to a text of length %d, not %d",
+                    changeset.getOldLength(), this.length));
+        }
+        Walk walk = new Walk(this.segments);
+        String charBank = changeset.getCharBank();
+        int bank = 0;
+        for (int i = 0; i < changeset.getOperationCount(); i++) {
+            this.addAuthors(changeset, i);
+            int n = changeset.getChars(i);
+            switch (changeset.getOpcode(i)) {
+            case Changeset.KEEP:
+                walk.keep(n, this.attributes(changeset, i));
+                break;
+            case Changeset.REMOVE:
+                walk.remove(n);
+                break;
+            default:
+                walk.flushRemoved();
+                walk.add(new Segment(Type.ADDED,
+                        charBank.substring(bank, bank + n),
+                        this.attributes(changeset, i)));
+                bank += n;
+                break;
+            }
+        }
+        this.segments = walk.finish();
+        this.length = changeset.getNewLength();
+    }
+
+    /**
+     * Remembers the authors in the attributes of an operation.
+     *
+     * @param changeset the changeset
+     * @param op        the index of the operation
+     */
+    private void addAuthors(final Changeset changeset, final int op) {
+        if (this.pool == null) {
+            return;
+        }
+        for (int number : changeset.getAttributeNumbers(op)) {
+            String author = this.pool.getValue(number);
+            if (AUTHOR_KEY.equals(this.pool.getKey(number))
+                    && !author.isEmpty()) {
+                this.authors.add(author);
+            }
+        }
+    }
+
+    /**
+     * Returns the attributes of an operation as a string.
+     *
+     * @param changeset the changeset
+     * @param op        the index of the operation
+     * @return the attributes, like "*0*3", or null
+     */
+    private String attributes(final Changeset changeset, final int op) {
+        int[] numbers = changeset.getAttributeNumbers(op);
+        if (numbers.length == 0) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int number : numbers) {
+            result.append('*').append(number);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the segments of the diff, in text order.
+     *
+     * @return the segments
+     */
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(this.segments);
+    }
+
+    /**
+     * Returns the text of the last revision applied.
+     *
+     * @return the text
+     */
+    public String getText() {
+        StringBuilder result = new StringBuilder(this.length);
+        for (Segment segment : this.segments) {
+            if (segment.type != Type.REMOVED) {
+                result.append(segment.text);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns whether the two revisions have the same text.
+     *
+     * @return true if nothing was added or removed
+     */
+    public boolean isEmpty() {
+        for (Segment segment : this.segments) {
+            if (segment.type != Type.UNCHANGED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the authors of the changesets applied, in order of
+     * appearance, including those who only removed text. Needs the
+     * attribute pool.
+     *
+     * @return the author ids
+     */
+    public List<String> getAuthors() {
+        return new ArrayList<>(this.authors);
+    }
+
+    /**
+     * Gets the author of a segment, from the attribute pool.
+     *
+     * @param segment the segment
+     * @return the author id, or null if it is not known
+     */
+    public String getAuthor(final Segment segment) {
+        if (this.pool == null || segment.attributes == null) {
+            return null;
+        }
+        String author = null;
+        for (String number : segment.attributes.substring(1)
+                .split("\\*")) {
+            int n = Integer.parseInt(number);
+            if (AUTHOR_KEY.equals(this.pool.getKey(n))) {
+                author = this.pool.getValue(n);
+            }
+        }
+        return author == null || author.isEmpty() ? null : author;
+    }
+
+    /**
+     * Renders the diff as HTML, like {@link #toHTML(Map)} without
+     * author colors.
+     *
+     * @return the HTML
+     */
+    public String toHTML() {
+        return this.toHTML(Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Renders the diff as HTML, the way createDiffHTML renders a
+     * pad. The style block has a rule for each author of the
+     * attribute pool, in pool order, and one for removed text.
+     *
+     * @param authorColors the CSS colors of the authors by author
+     *                     id; authors without a color get none
+     * @return the HTML
+     */
+    public String toHTML(final Map<String, String> authorColors) {
+        StringBuilder html = new StringBuilder(this.length * 2);
+        this.appendStyle(html, authorColors);
+        for (Segment segment : this.segments) {
+            String cssClass = null;
+            if (segment.type == Type.REMOVED) {
+                cssClass = "removed";
+            } else if (segment.type == Type.ADDED) {
+                String author = this.getAuthor(segment);
+                if (author != null) {
+                    cssClass = "author" + author.replace('.', '_');
+                }
+            }
+            if (cssClass != null) {
+                html.append("<span class=\"").append(cssClass)
+                        .append("\">");
+            }
+            appendEscaped(html, segment.text);
+            if (cssClass != null) {
+                html.append("</span>");
+            }
+        }
+        return html.toString();
+    }
+
+    /**
+     * Appends the style block of createDiffHTML.
+     *
+     * @param html         the HTML
+     * @param authorColors the CSS colors of the authors by author id
+     */
+    private void appendStyle(final StringBuilder html,
+            final Map<String, String> authorColors) {
+        html.append("<style>\n");
+        boolean removedStyle = false;
+        for (int n = 0; this.pool != null
+                && n < this.pool.getNextNumber(); n++) {
+            String key = this.pool.getKey(n);
+            String value = this.pool.getValue(n);
+            if (AUTHOR_KEY.equals(key) && !value.isEmpty()) {
+                String color = authorColors.get(value);
+                html.append(".author").append(value.replace('.', '_'))
+                        .append(" {background-color: ")
+                        .append(color == null ? NO_COLOR : color)
+                        .append("}\n");
+            } else if (REMOVED_KEY.equals(key)) {
+                html.append(REMOVED_STYLE);
+                removedStyle = true;
+            }
+        }
+        if (!removedStyle) {
+            // The server adds the attribute to the pool for the diff
+            html.append(REMOVED_STYLE);
+        }
+        html.append("</style>");
+    }
+
+    /**
+     * Appends text as HTML, with a line break for each newline.
+     *
+     * @param html the HTML
+     * @param text the text
+     */
+    private static void appendEscaped(final StringBuilder html,
+            final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&':
+                html.append("&amp;");
+                break;
+            case '<':
+                html.append("&lt;");
+                break;
+            case '>':
+                html.append("&gt;");
+                break;
+            case '"':
+                html.append("&quot;");
+                break;
+            case '\'':
+                html.append("&#39;");
+                break;
+            case '\n':
+                html.append("<br>");
+                break;
+            default:
+                html.append(c);
+                break;
+            }
+        }
+    }
+
+    /**
+     * The kinds of diff segments.
+     */
+    public enum Type {
+
+        /** Text of the first revision that is still there. */
+        UNCHANGED,
+
+        /** Text inserted since the first revision. */
+        ADDED,
+
+        /** Text of the first revision that was removed. */
+        REMOVED
+    }
+
+    /**
+     * A piece of the diff, text of one type and attributes.
+     */
+    public static final class Segment {
+
+        /** The type. */
+        private final Type type;
+
+        /** The text. */
+        private final String text;
+
+        /** The attributes, like "*0*3", or null. */
+        private final String attributes;
+
+        /**
+         * Instantiates a new segment.
+         *
+         * @param nType       the type
+         * @param nText       the text
+         * @param nAttributes the attributes, or null
+         */
+        Segment(final Type nType, final String nText,
+                final String nAttributes) {
+            this.type = nType;
+            this.text = nText;
+            this.attributes = nAttributes;
+        }
+
+        /**
+         * Gets the type.
+         *
+         * @return the type
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Gets the text.
+         *
+         * @return the text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the type and text.
+         *
+         * @return a description of the segment
+         */
+        @Override
+        public String toString() {
+            return this.type + "[" + this.text + "]";
+        }
+    }
+
+    /**
+     * A walk over the segments, applying one changeset.
+     */
+    private static final class Walk {
+
+        /** The segments before the changeset. */
+        private final List<Segment> in;
+
+        /** The segments after the changeset. */
+        private final List<Segment> out = new ArrayList<>();
+
+        /** The index of the current segment. */
+        private int index;
+
+        /** The offset within the current segment. */
+        private int offset;
+
+        /** The last segment, not passed on yet, or null. */
+        private Segment last;
+
+        /** The text of the last segment and those joined to it. */
+        private StringBuilder joined;
+
+        /**
+         * Instantiates a new walk.
+         *
+         * @param nIn the segments before the changeset
+         */
+        Walk(final List<Segment> nIn) {
+            this.in = nIn;
+        }
+
+        /**
+         * Passes over kept text.
+         *
+         * @param chars      the number of characters
+         * @param attributes the attributes of the operation, or null
+         */
+        void keep(final int chars, final String attributes) {
+            int n = chars;
+            while (n > 0) {
+                Segment part = this.take(n);
+                n -= part.text.length();
+                if (part.type == Type.ADDED && attributes != null) {
+                    // Formatting applied to added text
+                    part = new Segment(part.type, part.text,
+                            part.attributes == null ? attributes
+                                    : part.attributes + attributes);
+                }
+                this.add(part);
+            }
+        }
+
+        /**
+         * Removes text: text of the first revision is kept as
+         * removed, added text is dropped.
+         *
+         * @param chars the number of characters
+         */
+        void remove(final int chars) {
+            int n = chars;
+            while (n > 0) {
+                Segment part = this.take(n);
+                n -= part.text.length();
+                if (part.type == Type.UNCHANGED) {
+                    this.add(new Segment(Type.REMOVED, part.text,
+                            part.attributes));
+                }
+            }
+        }
+
+        /**
+         * Moves past removed segments at the cursor, so inserts
+         * follow the text they replace.
+         */
+        void flushRemoved() {
+            while (this.offset == 0 && this.index < this.in.size()
+                    && this.in.get(this.index).type == Type.REMOVED) {
+                this.add(this.in.get(this.index++));
+            }
+        }
+
+        /**
+         * Takes up to n characters of the current text, passing
+         * removed segments on as they are.
+         *
+         * @param n the most characters to take
+         * @return a segment of live text
+         */
+        private Segment take(final int n) {
+            this.flushRemoved();
+            Segment segment = this.in.get(this.index);
+            int end = Math.min(segment.text.length(), this.offset + n);
+            Segment part = segment;
+            if (this.offset > 0 || end < segment.text.length()) {
+                part = new Segment(segment.type,
+                        segment.text.substring(this.offset, end),
+                        segment.attributes);
+            }
+            if (end == segment.text.length()) {
+                this.index++;
+                this.offset = 0;
+            } else {
+                this.offset = end;
+            }
+            return part;
+        }
+
+        /**
+         * Appends a segment, joining it to the last one if they are
+         * alike. The text of joined segments is gathered until a
+         * different segment follows.
+         *
+         * @param segment the segment
+         */
+        void add(final Segment segment) {
+            if (this.last != null && this.last.type == segment.type
+                    && (this.last.attributes == null
+                            ? segment.attributes == null
+                            : this.last.attributes
+                                    .equals(segment.attributes))) {
+                if (this.joined == null) {
+                    this.joined = new StringBuilder(this.last.text);
+                }
+                this.joined.append(segment.text);
+                return;
+            }
+            this.flushLast();
+            this.last = segment;
+        }
+
+        /**
+         * Passes on the last segment, with the text joined to it.
+         */
+        private void flushLast() {
+            if (this.last != null) {
+                this.out.add(this.joined == null ? this.last
+                        : new Segment(this.last.type,
+                                this.joined.toString(),
+                                this.last.attributes));
+                this.last = null;
+                this.joined = null;
+            }
+        }
+
+        /**
+         * Passes on the rest of the segments.
+         *
+         * @return the segments after the changeset
+         */
+        List<Segment> finish() {
+            if (this.offset > 0) {
+                Segment segment = this.in.get(this.index++);
+                this.add(new Segment(segment.type,
+                        segment.text.substring(this.offset),
+                        segment.attributes));
+            }
+            while (this.index < this.in.size()) {
+                this.add(this.in.get(this.index++));
+            }
+            this.flushLast();
+            return this.out;
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pad's text and attributes in memory, built for applying
+ * changesets.<br />
+ * <br />
+ * The text is kept as a rope of chunks of at most a few thousand
+ * characters, each with its attributes as runs. A changeset is
+ * applied with one walk from the start: kept text is skipped a
+ * chunk at a time, and inserts and removes only shift the
+ * characters of the chunk they fall in. Applying a small changeset
+ * to a large pad therefore costs a step per chunk skipped plus the
+ * size of the edits, where a String would be copied whole.<br />
+ * <br />
+ * The plain text and the attribution string are built lazily, when
+ * they are asked for. Not thread-safe.
+ */
+public final class PadDocument {
+
+    /** The Constant MAX_CHUNK, the most characters in a chunk. */
+    private static final int MAX_CHUNK = 4096;
+
+    /** The Constant FILL_CHUNK, the size of new chunks. */
+    private static final int FILL_CHUNK = MAX_CHUNK / 2;
+
+    /** The Constant SMALL_CHUNK, merged with its neighbour. */
+    private static final int SMALL_CHUNK = MAX_CHUNK / 4;
+
+    /** The Constant RADIX of attribution numbers. */
+    private static final int RADIX = 36;
+
+    /** The Constant NO_ATTRIBUTES, attribute set 0. */
+    private static final int[] NO_ATTRIBUTES = new int[0];
+
+    /** The chunks. */
+    private final ArrayList<Chunk> chunks = new ArrayList<>();
+
+    /** The attribute sets, sorted pool numbers by set id. */
+    private final List<int[]> attributeSets = new ArrayList<>();
+
+    /** The set ids, by attribution string such as "*0*3". */
+    private final Map<String, Integer> attributeSetIds =
+            new HashMap<>();
+
+    /** The set an attribute change turns a set into. */
+    private final Map<Long, Integer> formatted = new HashMap<>();
+
+    /** The length of the text. */
+    private int length;
+
+    /** The text, or null until it is asked for again. */
+    private String text;
+
+    /** The chunk of the changeset cursor. */
+    private int cursorChunk;
+
+    /** The offset of the changeset cursor within its chunk. */
+    private int cursorOffset;
+
+    /**
+     * Instantiates a new empty document.
+     */
+    public PadDocument() {
+        this("");
+    }
+
+    /**
+     * Instantiates a new document holding a text without
+     * attributes.
+     *
+     * @param nText the text
+     */
+    public PadDocument(final String nText) {
+        this.attributeSets.add(NO_ATTRIBUTES);
+        this.attributeSetIds.put("", 0);
+        for (int from = 0; from < nText.length(); from += FILL_CHUNK) {
+            int n = Math.min(FILL_CHUNK, nText.length() - from);
+            Chunk chunk = new Chunk();
+            chunk.insert(0, nText, from, n, 0);
+            this.chunks.add(chunk);
+        }
+        this.length = nText.length();
+    }
+
+    /**
+     * Applies a changeset. Inserted text gets the attributes of its
+     * operation. Attribute changes of kept text are skipped, as
+     * they can only be applied with the pool.
+     *
+     * @param changeset the changeset
+     * @throws EPLiteException if the changeset doesn't apply to a
+     *                         text of this length
+     */
+    public void apply(final Changeset changeset) {
+        this.apply(changeset, null);
+    }
+
+    /**
+     * Applies a changeset, with attribute changes of kept text
+     * looked up in the pad's attribute pool. The document is left
+     * unchanged if the changeset doesn't fit.
+     *
+     * @param changeset the changeset
+     * @param pool      the attribute pool of the pad, or null
+     * @throws EPLiteException if the changeset doesn't apply to a
+     *                         text of this length, or refers to
+     *                         attributes the pool lacks
+     */
+    public void apply(final Changeset changeset,
+            final AttributePool pool) {
+        if (changeset.getOldLength() != this.length) {
+            throw new EPLiteException(String.format(
+                    "Changeset applies to a text of length %d, not %d",
+                    changeset.getOldLength(), this.length));
+        }
+        int count = changeset.getOperationCount();
+        if (pool != null) {
+            for (int i = 0; i < count; i++) {
+                for (int number : changeset.getAttributeNumbers(i)) {
+                    if (!pool.contains(number)) {
+                        throw new EPLiteException("Attribute " + number
+                                + " is not in the pool");
+                    }
+                }
+            }
+        }
+        this.text = null;
+        this.cursorChunk = 0;
+        this.cursorOffset = 0;
+        String charBank = changeset.getCharBank();
+        int bank = 0;
+        for (int i = 0; i < count; i++) {
+            int n = changeset.getChars(i);
+            switch (changeset.getOpcode(i)) {
+            case Changeset.KEEP:
+                int[] numbers = changeset.getAttributeNumbers(i);
+                if (pool == null || numbers.length == 0) {
+                    this.skip(n);
+                } else {
+                    this.format(n, this.intern(numbers), pool);
+                }
+                break;
+            case Changeset.REMOVE:
+                this.remove(n);
+                break;
+            default:
+                this.insert(charBank, bank, n,
+                        this.intern(changeset.getAttributeNumbers(i)));
+                bank += n;
+                break;
+            }
+        }
+        this.length = changeset.getNewLength();
+    }
+
+    /**
+     * Moves the cursor over kept text.
+     *
+     * @param chars the number of characters
+     */
+    private void skip(final int chars) {
+        int n = chars;
+        while (n > 0) {
+            int room = this.chunks.get(this.cursorChunk).length
+                    - this.cursorOffset;
+            if (n < room) {
+                this.cursorOffset += n;
+                return;
+            }
+            n -= room;
+            this.cursorChunk++;
+            this.cursorOffset = 0;
+        }
+    }
+
+    /**
+     * Removes text at the cursor.
+     *
+     * @param chars the number of characters
+     */
+    private void remove(final int chars) {
+        int n = chars;
+        while (n > 0) {
+            Chunk chunk = this.chunks.get(this.cursorChunk);
+            if (this.cursorOffset == chunk.length) {
+                this.cursorChunk++;
+                this.cursorOffset = 0;
+                continue;
+            }
+            int take = Math.min(n, chunk.length - this.cursorOffset);
+            chunk.delete(this.cursorOffset, take);
+            n -= take;
+            if (chunk.length == 0) {
+                this.chunks.remove(this.cursorChunk);
+                this.cursorOffset = 0;
+            }
+        }
+        this.mergeSmallChunk();
+    }
+
+    /**
+     * Merges the chunk at the cursor with the next one, if both fit
+     * in a chunk and the cursor's chunk has become small.
+     */
+    private void mergeSmallChunk() {
+        int next = this.cursorChunk + 1;
+        if (next >= this.chunks.size()) {
+            return;
+        }
+        Chunk chunk = this.chunks.get(this.cursorChunk);
+        Chunk following = this.chunks.get(next);
+        if (chunk.length < SMALL_CHUNK
+                && chunk.length + following.length <= MAX_CHUNK) {
+            chunk.append(following);
+            this.chunks.remove(next);
+        }
+    }
+
+    /**
+     * Inserts text at the cursor, and moves the cursor after it.
+     *
+     * @param source the characters
+     * @param from   the index of the first character
+     * @param chars  the number of characters
+     * @param set    the attribute set
+     */
+    private void insert(final String source, final int from,
+            final int chars, final int set) {
+        if (this.chunks.isEmpty()) {
+            this.chunks.add(new Chunk());
+        }
+        if (this.cursorChunk == this.chunks.size()) {
+            this.cursorChunk--;
+            this.cursorOffset = this.chunks.get(this.cursorChunk).length;
+        }
+        Chunk chunk = this.chunks.get(this.cursorChunk);
+        if (chunk.length + chars <= MAX_CHUNK) {
+            chunk.insert(this.cursorOffset, source, from, chars, set);
+            this.cursorOffset += chars;
+            return;
+        }
+        Chunk tail = chunk.split(this.cursorOffset);
+        int index = this.cursorChunk + 1;
+        if (chunk.length == 0) {
+            this.chunks.remove(this.cursorChunk);
+            index--;
+        }
+        List<Chunk> added = new ArrayList<>();
+        for (int i = 0; i < chars; i += FILL_CHUNK) {
+            Chunk filled = new Chunk();
+            filled.insert(0, source, from + i,
+                    Math.min(FILL_CHUNK, chars - i), set);
+            added.add(filled);
+        }
+        this.cursorChunk = index + added.size() - 1;
+        this.cursorOffset = added.get(added.size() - 1).length;
+        if (tail.length > 0) {
+            added.add(tail);
+        }
+        this.chunks.addAll(index, added);
+    }
+
+    /**
+     * Changes the attributes of kept text at the cursor, and moves
+     * the cursor after it.
+     *
+     * @param chars the number of characters
+     * @param set   the attribute set of the operation
+     * @param pool  the attribute pool
+     */
+    private void format(final int chars, final int set,
+            final AttributePool pool) {
+        int n = chars;
+        while (n > 0) {
+            Chunk chunk = this.chunks.get(this.cursorChunk);
+            if (this.cursorOffset == chunk.length) {
+                this.cursorChunk++;
+                this.cursorOffset = 0;
+                continue;
+            }
+            int take = Math.min(n, chunk.length - this.cursorOffset);
+            int first = chunk.splitRunsAt(this.cursorOffset);
+            int end = chunk.splitRunsAt(this.cursorOffset + take);
+            for (int r = first; r < end; r++) {
+                chunk.runSets[r] = this.merge(chunk.runSets[r], set,
+                        pool);
+            }
+            chunk.normalize();
+            this.cursorOffset += take;
+            n -= take;
+        }
+    }
+
+    /**
+     * Returns the attribute set that results from applying the
+     * attributes of an operation to a set: an attribute replaces
+     * the one with the same key, and an empty value removes it.
+     *
+     * @param set       the current attribute set
+     * @param operation the attribute set of the operation
+     * @param pool      the attribute pool
+     * @return the resulting attribute set
+     */
+    private int merge(final int set, final int operation,
+            final AttributePool pool) {
+        Long memo = ((long) set << Integer.SIZE) | operation;
+        Integer known = this.formatted.get(memo);
+        if (known != null) {
+            return known;
+        }
+        int[] current = this.attributeSets.get(set);
+        int[] result = Arrays.copyOf(current, current.length
+                + this.attributeSets.get(operation).length);
+        int size = current.length;
+        for (int number : this.attributeSets.get(operation)) {
+            String key = pool.getKey(number);
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!key.equals(pool.getKey(result[i]))) {
+                    result[kept++] = result[i];
+                }
+            }
+            size = kept;
+            if (!pool.getValue(number).isEmpty()) {
+                result[size++] = number;
+            }
+        }
+        int merged = this.intern(Arrays.copyOf(result, size));
+        this.formatted.put(memo, merged);
+        return merged;
+    }
+
+    /**
+     * Returns the id of an attribute set.
+     *
+     * @param numbers the pool numbers of the attributes
+     * @return the set id
+     */
+    private int intern(final int[] numbers) {
+        if (numbers.length == 0) {
+            return 0;
+        }
+        int[] sorted = numbers.clone();
+        Arrays.sort(sorted);
+        String key = attribution(sorted);
+        Integer id = this.attributeSetIds.get(key);
+        if (id == null) {
+            id = this.attributeSets.size();
+            this.attributeSets.add(sorted);
+            this.attributeSetIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Formats attribute numbers the way changesets do.
+     *
+     * @param numbers the pool numbers
+     * @return the attribution, such as "*0*3"
+     */
+    private static String attribution(final int[] numbers) {
+        StringBuilder result = new StringBuilder();
+        for (int number : numbers) {
+            result.append('*').append(Integer.toString(number, RADIX));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the length of the text.
+     *
+     * @return the length
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns a character of the text.
+     *
+     * @param index the index of the character
+     * @return the character
+     */
+    public char charAt(final int index) {
+        if (this.text != null) {
+            return this.text.charAt(index);
+        }
+        int[] position = this.locate(index);
+        return this.chunks.get(position[0]).chars[position[1]];
+    }
+
+    /**
+     * Gets the pool numbers of the attributes of a character.
+     *
+     * @param index the index of the character
+     * @return the attribute numbers, maybe empty
+     */
+    public int[] getAttributeNumbers(final int index) {
+        int[] position = this.locate(index);
+        Chunk chunk = this.chunks.get(position[0]);
+        int start = 0;
+        for (int r = 0; r < chunk.runs; r++) {
+            start += chunk.runLengths[r];
+            if (position[1] < start) {
+                return this.attributeSets.get(chunk.runSets[r]).clone();
+            }
+        }
+        throw new IllegalStateException("Runs don't cover the chunk");
+    }
+
+    /**
+     * Gets the attributes of a character, looked up in the pad's
+     * attribute pool.
+     *
+     * @param index the index of the character
+     * @param pool  the attribute pool of the pad
+     * @return the attributes by key
+     */
+    public Map<String, String> getAttributes(final int index,
+            final AttributePool pool) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int number : this.getAttributeNumbers(index)) {
+            result.put(pool.getKey(number), pool.getValue(number));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the chunk of a character.
+     *
+     * @param index the index of the character
+     * @return the chunk and the offset within it
+     */
+    private int[] locate(final int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " of " + this.length);
+        }
+        int offset = index;
+        int c = 0;
+        while (offset >= this.chunks.get(c).length) {
+            offset -= this.chunks.get(c).length;
+            c++;
+        }
+        return new int[] {c, offset };
+    }
+
+    /**
+     * Returns the attributes of the text in Etherpad's attribution
+     * format, the way a pad stores them next to its text: runs of
+     * equal attributes as insert operations, split after the last
+     * newline of each run, such as <code>*0|2+b*0+3</code>.
+     *
+     * @return the attribution string
+     */
+    public String getAttribution() {
+        StringBuilder result = new StringBuilder();
+        int runSet = -1;
+        int runStart = 0;
+        int runLines = 0;
+        int lastNewline = -1;
+        int pos = 0;
+        for (Chunk chunk : this.chunks) {
+            int offset = 0;
+            for (int r = 0; r < chunk.runs; r++) {
+                if (chunk.runSets[r] != runSet) {
+                    this.appendRun(result, runSet, runStart, pos,
+                            runLines, lastNewline);
+                    runSet = chunk.runSets[r];
+                    runStart = pos;
+                    runLines = 0;
+                }
+                int end = offset + chunk.runLengths[r];
+                for (int i = offset; i < end; i++) {
+                    if (chunk.chars[i] == '\n') {
+                        runLines++;
+                        lastNewline = pos + i - offset;
+                    }
+                }
+                pos += end - offset;
+                offset = end;
+            }
+        }
+        this.appendRun(result, runSet, runStart, pos, runLines,
+                lastNewline);
+        return result.toString();
+    }
+
+    /**
+     * Appends a run of equal attributes to an attribution string.
+     *
+     * @param result      the attribution string
+     * @param set         the attribute set, or -1 for no run
+     * @param start       the index of the first character
+     * @param end         the index after the last character
+     * @param lines       the number of newlines in the run
+     * @param lastNewline the index of the last newline seen
+     */
+    private void appendRun(final StringBuilder result, final int set,
+            final int start, final int end, final int lines,
+            final int lastNewline) {
+        if (set < 0 || end == start) {
+            return;
+        }
+        String attributes = attribution(this.attributeSets.get(set));
+        int rest = end - start;
+        if (lines > 0) {
+            int multiline = lastNewline + 1 - start;
+            result.append(attributes).append('|')
+                    .append(Integer.toString(lines, RADIX)).append('+')
+                    .append(Integer.toString(multiline, RADIX));
+            rest -= multiline;
+        }
+        if (rest > 0) {
+            result.append(attributes).append('+')
+                    .append(Integer.toString(rest, RADIX));
+        }
+    }
+
+    /**
+     * Returns the text. It is built on first use after a change.
+     *
+     * @return the text
+     */
+    @Override
+    public String toString() {
+        if (this.text == null) {
+            StringBuilder result = new StringBuilder(this.length);
+            for (Chunk chunk : this.chunks) {
+                result.append(chunk.chars, 0, chunk.length);
+            }
+            this.text = result.toString();
+        }
+        return this.text;
+    }
+
+    /**
+     * A piece of the text with its attribute runs.
+     */
+    private static final class Chunk {
+
+        /** The characters. */
+        private char[] chars = new char[MAX_CHUNK];
+
+        /** The number of characters. */
+        private int length;
+
+        /** The length of each run. */
+        private int[] runLengths = new int[2];
+
+        /** The attribute set of each run. */
+        private int[] runSets = new int[2];
+
+        /** The number of runs. */
+        private int runs;
+
+        /**
+         * Inserts characters with one attribute set.
+         *
+         * @param offset the offset to insert at
+         * @param source the characters
+         * @param from   the index of the first character
+         * @param n      the number of characters
+         * @param set    the attribute set
+         */
+        void insert(final int offset, final String source,
+                final int from, final int n, final int set) {
+            System.arraycopy(this.chars, offset, this.chars,
+                    offset + n, this.length - offset);
+            source.getChars(from, from + n, this.chars, offset);
+            this.length += n;
+            int r = this.splitRunsAt(offset);
+            this.insertRun(r, n, set);
+            this.normalize();
+        }
+
+        /**
+         * Deletes characters.
+         *
+         * @param offset the offset of the first character
+         * @param n      the number of characters
+         */
+        void delete(final int offset, final int n) {
+            int first = this.splitRunsAt(offset);
+            int end = this.splitRunsAt(offset + n);
+            System.arraycopy(this.runLengths, end, this.runLengths,
+                    first, this.runs - end);
+            System.arraycopy(this.runSets, end, this.runSets, first,
+                    this.runs - end);
+            this.runs -= end - first;
+            System.arraycopy(this.chars, offset + n, this.chars,
+                    offset, this.length - offset - n);
+            this.length -= n;
+            this.normalize();
+        }
+
+        /**
+         * Cuts the chunk in two.
+         *
+         * @param offset where to cut
+         * @return the chunk holding the characters from the offset
+         */
+        Chunk split(final int offset) {
+            int r = this.splitRunsAt(offset);
+            Chunk tail = new Chunk();
+            tail.length = this.length - offset;
+            System.arraycopy(this.chars, offset, tail.chars, 0,
+                    tail.length);
+            tail.runs = this.runs - r;
+            tail.runLengths = Arrays.copyOfRange(this.runLengths, r,
+                    Math.max(r + 2, this.runs));
+            tail.runSets = Arrays.copyOfRange(this.runSets, r,
+                    Math.max(r + 2, this.runs));
+            this.length = offset;
+            this.runs = r;
+            return tail;
+        }
+
+        /**
+         * Appends the characters and runs of another chunk, which
+         * must fit.
+         *
+         * @param other the other chunk
+         */
+        void append(final Chunk other) {
+            System.arraycopy(other.chars, 0, this.chars, this.length,
+                    other.length);
+            this.length += other.length;
+            for (int r = 0; r < other.runs; r++) {
+                this.insertRun(this.runs, other.runLengths[r],
+                        other.runSets[r]);
+            }
+            this.normalize();
+        }
+
+        /**
+         * Splits the run containing an offset, so that a run starts
+         * there.
+         *
+         * @param offset the offset
+         * @return the index of the run starting at the offset, or
+         *         the number of runs at the end
+         */
+        int splitRunsAt(final int offset) {
+            int start = 0;
+            for (int r = 0; r < this.runs; r++) {
+                if (start == offset) {
+                    return r;
+                }
+                int end = start + this.runLengths[r];
+                if (offset < end) {
+                    this.insertRun(r + 1, end - offset,
+                            this.runSets[r]);
+                    this.runLengths[r] = offset - start;
+                    return r + 1;
+                }
+                start = end;
+            }
+            return this.runs;
+        }
+
+        /**
+         * Inserts a run.
+         *
+         * @param r   the index of the run
+         * @param n   the length of the run
+         * @param set the attribute set of the run
+         */
+        private void insertRun(final int r, final int n, final int set) {
+            if (this.runs == this.runLengths.length) {
+                this.runLengths = Arrays.copyOf(this.runLengths,
+                        this.runs * 2);
+                this.runSets = Arrays.copyOf(this.runSets,
+                        this.runs * 2);
+            }
+            System.arraycopy(this.runLengths, r, this.runLengths, r + 1,
+                    this.runs - r);
+            System.arraycopy(this.runSets, r, this.runSets, r + 1,
+                    this.runs - r);
+            this.runLengths[r] = n;
+            this.runSets[r] = set;
+            this.runs++;
+        }
+
+        /**
+         * Drops empty runs and joins neighbouring runs of the same
+         * attribute set.
+         */
+        void normalize() {
+            int kept = 0;
+            for (int r = 0; r < this.runs; r++) {
+                if (this.runLengths[r] == 0) {
+                    continue;
+                }
+                if (kept > 0
+                        && this.runSets[kept - 1] == this.runSets[r]) {
+                    this.runLengths[kept - 1] += this.runLengths[r];
+                } else {
+                    this.runLengths[kept] = this.runLengths[r];
+                    this.runSets[kept] = this.runSets[r];
+                    kept++;
+                }
+            }
+            this.runs = kept;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs calls of an {@link EPLiteClient} in parallel while keeping
+ * the calls on each pad in order.<br />
+ * <br />
+ * Each pad id is hashed onto one of a fixed number of lanes. A lane
+ * runs its calls one at a time, in the order they were submitted,
+ * so writes to a pad never overtake each other, while the lanes run
+ * at the same time on a shared pool. A lane gives its thread back
+ * after a batch of calls, so a busy pad doesn't starve the others.
+ * <br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadExecutor pads = new PadExecutor(client, 16, 8);<br />
+ * pads.setText("pad1", "first");<br />
+ * pads.appendText("pad1", " then this");<br />
+ * pads.saveRevision("pad2");<br />
+ * pads.close();
+ * </code>
+ */
+public final class PadExecutor {
+
+    /** The Constant BATCH, the most calls a lane runs in a turn. */
+    private static final int BATCH = 32;
+
+    /** The Constant SHUTDOWN_TIMEOUT_SECONDS. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    /** The client doing the calls. */
+    private final EPLiteClient client;
+
+    /** The executor the lanes run on. */
+    private final Executor executor;
+
+    /** The executor to shut down on close, if we created it. */
+    private final ExecutorService ownedExecutor;
+
+    /** The lanes. */
+    private final Lane[] lanes;
+
+    /** Calls submitted but not yet completed. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * Instantiates a new pad executor with its own pool of daemon
+     * threads.
+     *
+     * @param nClient   the client doing the calls
+     * @param laneCount the number of lanes
+     * @param threads   the number of threads
+     */
+    public PadExecutor(final EPLiteClient nClient, final int laneCount,
+            final int threads) {
+        this(nClient, laneCount, Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory()), true);
+    }
+
+    /**
+     * Instantiates a new pad executor running its lanes on the given
+     * executor. The executor is not shut down by {@link #close()}.
+     *
+     * @param nClient   the client doing the calls
+     * @param laneCount the number of lanes
+     * @param nExecutor the executor
+     */
+    public PadExecutor(final EPLiteClient nClient, final int laneCount,
+            final Executor nExecutor) {
+        this(nClient, laneCount, nExecutor, false);
+    }
+
+    /**
+     * Instantiates a new pad executor.
+     *
+     * @param nClient   the client doing the calls
+     * @param laneCount the number of lanes
+     * @param nExecutor the executor
+     * @param owned     whether close() shuts the executor down
+     */
+    private PadExecutor(final EPLiteClient nClient, final int laneCount,
+            final Executor nExecutor, final boolean owned) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException(
+                    "laneCount must be at least 1");
+        }
+        this.client = nClient;
+        this.executor = nExecutor;
+        this.ownedExecutor = owned ? (ExecutorService) nExecutor
+                : null;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            this.lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Gets the client doing the calls.
+     *
+     * @return the client
+     */
+    public EPLiteClient getClient() {
+        return client;
+    }
+
+    /**
+     * Runs a call in the lane of a pad, after the calls submitted
+     * before for pads of the same lane.
+     *
+     * @param <T>   the type of the result
+     * @param padId the pad's id string
+     * @param call  the call
+     * @return a future of the result
+     */
+    public <T> EPLiteFuture<T> submit(final String padId,
+            final Callable<T> call) {
+        EPLiteFuture<T> future = new EPLiteFuture<>(call);
+        this.outstanding.incrementAndGet();
+        this.lanes[this.laneOf(padId)].add(future);
+        return future;
+    }
+
+    /**
+     * Ordered version of {@link EPLiteClient#setText(String,
+     * String)}.
+     *
+     * @param padId the pad's id string
+     * @param text  the pad's new text
+     * @return a future that completes when the call is done
+     */
+    public EPLiteFuture<Void> setText(final String padId,
+            final String text) {
+        return this.submit(padId, new Callable<Void>() {
+            public Void call() {
+                client.setText(padId, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Ordered version of
+     * {@link EPLiteClient#appendText(String, String)}.
+     *
+     * @param padId the pad's id string
+     * @param text  the text to append
+     * @return a future that completes when the call is done
+     */
+    public EPLiteFuture<Void> appendText(final String padId,
+            final String text) {
+        return this.submit(padId, new Callable<Void>() {
+            public Void call() {
+                client.appendText(padId, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Ordered version of {@link EPLiteClient#saveRevision(String)}.
+     *
+     * @param padId the pad's id string
+     * @return a future that completes when the call is done
+     */
+    public EPLiteFuture<Void> saveRevision(final String padId) {
+        return this.submit(padId, new Callable<Void>() {
+            public Void call() {
+                client.saveRevision(padId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Ordered version of {@link EPLiteClient#getText(String)}, which
+     * sees the writes submitted before it.
+     *
+     * @param padId the pad's id string
+     * @return a future of a Map with the text content of pad
+     */
+    public EPLiteFuture<Map> getText(final String padId) {
+        return this.submit(padId, new Callable<Map>() {
+            public Map call() {
+                return client.getText(padId);
+            }
+        });
+    }
+
+    /**
+     * Returns the lane of a pad.
+     *
+     * @param padId the pad's id string
+     * @return the index of the lane
+     */
+    public int laneOf(final String padId) {
+        int h = padId.hashCode();
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % this.lanes.length;
+    }
+
+    /**
+     * Gets the number of lanes.
+     *
+     * @return the lane count
+     */
+    public int getLaneCount() {
+        return this.lanes.length;
+    }
+
+    /**
+     * Gets the number of calls waiting or running in a lane.
+     *
+     * @param lane the index of the lane
+     * @return the queue depth
+     */
+    public int getQueueDepth(final int lane) {
+        return this.lanes[lane].depth.get();
+    }
+
+    /**
+     * Gets the number of calls waiting or running in each lane.
+     *
+     * @return the queue depths, by lane
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[this.lanes.length];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = this.lanes[i].depth.get();
+        }
+        return depths;
+    }
+
+    /**
+     * Gets the highest number of calls a lane has held at once.
+     *
+     * @param lane the index of the lane
+     * @return the peak queue depth
+     */
+    public int getPeakQueueDepth(final int lane) {
+        return this.lanes[lane].peak.get();
+    }
+
+    /**
+     * Waits for the submitted calls to complete, then shuts down the
+     * executor if it was created by this pad executor.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        synchronized (this.outstanding) {
+            while (this.outstanding.get() > 0) {
+                this.outstanding.wait();
+            }
+        }
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+            this.ownedExecutor.awaitTermination(
+                    SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Records that a call has completed, waking up close().
+     */
+    private void completed() {
+        if (this.outstanding.decrementAndGet() == 0) {
+            synchronized (this.outstanding) {
+                this.outstanding.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A serial queue of calls. At most one thread runs a lane.
+     */
+    private final class Lane implements Runnable {
+
+        /** The calls waiting. */
+        private final Queue<EPLiteFuture<?>> queue =
+                new ConcurrentLinkedQueue<>();
+
+        /** The number of calls waiting or running. */
+        private final AtomicInteger depth = new AtomicInteger();
+
+        /** The highest depth seen. */
+        private final AtomicInteger peak = new AtomicInteger();
+
+        /** Whether the lane is handed to the executor. */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Queues a call.
+         *
+         * @param future the call
+         */
+        void add(final EPLiteFuture<?> future) {
+            int now = this.depth.incrementAndGet();
+            int max = this.peak.get();
+            while (now > max && !this.peak.compareAndSet(max, now)) {
+                max = this.peak.get();
+            }
+            this.queue.offer(future);
+            this.schedule();
+        }
+
+        /**
+         * Hands the lane to the executor unless it already is. If
+         * the executor refuses, the waiting calls fail.
+         */
+        private void schedule() {
+            if (!this.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                EPLiteFuture<?> next;
+                while ((next = this.queue.poll()) != null) {
+                    next.fail(e);
+                    this.depth.decrementAndGet();
+                    completed();
+                }
+                this.scheduled.set(false);
+            }
+        }
+
+        /**
+         * Runs a batch of calls, in order.
+         */
+        public void run() {
+            for (int i = 0; i < BATCH; i++) {
+                EPLiteFuture<?> next = this.queue.poll();
+                if (next == null) {
+                    break;
+                }
+                try {
+                    next.run();
+                } finally {
+                    this.depth.decrementAndGet();
+                    completed();
+                }
+            }
+            this.scheduled.set(false);
+            if (!this.queue.isEmpty()) {
+                this.schedule();
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads, so an unclosed executor doesn't keep
+     * the JVM alive.
+     */
+    private static final class DaemonThreadFactory
+            implements ThreadFactory {
+
+        /** The thread counter. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Creates a new thread.
+         *
+         * @param runnable the runnable
+         * @return the thread
+         */
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    "eplite-pad-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Exports the text, and optionally the HTML, of all pads as
+ * newline-delimited JSON, one object per pad:<br />
+ * <br />
+ * <code>
+ * {"padID":"my_pad","text":"Hello\n","html":"..."}
+ * </code><br />
+ * <br />
+ * The pad list is streamed to a file next to the checkpoint, so
+ * the export holds only the pads being fetched, whatever the number
+ * of pads. The text and HTML of a pad are escaped as they are
+ * received, into a buffer that moves to a temporary file past
+ * {@value #SPILL_CHARS} characters, so large pads take no more
+ * memory than small ones. Pads are fetched on a few threads, no faster than the
+ * given rate, and written in the order of the list. Given a
+ * checkpoint file, the number of pads written is recorded every
+ * {@value #CHECKPOINT_INTERVAL} pads, and an export that is stopped
+ * resumes from there, appending to the same output; the last pads
+ * before the stop may then be written twice. A pad the server
+ * reports as missing, e.g. because it was deleted meanwhile, is
+ * counted and skipped; any other error, such as a lost connection,
+ * stops the export.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadExporter exporter = new PadExporter(client, 8, 100, false,
+ * <br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;new File("export.checkpoint"));<br />
+ * try (Writer out = new FileWriter("pads.ndjson", true)) {<br />
+ * &nbsp;&nbsp;exporter.export(out);<br />
+ * }
+ * </code>
+ */
+public final class PadExporter {
+
+    /** The Constant HEADER, the first line of a checkpoint. */
+    private static final String HEADER = "# etherpad export 1";
+
+    /** The Constant CHECKPOINT_INTERVAL, in pads. */
+    static final int CHECKPOINT_INTERVAL = 100;
+
+    /** The Constant WINDOW, the pads in flight per thread. */
+    private static final int WINDOW = 4;
+
+    /**
+     * The Constant SPILL_CHARS, the most characters of a pad's line
+     * held in memory.
+     */
+    static final int SPILL_CHARS = 64 * 1024;
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** The number of pads fetched at once. */
+    private final int parallelism;
+
+    /** Spaces out the calls. */
+    private final RateLimiter rateLimiter;
+
+    /** Whether the HTML is exported too. */
+    private final boolean includeHTML;
+
+    /** The checkpoint file, or null. */
+    private final File checkpoint;
+
+    /** The number of pads written. */
+    private final AtomicLong exportedCount = new AtomicLong();
+
+    /** The number of pads skipped. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Instantiates a new exporter.
+     *
+     * @param nClient         the client
+     * @param nParallelism    the number of pads fetched at once
+     * @param nCallsPerSecond the most calls per second, or 0 for no
+     *                        limit
+     * @param nIncludeHTML    whether the HTML is exported too
+     * @param nCheckpoint     the checkpoint file, or null to always
+     *                        export all pads
+     */
+    public PadExporter(final EPLiteClient nClient,
+            final int nParallelism, final double nCallsPerSecond,
+            final boolean nIncludeHTML, final File nCheckpoint) {
+        if (nParallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "The parallelism must be positive");
+        }
+        this.client = nClient;
+        this.parallelism = nParallelism;
+        this.rateLimiter = new RateLimiter(nCallsPerSecond);
+        this.includeHTML = nIncludeHTML;
+        this.checkpoint = nCheckpoint;
+    }
+
+    /**
+     * Exports all pads, resuming after the checkpoint if there is
+     * one. The writer is flushed but not closed.
+     *
+     * @param out the writer
+     * @return the number of pads written
+     * @throws EPLiteException if the export failed; it can be
+     *                         resumed from the checkpoint
+     */
+    public long export(final Writer out) {
+        File padList;
+        long done = 0;
+        try {
+            if (this.checkpoint == null) {
+                padList = File.createTempFile("etherpad-pads", ".txt");
+            } else {
+                padList = new File(this.checkpoint.getPath() + ".pads");
+                done = this.readCheckpoint();
+            }
+            if (done == 0 || !padList.exists()) {
+                done = 0;
+                this.listPads(padList);
+            }
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to list the pads", e);
+        }
+        long exported;
+        try {
+            exported = this.exportPads(padList, done, out);
+        } finally {
+            if (this.checkpoint == null) {
+                padList.delete();
+            }
+        }
+        padList.delete();
+        if (this.checkpoint != null) {
+            this.checkpoint.delete();
+        }
+        return exported;
+    }
+
+    /**
+     * Streams the pad list to a file.
+     *
+     * @param padList the file
+     * @throws IOException if the file can't be written
+     */
+    private void listPads(final File padList) throws IOException {
+        File temporary = new File(padList.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temporary),
+                StandardCharsets.UTF_8))) {
+            this.rateLimiter.acquire();
+            this.client.listAllPads(writer);
+        }
+        Files.move(temporary.toPath(), padList.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Fetches and writes the pads of the list.
+     *
+     * @param padList the pad list
+     * @param done    the number of pads already written
+     * @param out     the writer
+     * @return the number of pads written
+     */
+    private long exportPads(final File padList, final long done,
+            final Writer out) {
+        long exportedBefore = this.exportedCount.get();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(this.parallelism);
+        Output output = new Output(out, done,
+                this.parallelism * WINDOW);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(padList),
+                        StandardCharsets.UTF_8))) {
+            long index = 0;
+            String padId;
+            while ((padId = reader.readLine()) != null
+                    && output.failure.get() == null) {
+                if (index >= done) {
+                    output.window.acquire();
+                    executor.execute(this.fetch(padId, index, output));
+                }
+                index++;
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (IOException e) {
+            output.failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            output.failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        output.checkpoint();
+        Throwable failure = output.failure.get();
+        if (failure != null) {
+            throw new EPLiteException("Export stopped after "
+                    + output.next + " pads: " + failure.getMessage(),
+                    failure);
+        }
+        return this.exportedCount.get() - exportedBefore;
+    }
+
+    /**
+     * Returns a task fetching a pad and handing it to the output.
+     *
+     * @param padId  the pad's id string
+     * @param index  the index of the pad in the list
+     * @param output the output
+     * @return the task
+     */
+    private Runnable fetch(final String padId, final long index,
+            final Output output) {
+        return new Runnable() {
+            public void run() {
+                PadLine line = new PadLine();
+                try {
+                    toJson(padId, line);
+                } catch (RuntimeException e) {
+                    line.discard();
+                    line = null;
+                    if (EPLiteApiException.isInvalidParameters(e)) {
+                        failedCount.incrementAndGet();
+                    } else {
+                        output.failure.compareAndSet(null, e);
+                    }
+                } catch (IOException e) {
+                    line.discard();
+                    line = null;
+                    output.failure.compareAndSet(null, e);
+                }
+                output.put(index, line);
+            }
+        };
+    }
+
+    /**
+     * Fetches a pad into its line, streaming the text and HTML.
+     *
+     * @param padId the pad's id string
+     * @param line  the line, to hold the JSON object
+     * @throws IOException if the line can't be written
+     */
+    private void toJson(final String padId, final PadLine line)
+            throws IOException {
+        Writer escaped = new JsonStringWriter(line);
+        line.write("{\"padID\":\"");
+        line.write(JSONValue.escape(padId));
+        line.write("\",\"text\":\"");
+        this.rateLimiter.acquire();
+        this.client.getText(padId, escaped);
+        if (this.includeHTML) {
+            line.write("\",\"html\":\"");
+            this.rateLimiter.acquire();
+            this.client.getHTML(padId, escaped);
+        }
+        line.write("\"}\n");
+    }
+
+    /**
+     * Reads the number of pads written.
+     *
+     * @return the number, or 0 to start over
+     */
+    private long readCheckpoint() {
+        if (!this.checkpoint.exists()) {
+            return 0;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                        new FileInputStream(this.checkpoint),
+                        StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new EPLiteException(this.checkpoint
+                        + " is not an export checkpoint");
+            }
+            return Long.parseLong(reader.readLine());
+        } catch (IOException | NumberFormatException e) {
+            throw new EPLiteException("Unable to read the checkpoint "
+                    + this.checkpoint, e);
+        }
+    }
+
+    /**
+     * Gets the checkpoint file.
+     *
+     * @return the file, or null
+     */
+    public File getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Gets the number of pads written.
+     *
+     * @return the exported count
+     */
+    public long getExportedCount() {
+        return this.exportedCount.get();
+    }
+
+    /**
+     * Gets the number of pads skipped because the server reported
+     * them as missing.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * Returns the export counts.
+     *
+     * @return a description of the exporter
+     */
+    @Override
+    public String toString() {
+        return "PadExporter[exported=" + this.getExportedCount()
+                + ", failed=" + this.getFailedCount() + "]";
+    }
+
+    /**
+     * Writes the fetched pads in the order of the list.
+     */
+    private final class Output {
+
+        /** The writer. */
+        private final Writer out;
+
+        /** Bounds the pads fetched but not written yet. */
+        private final Semaphore window;
+
+        /** The pads fetched ahead of the next one, by index. */
+        private final Map<Long, PadLine> ready = new HashMap<>();
+
+        /** The index of the next pad to write, guarded by this. */
+        private long next;
+
+        /** The first failure. */
+        private final AtomicReference<Throwable> failure =
+                new AtomicReference<>();
+
+        /**
+         * Instantiates a new output.
+         *
+         * @param nOut    the writer
+         * @param nNext   the index of the next pad to write
+         * @param permits the most pads fetched but not written
+         */
+        Output(final Writer nOut, final long nNext, final int permits) {
+            this.out = nOut;
+            this.next = nNext;
+            this.window = new Semaphore(permits);
+        }
+
+        /**
+         * Hands over a fetched pad, and writes the pads that are
+         * next in order.
+         *
+         * @param index the index of the pad
+         * @param line  the line, or null if the pad is skipped
+         */
+        synchronized void put(final long index, final PadLine line) {
+            if (this.failure.get() != null) {
+                if (line != null) {
+                    line.discard();
+                }
+                this.discard();
+                this.window.release();
+                return;
+            }
+            this.ready.put(index, line);
+            while (this.ready.containsKey(this.next)) {
+                PadLine pad = this.ready.remove(this.next);
+                if (pad != null) {
+                    try {
+                        pad.writeTo(this.out);
+                    } catch (IOException e) {
+                        this.failure.compareAndSet(null, e);
+                        this.window.release(this.ready.size() + 1);
+                        this.discard();
+                        return;
+                    } finally {
+                        pad.discard();
+                    }
+                    exportedCount.incrementAndGet();
+                }
+                this.next++;
+                if (this.next % CHECKPOINT_INTERVAL == 0) {
+                    this.checkpoint();
+                }
+                this.window.release();
+            }
+        }
+
+        /**
+         * Drops the pads fetched ahead after a failure.
+         */
+        private void discard() {
+            for (PadLine pad : this.ready.values()) {
+                if (pad != null) {
+                    pad.discard();
+                }
+            }
+            this.ready.clear();
+        }
+
+        /**
+         * Flushes the writer and records the number of pads written.
+         * The file is replaced at once, so a crash leaves the old or
+         * the new one.
+         */
+        synchronized void checkpoint() {
+            try {
+                this.out.flush();
+                if (checkpoint == null) {
+                    return;
+                }
+                File temporary = new File(checkpoint.getPath() + ".tmp");
+                try (Writer writer = new OutputStreamWriter(
+                        new FileOutputStream(temporary),
+                        StandardCharsets.UTF_8)) {
+                    writer.write(HEADER);
+                    writer.write('\n');
+                    writer.write(Long.toString(this.next));
+                    writer.write('\n');
+                }
+                Files.move(temporary.toPath(), checkpoint.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                this.failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * The line of a pad, in memory up to {@value #SPILL_CHARS}
+     * characters and in a temporary file past that.
+     */
+    private static final class PadLine extends Writer {
+
+        /** The characters in memory. */
+        private final StringBuilder buffer = new StringBuilder();
+
+        /** The temporary file, or null. */
+        private File file;
+
+        /** The writer of the temporary file, or null once closed. */
+        private Writer fileWriter;
+
+        /**
+         * Writes characters to the memory or the file.
+         *
+         * @param chars the characters
+         * @param off   the offset of the first one
+         * @param len   the number of characters
+         * @throws IOException if the file can't be written
+         */
+        @Override
+        public void write(final char[] chars, final int off,
+                final int len) throws IOException {
+            if (this.file == null
+                    && this.buffer.length() + len > SPILL_CHARS) {
+                this.file = File.createTempFile("etherpad-pad", ".json");
+                this.fileWriter = new BufferedWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(this.file),
+                                StandardCharsets.UTF_8));
+                this.fileWriter.append(this.buffer);
+                this.buffer.setLength(0);
+                this.buffer.trimToSize();
+            }
+            if (this.file == null) {
+                this.buffer.append(chars, off, len);
+            } else {
+                this.fileWriter.write(chars, off, len);
+            }
+        }
+
+        /**
+         * Flushes the file.
+         *
+         * @throws IOException if the file can't be written
+         */
+        @Override
+        public void flush() throws IOException {
+            if (this.fileWriter != null) {
+                this.fileWriter.flush();
+            }
+        }
+
+        /**
+         * Closes the file, which is kept until discarded.
+         *
+         * @throws IOException if the file can't be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.fileWriter != null) {
+                this.fileWriter.close();
+                this.fileWriter = null;
+            }
+        }
+
+        /**
+         * Copies the line to a writer.
+         *
+         * @param out the writer
+         * @throws IOException if the line can't be read or written
+         */
+        void writeTo(final Writer out) throws IOException {
+            if (this.file == null) {
+                out.append(this.buffer);
+                return;
+            }
+            this.close();
+            char[] chunk = new char[8192];
+            try (Reader reader = new InputStreamReader(
+                    new FileInputStream(this.file),
+                    StandardCharsets.UTF_8)) {
+                int n;
+                while ((n = reader.read(chunk)) >= 0) {
+                    out.write(chunk, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Drops the line and its temporary file.
+         */
+        void discard() {
+            try {
+                this.close();
+            } catch (IOException e) {
+                // Deleted anyway
+            }
+            if (this.file != null) {
+                this.file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes characters escaped for a JSON string, the way
+     * {@link JSONValue#escape(String)} does.
+     */
+    private static final class JsonStringWriter extends Writer {
+
+        /** The writer of the escaped characters. */
+        private final Writer out;
+
+        /**
+         * Instantiates a new escaping writer.
+         *
+         * @param nOut the writer of the escaped characters
+         */
+        JsonStringWriter(final Writer nOut) {
+            this.out = nOut;
+        }
+
+        /**
+         * Writes characters escaped.
+         *
+         * @param chars the characters
+         * @param off   the offset of the first one
+         * @param len   the number of characters
+         * @throws IOException if they can't be written
+         */
+        @Override
+        public void write(final char[] chars, final int off,
+                final int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                String escape = escape(chars[i]);
+                if (escape != null) {
+                    this.out.write(chars, start, i - start);
+                    this.out.write(escape);
+                    start = i + 1;
+                }
+            }
+            this.out.write(chars, start, off + len - start);
+        }
+
+        /**
+         * Returns the escape of a character.
+         *
+         * @param c the character
+         * @return the escape, or null if it needs none
+         */
+        private static String escape(final char c) {
+            switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            case '/':
+                return "\\/";
+            default:
+                if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F')
+                        || (c >= '\u2000' && c <= '\u20FF')) {
+                    String hex = Integer.toHexString(c).toUpperCase();
+                    return "\\u" + "0000".substring(hex.length()) + hex;
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Flushes the writer of the escaped characters.
+         *
+         * @throws IOException if it can't be flushed
+         */
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        /**
+         * Flushes, leaving the writer of the escaped characters open.
+         *
+         * @throws IOException if it can't be flushed
+         */
+        @Override
+        public void close() throws IOException {
+            this.flush();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A local copy of a pad's text, kept up to date by applying the
+ * changesets of new revisions instead of downloading the whole text
+ * again.<br />
+ * <br />
+ * The first {@link #sync()} loads the text at the head revision.
+ * Every later sync asks for the revision count and fetches and
+ * applies only the changesets of the revisions since, so its cost
+ * follows the size of the edits, which are applied to a
+ * {@link PadDocument}. When the pad was deleted and recreated, its
+ * changesets no longer fit the text, and the text at the head
+ * revision is loaded again. With a {@link ChangesetCache} on
+ * the client, mirrors of the same pad share the fetched changesets.
+ * <br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadMirror mirror = new PadMirror(client, "my_pad");<br />
+ * mirror.sync();<br />
+ * String text = mirror.getText();
+ * </code>
+ */
+public final class PadMirror {
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** The pad's id string. */
+    private final String padId;
+
+    /** The text at the mirrored revision, or null before a sync. */
+    private PadDocument document;
+
+    /** The mirrored revision, or -1 before a sync. */
+    private long revision = -1L;
+
+    /** The attribute pool, or null until it is asked for. */
+    private AttributePool pool;
+
+    /**
+     * Instantiates a new mirror of a pad. Nothing is fetched until
+     * the first {@link #sync()}.
+     *
+     * @param nClient the client
+     * @param nPadId  the pad's id string
+     */
+    public PadMirror(final EPLiteClient nClient, final String nPadId) {
+        this.client = nClient;
+        this.padId = nPadId;
+    }
+
+    /**
+     * Brings the mirror to the head revision of the pad.
+     *
+     * @return the number of changesets applied, or 0 when the text
+     *         was loaded whole
+     */
+    public synchronized int sync() {
+        long head = this.client.getRevisionCount(this.padId)
+                .getCount();
+        if (this.document == null || head < this.revision) {
+            // Not loaded yet, or the pad was recreated
+            this.load(head);
+            return 0;
+        }
+        int applied = 0;
+        for (long rev = this.revision + 1; rev <= head; rev++) {
+            String encoded = this.client.getRevisionChangeset(
+                    this.padId, rev);
+            Changeset changeset;
+            try {
+                changeset = Changeset.parse(encoded);
+                this.document.apply(changeset);
+            } catch (EPLiteException e) {
+                // The pad was recreated and grew past the mirrored
+                // revision, so the changeset doesn't fit the text
+                this.load(head);
+                return 0;
+            }
+            this.revision = rev;
+            if (this.pool != null && changeset
+                    .getMaxAttributeNumber() >= this.pool
+                            .getNextNumber()) {
+                // A new attribute, fetch the pool again when asked
+                this.pool = null;
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Loads the whole text of a revision.
+     *
+     * @param rev the revision number
+     */
+    private void load(final long rev) {
+        PadText padText = this.client.getPadText(this.padId, rev);
+        this.document = new PadDocument(padText.getText());
+        this.revision = rev;
+        this.pool = null;
+    }
+
+    /**
+     * Gets the pad's id string.
+     *
+     * @return the pad id
+     */
+    public String getPadId() {
+        return padId;
+    }
+
+    /**
+     * Gets the mirrored revision.
+     *
+     * @return the revision number, or -1 before the first sync
+     */
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Gets the text at the mirrored revision.
+     *
+     * @return the text, or null before the first sync
+     */
+    public synchronized String getText() {
+        return this.document == null ? null
+                : this.document.toString();
+    }
+
+    /**
+     * Gets the length of the text at the mirrored revision.
+     *
+     * @return the length, or -1 before the first sync
+     */
+    public synchronized int getLength() {
+        return this.document == null ? -1 : this.document.length();
+    }
+
+    /**
+     * Gets the attribute pool of the pad, to look up the attributes
+     * of changesets. It is fetched on first use and again after a
+     * sync brought in attributes it lacks.
+     *
+     * @return the attribute pool
+     */
+    public synchronized AttributePool getAttributePool() {
+        if (this.pool == null) {
+            this.pool = AttributePool.fromMap(
+                    this.client.getAttributePool(this.padId));
+        }
+        return this.pool;
+    }
+
+    /**
+     * Returns the pad id and mirrored revision.
+     *
+     * @return a description of the mirror
+     */
+    @Override
+    public synchronized String toString() {
+        return "PadMirror[" + this.padId + "@" + this.revision + "]";
+    }
+}
@@ -0,0 +1,66 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+
+/**
+ * The text of a pad, as returned by
+ * {@link EPLiteClient#getPadText(String)}.
+ */
+public final class PadText {
+
+    /** The members read from the response. */
+    private static final String[] NAMES = {"text" };
+
+    /** Decodes a PadText from a getText response. */
+    static final DataBinder<PadText> BINDER =
+            new DataBinder<PadText>() {
+                public PadText bind(final JsonReader reader)
+                        throws IOException {
+                    if (reader.consumeNull()) {
+                        return null;
+                    }
+                    String text = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName(NAMES) == 0) {
+                            text = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    return new PadText(text);
+                }
+            };
+
+    /** The text. */
+    private final String text;
+
+    /**
+     * Instantiates a new pad text.
+     *
+     * @param nText the text
+     */
+    public PadText(final String nText) {
+        this.text = nText;
+    }
+
+    /**
+     * Gets the text.
+     *
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the text.
+     *
+     * @return the text
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
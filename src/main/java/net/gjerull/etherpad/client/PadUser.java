@@ -0,0 +1,83 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A user connected to a pad, one of the {@link PadUsers}.
+ */
+public final class PadUser {
+
+    /** The author id. */
+    private final String id;
+
+    /** The name, or null. */
+    private final String name;
+
+    /** The color, a CSS color or a palette index. */
+    private final String colorId;
+
+    /** When the user connected, in millis since the epoch. */
+    private final long timestamp;
+
+    /**
+     * Instantiates a new pad user.
+     *
+     * @param nId        the author id
+     * @param nName      the name, or null
+     * @param nColorId   the color, a CSS color or a palette index
+     * @param nTimestamp when the user connected, in millis since
+     *                   the epoch
+     */
+    public PadUser(final String nId, final String nName,
+            final String nColorId, final long nTimestamp) {
+        this.id = nId;
+        this.name = nName;
+        this.colorId = nColorId;
+        this.timestamp = nTimestamp;
+    }
+
+    /**
+     * Gets the author id.
+     *
+     * @return the author id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the name, or null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the color.
+     *
+     * @return the color, a CSS color or a palette index
+     */
+    public String getColorId() {
+        return colorId;
+    }
+
+    /**
+     * Gets when the user connected.
+     *
+     * @return the timestamp, in millis since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns a description of the user.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "PadUser{id=" + id + ", name=" + name + ", colorId="
+                + colorId + ", timestamp=" + timestamp + "}";
+    }
+}
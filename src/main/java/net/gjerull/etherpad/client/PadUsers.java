@@ -0,0 +1,138 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The users connected to a pad, as returned by
+ * {@link EPLiteClient#getPadUsers(String)}.
+ */
+public final class PadUsers {
+
+    /** The members of the data read from the response. */
+    private static final String[] NAMES = {"padUsers" };
+
+    /** The Constant ID. */
+    private static final int ID = 0;
+
+    /** The Constant NAME. */
+    private static final int NAME = 1;
+
+    /** The Constant COLOR_ID. */
+    private static final int COLOR_ID = 2;
+
+    /** The Constant TIMESTAMP. */
+    private static final int TIMESTAMP = 3;
+
+    /** The members of a user read from the response. */
+    private static final String[] USER_NAMES = {"id", "name",
+            "colorId", "timestamp" };
+
+    /** Decodes a PadUsers from a padUsers response. */
+    static final DataBinder<PadUsers> BINDER =
+            new DataBinder<PadUsers>() {
+                public PadUsers bind(final JsonReader reader)
+                        throws IOException {
+                    if (reader.consumeNull()) {
+                        return null;
+                    }
+                    List<PadUser> users = new ArrayList<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName(NAMES) != 0) {
+                            reader.skipValue();
+                        } else if (!reader.consumeNull()) {
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                users.add(readUser(reader));
+                            }
+                            reader.endArray();
+                        }
+                    }
+                    reader.endObject();
+                    return new PadUsers(users);
+                }
+            };
+
+    /** The users. */
+    private final List<PadUser> users;
+
+    /**
+     * Instantiates a new list of pad users.
+     *
+     * @param nUsers the users
+     */
+    public PadUsers(final List<PadUser> nUsers) {
+        this.users = Collections.unmodifiableList(nUsers);
+    }
+
+    /**
+     * Gets the users.
+     *
+     * @return the users
+     */
+    public List<PadUser> getUsers() {
+        return users;
+    }
+
+    /**
+     * Gets the number of users.
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Returns a description of the users.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return users.toString();
+    }
+
+    /**
+     * Reads one user.
+     *
+     * @param reader the reader
+     * @return the user
+     * @throws IOException on read errors
+     */
+    private static PadUser readUser(final JsonReader reader)
+            throws IOException {
+        String id = null;
+        String name = null;
+        String colorId = null;
+        long timestamp = 0L;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(USER_NAMES)) {
+            case ID:
+                id = reader.nextString();
+                break;
+            case NAME:
+                if (!reader.consumeNull()) {
+                    name = reader.nextString();
+                }
+                break;
+            case COLOR_ID:
+                Object color = reader.readValue();
+                colorId = color == null ? null : color.toString();
+                break;
+            case TIMESTAMP:
+                timestamp = reader.nextLong();
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        reader.endObject();
+        return new PadUser(id, name, colorId, timestamp);
+    }
+}
@@ -0,0 +1,120 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A keep-alive socket owned by a {@link HttpConnectionPool}.
+ */
+final class PooledConnection {
+
+    /** The Constant BUFFER_SIZE. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The pool key (scheme://host:port). */
+    private final String key;
+
+    /** The socket. */
+    private final Socket socket;
+
+    /** The buffered socket input. */
+    private final InputStream in;
+
+    /** The buffered socket output. */
+    private final OutputStream out;
+
+    /** Whether the connection has been handed out before. */
+    private boolean reused;
+
+    /** When the connection may no longer be reused (millis). */
+    private long expiresAt;
+
+    /**
+     * Instantiates a new pooled connection.
+     *
+     * @param nKey    the pool key
+     * @param nSocket a connected socket
+     * @throws IOException if the socket streams can't be opened
+     */
+    PooledConnection(final String nKey, final Socket nSocket)
+            throws IOException {
+        this.key = nKey;
+        this.socket = nSocket;
+        this.in = new BufferedInputStream(nSocket.getInputStream(),
+                BUFFER_SIZE);
+        this.out = new BufferedOutputStream(
+                nSocket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    /**
+     * Gets the pool key.
+     *
+     * @return the key
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the buffered socket input.
+     *
+     * @return the input stream
+     */
+    InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * Gets the buffered socket output.
+     *
+     * @return the output stream
+     */
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Whether this connection was taken from the idle list.
+     *
+     * @return true if reused
+     */
+    boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Marks the connection as idle until the given time.
+     *
+     * @param nExpiresAt the expiry time in millis
+     */
+    void markIdle(final long nExpiresAt) {
+        this.reused = true;
+        this.expiresAt = nExpiresAt;
+    }
+
+    /**
+     * Whether the connection can't be handed out again.
+     *
+     * @param now the current time in millis
+     * @return true if expired or closed
+     */
+    boolean isStale(final long now) {
+        return now >= expiresAt || socket.isClosed()
+                || socket.isInputShutdown();
+    }
+
+    /**
+     * Closes the socket, ignoring errors.
+     */
+    void closeQuietly() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing to do, the connection is gone either way
+        }
+    }
+}
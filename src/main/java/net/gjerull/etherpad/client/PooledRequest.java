@@ -0,0 +1,266 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Locale;
+
+import etm.core.configuration.EtmManager;
+import etm.core.monitor.EtmMonitor;
+import etm.core.monitor.EtmPoint;
+
+/**
+ * An HTTP/1.1 request sent over a connection borrowed from a
+ * {@link HttpConnectionPool}.
+ */
+final class PooledRequest implements StreamingRequest {
+
+    /** The Constant ETM_MONITOR. */
+    private static final EtmMonitor ETM_MONITOR = EtmManager
+            .getEtmMonitor();
+
+    /** The Constant HTTP_OK_MIN. */
+    private static final int HTTP_OK_MIN = 200;
+
+    /** The Constant HTTP_OK_MAX. */
+    private static final int HTTP_OK_MAX = 299;
+
+    /** The Constant HTTP_NO_CONTENT. */
+    private static final int HTTP_NO_CONTENT = 204;
+
+    /** The Constant HTTP_NOT_MODIFIED. */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** The Constant STATUS_CODE_START. */
+    private static final int STATUS_CODE_START = 9;
+
+    /** The Constant STATUS_CODE_END. */
+    private static final int STATUS_CODE_END = 12;
+
+    /**
+     * Keep-alive timeouts announced by the server are shortened
+     * by this much, so we stop using a connection before the
+     * server closes it.
+     */
+    private static final long KEEP_ALIVE_MARGIN_MILLIS = 1000L;
+
+    /** The Constant MILLIS_PER_SECOND. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /** The pool. */
+    private final HttpConnectionPool pool;
+
+    /** The method (GET or POST). */
+    private final String method;
+
+    /** The url. */
+    private final URL url;
+
+    /** The body, null for GET. */
+    private final byte[] body;
+
+    /**
+     * Instantiates a new pooled request.
+     *
+     * @param nPool   the pool
+     * @param nMethod GET or POST
+     * @param nUrl    the url
+     * @param nBody   the url-encoded body, null for none
+     */
+    PooledRequest(final HttpConnectionPool nPool,
+            final String nMethod, final URL nUrl,
+            final byte[] nBody) {
+        this.pool = nPool;
+        this.method = nMethod;
+        this.url = nUrl;
+        this.body = nBody;
+    }
+
+    /**
+     * Sends the request and returns the response.
+     *
+     * @return String
+     * @throws Exception the exception
+     */
+    public String send() throws Exception {
+        EtmPoint point = ETM_MONITOR
+                .createPoint("Monitor point in PooledRequest.send");
+        try {
+            return HttpMessages.readFully(execute());
+        } finally {
+            point.collect();
+        }
+    }
+
+    /**
+     * Sends the request and returns the response body.
+     *
+     * @return the response body
+     * @throws Exception the exception
+     */
+    public InputStream open() throws Exception {
+        EtmPoint point = ETM_MONITOR
+                .createPoint("Monitor point in PooledRequest.open");
+        try {
+            return execute();
+        } finally {
+            point.collect();
+        }
+    }
+
+    /**
+     * Sends the request and returns the response body. A reused
+     * connection that turns out to have been closed by the server
+     * is discarded and the request is sent again, unless it is a
+     * POST that was fully sent: the server may have run it already.
+     *
+     * @return the response body
+     * @throws IOException on connection errors or non-2xx status
+     */
+    InputStream execute() throws IOException {
+        while (true) {
+            PooledConnection connection = pool.acquire(
+                    url.getProtocol(), url.getHost(), port());
+            String statusLine;
+            boolean sent = false;
+            try {
+                OutputStream out = connection.getOutputStream();
+                HttpMessages.writeHead(out, method, url,
+                        body == null ? -1 : body.length);
+                if (body != null) {
+                    out.write(body);
+                }
+                out.flush();
+                sent = true;
+                statusLine = HttpMessages
+                        .readLine(connection.getInputStream());
+            } catch (IOException e) {
+                pool.discard(connection);
+                if (connection.isReused()
+                        && !(e instanceof SocketTimeoutException)
+                        && (!sent || "GET".equals(method))) {
+                    continue;
+                }
+                throw e;
+            }
+            return readResponse(connection, statusLine);
+        }
+    }
+
+    /**
+     * Reads the response headers and wraps the body.
+     *
+     * @param connection the connection
+     * @param statusLine the status line
+     * @return the response body
+     * @throws IOException on read errors or non-2xx status
+     */
+    private InputStream readResponse(
+            final PooledConnection connection,
+            final String statusLine) throws IOException {
+        InputStream in = connection.getInputStream();
+        int status;
+        boolean keepAlive;
+        long length = HttpResponseBody.UNTIL_CLOSE;
+        long keepAliveMillis = -1L;
+        try {
+            if (!statusLine.startsWith("HTTP/")
+                    || statusLine.length() < STATUS_CODE_END) {
+                throw new IOException(
+                        "Invalid HTTP status line: " + statusLine);
+            }
+            status = Integer.parseInt(statusLine.substring(
+                    STATUS_CODE_START, STATUS_CODE_END));
+            keepAlive = statusLine.startsWith("HTTP/1.1");
+            String header;
+            while ((header = HttpMessages.readLine(in))
+                    .length() != 0) {
+                int colon = header.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String name = header.substring(0, colon).trim()
+                        .toLowerCase(Locale.ROOT);
+                String value = header.substring(colon + 1).trim();
+                switch (name) {
+                case "content-length":
+                    if (length != HttpResponseBody.CHUNKED) {
+                        length = Long.parseLong(value);
+                    }
+                    break;
+                case "transfer-encoding":
+                    if (value.toLowerCase(Locale.ROOT)
+                            .contains("chunked")) {
+                        length = HttpResponseBody.CHUNKED;
+                    }
+                    break;
+                case "connection":
+                    keepAlive = value.equalsIgnoreCase("keep-alive")
+                            || (keepAlive && !value
+                                    .equalsIgnoreCase("close"));
+                    break;
+                case "keep-alive":
+                    keepAliveMillis = keepAliveTimeout(value);
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            pool.discard(connection);
+            if (e instanceof NumberFormatException) {
+                throw new IOException("Invalid HTTP response head",
+                        e);
+            }
+            throw e;
+        }
+        if (status == HTTP_NO_CONTENT
+                || status == HTTP_NOT_MODIFIED) {
+            length = 0L;
+        }
+        InputStream responseBody = new HttpResponseBody(pool,
+                connection, length, keepAlive, keepAliveMillis);
+        if (status < HTTP_OK_MIN || status > HTTP_OK_MAX) {
+            HttpMessages.readFully(responseBody);
+            throw new IOException("Server returned HTTP response code: "
+                    + status + " for URL: " + url);
+        }
+        return responseBody;
+    }
+
+    /**
+     * Parses the timeout parameter of a Keep-Alive header.
+     *
+     * @param value the header value, e.g. "timeout=5, max=100"
+     * @return the timeout in millis, or -1 if absent
+     */
+    private static long keepAliveTimeout(final String value) {
+        for (String param : value.split(",")) {
+            String[] pair = param.trim().split("=", 2);
+            if (pair.length == 2
+                    && pair[0].trim().equalsIgnoreCase("timeout")) {
+                try {
+                    long millis = Long.parseLong(pair[1].trim())
+                            * MILLIS_PER_SECOND
+                            - KEEP_ALIVE_MARGIN_MILLIS;
+                    return Math.max(millis, 0L);
+                } catch (NumberFormatException e) {
+                    return -1L;
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Gets the port, falling back to the scheme's default.
+     *
+     * @return the port
+     */
+    private int port() {
+        return url.getPort() != -1 ? url.getPort()
+                : url.getDefaultPort();
+    }
+}
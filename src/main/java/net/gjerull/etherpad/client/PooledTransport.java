@@ -0,0 +1,187 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * A transport that keeps HTTP/1.1 connections alive and reuses
+ * them between calls, instead of paying the TCP (and TLS)
+ * handshake on every request.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PooledTransport transport = new PooledTransport(20, 4000L);<br />
+ * EPLiteClient client = EPLiteClient.builder(url, apiKey)
+ * .transport(transport).build();<br />
+ * ...<br />
+ * long reused = transport.getPoolHits();
+ * </code>
+ */
+public class PooledTransport implements Transport {
+
+    /** The Constant DEFAULT_MAX_CONNECTIONS_PER_HOST. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    /**
+     * The Constant DEFAULT_IDLE_TIMEOUT_MILLIS. Etherpad runs on
+     * Node.js, which closes idle keep-alive connections after
+     * five seconds by default.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 4000L;
+
+    /** The Constant DEFAULT_CONNECT_TIMEOUT_MILLIS. */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /** The connection pool. */
+    private final HttpConnectionPool pool;
+
+    /**
+     * Instantiates a new pooled transport with the default
+     * limits. HTTPS certificates are checked against the JVM's
+     * default trust store.
+     */
+    public PooledTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Instantiates a new pooled transport.
+     *
+     * @param maxConnectionsPerHost the max number of open
+     *                              connections to one host
+     * @param idleTimeoutMillis     how long an unused connection
+     *                              is kept open
+     */
+    public PooledTransport(final int maxConnectionsPerHost,
+            final long idleTimeoutMillis) {
+        this(maxConnectionsPerHost, idleTimeoutMillis,
+                DEFAULT_CONNECT_TIMEOUT_MILLIS, 0);
+    }
+
+    /**
+     * Instantiates a new pooled transport.
+     *
+     * @param maxConnectionsPerHost the max number of open
+     *                              connections to one host
+     * @param idleTimeoutMillis     how long an unused connection
+     *                              is kept open
+     * @param connectTimeoutMillis  the connect timeout, also the
+     *                              max wait for a free connection
+     *                              when the host limit is reached
+     * @param readTimeoutMillis     the socket read timeout, 0 for
+     *                              none
+     */
+    public PooledTransport(final int maxConnectionsPerHost,
+            final long idleTimeoutMillis,
+            final int connectTimeoutMillis,
+            final int readTimeoutMillis) {
+        this(maxConnectionsPerHost, idleTimeoutMillis,
+                connectTimeoutMillis, readTimeoutMillis,
+                TlsConfig.system());
+    }
+
+    /**
+     * Instantiates a new pooled transport.
+     *
+     * @param maxConnectionsPerHost the max number of open
+     *                              connections to one host
+     * @param idleTimeoutMillis     how long an unused connection
+     *                              is kept open
+     * @param connectTimeoutMillis  the connect timeout, also the
+     *                              max wait for a free connection
+     *                              when the host limit is reached
+     * @param readTimeoutMillis     the socket read timeout, 0 for
+     *                              none
+     * @param tlsConfig             the TLS configuration for
+     *                              HTTPS connections
+     */
+    public PooledTransport(final int maxConnectionsPerHost,
+            final long idleTimeoutMillis,
+            final int connectTimeoutMillis,
+            final int readTimeoutMillis,
+            final TlsConfig tlsConfig) {
+        this.pool = new HttpConnectionPool(maxConnectionsPerHost,
+                idleTimeoutMillis, connectTimeoutMillis,
+                readTimeoutMillis, tlsConfig);
+    }
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL, including the query string
+     * @return the request
+     */
+    public final Request createGetRequest(final URL url) {
+        return new PooledRequest(pool, "GET", url, null);
+    }
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url  the URL
+     * @param body url-encoded request body
+     * @return the request
+     */
+    public final Request createPostRequest(final URL url,
+            final byte[] body) {
+        return new PooledRequest(pool, "POST", url, body);
+    }
+
+    /**
+     * Closes idle connections that have passed the idle timeout.
+     * Stale connections are also dropped lazily when a request
+     * needs a connection, so calling this is only needed to free
+     * sockets early.
+     */
+    public final void evictIdleConnections() {
+        pool.evictIdle();
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed
+     * when their response has been read.
+     */
+    public final void close() {
+        pool.close();
+    }
+
+    /**
+     * Gets the number of requests that reused a pooled
+     * connection.
+     *
+     * @return the pool hits
+     */
+    public final long getPoolHits() {
+        return pool.getHits();
+    }
+
+    /**
+     * Gets the number of requests that had to open a new
+     * connection.
+     *
+     * @return the pool misses
+     */
+    public final long getPoolMisses() {
+        return pool.getMisses();
+    }
+
+    /**
+     * Gets the number of idle connections that were closed
+     * because they expired or were closed by the server.
+     *
+     * @return the evictions
+     */
+    public final long getEvictions() {
+        return pool.getEvictions();
+    }
+
+    /**
+     * Gets the number of idle connections currently pooled.
+     *
+     * @return the idle connection count
+     */
+    public final int getIdleConnections() {
+        return pool.getIdleCount();
+    }
+}
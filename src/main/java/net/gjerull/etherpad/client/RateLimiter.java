@@ -0,0 +1,68 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out calls to a steady rate, for the bulk jobs that would
+ * otherwise flood the server.
+ */
+final class RateLimiter {
+
+    /** The Constant NANOS_PER_SECOND. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** The time between two calls, in nanoseconds; 0 if unlimited. */
+    private final long interval;
+
+    /** When the next call may start, in nanoseconds. */
+    private long next = System.nanoTime();
+
+    /**
+     * Instantiates a new rate limiter.
+     *
+     * @param permitsPerSecond the most calls per second, or 0 for no
+     *                         limit
+     */
+    RateLimiter(final double permitsPerSecond) {
+        if (permitsPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "The rate can't be negative");
+        }
+        this.interval = permitsPerSecond == 0 ? 0L
+                : (long) (NANOS_PER_SECOND / permitsPerSecond);
+    }
+
+    /**
+     * Waits until the next call may start.
+     *
+     * @throws EPLiteException if interrupted while waiting
+     */
+    void acquire() {
+        if (this.interval == 0) {
+            return;
+        }
+        long wait = this.reserve();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException(
+                        "Interrupted while waiting for the rate limit",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Takes the next slot.
+     *
+     * @return how long to wait for it, in nanoseconds
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long at = Math.max(now, this.next);
+        this.next = at + this.interval;
+        return at - now;
+    }
+}
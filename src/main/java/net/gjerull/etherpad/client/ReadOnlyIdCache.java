@@ -0,0 +1,250 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A two-way cache of pad ids and read-only ids, for
+ * {@link EPLiteClient#getReadOnlyID(String)} and
+ * {@link EPLiteClient#getPadID(String)}.<br />
+ * <br />
+ * A pad keeps its read-only id for life, so one lookup in either
+ * direction fills both. Lookups don't lock, which suits viewers
+ * resolving ids on every page view, and
+ * {@link EPLiteClient#warmUpReadOnlyIDs()} fills the cache for all
+ * pads at once. When the cache is full an arbitrary pair makes
+ * room. The client forgets a pad when it deletes or moves it.
+ */
+public final class ReadOnlyIdCache {
+
+    /** The read-only ids by pad id. */
+    private final ConcurrentMap<String, String> readOnlyIds =
+            new ConcurrentHashMap<>();
+
+    /** The pad ids by read-only id. */
+    private final ConcurrentMap<String, String> padIds =
+            new ConcurrentHashMap<>();
+
+    /** The most pairs kept, or 0 for no limit. */
+    private final int maximumSize;
+
+    /** Incremented by every invalidation. */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** The number of hits. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** The number of misses. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Instantiates a new cache without a size limit.
+     */
+    public ReadOnlyIdCache() {
+        this(0);
+    }
+
+    /**
+     * Instantiates a new cache.
+     *
+     * @param nMaximumSize the most pairs kept, or 0 for no limit
+     */
+    public ReadOnlyIdCache(final int nMaximumSize) {
+        if (nMaximumSize < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum size can't be negative");
+        }
+        this.maximumSize = nMaximumSize;
+    }
+
+    /**
+     * Returns the read-only id of a pad.
+     *
+     * @param padId the pad's id string
+     * @return the read-only id, or null
+     */
+    String getReadOnlyId(final String padId) {
+        return this.count(this.readOnlyIds.get(padId));
+    }
+
+    /**
+     * Returns the pad id of a read-only id.
+     *
+     * @param readOnlyId the read-only id
+     * @return the pad id, or null
+     */
+    String getPadId(final String readOnlyId) {
+        return this.count(this.padIds.get(readOnlyId));
+    }
+
+    /**
+     * Counts a lookup.
+     *
+     * @param value the value found, or null
+     * @return the value
+     */
+    private String count(final String value) {
+        if (value == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Whether the read-only id of a pad is cached. Doesn't count as
+     * a lookup.
+     *
+     * @param padId the pad's id string
+     * @return true if it is
+     */
+    boolean contains(final String padId) {
+        return this.readOnlyIds.containsKey(padId);
+    }
+
+    /**
+     * Returns a token to pass to {@link #put(String, String, long)},
+     * taken before the ids are fetched.
+     *
+     * @return the token
+     */
+    long epoch() {
+        return this.epoch.get();
+    }
+
+    /**
+     * Caches a pair, unless a pad has been invalidated since the
+     * epoch was taken, as the pair may then be stale.
+     *
+     * @param padId      the pad's id string
+     * @param readOnlyId the read-only id
+     * @param since      the epoch taken before the ids were fetched
+     */
+    void put(final String padId, final String readOnlyId,
+            final long since) {
+        if (padId == null || readOnlyId == null
+                || since != this.epoch.get()) {
+            return;
+        }
+        this.readOnlyIds.put(padId, readOnlyId);
+        this.padIds.put(readOnlyId, padId);
+        if (since != this.epoch.get()) {
+            // Invalidated while we were writing
+            this.remove(padId, readOnlyId);
+            return;
+        }
+        if (this.maximumSize > 0
+                && this.readOnlyIds.size() > this.maximumSize) {
+            Iterator<Map.Entry<String, String>> entries =
+                    this.readOnlyIds.entrySet().iterator();
+            while (this.readOnlyIds.size() > this.maximumSize
+                    && entries.hasNext()) {
+                Map.Entry<String, String> entry = entries.next();
+                if (!entry.getKey().equals(padId)) {
+                    this.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a pair.
+     *
+     * @param padId      the pad's id string
+     * @param readOnlyId the read-only id
+     */
+    private void remove(final String padId, final String readOnlyId) {
+        this.readOnlyIds.remove(padId, readOnlyId);
+        this.padIds.remove(readOnlyId, padId);
+    }
+
+    /**
+     * Forgets a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public void invalidatePad(final String padId) {
+        this.epoch.incrementAndGet();
+        String readOnlyId = this.readOnlyIds.remove(padId);
+        if (readOnlyId != null) {
+            this.padIds.remove(readOnlyId, padId);
+        }
+    }
+
+    /**
+     * Forgets the pads of a group.
+     *
+     * @param groupID the group's id string
+     */
+    public void invalidateGroup(final String groupID) {
+        this.epoch.incrementAndGet();
+        String prefix = groupID + "$";
+        for (Map.Entry<String, String> entry
+                : this.readOnlyIds.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                this.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Forgets all pads.
+     */
+    public void invalidateAll() {
+        this.epoch.incrementAndGet();
+        this.readOnlyIds.clear();
+        this.padIds.clear();
+    }
+
+    /**
+     * Gets the number of cached pairs.
+     *
+     * @return the number of pairs
+     */
+    public int size() {
+        return this.readOnlyIds.size();
+    }
+
+    /**
+     * Gets the most pairs kept.
+     *
+     * @return the maximum size, or 0 for no limit
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the number of lookups that found an id.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets the number of lookups that found nothing.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the size and lookup counts.
+     *
+     * @return a description of the cache
+     */
+    @Override
+    public String toString() {
+        return "ReadOnlyIdCache[size=" + this.size() + ", hits="
+                + this.getHitCount() + ", misses="
+                + this.getMissCount() + "]";
+    }
+}
@@ -0,0 +1,205 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical GET calls share one request, for an
+ * {@link EPLiteConnection} created with it.<br />
+ * <br />
+ * When a popular pad is opened, many threads ask for its text or
+ * user count at the same moment. Calls to the same method with the
+ * same arguments that overlap in time are sent once, and every
+ * caller gets the result of that request, or its error. The result
+ * object is shared, so callers must not modify it. Calls that
+ * stream into a sink are never shared, and POSTs are never
+ * coalesced.
+ */
+public final class RequestCoalescer {
+
+    /** The requests in flight. */
+    private final ConcurrentMap<Key, Call<?>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /** The number of requests sent. */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /** The number of calls that shared another call's request. */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Runs a request, or waits for an identical one in flight.
+     *
+     * @param <T>     the type of the result
+     * @param url     the URL of the request, including the query
+     * @param binder  the binder for the data
+     * @param fetch   sends the request
+     * @return the result of the request
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(final String url, final DataBinder<T> binder,
+            final Fetch<T> fetch) {
+        Key key = new Key(url, binder);
+        Call<T> call = new Call<>();
+        Call<T> running = (Call<T>) this.inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            this.coalescedCount.incrementAndGet();
+            return running.await();
+        }
+        this.requestCount.incrementAndGet();
+        try {
+            call.result = fetch.send();
+            return call.result;
+        } catch (RuntimeException e) {
+            call.failure = e;
+            throw e;
+        } finally {
+            this.inFlight.remove(key, call);
+            call.done.countDown();
+        }
+    }
+
+    /**
+     * Gets the number of requests sent.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * Gets the number of calls that shared the request of an
+     * identical call instead of sending their own.
+     *
+     * @return the coalesced count
+     */
+    public long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     *
+     * @return the number of requests
+     */
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    /**
+     * Returns the request counts.
+     *
+     * @return a description of the coalescer
+     */
+    @Override
+    public String toString() {
+        return "RequestCoalescer[requests=" + this.getRequestCount()
+                + ", coalesced=" + this.getCoalescedCount()
+                + ", inFlight=" + this.getInFlightCount() + "]";
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param <T> the type of the result
+     */
+    interface Fetch<T> {
+
+        /**
+         * Sends the request.
+         *
+         * @return the result
+         */
+        T send();
+    }
+
+    /**
+     * A request in flight.
+     *
+     * @param <T> the type of the result
+     */
+    private static final class Call<T> {
+
+        /** Counted down when the request is done. */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /** The result. */
+        private volatile T result;
+
+        /** What the request threw, or null. */
+        private volatile RuntimeException failure;
+
+        /**
+         * Waits for the request to be done.
+         *
+         * @return the result
+         */
+        T await() {
+            try {
+                this.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException(
+                        "Interrupted while waiting for a request", e);
+            }
+            if (this.failure != null) {
+                throw new EPLiteException(this.failure.getMessage(),
+                        this.failure);
+            }
+            return this.result;
+        }
+    }
+
+    /**
+     * The URL and binder of a request.
+     */
+    private static final class Key {
+
+        /** The URL, including the query. */
+        private final String url;
+
+        /** The binder, compared by identity. */
+        private final DataBinder<?> binder;
+
+        /**
+         * Instantiates a new key.
+         *
+         * @param nUrl    the URL
+         * @param nBinder the binder
+         */
+        Key(final String nUrl, final DataBinder<?> nBinder) {
+            this.url = nUrl;
+            this.binder = nBinder;
+        }
+
+        /**
+         * Returns the hash code.
+         *
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return this.url.hashCode() * 31
+                    + System.identityHashCode(this.binder);
+        }
+
+        /**
+         * Compares the URL and binder.
+         *
+         * @param obj the other key
+         * @return true if equal
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.binder == other.binder
+                    && this.url.equals(other.url);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache of the text and HTML of fixed pad revisions, for
+ * {@link EPLiteClient#getText(String, long)},
+ * {@link EPLiteClient#getHTML(String, long)} and
+ * {@link EPLiteClient#getPadText(String, long)}.<br />
+ * <br />
+ * A revision never changes, so the cache only has to forget a pad
+ * when it is deleted, moved or overwritten, which the client does.
+ * The cache is bounded by the approximate heap size of the cached
+ * Strings and uses W-TinyLFU eviction: new entries enter a small
+ * LRU window, and an entry leaving the window only displaces an
+ * entry of the main (segmented LRU) region if it has been asked
+ * for more often recently, as estimated by a
+ * {@link FrequencySketch}. One pass over a long history therefore
+ * doesn't flush the revisions that are read again and again.
+ * <br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * RevisionCache cache = new RevisionCache(64 * 1024 * 1024);<br />
+ * EPLiteClient client = EPLiteClient.builder(url, apiKey)
+ * .revisionCache(cache).build();
+ * </code>
+ */
+public final class RevisionCache {
+
+    /** The Constant ENTRY_OVERHEAD, the heap bytes of an entry. */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    /** The Constant WINDOW_PERCENT of the maximum weight. */
+    private static final int WINDOW_PERCENT = 1;
+
+    /** The Constant PROTECTED_PERCENT of the main region. */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** The Constant PERCENT. */
+    private static final int PERCENT = 100;
+
+    /** The Constant EXPECTED_ENTRY_WEIGHT, to size the sketch. */
+    private static final long EXPECTED_ENTRY_WEIGHT = 4096;
+
+    /** The Constant WINDOW, a queue. */
+    private static final int WINDOW = 0;
+
+    /** The Constant PROBATION, a queue. */
+    private static final int PROBATION = 1;
+
+    /** The Constant PROTECTED, a queue. */
+    private static final int PROTECTED = 2;
+
+    /** The maximum total weight. */
+    private final long maximumWeight;
+
+    /** The maximum weight of the window. */
+    private final long maximumWindowWeight;
+
+    /** The maximum weight of the protected queue. */
+    private final long maximumProtectedWeight;
+
+    /** The entries by key. */
+    private final Map<Key, Node> nodes = new HashMap<>();
+
+    /** The keys of each pad. */
+    private final Map<String, Set<Key>> keysByPad = new HashMap<>();
+
+    /** The sentinels of the queues, in LRU order. */
+    private final Node[] queues = {new Node(), new Node(), new Node() };
+
+    /** The weight of each queue. */
+    private final long[] weights = new long[3];
+
+    /** The access frequencies. */
+    private final FrequencySketch sketch;
+
+    /** Incremented by every invalidation. */
+    private long epoch;
+
+    /** The number of hits. */
+    private long hitCount;
+
+    /** The number of misses. */
+    private long missCount;
+
+    /** The number of evicted entries. */
+    private long evictionCount;
+
+    /**
+     * Instantiates a new cache.
+     *
+     * @param nMaximumWeight the maximum size of the cached text and
+     *                       HTML, in approximate heap bytes
+     */
+    public RevisionCache(final long nMaximumWeight) {
+        if (nMaximumWeight <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum weight must be positive");
+        }
+        this.maximumWeight = nMaximumWeight;
+        this.maximumWindowWeight = Math.max(1,
+                nMaximumWeight * WINDOW_PERCENT / PERCENT);
+        this.maximumProtectedWeight = (nMaximumWeight
+                - this.maximumWindowWeight) * PROTECTED_PERCENT
+                / PERCENT;
+        this.sketch = new FrequencySketch(
+                nMaximumWeight / EXPECTED_ENTRY_WEIGHT);
+        for (Node sentinel : this.queues) {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+    }
+
+    /**
+     * Returns a cached revision.
+     *
+     * @param padId the pad's id string
+     * @param field "text" or "html"
+     * @param rev   the revision number
+     * @return the text or HTML, or null
+     */
+    synchronized String get(final String padId, final String field,
+            final long rev) {
+        Key key = new Key(padId, field, rev);
+        this.sketch.increment(key.hash);
+        Node node = this.nodes.get(key);
+        if (node == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        this.onHit(node);
+        return node.value;
+    }
+
+    /**
+     * Returns a token to pass to
+     * {@link #put(String, String, long, String, long)}, taken
+     * before the revision is fetched.
+     *
+     * @return the token
+     */
+    synchronized long epoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Caches a revision, unless a pad has been invalidated since
+     * the epoch was taken, as the revision may then be stale.
+     *
+     * @param padId the pad's id string
+     * @param field "text" or "html"
+     * @param rev   the revision number
+     * @param value the text or HTML
+     * @param since the epoch taken before the revision was fetched
+     */
+    synchronized void put(final String padId, final String field,
+            final long rev, final String value, final long since) {
+        Key key = new Key(padId, field, rev);
+        long weight = ENTRY_OVERHEAD + 2L * value.length();
+        if (since != this.epoch || weight > this.maximumWeight
+                || this.nodes.containsKey(key)) {
+            return;
+        }
+        Node node = new Node();
+        node.key = key;
+        node.value = value;
+        node.weight = weight;
+        this.nodes.put(key, node);
+        Set<Key> keys = this.keysByPad.get(padId);
+        if (keys == null) {
+            keys = new HashSet<>();
+            this.keysByPad.put(padId, keys);
+        }
+        keys.add(key);
+        this.sketch.ensureCapacity(this.nodes.size());
+        this.link(node, WINDOW);
+        this.evict();
+    }
+
+    /**
+     * Forgets all revisions of a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void invalidatePad(final String padId) {
+        this.epoch++;
+        Set<Key> keys = this.keysByPad.remove(padId);
+        if (keys != null) {
+            for (Key key : keys) {
+                this.unlink(this.nodes.remove(key));
+            }
+        }
+    }
+
+    /**
+     * Forgets all revisions of the pads of a group.
+     *
+     * @param groupID the group's id string
+     */
+    public synchronized void invalidateGroup(final String groupID) {
+        String prefix = groupID + "$";
+        List<String> padIds = new ArrayList<>();
+        for (String padId : this.keysByPad.keySet()) {
+            if (padId.startsWith(prefix)) {
+                padIds.add(padId);
+            }
+        }
+        for (String padId : padIds) {
+            this.invalidatePad(padId);
+        }
+        this.epoch++;
+    }
+
+    /**
+     * Forgets all revisions.
+     */
+    public synchronized void invalidateAll() {
+        this.epoch++;
+        this.nodes.clear();
+        this.keysByPad.clear();
+        for (int queue = 0; queue < this.queues.length; queue++) {
+            this.queues[queue].prev = this.queues[queue];
+            this.queues[queue].next = this.queues[queue];
+            this.weights[queue] = 0;
+        }
+    }
+
+    /**
+     * Gets the number of cached revisions.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Gets the approximate heap bytes of the cached revisions.
+     *
+     * @return the weighted size
+     */
+    public synchronized long getWeightedSize() {
+        return this.weights[WINDOW] + this.weights[PROBATION]
+                + this.weights[PROTECTED];
+    }
+
+    /**
+     * Gets the maximum weight.
+     *
+     * @return the maximum weight
+     */
+    public long getMaximumWeight() {
+        return this.maximumWeight;
+    }
+
+    /**
+     * Gets the number of lookups that found a revision.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that didn't find a revision.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Gets the share of lookups that found a revision.
+     *
+     * @return the hit rate, 1.0 before the first lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = this.hitCount + this.missCount;
+        return (lookups == 0) ? 1.0 : (double) this.hitCount / lookups;
+    }
+
+    /**
+     * Gets the number of revisions evicted to stay within the
+     * maximum weight.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RevisionCache{size=" + this.nodes.size()
+                + ", weightedSize=" + this.getWeightedSize()
+                + ", maximumWeight=" + this.maximumWeight
+                + ", hitCount=" + this.hitCount + ", missCount="
+                + this.missCount + ", evictionCount="
+                + this.evictionCount + "}";
+    }
+
+    /**
+     * Moves an entry that was found: within the window and the
+     * protected queue to the most recent end, from probation to
+     * the protected queue.
+     *
+     * @param node the entry
+     */
+    private void onHit(final Node node) {
+        if (node.queue != PROBATION) {
+            this.unlink(node);
+            this.link(node, node.queue);
+            return;
+        }
+        this.unlink(node);
+        this.link(node, PROTECTED);
+        while (this.weights[PROTECTED] > this.maximumProtectedWeight) {
+            Node demoted = this.queues[PROTECTED].next;
+            this.unlink(demoted);
+            this.link(demoted, PROBATION);
+        }
+    }
+
+    /**
+     * Moves entries from the window to probation, then evicts
+     * until the cache is within its maximum weight. The entry
+     * leaving the window competes with the least recently used
+     * entry of probation, and the less frequent of the two goes.
+     */
+    private void evict() {
+        while (this.weights[WINDOW] > this.maximumWindowWeight) {
+            Node candidate = this.queues[WINDOW].next;
+            this.unlink(candidate);
+            this.link(candidate, PROBATION);
+        }
+        while (this.getWeightedSize() > this.maximumWeight) {
+            Node probation = this.queues[PROBATION];
+            Node victim = probation.next;
+            Node candidate = probation.prev;
+            if (victim == probation) {
+                // Probation is empty, take from protected or window
+                victim = this.queues[PROTECTED].next;
+                if (victim == this.queues[PROTECTED]) {
+                    victim = this.queues[WINDOW].next;
+                }
+            } else if (candidate != victim
+                    && this.sketch.frequency(candidate.key.hash)
+                    <= this.sketch.frequency(victim.key.hash)) {
+                victim = candidate;
+            }
+            this.remove(victim);
+            this.evictionCount++;
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param node the entry
+     */
+    private void remove(final Node node) {
+        this.unlink(node);
+        this.nodes.remove(node.key);
+        Set<Key> keys = this.keysByPad.get(node.key.padId);
+        keys.remove(node.key);
+        if (keys.isEmpty()) {
+            this.keysByPad.remove(node.key.padId);
+        }
+    }
+
+    /**
+     * Appends an entry to the most recent end of a queue.
+     *
+     * @param node  the entry
+     * @param queue the queue
+     */
+    private void link(final Node node, final int queue) {
+        Node sentinel = this.queues[queue];
+        node.queue = queue;
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        this.weights[queue] += node.weight;
+    }
+
+    /**
+     * Takes an entry out of its queue.
+     *
+     * @param node the entry
+     */
+    private void unlink(final Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        this.weights[node.queue] -= node.weight;
+    }
+
+    /**
+     * The key of a cached revision.
+     */
+    private static final class Key {
+
+        /** The pad's id string. */
+        private final String padId;
+
+        /** "text" or "html". */
+        private final String field;
+
+        /** The revision number. */
+        private final long rev;
+
+        /** The spread hash code. */
+        private final int hash;
+
+        /**
+         * Instantiates a new key.
+         *
+         * @param nPadId the pad's id string
+         * @param nField "text" or "html"
+         * @param nRev   the revision number
+         */
+        Key(final String nPadId, final String nField, final long nRev) {
+            this.padId = nPadId;
+            this.field = nField;
+            this.rev = nRev;
+            this.hash = FrequencySketch.spread((nPadId.hashCode() * 31
+                    + nField.hashCode()) * 31
+                    + (int) (nRev ^ (nRev >>> 32)));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.rev == other.rev
+                    && this.padId.equals(other.padId)
+                    && this.field.equals(other.field);
+        }
+    }
+
+    /**
+     * A cached revision, linked into one of the queues.
+     */
+    private static final class Node {
+
+        /** The key. */
+        private Key key;
+
+        /** The text or HTML. */
+        private String value;
+
+        /** The approximate heap bytes. */
+        private long weight;
+
+        /** The queue the entry is in. */
+        private int queue;
+
+        /** The previous entry of the queue. */
+        private Node prev;
+
+        /** The next entry of the queue. */
+        private Node next;
+    }
+}
@@ -0,0 +1,83 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+
+/**
+ * The number of revisions of a pad, as returned by
+ * {@link EPLiteClient#getRevisionCount(String)} and
+ * {@link EPLiteClient#getSavedRevisionCount(String)}.
+ */
+public final class RevisionCount {
+
+    /** Decodes a RevisionCount from a getRevisionsCount response. */
+    static final DataBinder<RevisionCount> REVISIONS_BINDER =
+            binder("revisions");
+
+    /**
+     * Decodes a RevisionCount from a getSavedRevisionsCount
+     * response.
+     */
+    static final DataBinder<RevisionCount> SAVED_REVISIONS_BINDER =
+            binder("savedRevisions");
+
+    /** The number of revisions. */
+    private final long count;
+
+    /**
+     * Instantiates a new revision count.
+     *
+     * @param nCount the number of revisions
+     */
+    public RevisionCount(final long nCount) {
+        this.count = nCount;
+    }
+
+    /**
+     * Gets the number of revisions.
+     *
+     * @return the number of revisions
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of revisions.
+     *
+     * @return the number, as a string
+     */
+    @Override
+    public String toString() {
+        return Long.toString(count);
+    }
+
+    /**
+     * Creates a binder reading the count from the given member.
+     *
+     * @param field the name of the member
+     * @return the binder
+     */
+    private static DataBinder<RevisionCount> binder(
+            final String field) {
+        final String[] names = {field };
+        return new DataBinder<RevisionCount>() {
+            public RevisionCount bind(final JsonReader reader)
+                    throws IOException {
+                if (reader.consumeNull()) {
+                    return null;
+                }
+                long count = 0L;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName(names) == 0) {
+                        count = reader.nextLong();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                return new RevisionCount(count);
+            }
+        };
+    }
+}
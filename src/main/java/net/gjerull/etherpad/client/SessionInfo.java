@@ -0,0 +1,119 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+
+/**
+ * A session, as returned by
+ * {@link EPLiteClient#getSession(String)}.
+ */
+public final class SessionInfo {
+
+    /** The Constant AUTHOR_ID. */
+    private static final int AUTHOR_ID = 0;
+
+    /** The Constant GROUP_ID. */
+    private static final int GROUP_ID = 1;
+
+    /** The Constant VALID_UNTIL. */
+    private static final int VALID_UNTIL = 2;
+
+    /** The members read from the response. */
+    private static final String[] NAMES = {"authorID", "groupID",
+            "validUntil" };
+
+    /** Decodes a SessionInfo from a getSessionInfo response. */
+    static final DataBinder<SessionInfo> BINDER =
+            new DataBinder<SessionInfo>() {
+                public SessionInfo bind(final JsonReader reader)
+                        throws IOException {
+                    if (reader.consumeNull()) {
+                        return null;
+                    }
+                    String authorID = null;
+                    String groupID = null;
+                    long validUntil = 0L;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName(NAMES)) {
+                        case AUTHOR_ID:
+                            authorID = reader.nextString();
+                            break;
+                        case GROUP_ID:
+                            groupID = reader.nextString();
+                            break;
+                        case VALID_UNTIL:
+                            validUntil = reader.nextLong();
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                        }
+                    }
+                    reader.endObject();
+                    return new SessionInfo(authorID, groupID,
+                            validUntil);
+                }
+            };
+
+    /** The author id. */
+    private final String authorID;
+
+    /** The group id. */
+    private final String groupID;
+
+    /** When the session expires, in seconds since the epoch. */
+    private final long validUntil;
+
+    /**
+     * Instantiates a new session info.
+     *
+     * @param nAuthorID   the author id
+     * @param nGroupID    the group id
+     * @param nValidUntil when the session expires, in seconds
+     *                    since the epoch
+     */
+    public SessionInfo(final String nAuthorID, final String nGroupID,
+            final long nValidUntil) {
+        this.authorID = nAuthorID;
+        this.groupID = nGroupID;
+        this.validUntil = nValidUntil;
+    }
+
+    /**
+     * Gets the author id.
+     *
+     * @return the author id
+     */
+    public String getAuthorID() {
+        return authorID;
+    }
+
+    /**
+     * Gets the group id.
+     *
+     * @return the group id
+     */
+    public String getGroupID() {
+        return groupID;
+    }
+
+    /**
+     * Gets when the session expires.
+     *
+     * @return the expiry, in seconds since the epoch
+     */
+    public long getValidUntil() {
+        return validUntil;
+    }
+
+    /**
+     * Returns a description of the session.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "SessionInfo{authorID=" + authorID + ", groupID="
+                + groupID + ", validUntil=" + validUntil + "}";
+    }
+}
@@ -0,0 +1,436 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out sessions of authors in groups, reusing a session while
+ * it is valid instead of creating one on every page view.<br />
+ * <br />
+ * {@link #getSession(String, String)} returns the session of the
+ * group and author if more than the renewal time remains of it, and
+ * creates a new one otherwise, so the sessions on the server don't
+ * pile up. Only one caller creates the session of a pair at a time.
+ * The cached sessions are also ordered by expiry, so
+ * {@link #evictExpired()} drops the expired ones without looking at
+ * the others.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * SessionManager sessions = new SessionManager(client, 86400, 3600);
+ * <br />
+ * String sessionID = sessions.getSession(groupID, authorID)
+ * .getSessionID();
+ * </code>
+ */
+public final class SessionManager {
+
+    /** The Constant THOUSAND. */
+    private static final long THOUSAND = 1000L;
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** How long new sessions are valid, in seconds. */
+    private final long lifetime;
+
+    /** How long before it expires a session is renewed, in seconds. */
+    private final long renewBefore;
+
+    /** The slots by group and author. */
+    private final ConcurrentMap<String, Slot> slots =
+            new ConcurrentHashMap<>();
+
+    /** The cached sessions, ordered by expiry. */
+    private final ConcurrentSkipListSet<Session> byExpiry =
+            new ConcurrentSkipListSet<>();
+
+    /** The number of sessions reused. */
+    private final AtomicLong reuseCount = new AtomicLong();
+
+    /** The number of sessions created. */
+    private final AtomicLong createCount = new AtomicLong();
+
+    /**
+     * Instantiates a new session manager.
+     *
+     * @param nClient      the client
+     * @param nLifetime    how long new sessions are valid, in
+     *                     seconds
+     * @param nRenewBefore how long before it expires a session is
+     *                     replaced by a new one, in seconds
+     */
+    public SessionManager(final EPLiteClient nClient,
+            final long nLifetime, final long nRenewBefore) {
+        if (nRenewBefore < 0 || nRenewBefore >= nLifetime) {
+            throw new IllegalArgumentException(
+                    "The renewal time must be between 0 and the"
+                            + " lifetime");
+        }
+        this.client = nClient;
+        this.lifetime = nLifetime;
+        this.renewBefore = nRenewBefore;
+    }
+
+    /**
+     * Returns a session of an author in a group, reusing the cached
+     * one if enough of it remains.
+     *
+     * @param groupID  the group id
+     * @param authorID the author id
+     * @return the session
+     */
+    public Session getSession(final String groupID,
+            final String authorID) {
+        return this.getSession(groupID, authorID,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Returns a session of an author in a group.
+     *
+     * @param groupID  the group id
+     * @param authorID the author id
+     * @param now      the current time, in milliseconds
+     * @return the session
+     */
+    Session getSession(final String groupID, final String authorID,
+            final long now) {
+        String key = key(groupID, authorID);
+        long renewAt = now / THOUSAND + this.renewBefore;
+        while (true) {
+            Slot slot = this.slots.get(key);
+            if (slot == null) {
+                Slot created = new Slot();
+                slot = this.slots.putIfAbsent(key, created);
+                if (slot == null) {
+                    slot = created;
+                }
+            }
+            Session session = slot.session;
+            if (session != null && session.validUntil > renewAt) {
+                this.reuseCount.incrementAndGet();
+                return session;
+            }
+            synchronized (slot) {
+                if (slot.removed) {
+                    continue;
+                }
+                session = slot.session;
+                if (session != null && session.validUntil > renewAt) {
+                    this.reuseCount.incrementAndGet();
+                    return session;
+                }
+                long validUntil = now / THOUSAND + this.lifetime;
+                Map response = this.client.createSession(groupID,
+                        authorID, validUntil);
+                String sessionID = (String) response.get("sessionID");
+                if (sessionID == null) {
+                    throw new EPLiteException(
+                            "createSession returned no sessionID");
+                }
+                Session renewed = new Session(sessionID, groupID,
+                        authorID, validUntil);
+                this.createCount.incrementAndGet();
+                if (session != null) {
+                    this.byExpiry.remove(session);
+                }
+                slot.session = renewed;
+                this.byExpiry.add(renewed);
+                return renewed;
+            }
+        }
+    }
+
+    /**
+     * Drops the expired sessions from the cache.
+     *
+     * @return the number of sessions dropped
+     */
+    public int evictExpired() {
+        return this.evictExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Drops the sessions expired at a time from the cache.
+     *
+     * @param now the current time, in milliseconds
+     * @return the number of sessions dropped
+     */
+    int evictExpired(final long now) {
+        long seconds = now / THOUSAND;
+        int evicted = 0;
+        for (Session first : this.byExpiry) {
+            // The iterator never fails on sessions removed meanwhile
+            if (first.validUntil > seconds) {
+                break;
+            }
+            if (this.forget(first)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Deletes the session of an author in a group on the server,
+     * when the author logs out, and forgets it.
+     *
+     * @param groupID  the group id
+     * @param authorID the author id
+     */
+    public void endSession(final String groupID, final String authorID) {
+        Slot slot = this.slots.get(key(groupID, authorID));
+        Session session = slot == null ? null : slot.session;
+        if (session != null && this.forget(session)) {
+            this.client.deleteSession(session.sessionID);
+        }
+    }
+
+    /**
+     * Forgets the sessions of a group.
+     *
+     * @param groupID the group id
+     */
+    public void invalidateGroup(final String groupID) {
+        for (Session session : this.byExpiry) {
+            if (session.groupID.equals(groupID)) {
+                this.forget(session);
+            }
+        }
+    }
+
+    /**
+     * Forgets all sessions.
+     */
+    public void invalidateAll() {
+        for (Session session : this.byExpiry) {
+            this.forget(session);
+        }
+    }
+
+    /**
+     * Forgets a session, unless it was renewed in the meantime.
+     *
+     * @param session the session
+     * @return true if the session was forgotten by this call
+     */
+    private boolean forget(final Session session) {
+        String key = key(session.groupID, session.authorID);
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+            return this.byExpiry.remove(session);
+        }
+        synchronized (slot) {
+            if (slot.session == session) {
+                slot.removed = true;
+                this.slots.remove(key, slot);
+            }
+            return this.byExpiry.remove(session);
+        }
+    }
+
+    /**
+     * Returns the key of a group and author.
+     *
+     * @param groupID  the group id
+     * @param authorID the author id
+     * @return the key
+     */
+    private static String key(final String groupID,
+            final String authorID) {
+        return groupID + '\t' + authorID;
+    }
+
+    /**
+     * Gets the number of cached sessions.
+     *
+     * @return the number of sessions
+     */
+    public int size() {
+        return this.byExpiry.size();
+    }
+
+    /**
+     * Gets how long new sessions are valid.
+     *
+     * @return the lifetime, in seconds
+     */
+    public long getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * Gets how long before it expires a session is renewed.
+     *
+     * @return the renewal time, in seconds
+     */
+    public long getRenewBefore() {
+        return renewBefore;
+    }
+
+    /**
+     * Gets the number of sessions reused.
+     *
+     * @return the reuse count
+     */
+    public long getReuseCount() {
+        return this.reuseCount.get();
+    }
+
+    /**
+     * Gets the number of sessions created.
+     *
+     * @return the create count
+     */
+    public long getCreateCount() {
+        return this.createCount.get();
+    }
+
+    /**
+     * Returns the size and session counts.
+     *
+     * @return a description of the manager
+     */
+    @Override
+    public String toString() {
+        return "SessionManager[size=" + this.size() + ", reused="
+                + this.getReuseCount() + ", created="
+                + this.getCreateCount() + "]";
+    }
+
+    /**
+     * A session handed out by the manager.
+     */
+    public static final class Session implements Comparable<Session> {
+
+        /** The session id. */
+        private final String sessionID;
+
+        /** The group id. */
+        private final String groupID;
+
+        /** The author id. */
+        private final String authorID;
+
+        /** When the session expires, in seconds since the epoch. */
+        private final long validUntil;
+
+        /**
+         * Instantiates a new session.
+         *
+         * @param nSessionID  the session id
+         * @param nGroupID    the group id
+         * @param nAuthorID   the author id
+         * @param nValidUntil when the session expires, in seconds
+         *                    since the epoch
+         */
+        Session(final String nSessionID, final String nGroupID,
+                final String nAuthorID, final long nValidUntil) {
+            this.sessionID = nSessionID;
+            this.groupID = nGroupID;
+            this.authorID = nAuthorID;
+            this.validUntil = nValidUntil;
+        }
+
+        /**
+         * Gets the session id, to set as the sessionID cookie.
+         *
+         * @return the session id
+         */
+        public String getSessionID() {
+            return sessionID;
+        }
+
+        /**
+         * Gets the group id.
+         *
+         * @return the group id
+         */
+        public String getGroupID() {
+            return groupID;
+        }
+
+        /**
+         * Gets the author id.
+         *
+         * @return the author id
+         */
+        public String getAuthorID() {
+            return authorID;
+        }
+
+        /**
+         * Gets when the session expires.
+         *
+         * @return the expiry, in seconds since the epoch
+         */
+        public long getValidUntil() {
+            return validUntil;
+        }
+
+        /**
+         * Orders sessions by expiry, then by id.
+         *
+         * @param other the other session
+         * @return the order
+         */
+        @Override
+        public int compareTo(final Session other) {
+            if (this.validUntil != other.validUntil) {
+                return this.validUntil < other.validUntil ? -1 : 1;
+            }
+            return this.sessionID.compareTo(other.sessionID);
+        }
+
+        /**
+         * Compares the id and expiry.
+         *
+         * @param obj the other session
+         * @return true if equal
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Session
+                    && this.compareTo((Session) obj) == 0;
+        }
+
+        /**
+         * Returns the hash code of the id.
+         *
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return this.sessionID.hashCode();
+        }
+
+        /**
+         * Returns the id and expiry.
+         *
+         * @return a description of the session
+         */
+        @Override
+        public String toString() {
+            return "Session[" + this.sessionID + " until "
+                    + this.validUntil + "]";
+        }
+    }
+
+    /**
+     * The session of a group and author, locked while it is
+     * created.
+     */
+    private static final class Slot {
+
+        /** The session, or null before it is created. */
+        private volatile Session session;
+
+        /** Whether the slot left the map. */
+        private boolean removed;
+    }
+}
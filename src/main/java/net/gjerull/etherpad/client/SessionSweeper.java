@@ -0,0 +1,336 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes the expired sessions on the server, which Etherpad keeps
+ * forever.<br />
+ * <br />
+ * {@link #sweep()} lists the groups, then the sessions of each
+ * group, and deletes the sessions whose validUntil has passed. The
+ * deletes run on a few threads, no faster than the given rate, so
+ * the server keeps up with its users. The groups are swept in order
+ * of their ids, and given a checkpoint file the sweeper writes the
+ * id of each group it finished, so a sweep that is stopped resumes
+ * after that group. The file is deleted when a sweep completes, and
+ * the next sweep starts over. A session that could not be deleted
+ * is counted and left for the next sweep.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * SessionSweeper sweeper = new SessionSweeper(client, 4, 50,<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;new File("sweep.checkpoint"));<br />
+ * long deleted = sweeper.sweep();
+ * </code>
+ */
+public final class SessionSweeper {
+
+    /** The Constant HEADER, the first line of a checkpoint. */
+    private static final String HEADER = "# etherpad session sweep 1";
+
+    /** The Constant THOUSAND. */
+    private static final long THOUSAND = 1000L;
+
+    /** The client. */
+    private final EPLiteClient client;
+
+    /** The number of deletes run at once. */
+    private final int concurrency;
+
+    /** Spaces out the deletes. */
+    private final RateLimiter rateLimiter;
+
+    /** The checkpoint file, or null. */
+    private final File checkpoint;
+
+    /** The number of groups swept. */
+    private final AtomicLong groupCount = new AtomicLong();
+
+    /** The number of sessions looked at. */
+    private final AtomicLong sessionCount = new AtomicLong();
+
+    /** The number of sessions deleted. */
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    /** The number of deletes that failed. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Instantiates a new sweeper.
+     *
+     * @param nClient           the client
+     * @param nConcurrency      the number of deletes run at once
+     * @param nDeletesPerSecond the most deletes per second, or 0 for
+     *                          no limit
+     * @param nCheckpoint       the checkpoint file, or null to always
+     *                          sweep all groups
+     */
+    public SessionSweeper(final EPLiteClient nClient,
+            final int nConcurrency, final double nDeletesPerSecond,
+            final File nCheckpoint) {
+        if (nConcurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "The concurrency must be positive");
+        }
+        this.client = nClient;
+        this.concurrency = nConcurrency;
+        this.rateLimiter = new RateLimiter(nDeletesPerSecond);
+        this.checkpoint = nCheckpoint;
+    }
+
+    /**
+     * Deletes the expired sessions of all groups, resuming after the
+     * checkpoint if there is one.
+     *
+     * @return the number of sessions deleted
+     * @throws EPLiteException if a group or the checkpoint can't be
+     *                         read
+     */
+    public long sweep() {
+        return this.sweep(System.currentTimeMillis());
+    }
+
+    /**
+     * Deletes the sessions expired at a time.
+     *
+     * @param now the current time, in milliseconds
+     * @return the number of sessions deleted
+     */
+    long sweep(final long now) {
+        long seconds = now / THOUSAND;
+        long deletedBefore = this.deletedCount.get();
+        String resumeAfter = this.readCheckpoint();
+        List<String> groupIDs = new ArrayList<>();
+        Object listed = this.client.listAllGroups().get("groupIDs");
+        if (listed instanceof List) {
+            for (Object groupID : (List) listed) {
+                if (resumeAfter == null
+                        || ((String) groupID).compareTo(resumeAfter) > 0) {
+                    groupIDs.add((String) groupID);
+                }
+            }
+        }
+        Collections.sort(groupIDs);
+        ExecutorService executor =
+                Executors.newFixedThreadPool(this.concurrency);
+        try {
+            for (String groupID : groupIDs) {
+                this.sweepGroup(groupID, seconds, executor);
+                this.writeCheckpoint(groupID);
+                this.groupCount.incrementAndGet();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (this.checkpoint != null) {
+            this.checkpoint.delete();
+        }
+        return this.deletedCount.get() - deletedBefore;
+    }
+
+    /**
+     * Deletes the expired sessions of a group, and waits for the
+     * deletes.
+     *
+     * @param groupID  the group id
+     * @param seconds  the current time, in seconds
+     * @param executor runs the deletes
+     */
+    private void sweepGroup(final String groupID, final long seconds,
+            final ExecutorService executor) {
+        Object sessions = this.client.listSessionsOfGroup(groupID);
+        if (!(sessions instanceof Map)) {
+            // null for a group that never had a session
+            return;
+        }
+        List<Future<Void>> deletes = new ArrayList<>();
+        for (Object entry : ((Map) sessions).entrySet()) {
+            Map.Entry session = (Map.Entry) entry;
+            this.sessionCount.incrementAndGet();
+            if (!(session.getValue() instanceof Map)) {
+                // Already deleted
+                continue;
+            }
+            Object validUntil = ((Map) session.getValue())
+                    .get("validUntil");
+            if (validUntil != null
+                    && toLong(validUntil) <= seconds) {
+                deletes.add(executor.submit(
+                        this.delete((String) session.getKey())));
+            }
+        }
+        for (Future<Void> delete : deletes) {
+            try {
+                delete.get();
+            } catch (ExecutionException e) {
+                this.failedCount.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EPLiteException(
+                        "Interrupted while sweeping " + groupID, e);
+            }
+        }
+    }
+
+    /**
+     * Returns a task deleting a session.
+     *
+     * @param sessionID the session id
+     * @return the task
+     */
+    private Callable<Void> delete(final String sessionID) {
+        return new Callable<Void>() {
+            public Void call() {
+                rateLimiter.acquire();
+                client.deleteSession(sessionID);
+                deletedCount.incrementAndGet();
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Converts a validUntil value.
+     *
+     * @param value a number or a string
+     * @return the value as a long
+     */
+    private static long toLong(final Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    /**
+     * Reads the last group finished.
+     *
+     * @return the group id, or null to start over
+     */
+    private String readCheckpoint() {
+        if (this.checkpoint == null || !this.checkpoint.exists()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                        new FileInputStream(this.checkpoint),
+                        StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new EPLiteException(
+                        this.checkpoint + " is not a sweep checkpoint");
+            }
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to read the checkpoint "
+                    + this.checkpoint, e);
+        }
+    }
+
+    /**
+     * Records the last group finished. The file is replaced at once,
+     * so a crash leaves the old or the new one.
+     *
+     * @param groupID the group id
+     */
+    private void writeCheckpoint(final String groupID) {
+        if (this.checkpoint == null) {
+            return;
+        }
+        File temporary = new File(this.checkpoint.getPath() + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(temporary),
+                    StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.write('\n');
+                writer.write(groupID);
+                writer.write('\n');
+            }
+            Files.move(temporary.toPath(), this.checkpoint.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to write the checkpoint "
+                    + this.checkpoint, e);
+        }
+    }
+
+    /**
+     * Gets the checkpoint file.
+     *
+     * @return the file, or null
+     */
+    public File getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Gets the number of groups swept.
+     *
+     * @return the group count
+     */
+    public long getGroupCount() {
+        return this.groupCount.get();
+    }
+
+    /**
+     * Gets the number of sessions looked at.
+     *
+     * @return the session count
+     */
+    public long getSessionCount() {
+        return this.sessionCount.get();
+    }
+
+    /**
+     * Gets the number of sessions deleted.
+     *
+     * @return the deleted count
+     */
+    public long getDeletedCount() {
+        return this.deletedCount.get();
+    }
+
+    /**
+     * Gets the number of deletes that failed.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * Returns the sweep counts.
+     *
+     * @return a description of the sweeper
+     */
+    @Override
+    public String toString() {
+        return "SessionSweeper[groups=" + this.getGroupCount()
+                + ", sessions=" + this.getSessionCount() + ", deleted="
+                + this.getDeletedCount() + ", failed="
+                + this.getFailedCount() + "]";
+    }
+}
@@ -0,0 +1,51 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The default {@link JsonCodec}: the built-in {@link JsonReader},
+ * which decodes UTF-8 straight from the stream. Each thread reuses
+ * one reader, and with it its buffers, for every document.
+ */
+public final class StreamingJsonCodec implements JsonCodec {
+
+    /** The JSON readers, one per calling thread. */
+    private static final ThreadLocal<JsonReader> READERS =
+            new ThreadLocal<JsonReader>() {
+                @Override
+                protected JsonReader initialValue() {
+                    return new JsonReader();
+                }
+            };
+
+    /**
+     * Gets the reader of the calling thread, reset to the given
+     * stream. Call {@link JsonReader#release()} when done.
+     *
+     * @param body the stream
+     * @return the reader
+     */
+    static JsonReader reader(final InputStream body) {
+        return READERS.get().reset(body);
+    }
+
+    /**
+     * Decodes a JSON document with the reader of the calling
+     * thread.
+     *
+     * @param body the document, UTF-8 encoded
+     * @return the decoded value
+     * @throws IOException on read errors
+     */
+    public Object decode(final InputStream body) throws IOException {
+        JsonReader reader = reader(body);
+        try {
+            Object value = reader.readValue();
+            reader.endDocument();
+            return value;
+        } finally {
+            reader.release();
+        }
+    }
+}
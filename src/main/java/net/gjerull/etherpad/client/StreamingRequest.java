@@ -0,0 +1,20 @@
+package net.gjerull.etherpad.client;
+
+import java.io.InputStream;
+
+/**
+ * A {@link Request} that can hand out the response body as a
+ * stream, so the response can be parsed while it arrives instead
+ * of being read into a String first.
+ */
+public interface StreamingRequest extends Request {
+
+    /**
+     * Sends the request and returns the response body. The caller
+     * must close the stream.
+     *
+     * @return the response body
+     * @throws Exception the exception
+     */
+    InputStream open() throws Exception;
+}
@@ -0,0 +1,225 @@
+package net.gjerull.etherpad.client;
+
+import java.net.Socket;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * TLS settings for the connections of one
+ * {@link EPLiteConnection}.<br />
+ * <br />
+ * The SSLContext is built once, when the configuration is
+ * created, and its socket factory is set on each HTTPS
+ * connection opened with it. Reusing one context lets the JDK
+ * resume TLS sessions instead of doing a full handshake for
+ * every call, and leaves the JVM-wide HttpsURLConnection
+ * defaults untouched.
+ */
+public final class TlsConfig {
+
+    /** The Constant DEFAULT_SESSION_CACHE_SIZE. */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 100;
+
+    /** The Constant DEFAULT_SESSION_TIMEOUT_SECONDS. */
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 3600;
+
+    /** The Constant PROTOCOL. */
+    private static final String PROTOCOL = "TLS";
+
+    /** Accepts any host name. */
+    private static final HostnameVerifier TRUST_ALL_HOSTS =
+            new HostnameVerifier() {
+                public boolean verify(final String hostname,
+                        final SSLSession session) {
+                    return true;
+                }
+            };
+
+    /**
+     * The trust manager that does not validate certificates. It
+     * extends X509ExtendedTrustManager so that JSSE doesn't add
+     * its own host name check on top of it.
+     */
+    private static final TrustManager[] TRUST_ALL_CERTS =
+            new TrustManager[] {new X509ExtendedTrustManager() {
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+
+                public void checkClientTrusted(
+                        final X509Certificate[] certs,
+                        final String authType) {
+                }
+
+                public void checkServerTrusted(
+                        final X509Certificate[] certs,
+                        final String authType) {
+                }
+
+                public void checkClientTrusted(
+                        final X509Certificate[] certs,
+                        final String authType, final Socket socket) {
+                }
+
+                public void checkServerTrusted(
+                        final X509Certificate[] certs,
+                        final String authType, final Socket socket) {
+                }
+
+                public void checkClientTrusted(
+                        final X509Certificate[] certs,
+                        final String authType,
+                        final SSLEngine engine) {
+                }
+
+                public void checkServerTrusted(
+                        final X509Certificate[] certs,
+                        final String authType,
+                        final SSLEngine engine) {
+                }
+            } };
+
+    /** Whether certificates and host names are not checked. */
+    private final boolean trustAll;
+
+    /** The SSL context. */
+    private final SSLContext context;
+
+    /** The socket factory of the context. */
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * Instantiates a new TLS configuration.
+     *
+     * @param trustStore            the trusted certificates, or
+     *                              null for the JVM's default
+     *                              trust store
+     * @param nTrustAll             whether to accept any
+     *                              certificate and host name
+     *                              (ignores trustStore)
+     * @param sessionCacheSize      the max number of cached TLS
+     *                              sessions, 0 for no limit
+     * @param sessionTimeoutSeconds how long a cached TLS session
+     *                              can be resumed, 0 for no limit
+     */
+    public TlsConfig(final KeyStore trustStore,
+            final boolean nTrustAll, final int sessionCacheSize,
+            final int sessionTimeoutSeconds) {
+        this.trustAll = nTrustAll;
+        try {
+            TrustManager[] trustManagers = TRUST_ALL_CERTS;
+            if (!nTrustAll) {
+                TrustManagerFactory factory = TrustManagerFactory
+                        .getInstance(TrustManagerFactory
+                                .getDefaultAlgorithm());
+                factory.init(trustStore);
+                trustManagers = factory.getTrustManagers();
+            }
+            this.context = SSLContext.getInstance(PROTOCOL);
+            this.context.init(null, trustManagers, null);
+        } catch (GeneralSecurityException e) {
+            throw new EPLiteException(
+                    "Unable to create SSL context", e);
+        }
+        SSLSessionContext sessions = this.context
+                .getClientSessionContext();
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout(sessionTimeoutSeconds);
+        this.socketFactory = this.context.getSocketFactory();
+    }
+
+    /**
+     * Creates a configuration that accepts any certificate and
+     * host name. This is what the client has always done for
+     * HTTPS, and remains the default of the
+     * {@link EPLiteClient} constructors without a transport.
+     *
+     * @return the configuration
+     */
+    public static TlsConfig trustAll() {
+        return new TlsConfig(null, true, DEFAULT_SESSION_CACHE_SIZE,
+                DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Creates a configuration that validates certificates against
+     * the JVM's default trust store, and checks host names.
+     *
+     * @return the configuration
+     */
+    public static TlsConfig system() {
+        return new TlsConfig(null, false, DEFAULT_SESSION_CACHE_SIZE,
+                DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Creates a configuration that validates certificates against
+     * the given trust store, and checks host names.
+     *
+     * @param trustStore the trusted certificates
+     * @return the configuration
+     */
+    public static TlsConfig trustStore(final KeyStore trustStore) {
+        return new TlsConfig(trustStore, false,
+                DEFAULT_SESSION_CACHE_SIZE,
+                DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Whether certificates and host names are not checked.
+     *
+     * @return true if everything is trusted
+     */
+    public boolean isTrustAll() {
+        return trustAll;
+    }
+
+    /**
+     * Gets the SSL context.
+     *
+     * @return the context
+     */
+    public SSLContext getContext() {
+        return context;
+    }
+
+    /**
+     * Gets the socket factory shared by all connections using
+     * this configuration.
+     *
+     * @return the socket factory
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    /**
+     * Applies the configuration to a connection, if it is an
+     * HTTPS connection. Must be called before connecting.
+     *
+     * @param connection the connection
+     */
+    public void configure(final URLConnection connection) {
+        if (connection instanceof HttpsURLConnection) {
+            HttpsURLConnection https =
+                    (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(socketFactory);
+            if (trustAll) {
+                https.setHostnameVerifier(TRUST_ALL_HOSTS);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * Creates the {@link Request} objects used by
+ * {@link EPLiteConnection} to talk to the Etherpad Lite server.
+ * <br />
+ * Implementations decide how HTTP connections are opened and
+ * whether they are reused between calls. The default transport
+ * is {@link URLConnectionTransport}, a pooled alternative is
+ * {@link PooledTransport}.
+ */
+public interface Transport {
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL, including the query string
+     * @return the request
+     */
+    Request createGetRequest(URL url);
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url  the URL
+     * @param body url-encoded (application/x-www-form-urlencoded)
+     *             request body
+     * @return the request
+     */
+    Request createPostRequest(URL url, byte[] body);
+
+    /**
+     * Releases any resources (e.g. pooled connections) held by
+     * the transport.
+     */
+    void close();
+}
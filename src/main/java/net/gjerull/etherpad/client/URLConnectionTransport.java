@@ -0,0 +1,60 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * The default transport. Every request is sent through
+ * {@link java.net.URLConnection} using {@link GETRequest} and
+ * {@link POSTRequest}, leaving connection reuse to the JDK.
+ */
+public class URLConnectionTransport implements Transport {
+
+    /** The TLS configuration. */
+    private final TlsConfig tlsConfig;
+
+    /**
+     * Instantiates a new transport that, like earlier versions
+     * of this client, trusts any HTTPS certificate.
+     */
+    public URLConnectionTransport() {
+        this(TlsConfig.trustAll());
+    }
+
+    /**
+     * Instantiates a new transport.
+     *
+     * @param nTlsConfig the TLS configuration for HTTPS urls, or
+     *                   null for the JVM defaults
+     */
+    public URLConnectionTransport(final TlsConfig nTlsConfig) {
+        this.tlsConfig = nTlsConfig;
+    }
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL, including the query string
+     * @return the request
+     */
+    public final Request createGetRequest(final URL url) {
+        return new GETRequest(url, tlsConfig);
+    }
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url  the URL
+     * @param body url-encoded request body
+     * @return the request
+     */
+    public final Request createPostRequest(final URL url,
+            final byte[] body) {
+        return new POSTRequest(url, body, tlsConfig);
+    }
+
+    /**
+     * Nothing to release.
+     */
+    public void close() {
+    }
+}
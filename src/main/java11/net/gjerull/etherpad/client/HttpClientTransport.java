@@ -0,0 +1,228 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import etm.core.configuration.EtmManager;
+import etm.core.monitor.EtmMonitor;
+import etm.core.monitor.EtmPoint;
+
+/**
+ * A transport built on java.net.http.HttpClient, multiplexing
+ * concurrent requests over a shared HTTP/2 connection and
+ * falling back to HTTP/1.1 with keep-alive.<br />
+ * <br />
+ * This is the Java 11 version of the class, shipped in
+ * META-INF/versions/11 of the (multi-release) jar.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * EPLiteClient client = EPLiteClient.builder(url, apiKey)
+ * .transport(new HttpClientTransport()).build();
+ * </code>
+ */
+public class HttpClientTransport implements Transport {
+
+    /** The Constant ETM_MONITOR. */
+    private static final EtmMonitor ETM_MONITOR = EtmManager
+            .getEtmMonitor();
+
+    /** The Constant HTTP_OK_MIN. */
+    private static final int HTTP_OK_MIN = 200;
+
+    /** The Constant HTTP_OK_MAX. */
+    private static final int HTTP_OK_MAX = 299;
+
+    /** The shared client. */
+    private final HttpClient client;
+
+    /** The timeout for a whole request, null for none. */
+    private final Duration requestTimeout;
+
+    /**
+     * Instantiates a new transport preferring HTTP/2, with HTTPS
+     * certificates checked against the JVM's default trust store.
+     */
+    public HttpClientTransport() {
+        this(TlsConfig.system(), true,
+                PooledTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS, 0);
+    }
+
+    /**
+     * Instantiates a new transport.
+     *
+     * @param tlsConfig            the TLS configuration for HTTPS
+     *                             connections
+     * @param http2                whether to try HTTP/2 before
+     *                             falling back to HTTP/1.1
+     * @param connectTimeoutMillis the connect timeout
+     * @param requestTimeoutMillis the timeout for a whole request,
+     *                             0 for none
+     */
+    public HttpClientTransport(final TlsConfig tlsConfig,
+            final boolean http2, final int connectTimeoutMillis,
+            final int requestTimeoutMillis) {
+        this.client = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2
+                        : HttpClient.Version.HTTP_1_1)
+                .sslContext(tlsConfig.getContext())
+                .connectTimeout(
+                        Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.requestTimeout = requestTimeoutMillis > 0
+                ? Duration.ofMillis(requestTimeoutMillis)
+                : null;
+    }
+
+    /**
+     * Whether this transport can be used on the running JVM.
+     *
+     * @return true, this is the Java 11 version
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL, including the query string
+     * @return the request
+     */
+    public Request createGetRequest(final URL url) {
+        return new ExchangeRequest(builder(url).GET().build());
+    }
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url  the URL
+     * @param body url-encoded request body
+     * @return the request
+     */
+    public Request createPostRequest(final URL url,
+            final byte[] body) {
+        return new ExchangeRequest(builder(url)
+                .header("Content-Type",
+                        "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build());
+    }
+
+    /**
+     * Nothing to release, the HttpClient closes idle connections
+     * itself.
+     */
+    public void close() {
+    }
+
+    /**
+     * Starts building a request for the given URL.
+     *
+     * @param url the URL
+     * @return the builder
+     */
+    private HttpRequest.Builder builder(final URL url) {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new EPLiteException(
+                    "Error in the URL to the Etherpad Lite instance ("
+                            + e.getClass() + "): "
+                            + e.getMessage());
+        }
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        return builder.header("Accept", "application/json, */*");
+    }
+
+    /**
+     * A request sent through the shared HttpClient.
+     */
+    private final class ExchangeRequest
+            implements StreamingRequest {
+
+        /** The request. */
+        private final HttpRequest request;
+
+        /**
+         * Instantiates a new request.
+         *
+         * @param nRequest the request
+         */
+        ExchangeRequest(final HttpRequest nRequest) {
+            this.request = nRequest;
+        }
+
+        /**
+         * Sends the request and returns the response.
+         *
+         * @return String
+         * @throws Exception the exception
+         */
+        public String send() throws Exception {
+            EtmPoint point = ETM_MONITOR.createPoint(
+                    "Monitor point in HttpClientTransport.send");
+            try {
+                HttpResponse<String> response = client.send(request,
+                        HttpResponse.BodyHandlers
+                                .ofString(StandardCharsets.UTF_8));
+                checkStatus(response.statusCode());
+                return response.body();
+            } finally {
+                point.collect();
+            }
+        }
+
+        /**
+         * Sends the request and returns the response body.
+         *
+         * @return the response body
+         * @throws Exception the exception
+         */
+        public InputStream open() throws Exception {
+            EtmPoint point = ETM_MONITOR.createPoint(
+                    "Monitor point in HttpClientTransport.open");
+            try {
+                HttpResponse<InputStream> response = client.send(
+                        request,
+                        HttpResponse.BodyHandlers.ofInputStream());
+                try {
+                    checkStatus(response.statusCode());
+                } catch (IOException e) {
+                    response.body().close();
+                    throw e;
+                }
+                return response.body();
+            } finally {
+                point.collect();
+            }
+        }
+
+        /**
+         * Fails unless the status is 2xx.
+         *
+         * @param status the response status
+         * @throws IOException if the status is not 2xx
+         */
+        private void checkStatus(final int status) throws IOException {
+            if (status < HTTP_OK_MIN || status > HTTP_OK_MAX) {
+                throw new IOException(
+                        "Server returned HTTP response code: "
+                                + status + " for URL: "
+                                + request.uri());
+            }
+        }
+    }
+}
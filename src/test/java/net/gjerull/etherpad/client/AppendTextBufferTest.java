@@ -0,0 +1,216 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.StringBody;
+import org.mockserver.verify.VerificationTimes;
+
+public class AppendTextBufferTest {
+    private static final int PORT = 9014;
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/appendText")
+                .withBody(new StringBody(
+                        "padID=missing", true)))
+                .respond(invalidParameters("padID does not exist"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/appendText"))
+                .respond(ok("null"));
+        client = new EPLiteClient("http://localhost:" + PORT, "apikey");
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void gathers_appends_within_the_window() throws Exception {
+        AppendTextBuffer buffer = new AppendTextBuffer(client, 60000,
+                1 << 16, 1 << 20, 2);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            buffer.append("log", "line " + i + "\n");
+            expected.append("line ").append(i).append('\n');
+        }
+        buffer.close();
+
+        assertEquals(expected.toString(), appendedText("log"));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/appendText"),
+                VerificationTimes.once());
+        assertEquals(50, buffer.getAppendCount());
+        assertEquals(1, buffer.getSendCount());
+        assertEquals(0, buffer.getPendingBytes());
+    }
+
+    @Test
+    public void sends_full_buffers_in_order() throws Exception {
+        AppendTextBuffer buffer = new AppendTextBuffer(client, 60000,
+                20, 40, 4);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            String line = "entry " + i + " é\n";
+            buffer.append("log", line);
+            buffer.append("other", line);
+            expected.append(line);
+        }
+        buffer.close();
+
+        assertEquals(expected.toString(), appendedText("log"));
+        assertEquals(expected.toString(), appendedText("other"));
+        assertTrue(buffer.getSendCount() > 2);
+        assertTrue(buffer.getSendCount() < 60);
+    }
+
+    @Test
+    public void reports_failures_on_flush() {
+        AppendTextBuffer buffer = new AppendTextBuffer(client, 0,
+                1 << 16, 1 << 20, 1);
+        buffer.append("missing", "lost\n");
+        try {
+            buffer.flush();
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().contains("padID does not exist"));
+        }
+        try {
+            buffer.close();
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().contains("padID does not exist"));
+        }
+        try {
+            buffer.append("log", "late\n");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertEquals("The append buffer is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void holds_back_a_pad_until_its_failed_text_is_sent()
+            throws Exception {
+        mockServer.clear(HttpRequest.request());
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/appendText"), Times.once())
+                .respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/appendText"))
+                .respond(ok("null"));
+        AppendTextBuffer buffer = new AppendTextBuffer(client, 60000,
+                1 << 16, 1 << 20, 1);
+        buffer.append("log", "first\n");
+        try {
+            buffer.flush();
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            // the text is kept
+        }
+        try {
+            buffer.append("log", "gap\n");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().startsWith(
+                    "Unable to append to log until it is flushed"));
+        }
+
+        buffer.flush();
+        buffer.append("log", "second\n");
+        buffer.close();
+
+        assertEquals("[first\n, first\n, second\n]",
+                appendedTexts("log").toString());
+        assertEquals(0, buffer.getPendingBytes());
+    }
+
+    @Test
+    public void sends_every_append_that_races_close() throws Exception {
+        final AppendTextBuffer buffer = new AppendTextBuffer(client,
+                60000, 1 << 16, 1 << 20, 2);
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        while (true) {
+                            buffer.append("race", "x\n");
+                            accepted.incrementAndGet();
+                        }
+                    } catch (EPLiteException e) {
+                        // closed
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        Thread.sleep(20);
+        buffer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(accepted.get() * 2, appendedText("race").length());
+        assertEquals(0, buffer.getPendingBytes());
+    }
+
+    private String appendedText(String padId) throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (String appended : appendedTexts(padId)) {
+            text.append(appended);
+        }
+        return text.toString();
+    }
+
+    private List<String> appendedTexts(String padId) throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (HttpRequest request : mockServer.retrieveRecordedRequests(
+                HttpRequest.request()
+                        .withPath("/api/1.2.13/appendText"))) {
+            List<String> padIds = new ArrayList<>();
+            String appended = null;
+            for (String pair : request.getBodyAsString().split("&")) {
+                String[] kv = pair.split("=", 2);
+                String value = URLDecoder.decode(kv[1], "UTF-8");
+                if (kv[0].equals("padID")) {
+                    padIds.add(value);
+                } else if (kv[0].equals("text")) {
+                    appended = value;
+                }
+            }
+            if (padIds.contains(padId)) {
+                texts.add(appended);
+            }
+        }
+        return texts;
+    }
+}
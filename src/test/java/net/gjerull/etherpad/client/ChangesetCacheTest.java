@@ -0,0 +1,111 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
+
+public class ChangesetCacheTest {
+    private static final int PORT = 9006;
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getRevisionChangeset"))
+                .respond(ok("\"Z:1>5|1+5$hello\""));
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void replays_prefetched_ranges_without_calls()
+            throws Exception {
+        ChangesetCache cache = new ChangesetCache(64 * 1024, true);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, "apikey")
+                .changesetCache(cache).build();
+
+        assertEquals(10, client.prefetchRevisionChangesets("pad", 1, 10));
+        assertEquals(0, client.prefetchRevisionChangesets("pad", 1, 10));
+        for (long rev = 1; rev <= 10; rev++) {
+            assertEquals("Z:1>5|1+5$hello",
+                    client.getRevisionChangeset("pad", rev));
+        }
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionChangeset"),
+                VerificationTimes.exactly(10));
+        assertEquals(10, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertTrue(cache.isOffHeap());
+    }
+
+    @Test
+    public void compresses_large_changesets() {
+        ChangesetCache cache = new ChangesetCache(64 * 1024);
+        StringBuilder text = new StringBuilder("Z:1>2s0|40+2s0$");
+        while (text.length() < 10000) {
+            text.append("gå å gjør et ærend, ");
+        }
+        String changeset = text.toString();
+
+        cache.put("pad", 1, changeset, cache.epoch());
+        cache.put("pad", 2, "Z:1>1*0+1$x", cache.epoch());
+
+        assertEquals(changeset, cache.get("pad", 1));
+        assertEquals("Z:1>1*0+1$x", cache.get("pad", 2));
+        assertTrue(cache.getStoredBytes() < cache.getRawBytes() / 10);
+    }
+
+    @Test
+    public void evicts_the_oldest_changesets_to_stay_in_budget() {
+        ChangesetCache cache = new ChangesetCache(1000);
+
+        for (int rev = 0; rev < 1000; rev++) {
+            cache.put("pad", rev, "Z:1>9|1+9$" + (1000000 + rev),
+                    cache.epoch());
+            assertTrue(cache.getStoredBytes() <= 1000);
+        }
+
+        assertEquals("Z:1>9|1+9$1000999", cache.get("pad", 999));
+        assertNull(cache.get("pad", 0));
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+        assertTrue(cache.size() >= 1000 / 17 - 1);
+        for (int rev = 1000 - cache.size(); rev < 1000; rev++) {
+            assertEquals("Z:1>9|1+9$" + (1000000 + rev),
+                    cache.get("pad", rev));
+        }
+    }
+
+    @Test
+    public void forgets_invalidated_pads() {
+        ChangesetCache cache = new ChangesetCache(1000);
+        long epoch = cache.epoch();
+        cache.put("g.group$pad", 1, "Z:1>1+1$a", epoch);
+        cache.put("other", 1, "Z:1>1+1$b", epoch);
+
+        cache.invalidateGroup("g.group");
+        cache.put("g.group$pad", 2, "Z:1>1+1$stale", epoch);
+
+        assertNull(cache.get("g.group$pad", 1));
+        assertNull(cache.get("g.group$pad", 2));
+        assertEquals("Z:1>1+1$b", cache.get("other", 1));
+        cache.invalidatePad("other");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getStoredBytes());
+    }
+}
@@ -0,0 +1,236 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.json.simple.JSONValue;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+
+@RunWith(JUnitQuickcheck.class)
+public class ChangesetQuickCheckTest {
+    private static final int PORT = 9007;
+    private static final String ALPHABET = "abc xyz\n\n$*+|=-:å€";
+
+    private static ClientAndServer mockServer;
+
+    @BeforeClass
+    public static void startMockServer() {
+        mockServer = MockServers.start(PORT);
+    }
+
+    @AfterClass
+    public static void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Before
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory
+                .getLogger("junit-quickcheck.value-reporting"))
+                        .setLevel(
+                                ch.qos.logback.classic.Level.OFF);
+    }
+
+    @Property(trials = 200)
+    public void applying_a_changeset_produces_the_edited_text(
+            long seed) {
+        Random random = new Random(seed);
+        String text = randomText(random, random.nextInt(200));
+        String[] edit = randomEdit(random, text, 20);
+
+        Changeset changeset = Changeset.parse(edit[0]);
+        StringBuilder inPlace = new StringBuilder(text);
+        changeset.applyTo(inPlace);
+
+        assertEquals(edit[1], changeset.applyTo(text));
+        assertEquals(edit[1], inPlace.toString());
+        assertEquals(edit[1].length(), changeset.getNewLength());
+        assertEquals(changeset.toString(),
+                Changeset.parse(changeset.toString()).toString());
+    }
+
+    @Property(trials = 50)
+    public void document_matches_the_text_across_chunks(long seed) {
+        Random random = new Random(seed);
+        String text = randomText(random, random.nextInt(30000));
+        PadDocument document = new PadDocument(text);
+
+        for (int i = 0; i < 20; i++) {
+            int maxChars = random.nextBoolean() ? 10 : 10000;
+            String[] edit = randomEdit(random, text, maxChars);
+            document.apply(Changeset.parse(edit[0]));
+            text = edit[1];
+
+            assertEquals(text.length(), document.length());
+            if (random.nextInt(4) == 0) {
+                assertEquals(text, document.toString());
+            }
+        }
+        assertEquals(text, document.toString());
+    }
+
+    @Property(trials = 20)
+    public void mirror_matches_get_text_after_every_sync(long seed) {
+        Random random = new Random(seed);
+        List<String> texts = new ArrayList<>();
+        texts.add(randomText(random, random.nextInt(100)) + "\n");
+        int revisions = 1 + random.nextInt(12);
+        mockServer.reset();
+        for (int rev = 1; rev <= revisions; rev++) {
+            String[] edit = randomEdit(random,
+                    texts.get(texts.size() - 1), 20);
+            texts.add(edit[1]);
+            respond("getRevisionChangeset", rev,
+                    JSONValue.toJSONString(edit[0]));
+        }
+        for (int rev = 0; rev <= revisions; rev++) {
+            respond("getText", rev, "{\"text\":"
+                    + JSONValue.toJSONString(texts.get(rev)) + "}");
+        }
+
+        EPLiteClient client = new EPLiteClient(
+                "http://localhost:" + PORT, "apikey");
+        PadMirror mirror = new PadMirror(client, "pad");
+        int head = random.nextInt(revisions + 1);
+        while (true) {
+            mockServer.clear(HttpRequest.request()
+                    .withPath("/api/1.2.13/getRevisionsCount"));
+            mockServer.when(HttpRequest.request()
+                    .withPath("/api/1.2.13/getRevisionsCount"))
+                    .respond(ok("{\"revisions\":" + head + "}"));
+
+            mirror.sync();
+
+            assertEquals(head, mirror.getRevision());
+            assertEquals(client.getPadText("pad", head).getText(),
+                    mirror.getText());
+            if (head == revisions) {
+                break;
+            }
+            head += 1 + random.nextInt(revisions - head);
+        }
+    }
+
+    @Test
+    public void mirror_reloads_a_recreated_pad() {
+        mockServer.reset();
+        revisions(1);
+        respond("getText", 1, "{\"text\":\"hello\\n\"}");
+        EPLiteClient client = new EPLiteClient(
+                "http://localhost:" + PORT, "apikey");
+        PadMirror mirror = new PadMirror(client, "pad");
+        mirror.sync();
+
+        // Recreated as "hi\n", then edited twice
+        revisions(2);
+        respond("getRevisionChangeset", 2,
+                JSONValue.toJSONString("Z:3>1=2+1$!"));
+        respond("getText", 2, "{\"text\":\"hi!\\n\"}");
+
+        assertEquals(0, mirror.sync());
+        assertEquals(2, mirror.getRevision());
+        assertEquals("hi!\n", mirror.getText());
+    }
+
+    private static void revisions(int head) {
+        mockServer.clear(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionsCount"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionsCount"))
+                .respond(ok("{\"revisions\":" + head + "}"));
+    }
+
+    private static void respond(String method, int rev, String data) {
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/" + method)
+                .withQueryStringParameter(
+                        new Parameter("rev", Integer.toString(rev))))
+                .respond(ok(data));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(ALPHABET.charAt(
+                    random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Makes random edits to a text, the way an editor session
+     * would.
+     *
+     * @return the changeset and the edited text
+     */
+    private static String[] randomEdit(Random random, String text,
+            int maxChars) {
+        StringBuilder ops = new StringBuilder();
+        StringBuilder bank = new StringBuilder();
+        StringBuilder result = new StringBuilder();
+        int pos = 0;
+        while (pos < text.length() || random.nextInt(3) == 0) {
+            int n = random.nextInt(Math.max(1,
+                    Math.min(maxChars, text.length() - pos)) + 1);
+            int op = random.nextInt(3);
+            if (op == 0 && pos < text.length()) {
+                n = Math.min(n, text.length() - pos);
+                append(ops, random, '=', text.substring(pos, pos + n));
+                result.append(text, pos, pos + n);
+                pos += n;
+            } else if (op == 1 && pos < text.length()) {
+                n = Math.min(n, text.length() - pos);
+                append(ops, random, '-', text.substring(pos, pos + n));
+                pos += n;
+            } else {
+                String inserted = randomText(random, n);
+                append(ops, random, '+', inserted);
+                bank.append(inserted);
+                result.append(inserted);
+            }
+            if (random.nextInt(8) == 0) {
+                // Leave the rest to the implicit keep
+                break;
+            }
+        }
+        result.append(text, pos, text.length());
+        int change = result.length() - text.length();
+        String changeset = "Z:" + Integer.toString(text.length(), 36)
+                + (change >= 0 ? ">" : "<")
+                + Integer.toString(Math.abs(change), 36) + ops + "$"
+                + bank;
+        return new String[] {changeset, result.toString() };
+    }
+
+    private static void append(StringBuilder ops, Random random,
+            char opcode, String chars) {
+        if (opcode != '-' && random.nextBoolean()) {
+            ops.append('*').append(Integer.toString(random.nextInt(40),
+                    36));
+        }
+        int lines = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        if (lines > 0) {
+            ops.append('|').append(Integer.toString(lines, 36));
+        }
+        ops.append(opcode).append(Integer.toString(chars.length(), 36));
+    }
+}
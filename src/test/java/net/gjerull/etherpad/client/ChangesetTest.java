@@ -0,0 +1,76 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class ChangesetTest {
+
+    @Test
+    public void applies_an_etherpad_changeset() {
+        Changeset changeset = Changeset.parse("Z:8>3=2*0|1+4-1$abc\n");
+
+        assertEquals("heabc\nlo\nxy", changeset.applyTo("hello\nxy"));
+        assertEquals(8, changeset.getOldLength());
+        assertEquals(11, changeset.getNewLength());
+        assertEquals(3, changeset.getOperationCount());
+        assertEquals(Changeset.INSERT, changeset.getOpcode(1));
+        assertEquals(4, changeset.getChars(1));
+        assertEquals(1, changeset.getLines(1));
+        assertArrayEquals(new int[] {0 }, changeset
+                .getAttributeNumbers(1));
+        assertEquals("Z:8>3=2*0|1+4-1$abc\n", changeset.toString());
+    }
+
+    @Test
+    public void resolves_attributes_in_the_pool() {
+        AttributePool pool = AttributePool.fromMap((Map) JSONValue
+                .parse("{\"pool\":{\"numToAttrib\":{"
+                        + "\"0\":[\"author\",\"a.x3VZ2\"],"
+                        + "\"1\":[\"bold\",\"true\"]},"
+                        + "\"nextNum\":2}}"));
+        Changeset changeset = Changeset.parse("Z:1>2*0*1+2$ab");
+
+        Map<String, String> attributes = changeset.getAttributes(0,
+                pool);
+
+        assertEquals("a.x3VZ2", attributes.get("author"));
+        assertEquals("true", attributes.get("bold"));
+        assertEquals(1, changeset.getMaxAttributeNumber());
+        assertEquals(2, pool.getNextNumber());
+        assertTrue(pool.toString().contains("1=[bold, true]"));
+    }
+
+    @Test
+    public void rejects_malformed_changesets() {
+        String[] malformed = {"X:1>0$", "Z:1", "Z:1>1+2$a",
+                "Z:1>0=2$", "Z:1>1+1", "Z:1>0?1$", "Z:1>1+$a",
+                "Z:1>1*+1$a", "Z:1<1+1$a" };
+        for (String changeset : malformed) {
+            try {
+                Changeset.parse(changeset);
+                fail(changeset);
+            } catch (EPLiteException e) {
+                assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("Malformed"));
+            }
+        }
+    }
+
+    @Test
+    public void leaves_the_text_alone_when_the_length_is_wrong() {
+        StringBuilder text = new StringBuilder("hello");
+        try {
+            Changeset.parse("Z:4>1+1$x").applyTo(text);
+            fail();
+        } catch (EPLiteException e) {
+            assertEquals("hello", text.toString());
+        }
+    }
+}
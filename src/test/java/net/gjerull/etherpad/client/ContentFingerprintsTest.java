@@ -0,0 +1,116 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
+
+public class ContentFingerprintsTest {
+    private static final int PORT = 9015;
+
+    private ClientAndServer mockServer;
+    private ContentFingerprints fingerprints;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"report\\n\"}"));
+        for (String method : new String[] {"setText", "setHTML",
+                "appendText", "deletePad" }) {
+            mockServer.when(HttpRequest.request()
+                    .withPath("/api/1.2.13/" + method))
+                    .respond(ok("null"));
+        }
+        fingerprints = new ContentFingerprints(1024);
+        client = EPLiteClient.builder("http://localhost:" + PORT,
+                "apikey").contentFingerprints(fingerprints).build();
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void skips_writes_of_the_last_content() {
+        client.setText("pad1", "v1");
+        client.setText("pad1", "v1");
+        client.setText("pad2", "v1");
+        client.setText("pad1", "v2");
+        client.setText("pad1", "v1");
+        client.setText("pad1", "v1");
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/setText"),
+                VerificationTimes.exactly(4));
+        assertEquals(2, fingerprints.getSkipCount());
+    }
+
+    @Test
+    public void learns_from_reads_and_forgets_changed_pads() {
+        client.getText("pad1");
+        client.setText("pad1", "report\n");
+        assertEquals(1, fingerprints.getSkipCount());
+
+        client.appendText("pad1", "more\n");
+        client.setText("pad1", "report\n");
+        client.setHTML("pad1", "report\n");
+        client.deletePad("pad1");
+        client.setHTML("pad1", "report\n");
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/setText"),
+                VerificationTimes.once());
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/setHTML"),
+                VerificationTimes.exactly(2));
+        assertEquals(1, fingerprints.getSkipCount());
+    }
+
+    @Test
+    public void writes_again_after_reading_an_edit_made_elsewhere() {
+        client.setHTML("pad1", "<b>report</b>");
+        client.getText("pad1");
+        client.setHTML("pad1", "<b>report</b>");
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/setHTML"),
+                VerificationTimes.exactly(2));
+        assertEquals(0, fingerprints.getSkipCount());
+
+        client.setHTML("pad1", "<b>report</b>");
+        assertEquals(1, fingerprints.getSkipCount());
+    }
+
+    @Test
+    public void keeps_a_bounded_table() {
+        ContentFingerprints table = new ContentFingerprints(10);
+        assertEquals(16, table.getCapacity());
+        for (int i = 0; i < 100; i++) {
+            table.put("pad" + i, ContentFingerprints.TEXT, i,
+                    table.epoch());
+        }
+        assertTrue(table.size() <= 16);
+        assertTrue(table.isUnchanged("pad99", ContentFingerprints.TEXT,
+                99));
+
+        long epoch = table.epoch();
+        table.invalidatePad("pad99");
+        table.put("pad99", ContentFingerprints.TEXT, 99, epoch);
+        assertFalse(table.isUnchanged("pad99",
+                ContentFingerprints.TEXT, 99));
+        assertNotEquals(ContentFingerprints.fingerprint("ab"),
+                ContentFingerprints.fingerprint("ba"));
+    }
+}
@@ -0,0 +1,163 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+
+public class EPLiteAsyncClientTest {
+    private static final int PORT = 9003;
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"foo\\n\"}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("POST")
+                        .withPath("/api/1.2.13/deletePad"))
+                .respond(invalidParameters("padID does not exist"));
+        client = new EPLiteClient("http://localhost:" + PORT,
+                "apikey");
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void keeps_at_most_max_in_flight_calls_running()
+            throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Transport transport = new URLConnectionTransport();
+        Transport counting = new Transport() {
+            public Request createGetRequest(final URL url) {
+                final Request request = transport.createGetRequest(url);
+                return new Request() {
+                    public String send() throws Exception {
+                        int now = running.incrementAndGet();
+                        while (true) {
+                            int max = maxRunning.get();
+                            if (now <= max || maxRunning
+                                    .compareAndSet(max, now)) {
+                                break;
+                            }
+                        }
+                        try {
+                            return request.send();
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                    }
+                };
+            }
+
+            public Request createPostRequest(final URL url,
+                    final byte[] body) {
+                return transport.createPostRequest(url, body);
+            }
+
+            public void close() {
+            }
+        };
+        EPLiteClient countingClient = EPLiteClient.builder(
+                "http://localhost:" + PORT, "apikey")
+                .transport(counting).build();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        EPLiteAsyncClient async = new EPLiteAsyncClient(
+                countingClient, pool, 3);
+
+        List<EPLiteFuture<Map>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(async.getText("pad" + i));
+        }
+        for (EPLiteFuture<Map> future : futures) {
+            assertEquals("foo\n", future.get(10, TimeUnit.SECONDS)
+                    .get("text"));
+        }
+        async.close();
+        pool.shutdown();
+
+        assertTrue("max in flight " + maxRunning.get(),
+                maxRunning.get() <= 3);
+        assertEquals(0, async.getQueuedCalls());
+    }
+
+    @Test
+    public void reports_api_errors_to_callbacks_and_get()
+            throws Exception {
+        EPLiteAsyncClient async = new EPLiteAsyncClient(client, 2);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<>();
+
+        EPLiteFuture<Void> future = async.deletePad("missing")
+                .addCallback(new EPLiteCallback<Void>() {
+                    public void onSuccess(final Void result) {
+                        latch.countDown();
+                    }
+
+                    public void onFailure(final Throwable cause) {
+                        failures.add(cause);
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, failures.size());
+        assertEquals("padID does not exist",
+                failures.get(0).getMessage());
+        try {
+            future.get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EPLiteException);
+        }
+        async.close();
+    }
+
+    @Test
+    public void callback_added_after_completion_runs_immediately()
+            throws Exception {
+        EPLiteAsyncClient async = new EPLiteAsyncClient(client, 1);
+        EPLiteFuture<Map> future = async.getText("pad");
+        future.get(10, TimeUnit.SECONDS);
+        final List<Map> results = new ArrayList<>();
+
+        future.addCallback(new EPLiteCallback<Map>() {
+            public void onSuccess(final Map result) {
+                results.add(result);
+            }
+
+            public void onFailure(final Throwable cause) {
+            }
+        });
+
+        assertEquals(1, results.size());
+        async.close();
+    }
+}
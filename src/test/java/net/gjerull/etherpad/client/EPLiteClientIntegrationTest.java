@@ -207,7 +207,7 @@ public class EPLiteClientIntegrationTest {
 
 		mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/setPassword")
 				.withBody(new StringBody(
-						"password=integration&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&padID=g.ZlouqmXZVtoTu2pf%24integration-test-1")))
+						"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&password=integration&padID=g.ZlouqmXZVtoTu2pf%24integration-test-1")))
 				.respond(HttpResponse.response().withStatusCode(200)
 						.withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
 
@@ -724,7 +724,7 @@ public class EPLiteClientIntegrationTest {
 			mockServer.clear(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/saveRevision"));
 			mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/saveRevision")
 					.withBody(new StringBody(
-							"rev=2&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&padID=integration-test-pad")))
+							"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&rev=2&padID=integration-test-pad")))
 					.respond(HttpResponse.response().withStatusCode(200)
 							.withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
 
@@ -808,7 +808,7 @@ public class EPLiteClientIntegrationTest {
 
 			mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/sendClientsMessage")
 					.withBody(new StringBody(
-							"msg=test+message&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&padID=integration-test-pad")))
+							"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&msg=test+message&padID=integration-test-pad")))
 					.respond(HttpResponse.response().withStatusCode(200)
 							.withBody("{\"code\":0,\"message\":\"ok\",\"data\":{}}"));
 
@@ -866,7 +866,7 @@ public class EPLiteClientIntegrationTest {
 
 		mockServer
 				.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/copyPad").withBody(new StringBody(
-						"sourceID=integration-test-pad&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&force=false&destinationID=integration-test-pad-copy")))
+						"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&sourceID=integration-test-pad&force=false&destinationID=integration-test-pad-copy")))
 				.respond(HttpResponse.response().withStatusCode(200).withBody(
 						"{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-test-pad-copy\"}}"));
 
@@ -884,7 +884,7 @@ public class EPLiteClientIntegrationTest {
 		mockServer.clear(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/copyPad"));
 		mockServer
 				.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/copyPad").withBody(new StringBody(
-						"sourceID=integration-test-pad&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&force=false&destinationID=integration-move-pad-move")))
+						"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&sourceID=integration-test-pad&force=false&destinationID=integration-move-pad-move")))
 				.respond(HttpResponse.response().withStatusCode(200).withBody(
 						"{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-move-pad-move\"}}"));
 
@@ -909,7 +909,7 @@ public class EPLiteClientIntegrationTest {
 		mockServer.clear(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/copyPad"));
 		mockServer
 				.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/copyPad").withBody(new StringBody(
-						"sourceID=integration-move-pad-move&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&force=true&destinationID=integration-test-pad-copy")))
+						"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&sourceID=integration-move-pad-move&force=true&destinationID=integration-test-pad-copy")))
 				.respond(HttpResponse.response().withStatusCode(200).withBody(
 						"{\"code\":0,\"message\":\"ok\",\"data\":{\"padID\":\"integration-test-pad-copy\"}}"));
 		client.copyPad(movePadId, copyPadId, true);
@@ -923,7 +923,7 @@ public class EPLiteClientIntegrationTest {
 
 		mockServer
 				.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/movePad").withBody(new StringBody(
-						"sourceID=integration-move-pad-move&apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&force=true&destinationID=integration-test-pad-copy")))
+						"apikey=a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58&sourceID=integration-move-pad-move&force=true&destinationID=integration-test-pad-copy")))
 				.respond(HttpResponse.response().withStatusCode(200)
 						.withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
 		client.movePad(movePadId, copyPadId, true);
@@ -0,0 +1,96 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+
+public class EPLiteClientStreamingTest {
+    private static final int PORT = 9004;
+
+    private ClientAndServer mockServer;
+    private String text;
+
+    @Before
+    public void startMockServer() {
+        StringBuilder pad = new StringBuilder();
+        for (int i = 0; pad.length() < 1024 * 1024; i++) {
+            pad.append("Line ").append(i)
+                    .append(": gå å gjør et ærend \"€\"\n");
+        }
+        text = pad.toString();
+        mockServer = MockServers.start(PORT);
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getText")
+                        .withQueryStringParameter(
+                                new Parameter("rev", "7")))
+                .respond(ok("{\"text\":" + JSONValue.toJSONString(text)
+                        + "}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getHTML"))
+                .respond(ok("{\"html\":\"<p>f\\u00e6\\/<\\/p>\"}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getText"))
+                .respond(invalidParameters("padID does not exist"));
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void writes_text_to_writer() throws Exception {
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, "apikey")
+                .transport(new PooledTransport()).build();
+        StringWriter out = new StringWriter();
+
+        client.getText("pad", 7, out);
+
+        assertEquals(text, out.toString());
+    }
+
+    @Test
+    public void writes_html_to_stream() throws Exception {
+        EPLiteClient client = new EPLiteClient(
+                "http://localhost:" + PORT, "apikey");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        client.getHTML("pad", out);
+
+        assertEquals("<p>fæ/</p>",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reports_api_errors() throws Exception {
+        EPLiteClient client = new EPLiteClient(
+                "http://localhost:" + PORT, "apikey");
+        StringWriter out = new StringWriter();
+
+        try {
+            client.getText("missing", out);
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+        assertEquals("", out.toString());
+    }
+}
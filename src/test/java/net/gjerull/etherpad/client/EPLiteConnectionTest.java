@@ -2,6 +2,10 @@ package net.gjerull.etherpad.client;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -79,6 +83,7 @@ public class EPLiteConnectionTest {
 			fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
 		} catch (EPLiteException e) {
 			assertEquals("groupID does not exist", e.getMessage());
+			assertEquals(EPLiteConnection.CODE_INVALID_PARAMETERS, ((EPLiteApiException) e).getCode());
 		}
 
 	}
@@ -173,4 +178,60 @@ public class EPLiteConnectionTest {
 
 		assertEquals("apikey=apikey&padID=g.oln5fzaE8qfv4gdE%24test-1&text=%C3%A6%C3%B8%C3%A5", queryString);
 	}
+
+	@Test
+	public void handle_valid_response_stream_from_server() throws Exception {
+		EPLiteConnection connection = new EPLiteConnection("http://example.com/", "apikey", API_VERSION, ENCODING);
+		String listAllPads = "{\"padIDs\": [\n" + "  \"test\",\n" + "  \"t\\u00e6st2\",\n" + "  \"tæst3\"\n" + "]}";
+		String serverResponse = String.format(RESPONSE_TEMPLATE, 0, "ok", listAllPads);
+
+		Map response = (Map) connection.handleResponse(stream(serverResponse));
+
+		assertEquals(Arrays.asList("test", "tæst2", "tæst3"), response.get("padIDs"));
+	}
+
+	@Test
+	public void handle_error_response_stream_from_server() throws Exception {
+		EPLiteConnection connection = new EPLiteConnection("http://example.com/", "apikey", API_VERSION, ENCODING);
+		String serverResponse = String.format(RESPONSE_TEMPLATE, 1, "groupID does not exist", "{\"ignored\": [1, 2]}");
+
+		try {
+			connection.handleResponse(stream(serverResponse));
+			fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+		} catch (EPLiteException e) {
+			assertEquals("groupID does not exist", e.getMessage());
+		}
+	}
+
+	@Test
+	public void unparsable_response_stream_from_the_server() throws Exception {
+		EPLiteConnection connection = new EPLiteConnection("http://example.com/", "apikey", API_VERSION, ENCODING);
+		String serverResponse = "<html>\n" + "<head><title>Some HTML</title></head><body><h1>Some HTML</h1></body>"
+				+ "</html>\n";
+
+		try {
+			connection.handleResponse(stream(serverResponse));
+			fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+		} catch (EPLiteException e) {
+			assertTrue("Unexpected Message: " + e.getMessage(),
+					e.getMessage().startsWith("Unable to parse JSON response ("));
+		}
+	}
+
+	@Test
+	public void unexpected_response_stream_from_the_server() throws Exception {
+		EPLiteConnection connection = new EPLiteConnection("http://example.com/", "apikey", API_VERSION, ENCODING);
+
+		try {
+			connection.handleResponse(stream("{\"data\": null}"));
+			fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+		} catch (EPLiteException e) {
+			assertTrue("Unexpected Message: " + e.getMessage(),
+					e.getMessage().startsWith("An unexpected response from the server:"));
+		}
+	}
+
+	private static InputStream stream(String response) {
+		return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+	}
 }
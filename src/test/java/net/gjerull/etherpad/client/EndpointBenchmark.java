@@ -0,0 +1,76 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Building the URL of a GET and of a POST call: from the api path
+ * through java.net.URI and URL on every call (as EPLiteConnection
+ * used to) versus from the precomputed {@link EndpointTable}. Run
+ * with the GC profiler (as main does) and compare
+ * gc.alloc.rate.norm, the bytes allocated per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EndpointBenchmark {
+
+    private static final String QUERY =
+            "apikey=apikey&padID=g.s8oes9dhwrvt0zif%24test&rev=7";
+
+    private EPLiteConnection connection;
+    private EndpointTable table;
+
+    @Setup
+    public void setUp() {
+        connection = new EPLiteConnection("http://localhost:9001/",
+                "apikey", "1.2.13", "UTF-8");
+        table = new EndpointTable(connection);
+    }
+
+    @Benchmark
+    public URL getPerCall() throws Exception {
+        String base = connection.apiUrl(connection.apiPath("getText"),
+                null).toString();
+        return new URL(base + "?" + QUERY);
+    }
+
+    @Benchmark
+    public URL getFromTable() {
+        return table.get("getText").withQuery(QUERY);
+    }
+
+    @Benchmark
+    public URL postPerCall() {
+        return connection.apiUrl(connection.apiPath("setText"), null);
+    }
+
+    @Benchmark
+    public URL postFromTable() {
+        return table.get("setText").getUrl();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EndpointBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
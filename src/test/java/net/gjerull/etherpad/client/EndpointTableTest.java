@@ -0,0 +1,51 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+public class EndpointTableTest {
+
+    @Test
+    public void builds_the_same_urls_as_api_url() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "https://example.com:8443/etherpad%20dir/", "apikey",
+                "1.2.13", "UTF-8");
+        EndpointTable table = new EndpointTable(connection);
+
+        for (String apiMethod : EndpointTable.API_METHODS) {
+            URL expected = connection.apiUrl(
+                    connection.apiPath(apiMethod), null);
+            assertEquals(expected.toString(),
+                    table.get(apiMethod).getUrl().toString());
+            assertEquals(expected + "?apikey=apikey&rev=2", table
+                    .get(apiMethod).withQuery("apikey=apikey&rev=2")
+                    .toString());
+        }
+        assertSame(table.get("getText"), table.get("getText"));
+        assertEquals("https://example.com:8443/etherpad%20dir"
+                + "/api/1.2.13/restoreRevision?a=b",
+                table.get("restoreRevision").withQuery("a=b")
+                        .toString());
+    }
+
+    @Test
+    public void reports_invalid_urls_when_called() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "example.com", "apikey", "1.2.13", "UTF-8");
+        EndpointTable table = new EndpointTable(connection);
+
+        try {
+            table.get("getText");
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals(true, e.getMessage().startsWith(
+                    "Error in the URL to the Etherpad Lite instance"));
+        }
+    }
+}
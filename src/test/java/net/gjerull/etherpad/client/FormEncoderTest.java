@@ -0,0 +1,120 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FormEncoderTest {
+
+    @Test
+    public void puts_the_api_key_first() throws Exception {
+        FormEncoder encoder = new FormEncoder("key&=", "UTF-8");
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("padID", "g.oln5fzaE8qfv4gdE$test-1");
+        args.put("rev", 27);
+        args.put("apikey", "ignored");
+
+        assertEquals("apikey=key%26%3D&padID=g.oln5fzaE8qfv4gdE%24test-1"
+                + "&rev=27", encoder.encodeToString(args));
+        assertEquals(3, args.size());
+        assertEquals("ignored", args.get("apikey"));
+    }
+
+    @Test
+    public void encodes_like_url_encoder() throws Exception {
+        FormEncoder encoder = new FormEncoder("apikey", "UTF-8");
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                switch (random.nextInt(4)) {
+                case 0:
+                    value.append((char) random.nextInt(0x80));
+                    break;
+                case 1:
+                    value.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 2:
+                    value.append((char) (0x800 + random.nextInt(0xf7ff)));
+                    break;
+                default:
+                    value.appendCodePoint(
+                            0x10000 + random.nextInt(0xfffff));
+                    break;
+                }
+            }
+            Map<String, Object> args = new HashMap<>();
+            args.put("text", value.toString());
+
+            assertArrayEquals(value.toString(), ("apikey=apikey&text="
+                    + URLEncoder.encode(value.toString(), "UTF-8"))
+                            .getBytes(StandardCharsets.US_ASCII),
+                    encoder.encode(args));
+        }
+    }
+
+    @Test
+    public void encodes_numbers() throws Exception {
+        FormEncoder encoder = new FormEncoder("apikey", "UTF-8");
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("a", Long.MIN_VALUE);
+        args.put("b", -7);
+        args.put("c", 0L);
+        args.put("d", 1.5);
+        args.put("e", null);
+
+        assertEquals("apikey=apikey&a=-9223372036854775808&b=-7&c=0"
+                + "&d=1.5&e=null", encoder.encodeToString(args));
+    }
+
+    @Test
+    public void encodes_large_values() throws Exception {
+        FormEncoder encoder = new FormEncoder("apikey", "UTF-8");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200000) {
+            text.append("gå å gjør et ærend 😀 ");
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put("text", text.toString());
+        String expected = "apikey=apikey&text="
+                + URLEncoder.encode(text.toString(), "UTF-8");
+
+        assertEquals(expected, encoder.encodeToString(args));
+        args.put("text", "small");
+        assertEquals("apikey=apikey&text=small",
+                encoder.encodeToString(args));
+    }
+
+    @Test
+    public void uses_other_encodings() throws Exception {
+        FormEncoder encoder = new FormEncoder("apikey", "ISO-8859-1");
+        Map<String, Object> args = new HashMap<>();
+        args.put("text", "æøå");
+
+        assertEquals("apikey=apikey&text=%E6%F8%E5",
+                encoder.encodeToString(args));
+    }
+
+    @Test
+    public void rejects_unsupported_encodings() throws Exception {
+        FormEncoder encoder = new FormEncoder("apikey", "no-such");
+        try {
+            encoder.encode(new HashMap<String, Object>());
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("Unable to URLEncode using encoding 'no-such'",
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class IncrementalBackupTest {
+    private static final int PORT = 9018;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private File index;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[\"p1\",\"p2\",\"p3\"]}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"content\\n\"}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionChangeset"))
+                .respond(ok("\"Z:8>1=7*0+1$x\""));
+        serve("p1", 1000, 3);
+        serve("p2", 2000, 5);
+        serve("p3", 3000, 1);
+        client = new EPLiteClient("http://localhost:" + PORT, "apikey");
+        index = new File(folder.getRoot(), "backup.index");
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void backs_up_only_changed_pads() throws Exception {
+        IncrementalBackup backup = new IncrementalBackup(client, index,
+                4, 0, true);
+        StringWriter first = new StringWriter();
+        assertEquals(3, backup.backup(first));
+        assertEquals(3, first.toString().split("\n").length);
+        assertTrue(first.toString().contains(
+                "{\"padID\":\"p2\",\"rev\":5,\"text\":\"content\\n\"}"));
+
+        StringWriter second = new StringWriter();
+        assertEquals(0, backup.backup(second));
+        assertEquals("", second.toString());
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionsCount"),
+                VerificationTimes.exactly(3));
+
+        serve("p2", 2500, 7);
+        serve("p3", 3500, 1);
+        StringWriter third = new StringWriter();
+        assertEquals(1, backup.backup(third));
+        Map line = (Map) JSONValue.parse(third.toString());
+        assertEquals("p2", line.get("padID"));
+        assertEquals(5L, line.get("fromRev"));
+        assertEquals(7L, line.get("rev"));
+        assertEquals(2, ((List) line.get("changesets")).size());
+        assertEquals(9, backup.getCheckedCount());
+        assertEquals(4, backup.getChangedCount());
+    }
+
+    @Test
+    public void reloads_and_compacts_the_index() throws Exception {
+        IncrementalBackup backup = new IncrementalBackup(client, index,
+                2, 0, false);
+        backup.backup(new StringWriter());
+        for (int i = 1; i <= 3; i++) {
+            serve("p1", 1000 + i, 3 + i);
+            backup.backup(new StringWriter());
+        }
+        List<String> lines = Files.readAllLines(index.toPath(),
+                StandardCharsets.UTF_8);
+        assertTrue("Not compacted: " + lines, lines.size() <= 7);
+        assertEquals("# etherpad backup index 1", lines.get(0));
+
+        IncrementalBackup reloaded = new IncrementalBackup(client,
+                index, 2, 0, false);
+        assertEquals(3, reloaded.size());
+        assertEquals(0, reloaded.backup(new StringWriter()));
+        serve("p1", 2000, 8);
+        StringWriter out = new StringWriter();
+        assertEquals(1, reloaded.backup(out));
+        assertEquals("{\"padID\":\"p1\",\"rev\":8,\"text\":\"content\\n\"}\n",
+                out.toString());
+    }
+
+    @Test
+    public void writes_text_after_many_revisions_and_drops_deleted_pads()
+            throws Exception {
+        IncrementalBackup backup = new IncrementalBackup(client, index,
+                2, 0, true);
+        backup.backup(new StringWriter());
+        serve("p2", 2500, 5 + IncrementalBackup.MAX_CHANGESETS + 1);
+        mockServer.clear(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[\"p1\",\"p2\"]}"));
+
+        StringWriter out = new StringWriter();
+        assertEquals(1, backup.backup(out));
+        assertTrue(out.toString().contains("\"text\":\"content\\n\""));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionChangeset"),
+                VerificationTimes.exactly(0));
+        assertEquals(2, backup.size());
+        assertEquals(3, Files.readAllLines(index.toPath(),
+                StandardCharsets.UTF_8).size());
+        assertEquals(2, new IncrementalBackup(client, index, 2, 0, true)
+                .size());
+    }
+
+    @Test
+    public void skips_missing_pads_and_stops_on_other_errors()
+            throws Exception {
+        mockServer.clear(HttpRequest.request()
+                .withPath("/api/1.2.13/getLastEdited")
+                .withQueryStringParameter(new Parameter("padID", "p3")));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getLastEdited")
+                .withQueryStringParameter(new Parameter("padID", "p3")))
+                .respond(invalidParameters("padID does not exist"));
+        IncrementalBackup backup = new IncrementalBackup(client, index,
+                1, 0, false);
+        assertEquals(2, backup.backup(new StringWriter()));
+        assertEquals(1, backup.getFailedCount());
+
+        mockServer.clear(HttpRequest.request()
+                .withPath("/api/1.2.13/getLastEdited"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getLastEdited"))
+                .respond(HttpResponse.response().withStatusCode(503));
+        try {
+            backup.backup(new StringWriter());
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().startsWith("Backup stopped"));
+        }
+        assertEquals(1, backup.getFailedCount());
+        assertEquals(2, backup.size());
+    }
+
+    private void serve(String padId, long lastEdited, long revisions) {
+        HttpRequest lastEditedRequest = HttpRequest.request()
+                .withPath("/api/1.2.13/getLastEdited")
+                .withQueryStringParameter(new Parameter("padID", padId));
+        HttpRequest revisionsRequest = HttpRequest.request()
+                .withPath("/api/1.2.13/getRevisionsCount")
+                .withQueryStringParameter(new Parameter("padID", padId));
+        mockServer.clear(lastEditedRequest);
+        mockServer.clear(revisionsRequest);
+        mockServer.when(lastEditedRequest)
+                .respond(ok("{\"lastEdited\":" + lastEdited + "}"));
+        mockServer.when(revisionsRequest)
+                .respond(ok("{\"revisions\":" + revisions + "}"));
+    }
+}
@@ -0,0 +1,98 @@
+package net.gjerull.etherpad.client;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Decoding Etherpad Lite responses with each {@link JsonCodec}:
+ * a getSessionInfo response, a listAllPads response of 1000 pads
+ * and a getText response of a 1 MB pad. Run with the GC profiler
+ * (as main does) to also compare gc.alloc.rate.norm, the bytes
+ * allocated per response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonCodecBenchmark {
+
+    @Param({"streaming", "json-simple", "jackson" })
+    private String codecName;
+
+    @Param({"sessionInfo", "listAllPads", "getText" })
+    private String response;
+
+    private byte[] body;
+    private EPLiteConnection connection;
+
+    @Setup
+    public void setUp() {
+        String data;
+        if ("sessionInfo".equals(response)) {
+            data = "{\"authorID\":\"a.s8oes9dhwrvt0zif\","
+                    + "\"groupID\":\"g.s8oes9dhwrvt0zif\","
+                    + "\"validUntil\":1312201246}";
+        } else if ("listAllPads".equals(response)) {
+            StringBuilder pads = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                pads.append(i == 0 ? "" : ",")
+                        .append("\"g.s8oes9dhwrvt0zif$pad-").append(i)
+                        .append('"');
+            }
+            data = "{\"padIDs\":[" + pads + "]}";
+        } else {
+            StringBuilder text = new StringBuilder();
+            int line = 0;
+            while (text.length() < 1024 * 1024) {
+                text.append("Line ").append(line++)
+                        .append(": gå å gjør et ærend, \"quoted\"\n");
+            }
+            data = "{\"text\":" + JSONValue.toJSONString(text.toString())
+                    + "}";
+        }
+        body = ("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        JsonCodec codec;
+        if ("streaming".equals(codecName)) {
+            codec = new StreamingJsonCodec();
+        } else if ("json-simple".equals(codecName)) {
+            codec = new JsonSimpleCodec();
+        } else {
+            codec = new JacksonCodec();
+        }
+        connection = new EPLiteConnection("http://localhost:9001",
+                "apikey", "1.2.13", "UTF-8",
+                new URLConnectionTransport(), codec);
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return connection.handleResponse(new ByteArrayInputStream(body));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(JsonCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
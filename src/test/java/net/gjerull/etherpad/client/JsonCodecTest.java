@@ -0,0 +1,95 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class JsonCodecTest {
+    private final JsonCodec codec;
+
+    public JsonCodecTest(String name, JsonCodec codec) {
+        this.codec = codec;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> codecs() {
+        return Arrays.asList(
+                new Object[] {"streaming", new StreamingJsonCodec() },
+                new Object[] {"json-simple", new JsonSimpleCodec() },
+                new Object[] {"jackson", new JacksonCodec() });
+    }
+
+    @Test
+    public void decodes_json_simple_types() throws Exception {
+        Map value = (Map) codec.decode(stream(
+                "{\"a\": [1, -2, 3.5, 1e3], \"b\": {\"c\": true,"
+                        + " \"d\": false, \"e\": null},"
+                        + " \"f\": \"gå \\u00e6\\n\\ud83d\\ude00\"}"));
+
+        assertEquals(Arrays.<Object>asList(1L, -2L, 3.5, 1000.0),
+                value.get("a"));
+        Map b = (Map) value.get("b");
+        assertEquals(Boolean.TRUE, b.get("c"));
+        assertEquals(Boolean.FALSE, b.get("d"));
+        assertTrue(b.containsKey("e"));
+        assertNull(b.get("e"));
+        assertEquals("gå æ\n😀", value.get("f"));
+    }
+
+    @Test
+    public void rejects_malformed_json() throws Exception {
+        for (String json : new String[] {"{\"a\": ", "[1, 2", "{]" }) {
+            try {
+                codec.decode(stream(json));
+                fail("Expected '" + EPLiteException.class.getName()
+                        + "' to be thrown for " + json);
+            } catch (EPLiteException e) {
+                assertTrue(e.getMessage(), e.getMessage()
+                        .startsWith("Unable to parse JSON response ("));
+            }
+        }
+    }
+
+    @Test
+    public void decodes_responses_for_the_connection() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", "1.2.13", "UTF-8",
+                new URLConnectionTransport(), codec);
+
+        Map data = (Map) connection.handleResponse(stream(
+                "{\"code\": 0, \"message\": \"ok\", \"data\":"
+                        + " {\"padIDs\": [\"g.s8oes9dhwrvt0zif$test\"]}}"));
+
+        assertEquals(Arrays.asList("g.s8oes9dhwrvt0zif$test"),
+                (List) data.get("padIDs"));
+        try {
+            connection.handleResponse(stream("{\"code\": 1,"
+                    + " \"message\": \"padID does not exist\","
+                    + " \"data\": null}"));
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(
+                json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,191 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class JsonReaderTest {
+
+    @Test
+    public void reads_values_as_json_simple_types() throws Exception {
+        JsonReader reader = new JsonReader().reset(stream(
+                "{\"a\": [1, -2, 3.5, 1e3, 12345678901234567890],"
+                        + " \"b\": {\"c\": true, \"d\": false,"
+                        + " \"e\": null}, \"f\": \"x\\ty\"}"));
+
+        Map value = (Map) reader.readValue();
+        reader.endDocument();
+
+        assertEquals(Arrays.<Object>asList(1L, -2L, 3.5, 1000.0,
+                12345678901234567890.0), value.get("a"));
+        Map b = (Map) value.get("b");
+        assertEquals(Boolean.TRUE, b.get("c"));
+        assertEquals(Boolean.FALSE, b.get("d"));
+        assertTrue(b.containsKey("e"));
+        assertNull(b.get("e"));
+        assertEquals("x\ty", value.get("f"));
+    }
+
+    @Test
+    public void decodes_utf8_split_across_reads() throws Exception {
+        String text = "gå å gjør et ærend 😀"
+                + " €";
+        JsonReader reader = new JsonReader()
+                .reset(oneByteAtATime(stream("[\"" + text
+                        + "\", \"\\ud83d\\ude00\"]")));
+
+        List value = (List) reader.readValue();
+
+        assertEquals(Arrays.asList(text, "😀"), value);
+    }
+
+    @Test
+    public void replaces_malformed_utf8() throws Exception {
+        byte[] json = {'"', 'a', (byte) 0xc3, 'b', (byte) 0xff, '"' };
+        JsonReader reader = new JsonReader()
+                .reset(new ByteArrayInputStream(json));
+
+        assertEquals("a�b�", reader.readValue());
+    }
+
+    @Test
+    public void reads_members_one_at_a_time() throws Exception {
+        JsonReader reader = new JsonReader().reset(stream(
+                "{\"skip\": {\"x\": [1, {\"y\": \"z\"}]},"
+                        + " \"keep\": \"v\"}"));
+
+        reader.beginObject();
+        assertTrue(reader.hasNext());
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals("v", reader.nextString());
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        reader.endDocument();
+    }
+
+    @Test
+    public void can_be_reused() throws Exception {
+        JsonReader reader = new JsonReader();
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+
+        assertEquals(big.toString(), reader
+                .reset(stream("\"" + big + "\"")).readValue());
+        reader.release();
+        assertEquals(42L, reader.reset(stream("42")).readValue());
+    }
+
+    @Test
+    public void streams_strings_to_sinks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("gå å gjør et ærend 😀 \\\"\\n");
+        }
+        String json = "[\"" + text + "\", \"" + text + "\", 1]";
+        String expected = (String) JSONValue.parse("\"" + text + "\"");
+        JsonReader reader = new JsonReader()
+                .reset(oneByteAtATime(stream(json)));
+        StringWriter chars = new StringWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        reader.beginArray();
+        reader.nextString(chars);
+        reader.nextString(bytes);
+        assertEquals(1L, reader.readValue());
+        reader.endArray();
+
+        assertEquals(expected, chars.toString());
+        assertEquals(expected, new String(bytes.toByteArray(),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void consumes_null_only() throws Exception {
+        JsonReader reader = new JsonReader()
+                .reset(stream("[null, 2, null]"));
+
+        reader.beginArray();
+        assertTrue(reader.consumeNull());
+        assertFalse(reader.consumeNull());
+        assertEquals(2L, reader.readValue());
+        assertTrue(reader.consumeNull());
+        assertFalse(reader.hasNext());
+        reader.endArray();
+    }
+
+    @Test
+    public void rejects_missing_comma() throws Exception {
+        assertSyntaxError("[1 2]");
+        assertSyntaxError("{\"a\": 1 \"b\": 2}");
+    }
+
+    @Test
+    public void rejects_truncated_input() throws Exception {
+        assertSyntaxError("{\"a\": \"b");
+        assertSyntaxError("[1, 2");
+        assertSyntaxError("");
+    }
+
+    @Test
+    public void rejects_trailing_data() throws Exception {
+        JsonReader reader = new JsonReader().reset(stream("{} {}"));
+        reader.readValue();
+        try {
+            reader.endDocument();
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage(), e.getMessage()
+                    .startsWith("Unable to parse JSON response ("));
+        }
+    }
+
+    private static void assertSyntaxError(String json)
+            throws IOException {
+        try {
+            JsonReader reader = new JsonReader().reset(stream(json));
+            reader.readValue();
+            reader.endDocument();
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown for " + json);
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage(), e.getMessage()
+                    .startsWith("Unable to parse JSON response ("));
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(
+                json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream oneByteAtATime(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
+
+public class MapperCacheTest {
+    private static final int PORT = 9010;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/createGroupIfNotExistsFor"))
+                .respond(ok("{\"groupID\":\"g.course42\"}")
+                        .withDelay(new Delay(TimeUnit.MILLISECONDS,
+                                200)));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/createAuthorIfNotExistsFor"))
+                .respond(ok("{\"authorID\":\"a.user7\"}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteGroup"))
+                .respond(ok("null"));
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void concurrent_logins_share_one_call() throws Exception {
+        MapperCache cache = new MapperCache(100);
+        final EPLiteClient client = client(cache);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Object>> logins = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            logins.add(executor.submit(new Callable<Object>() {
+                public Object call() {
+                    return client.createGroupIfNotExistsFor("course42")
+                            .get("groupID");
+                }
+            }));
+        }
+        for (Future<Object> login : logins) {
+            assertEquals("g.course42", login.get());
+        }
+        executor.shutdown();
+
+        assertEquals("g.course42", client
+                .createGroupIfNotExistsFor("course42").get("groupID"));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/createGroupIfNotExistsFor"),
+                VerificationTimes.once());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(8, cache.getHitCount());
+
+        client.deleteGroup("g.course42");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void calls_again_when_the_author_name_changes() {
+        MapperCache cache = new MapperCache(100);
+        EPLiteClient client = client(cache);
+
+        client.createAuthorIfNotExistsFor("user7", "Ann");
+        client.createAuthorIfNotExistsFor("user7", "Ann");
+        client.createAuthorIfNotExistsFor("user7");
+        assertEquals("a.user7", client
+                .createAuthorIfNotExistsFor("user7", "Ann B.")
+                .get("authorID"));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/createAuthorIfNotExistsFor"),
+                VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void starts_warm_from_a_saved_cache() throws Exception {
+        File file = new File(folder.getRoot(), "mappers");
+        MapperCache cache = new MapperCache(100, file);
+        client(cache).createAuthorIfNotExistsFor("user\t7\\", "Ann\n");
+        client(cache).createGroupIfNotExistsFor("course42");
+        cache.save();
+
+        MapperCache restarted = new MapperCache(100, file);
+        EPLiteClient client = client(restarted);
+
+        assertEquals(2, restarted.size());
+        assertEquals("a.user7", client.createAuthorIfNotExistsFor(
+                "user\t7\\", "Ann\n").get("authorID"));
+        assertEquals("g.course42", client
+                .createGroupIfNotExistsFor("course42").get("groupID"));
+        assertEquals(0, restarted.getLoadCount());
+    }
+
+    @Test
+    public void does_not_cache_failures_and_stays_bounded() {
+        MapperCache cache = new MapperCache(2);
+        MapperCache.Loader failing = new MapperCache.Loader() {
+            public String load() {
+                throw new EPLiteException("down");
+            }
+        };
+        try {
+            cache.getGroupId("a", failing);
+            fail();
+        } catch (EPLiteException e) {
+            assertEquals(0, cache.size());
+        }
+
+        for (int i = 0; i < 10; i++) {
+            final String id = "g." + i;
+            cache.getGroupId(Integer.toString(i),
+                    new MapperCache.Loader() {
+                        public String load() {
+                            return id;
+                        }
+                    });
+        }
+        assertEquals(2, cache.size());
+    }
+
+    private static EPLiteClient client(MapperCache cache) {
+        return EPLiteClient.builder("http://localhost:" + PORT,
+                "apikey").mapperCache(cache).build();
+    }
+}
@@ -0,0 +1,32 @@
+package net.gjerull.etherpad.client;
+
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+
+final class MockServers {
+    private MockServers() {
+    }
+
+    static ClientAndServer start(int port) {
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory
+                .getLogger("org.mockserver.mock"))
+                        .setLevel(ch.qos.logback.classic.Level.OFF);
+        return startClientAndServer(port);
+    }
+
+    static HttpResponse ok(String data) {
+        return HttpResponse.response().withStatusCode(200)
+                .withHeader("Content-Type",
+                        "application/json; charset=utf-8")
+                .withBody("{\"code\":0,\"message\":\"ok\",\"data\":"
+                        + data + "}");
+    }
+
+    static HttpResponse invalidParameters(String message) {
+        return HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":1,\"message\":\"" + message
+                        + "\",\"data\":null}");
+    }
+}
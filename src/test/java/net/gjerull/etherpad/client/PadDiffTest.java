@@ -0,0 +1,117 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+
+public class PadDiffTest {
+    private static final int PORT = 9008;
+    private static final String POOL = "{\"pool\":{\"numToAttrib\":{"
+            + "\"0\":[\"author\",\"a.1\"],\"1\":[\"author\",\"a.2\"],"
+            + "\"2\":[\"author\",\"a.3\"]},\"nextNum\":3}}";
+    private static final String[] CHANGESETS = {
+            "Z:c>6=6*0+6$brave ", "Z:i>2=c-5*1+7$<there>",
+            "Z:k<1=6*2-1$" };
+    private static final String STYLE = "<style>\n"
+            + ".authora_1 {background-color: #ffa8a8}\n"
+            + ".authora_2 {background-color: #a8c8ff}\n"
+            + ".authora_3 {background-color: #c8ffa8}\n"
+            + ".removed {text-decoration: line-through; -ms-filter:"
+            + "'progid:DXImageTransform.Microsoft.Alpha(Opacity=80)'; "
+            + "filter: alpha(opacity=80); opacity: 0.8; }\n</style>";
+    // createDiffHTML of the changesets, in the markup of Etherpad 1.8
+    private static final String CREATE_DIFF_HTML = "{\"html\":"
+            + JSONValue.toJSONString(STYLE + "Hello "
+                    + "<span class=\"authora_1\">rave </span>"
+                    + "<span class=\"removed\">world</span>"
+                    + "<span class=\"authora_2\">&lt;there&gt;</span>"
+                    + "<br>")
+            + ",\"authors\":[\"a.1\",\"a.2\",\"a.3\"]}";
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void marks_added_and_removed_text() {
+        PadDiff diff = new PadDiff("Hello world\n",
+                AttributePool.fromMap((Map) JSONValue.parse(POOL)));
+        for (String changeset : CHANGESETS) {
+            diff.apply(Changeset.parse(changeset));
+        }
+
+        assertEquals("[UNCHANGED[Hello ], ADDED[rave ], REMOVED[world], "
+                + "ADDED[<there>], UNCHANGED[\n]]",
+                diff.getSegments().toString());
+        assertEquals("Hello rave <there>\n", diff.getText());
+        assertEquals(Arrays.asList("a.1", "a.2", "a.3"),
+                diff.getAuthors());
+        assertEquals(STYLE.replaceAll("#[0-9a-f]{6}", "transparent")
+                + "Hello <span class=\"authora_1\">rave </span>"
+                + "<span class=\"removed\">world</span>"
+                + "<span class=\"authora_2\">&lt;there&gt;</span><br>",
+                diff.toHTML());
+    }
+
+    @Test
+    public void forgets_text_added_and_removed_in_between() {
+        PadDiff diff = new PadDiff("abc\n", null);
+        diff.apply(Changeset.parse("Z:4>3=1+3$xyz"));
+        diff.apply(Changeset.parse("Z:7<3=1-3$"));
+
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.toHTML().endsWith("</style>abc<br>"));
+    }
+
+    @Test
+    public void renders_diffs_without_create_diff_html() {
+        respond("getText", 0, "{\"text\":\"Hello world\\n\"}");
+        for (int rev = 1; rev <= CHANGESETS.length; rev++) {
+            respond("getRevisionChangeset", rev,
+                    JSONValue.toJSONString(CHANGESETS[rev - 1]));
+        }
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getAttributePool"))
+                .respond(ok(POOL));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/createDiffHTML"))
+                .respond(ok(CREATE_DIFF_HTML));
+        EPLiteClient client = new EPLiteClient(
+                "http://localhost:" + PORT, "apikey");
+        Map<String, String> colors = new HashMap<>();
+        colors.put("a.1", "#ffa8a8");
+        colors.put("a.2", "#a8c8ff");
+        colors.put("a.3", "#c8ffa8");
+
+        assertEquals(client.createDiffHTML("pad", 0, 3),
+                client.createDiffHTMLLocally("pad", 0, 3, colors));
+    }
+
+    private void respond(String method, int rev, String data) {
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/" + method)
+                .withQueryStringParameter(
+                        new Parameter("rev", Integer.toString(rev))))
+                .respond(ok(data));
+    }
+}
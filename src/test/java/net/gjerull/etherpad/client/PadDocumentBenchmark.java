@@ -0,0 +1,100 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Applying a few thousand small changesets, typing and deleting at
+ * random places, to a 10 MB pad held as a String, a StringBuilder
+ * and a PadDocument. Each changeset keeps the length, so they apply
+ * in any order. Scores are per changeset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PadDocumentBenchmark {
+
+    private static final int LENGTH = 10 * 1024 * 1024;
+    private static final int CHANGESETS = 2000;
+
+    private Changeset[] changesets;
+    private String string;
+    private StringBuilder builder;
+    private PadDocument document;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        char[] chars = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            chars[i] = i % 80 == 79 ? '\n'
+                    : (char) ('a' + random.nextInt(26));
+        }
+        String text = new String(chars);
+        changesets = new Changeset[CHANGESETS];
+        for (int i = 0; i < CHANGESETS; i++) {
+            int at = random.nextInt(LENGTH - 100);
+            int n = 1 + random.nextInt(10);
+            String length = Integer.toString(LENGTH, 36);
+            changesets[i] = Changeset.parse("Z:" + length + ">0="
+                    + Integer.toString(at, 36) + "*0+"
+                    + Integer.toString(n, 36) + "-"
+                    + Integer.toString(n, 36) + "$"
+                    + text.substring(0, n));
+        }
+        string = text;
+        builder = new StringBuilder(text);
+        document = new PadDocument(text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGESETS)
+    public int string() {
+        for (Changeset changeset : changesets) {
+            string = changeset.applyTo(string);
+        }
+        return string.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGESETS)
+    public int stringBuilder() {
+        for (Changeset changeset : changesets) {
+            changeset.applyTo(builder);
+        }
+        return builder.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGESETS)
+    public int padDocument() {
+        for (Changeset changeset : changesets) {
+            document.apply(changeset);
+        }
+        return document.length();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PadDocumentBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class PadDocumentTest {
+    private final AttributePool pool = AttributePool.fromMap(
+            (Map) JSONValue.parse("{\"numToAttrib\":{"
+                    + "\"0\":[\"author\",\"a.1\"],"
+                    + "\"1\":[\"bold\",\"true\"],"
+                    + "\"2\":[\"bold\",\"\"],"
+                    + "\"3\":[\"author\",\"a.2\"]},\"nextNum\":4}"));
+
+    @Test
+    public void tracks_attributes_of_inserted_and_formatted_text() {
+        PadDocument document = new PadDocument();
+
+        document.apply(Changeset.parse("Z:0>c*0|1+6*0+6$hello\nworld!"),
+                pool);
+        assertEquals("*0|1+6*0+6", document.getAttribution());
+
+        document.apply(Changeset.parse("Z:c>0=6*1=5$"), pool);
+        assertEquals("*0|1+6*0*1+5*0+1", document.getAttribution());
+
+        document.apply(Changeset.parse("Z:c>1=6*2=3=3*3+1$?"), pool);
+        assertEquals("hello\nworld!?", document.toString());
+        assertEquals("*0|1+6*0+3*0*1+2*0+1*3+1",
+                document.getAttribution());
+        assertEquals("a.1", document.getAttributes(7, pool)
+                .get("author"));
+        assertEquals("true", document.getAttributes(9, pool)
+                .get("bold"));
+        assertArrayEquals(new int[] {3 },
+                document.getAttributeNumbers(12));
+        assertEquals('?', document.charAt(12));
+    }
+
+    @Test
+    public void splits_large_inserts_into_chunks() {
+        String text = new String(new char[5000]).replace('\0', 'a');
+        String inserted = new String(new char[10000]).replace('\0', 'b');
+        PadDocument document = new PadDocument(text);
+
+        document.apply(Changeset.parse("Z:" + base36(5000) + ">"
+                + base36(10000) + "=" + base36(2500) + "*1+"
+                + base36(10000) + "$" + inserted));
+
+        assertEquals(text.substring(0, 2500) + inserted
+                + text.substring(2500), document.toString());
+        assertEquals("+" + base36(2500) + "*1+" + base36(10000) + "+"
+                + base36(2500), document.getAttribution());
+        assertEquals('b', document.charAt(12499));
+        assertEquals('a', document.charAt(12500));
+    }
+
+    @Test
+    public void refuses_attributes_missing_from_the_pool() {
+        PadDocument document = new PadDocument("abc\n");
+        try {
+            document.apply(Changeset.parse("Z:4>0*9=3$"), pool);
+            fail();
+        } catch (EPLiteException e) {
+            assertEquals("|1+4", document.getAttribution());
+        }
+    }
+
+    private static String base36(int n) {
+        return Integer.toString(n, 36);
+    }
+}
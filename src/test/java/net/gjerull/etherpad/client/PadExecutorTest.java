@@ -0,0 +1,114 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+
+public class PadExecutorTest {
+    private static final int PORT = 9016;
+
+    private ClientAndServer mockServer;
+    private PadExecutor pads;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"done\\n\"}"));
+        mockServer.when(HttpRequest.request())
+                .respond(ok("null"));
+        pads = new PadExecutor(new EPLiteClient(
+                "http://localhost:" + PORT, "apikey"), 4, 4);
+    }
+
+    @After
+    public void stopMockServer() throws InterruptedException {
+        pads.close();
+        mockServer.stop();
+    }
+
+    @Test
+    public void runs_the_calls_of_a_pad_in_order() throws Exception {
+        pads.setText("pad1", "first");
+        for (int i = 0; i < 5; i++) {
+            pads.appendText("pad1", " " + i);
+        }
+        pads.saveRevision("pad1");
+        assertEquals("done\n", pads.getText("pad1").get().get("text"));
+
+        List<String> paths = new ArrayList<>();
+        for (HttpRequest request : mockServer.retrieveRecordedRequests(
+                HttpRequest.request())) {
+            String path = request.getPath().getValue();
+            paths.add(path.substring(path.lastIndexOf('/') + 1));
+        }
+        assertEquals("[setText, appendText, appendText, appendText, "
+                + "appendText, appendText, saveRevision, getText]",
+                paths.toString());
+    }
+
+    @Test
+    public void keeps_order_within_lanes_and_runs_lanes_in_parallel()
+            throws Exception {
+        String slow = "slow";
+        String fast = "fast";
+        while (pads.laneOf(fast) == pads.laneOf(slow)) {
+            fast = fast + "!";
+        }
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> order =
+                Collections.synchronizedList(new ArrayList<Integer>());
+        pads.submit(slow, new Callable<Void>() {
+            public Void call() throws Exception {
+                release.await();
+                return null;
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            pads.submit(slow, new Callable<Void>() {
+                public Void call() {
+                    order.add(n);
+                    return null;
+                }
+            });
+        }
+
+        assertEquals(7, (int) pads.submit(fast, new Callable<Integer>() {
+            public Integer call() {
+                return 7;
+            }
+        }).get(5, TimeUnit.SECONDS));
+        int lane = pads.laneOf(slow);
+        assertEquals(101, pads.getQueueDepth(lane));
+        assertEquals(101, pads.getQueueDepths()[lane]);
+
+        release.countDown();
+        pads.close();
+
+        assertEquals(100, order.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        assertArrayEquals(new int[4], pads.getQueueDepths());
+        assertEquals(101, pads.getPeakQueueDepth(lane));
+        assertNotEquals(lane, pads.laneOf(fast));
+        assertTrue(pads.getPeakQueueDepth(pads.laneOf(fast)) >= 1);
+    }
+}
@@ -0,0 +1,180 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class PadExporterTest {
+    private static final int PORT = 9017;
+    private static final int PADS = 250;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        StringBuilder padIds = new StringBuilder();
+        for (int i = 0; i < PADS; i++) {
+            padIds.append(i == 0 ? "\"" : ",\"").append("p" + i)
+                    .append('"');
+        }
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[" + padIds + "]}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText")
+                .withQueryStringParameter(new Parameter("padID", "p7")))
+                .respond(invalidParameters("padID does not exist"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"say \\\"hi\\\"\\n\"}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getHTML"))
+                .respond(ok("{\"html\":\"<b>hi</b>\"}"));
+        client = new EPLiteClient("http://localhost:" + PORT, "apikey");
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void exports_all_pads_in_list_order() throws Exception {
+        File checkpoint = new File(folder.getRoot(), "export.checkpoint");
+        PadExporter exporter = new PadExporter(client, 8, 0, true,
+                checkpoint);
+        StringWriter out = new StringWriter();
+
+        assertEquals(PADS - 1, exporter.export(out));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(PADS - 1, lines.length);
+        Map first = (Map) JSONValue.parse(lines[0]);
+        assertEquals("p0", first.get("padID"));
+        assertEquals("say \"hi\"\n", first.get("text"));
+        assertEquals("<b>hi</b>", first.get("html"));
+        assertEquals("p8", ((Map) JSONValue.parse(lines[7]))
+                .get("padID"));
+        assertEquals("p249", ((Map) JSONValue.parse(lines[PADS - 2]))
+                .get("padID"));
+        assertEquals(1, exporter.getFailedCount());
+        assertFalse(checkpoint.exists());
+        assertFalse(new File(checkpoint.getPath() + ".pads").exists());
+    }
+
+    @Test
+    public void resumes_from_the_checkpoint() throws Exception {
+        File checkpoint = new File(folder.getRoot(), "export.checkpoint");
+        write(checkpoint, "# etherpad export 1\n150\n");
+        StringBuilder padIds = new StringBuilder();
+        for (int i = 0; i < PADS; i++) {
+            padIds.append('p').append(i).append('\n');
+        }
+        write(new File(checkpoint.getPath() + ".pads"),
+                padIds.toString());
+        PadExporter exporter = new PadExporter(client, 4, 0, false,
+                checkpoint);
+        StringWriter out = new StringWriter();
+
+        assertEquals(100, exporter.export(out));
+
+        assertEquals("{\"padID\":\"p150\",\"text\":\"say \\\"hi\\\"\\n\"}",
+                out.toString().split("\n")[0]);
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"),
+                VerificationTimes.exactly(0));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"),
+                VerificationTimes.exactly(100));
+    }
+
+    @Test
+    public void stops_when_the_server_fails() throws Exception {
+        mockServer.clear(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(503));
+        File checkpoint = new File(folder.getRoot(), "export.checkpoint");
+        PadExporter exporter = new PadExporter(client, 4, 0, false,
+                checkpoint);
+        StringWriter out = new StringWriter();
+
+        try {
+            exporter.export(out);
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage().startsWith("Export stopped after 0"));
+        }
+
+        assertEquals("", out.toString());
+        assertEquals(0, exporter.getFailedCount());
+        assertTrue(checkpoint.exists());
+    }
+
+    @Test
+    public void streams_large_pads_through_a_bounded_buffer()
+            throws Exception {
+        StringBuilder pad = new StringBuilder();
+        for (int i = 0; pad.length() < 3 * PadExporter.SPILL_CHARS; i++) {
+            pad.append("Line ").append(i)
+                    .append(": \"gå\"/\\ \u2028\t€\n");
+        }
+        String text = pad.toString();
+        mockServer.clear(HttpRequest.request());
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[\"big\",\"small\"]}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":" + JSONValue.toJSONString(text)
+                        + "}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getHTML"))
+                .respond(ok("{\"html\":\"<b>hi</b>\"}"));
+        PadExporter exporter = new PadExporter(client, 2, 0, true, null);
+        StringWriter out = new StringWriter();
+
+        assertEquals(2, exporter.export(out));
+
+        String line = "\",\"text\":\"" + JSONValue.escape(text)
+                + "\",\"html\":\"<b>hi<\\/b>\"}\n";
+        assertEquals("{\"padID\":\"big" + line + "{\"padID\":\"small"
+                + line, out.toString());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+
+public class PooledTransportTest {
+    private static final int PORT = 9002;
+    private static final String API_KEY = "apikey";
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"foo\\n\"}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("POST")
+                        .withPath("/api/1.2.13/setText"))
+                .respond(ok("null"));
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void reuses_connection_for_consecutive_calls()
+            throws Exception {
+        PooledTransport transport = new PooledTransport(2, 60000L);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, API_KEY)
+                .transport(transport).build();
+        try {
+            Map first = client.getText("pad");
+            client.setText("pad", "bar æøå");
+            Map second = client.getText("pad");
+
+            assertEquals("foo\n", first.get("text"));
+            assertEquals("foo\n", second.get("text"));
+            assertEquals(1L, transport.getPoolMisses());
+            assertEquals(2L, transport.getPoolHits());
+            assertEquals(1, transport.getIdleConnections());
+        } finally {
+            transport.close();
+        }
+        assertEquals(0, transport.getIdleConnections());
+    }
+
+    @Test
+    public void evicts_idle_connections() throws Exception {
+        PooledTransport transport = new PooledTransport(2, 1L);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, API_KEY)
+                .transport(transport).build();
+        try {
+            client.getText("pad");
+            Thread.sleep(20L);
+            transport.evictIdleConnections();
+            assertEquals(0, transport.getIdleConnections());
+
+            client.getText("pad");
+            assertEquals(2L, transport.getPoolMisses());
+            assertEquals(0L, transport.getPoolHits());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test(expected = EPLiteException.class)
+    public void non_2xx_status_is_an_error() throws Exception {
+        PooledTransport transport = new PooledTransport();
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, API_KEY)
+                .transport(transport).build();
+        try {
+            client.listAllPads();
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void resends_a_get_on_a_closed_connection() throws Exception {
+        DroppingServer server = new DroppingServer();
+        PooledTransport transport = new PooledTransport(2, 60000L);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + server.getPort(), API_KEY)
+                .transport(transport).build();
+        try {
+            client.getText("pad");
+            assertEquals("foo\n", client.getText("pad").get("text"));
+            assertEquals("[GET getText, GET getText, GET getText]",
+                    server.requests.toString());
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void does_not_resend_a_post_on_a_closed_connection()
+            throws Exception {
+        DroppingServer server = new DroppingServer();
+        PooledTransport transport = new PooledTransport(2, 60000L);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + server.getPort(), API_KEY)
+                .transport(transport).build();
+        try {
+            client.getText("pad");
+            try {
+                client.appendText("pad", "once");
+                fail("The POST was sent again");
+            } catch (EPLiteException e) {
+                // expected
+            }
+            assertEquals("[GET getText, POST appendText]",
+                    server.requests.toString());
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Answers the first request of each connection, and closes the
+     * connection without answering the second one.
+     */
+    private static final class DroppingServer implements Runnable {
+        private final ServerSocket socket = new ServerSocket(0);
+        private final List<String> requests =
+                Collections.synchronizedList(new ArrayList<String>());
+
+        DroppingServer() throws IOException {
+            Thread thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    try (Socket connection = socket.accept()) {
+                        InputStream in = connection.getInputStream();
+                        OutputStream out = connection.getOutputStream();
+                        if (readRequest(in)) {
+                            byte[] body = ("{\"code\":0,\"message\":"
+                                    + "\"ok\",\"data\":{\"text\":"
+                                    + "\"foo\\n\"}}")
+                                    .getBytes(StandardCharsets.UTF_8);
+                            out.write(("HTTP/1.1 200 OK\r\n"
+                                    + "Content-Length: " + body.length
+                                    + "\r\n\r\n")
+                                    .getBytes(StandardCharsets.UTF_8));
+                            out.write(body);
+                            out.flush();
+                            readRequest(in);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        private boolean readRequest(InputStream in) throws IOException {
+            String requestLine = null;
+            int length = 0;
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                if (requestLine == null) {
+                    requestLine = line;
+                } else if (line.toLowerCase().startsWith(
+                        "content-length:")) {
+                    length = Integer.parseInt(
+                            line.substring(15).trim());
+                }
+            }
+            if (requestLine == null) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                in.read();
+            }
+            String[] parts = requestLine.split(" ");
+            String path = parts[1].split("\\?")[0];
+            requests.add(parts[0] + " "
+                    + path.substring(path.lastIndexOf('/') + 1));
+            return true;
+        }
+
+        private static String readLine(InputStream in)
+                throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            if (b == -1 && line.size() == 0) {
+                return null;
+            }
+            return line.toString("UTF-8");
+        }
+    }
+}
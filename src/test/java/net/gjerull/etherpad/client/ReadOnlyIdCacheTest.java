@@ -0,0 +1,102 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class ReadOnlyIdCacheTest {
+    private static final int PORT = 9009;
+
+    private ClientAndServer mockServer;
+    private ReadOnlyIdCache cache;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        for (int i = 1; i <= 3; i++) {
+            mockServer.when(HttpRequest.request()
+                    .withPath("/api/1.2.13/getReadOnlyID")
+                    .withQueryStringParameter(
+                            new Parameter("padID", "pad" + i)))
+                    .respond(ok("{\"readOnlyID\":\"r.ro" + i + "\"}"));
+        }
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getPadID"))
+                .respond(ok("{\"padID\":\"pad2\"}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[\"pad1\",\"pad2\",\"pad3\"]}"));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/deletePad"))
+                .respond(ok("null"));
+        cache = new ReadOnlyIdCache();
+        client = EPLiteClient.builder("http://localhost:" + PORT,
+                "apikey").readOnlyIdCache(cache).build();
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void fills_both_directions_from_one_lookup() {
+        assertEquals("r.ro1", client.getReadOnlyID("pad1")
+                .get("readOnlyID"));
+        assertEquals("pad1", client.getPadID("r.ro1").get("padID"));
+        assertEquals("r.ro1", client.getReadOnlyID("pad1")
+                .get("readOnlyID"));
+
+        assertEquals("pad2", client.getPadID("r.ro2").get("padID"));
+        assertEquals("r.ro2", client.getReadOnlyID("pad2")
+                .get("readOnlyID"));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getReadOnlyID"),
+                VerificationTimes.once());
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getPadID"),
+                VerificationTimes.once());
+        assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    public void warms_up_from_all_pads_and_forgets_deleted_ones() {
+        client.getReadOnlyID("pad1");
+
+        assertEquals(2, client.warmUpReadOnlyIDs());
+        assertEquals(3, cache.size());
+        assertEquals("pad3", client.getPadID("r.ro3").get("padID"));
+
+        client.deletePad("pad3");
+        assertEquals(2, cache.size());
+        assertNull(cache.getPadId("r.ro3"));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getReadOnlyID"),
+                VerificationTimes.exactly(3));
+    }
+
+    @Test
+    public void ignores_lookups_from_before_an_invalidation() {
+        long epoch = cache.epoch();
+        cache.invalidatePad("pad1");
+        cache.put("pad1", "r.old", epoch);
+        assertNull(cache.getReadOnlyId("pad1"));
+
+        ReadOnlyIdCache small = new ReadOnlyIdCache(2);
+        for (int i = 0; i < 10; i++) {
+            small.put("pad" + i, "r." + i, small.epoch());
+        }
+        assertEquals(2, small.size());
+        assertEquals("pad9", small.getPadId("r.9"));
+    }
+}
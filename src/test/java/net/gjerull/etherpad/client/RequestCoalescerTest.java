@@ -0,0 +1,131 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.invalidParameters;
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class RequestCoalescerTest {
+    private static final int PORT = 9011;
+    private static final int THREADS = 8;
+
+    private ClientAndServer mockServer;
+    private RequestCoalescer coalescer;
+    private EPLiteClient client;
+    private ExecutorService executor;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText")
+                .withQueryStringParameter(new Parameter("padID", "hot")))
+                .respond(ok("{\"text\":\"popular\\n\"}")
+                        .withDelay(new Delay(TimeUnit.MILLISECONDS, 500)));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText")
+                .withQueryStringParameter(
+                        new Parameter("padID", "gone")))
+                .respond(invalidParameters("padID does not exist")
+                        .withDelay(new Delay(TimeUnit.MILLISECONDS, 500)));
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"other\\n\"}"));
+        coalescer = new RequestCoalescer();
+        client = EPLiteClient.builder(new EPLiteConnection(
+                "http://localhost:" + PORT, "apikey", "1.2.13", "UTF-8",
+                new URLConnectionTransport(), new StreamingJsonCodec(),
+                coalescer)).build();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void stopMockServer() {
+        executor.shutdownNow();
+        mockServer.stop();
+    }
+
+    @Test
+    public void concurrent_identical_calls_share_one_request()
+            throws Exception {
+        for (Future<Object> result : this.getTextTogether("hot")) {
+            assertEquals("popular\n", result.get());
+        }
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"),
+                VerificationTimes.once());
+        assertEquals(1, coalescer.getRequestCount());
+        assertEquals(THREADS - 1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void calls_with_other_arguments_or_after_are_sent() {
+        assertEquals("other\n", client.getText("pad1").get("text"));
+        assertEquals("other\n", client.getText("pad2").get("text"));
+        assertEquals("other\n", client.getText("pad1").get("text"));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"),
+                VerificationTimes.exactly(3));
+        assertEquals(3, coalescer.getRequestCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void an_error_reaches_every_caller() throws Exception {
+        for (Future<Object> result : this.getTextTogether("gone")) {
+            try {
+                result.get();
+                fail("Expected an EPLiteException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof EPLiteException);
+                assertEquals("padID does not exist",
+                        e.getCause().getMessage());
+            }
+        }
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"),
+                VerificationTimes.once());
+        assertEquals(THREADS - 1, coalescer.getCoalescedCount());
+    }
+
+    private List<Future<Object>> getTextTogether(final String padId)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    start.await();
+                    return client.getText(padId).get("text");
+                }
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}
@@ -0,0 +1,87 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Decoding a getText response of a multi-MB pad: reading the body
+ * line by line into a String and parsing that with json-simple
+ * (what GETRequest.send and handleResponse(String) do) versus
+ * parsing the stream with handleResponse(InputStream). Run with
+ * the GC profiler (as main does) and compare gc.alloc.rate.norm,
+ * the bytes allocated per response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResponseParsingBenchmark {
+
+    @Param({"1", "8" })
+    private int megabytes;
+
+    private byte[] body;
+    private EPLiteConnection connection;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        int line = 0;
+        while (text.length() < megabytes * 1024 * 1024) {
+            text.append("Line ").append(line++)
+                    .append(": gå å gjør et ærend, \"quoted\"\n");
+        }
+        String json = "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":"
+                + JSONValue.toJSONString(text.toString()) + "}}";
+        body = json.getBytes(StandardCharsets.UTF_8);
+        connection = new EPLiteConnection("http://localhost:9001",
+                "apikey", "1.2.13", "UTF-8");
+    }
+
+    @Benchmark
+    public Object bufferedString() throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(body),
+                StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String buffer;
+        while ((buffer = in.readLine()) != null) {
+            response.append(buffer);
+        }
+        in.close();
+        return connection.handleResponse(response.toString());
+    }
+
+    @Benchmark
+    public Object streamed() throws Exception {
+        return connection.handleResponse(new ByteArrayInputStream(body));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ResponseParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class RevisionCacheTest {
+    private static final int PORT = 9005;
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"rev 3\\n\"}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("GET")
+                        .withPath("/api/1.2.13/getHTML"))
+                .respond(ok("{\"html\":\"<p>3</p>\"}"));
+        mockServer
+                .when(HttpRequest.request().withMethod("POST")
+                        .withPath("/api/1.2.13/deletePad"))
+                .respond(ok("null"));
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void serves_fixed_revisions_from_the_cache() throws Exception {
+        RevisionCache cache = new RevisionCache(1024 * 1024);
+        EPLiteClient client = EPLiteClient.builder(
+                "http://localhost:" + PORT, "apikey")
+                .revisionCache(cache).build();
+
+        assertEquals("rev 3\n", client.getText("pad", 3).get("text"));
+        assertEquals("rev 3\n", client.getText("pad", 3).get("text"));
+        assertEquals("rev 3\n", client.getPadText("pad", 3).getText());
+        assertEquals("<p>3</p>", client.getHTML("pad", 3).get("html"));
+        assertEquals("<p>3</p>", client.getHTML("pad", 3).get("html"));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText")
+                .withQueryStringParameter(new Parameter("rev", "3")),
+                VerificationTimes.once());
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getHTML"),
+                VerificationTimes.once());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        client.deletePad("pad");
+        assertEquals(0, cache.size());
+        client.getText("pad", 3);
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/getText"),
+                VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void stays_within_its_maximum_weight() {
+        RevisionCache cache = new RevisionCache(100000);
+        String text = new String(new char[1000]);
+
+        for (int rev = 0; rev < 1000; rev++) {
+            cache.put("pad", "text", rev, text, cache.epoch());
+            assertTrue(cache.getWeightedSize() <= 100000);
+        }
+        assertTrue(cache.size() > 40);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void keeps_frequently_read_revisions() {
+        RevisionCache cache = new RevisionCache(100000);
+        String text = new String(new char[1000]);
+        for (int rev = 0; rev < 10; rev++) {
+            for (int i = 0; i < 5; i++) {
+                if (cache.get("hot", "text", rev) == null) {
+                    cache.put("hot", "text", rev, text, cache.epoch());
+                }
+            }
+        }
+
+        // A scan through a long history
+        for (int rev = 0; rev < 5000; rev++) {
+            if (cache.get("cold", "text", rev) == null) {
+                cache.put("cold", "text", rev, text, cache.epoch());
+            }
+        }
+
+        for (int rev = 0; rev < 10; rev++) {
+            assertNotNull("rev " + rev, cache.get("hot", "text", rev));
+        }
+    }
+
+    @Test
+    public void ignores_revisions_fetched_before_an_invalidation() {
+        RevisionCache cache = new RevisionCache(100000);
+        long epoch = cache.epoch();
+
+        cache.invalidatePad("g.group$pad");
+        cache.put("g.group$pad", "text", 1, "stale", epoch);
+        assertNull(cache.get("g.group$pad", "text", 1));
+
+        cache.put("g.group$pad", "text", 1, "fresh", cache.epoch());
+        cache.put("other", "text", 1, "kept", cache.epoch());
+        cache.invalidateGroup("g.group");
+        assertNull(cache.get("g.group$pad", "text", 1));
+        assertEquals("kept", cache.get("other", "text", 1));
+    }
+
+    @Test
+    public void does_not_cache_oversized_revisions() {
+        RevisionCache cache = new RevisionCache(1000);
+
+        cache.put("pad", "text", 1, new String(new char[1000]),
+                cache.epoch());
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeightedSize());
+    }
+}
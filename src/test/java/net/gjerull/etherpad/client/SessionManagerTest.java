@@ -0,0 +1,109 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
+
+public class SessionManagerTest {
+    private static final int PORT = 9012;
+    private static final long NOW = 1500000000000L;
+    private static final long HOUR = 3600L;
+
+    private ClientAndServer mockServer;
+    private SessionManager sessions;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        for (int i = 1; i <= 3; i++) {
+            mockServer.when(HttpRequest.request()
+                    .withPath("/api/1.2.13/createSession"),
+                    Times.once())
+                    .respond(ok("{\"sessionID\":\"s." + i + "\"}"));
+        }
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteSession"))
+                .respond(ok("null"));
+        sessions = new SessionManager(new EPLiteClient(
+                "http://localhost:" + PORT, "apikey"), 24 * HOUR, HOUR);
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void reuses_a_valid_session_per_group_and_author() {
+        SessionManager.Session first = sessions.getSession("g.1",
+                "a.1", NOW);
+        assertEquals("s.1", first.getSessionID());
+        assertEquals(NOW / 1000 + 24 * HOUR, first.getValidUntil());
+        assertSame(first, sessions.getSession("g.1", "a.1",
+                NOW + 60000L));
+        assertEquals("s.2", sessions.getSession("g.1", "a.2", NOW)
+                .getSessionID());
+        assertEquals("s.3", sessions.getSession("g.2", "a.1", NOW)
+                .getSessionID());
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/createSession"),
+                VerificationTimes.exactly(3));
+        assertEquals(1, sessions.getReuseCount());
+        assertEquals(3, sessions.getCreateCount());
+        assertEquals(3, sessions.size());
+    }
+
+    @Test
+    public void renews_a_session_shortly_before_it_expires() {
+        SessionManager.Session first = sessions.getSession("g.1",
+                "a.1", NOW);
+        long later = NOW + (23 * HOUR + 1) * 1000L;
+        SessionManager.Session renewed = sessions.getSession("g.1",
+                "a.1", later);
+
+        assertNotSame(first, renewed);
+        assertEquals("s.2", renewed.getSessionID());
+        assertEquals(later / 1000 + 24 * HOUR, renewed.getValidUntil());
+        assertEquals(1, sessions.size());
+    }
+
+    @Test
+    public void evicts_expired_sessions_in_expiry_order() {
+        sessions.getSession("g.1", "a.1", NOW);
+        sessions.getSession("g.1", "a.2", NOW + 2 * HOUR * 1000L);
+
+        assertEquals(0, sessions.evictExpired(NOW));
+        assertEquals(1, sessions.evictExpired(NOW + 25 * HOUR * 1000L));
+        assertEquals(1, sessions.size());
+        assertEquals(1, sessions.evictExpired(NOW + 26 * HOUR * 1000L));
+        assertEquals(0, sessions.size());
+
+        assertEquals("s.3", sessions.getSession("g.1", "a.1",
+                NOW + 26 * HOUR * 1000L).getSessionID());
+    }
+
+    @Test
+    public void ends_and_invalidates_sessions() {
+        sessions.getSession("g.1", "a.1", NOW);
+        sessions.getSession("g.2", "a.1", NOW);
+
+        sessions.endSession("g.1", "a.1");
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteSession"),
+                VerificationTimes.once());
+        assertEquals(1, sessions.size());
+
+        sessions.invalidateGroup("g.2");
+        assertEquals(0, sessions.size());
+    }
+}
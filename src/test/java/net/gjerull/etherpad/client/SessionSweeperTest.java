@@ -0,0 +1,127 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.Parameter;
+import org.mockserver.verify.VerificationTimes;
+
+public class SessionSweeperTest {
+    private static final int PORT = 9013;
+    private static final long NOW = 1000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listAllGroups"))
+                .respond(ok("{\"groupIDs\":"
+                        + "[\"g.b\",\"g.a\",\"g.0\",\"g.c\"]}"));
+        sessionsOf("g.0", "null");
+        sessionsOf("g.a", "{\"s.a1\":" + session("g.a", 100)
+                + ",\"s.a2\":" + session("g.a", 9999999999L)
+                + ",\"s.a3\":null}");
+        sessionsOf("g.b", "{\"s.b1\":" + session("g.b", 1000) + "}");
+        sessionsOf("g.c", "{\"s.c1\":" + session("g.c", 5)
+                + ",\"s.c2\":" + session("g.c", 999) + "}");
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteSession"))
+                .respond(ok("null"));
+        client = new EPLiteClient("http://localhost:" + PORT, "apikey");
+    }
+
+    @After
+    public void stopMockServer() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void deletes_the_expired_sessions_of_all_groups()
+            throws Exception {
+        File checkpoint = folder.newFile("sweep.checkpoint");
+        checkpoint.delete();
+        SessionSweeper sweeper = new SessionSweeper(client, 3, 0,
+                checkpoint);
+
+        assertEquals(4, sweeper.sweep(NOW));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteSession"),
+                VerificationTimes.exactly(4));
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/deleteSession")
+                .withBody("apikey=apikey&sessionID=s.a2"),
+                VerificationTimes.exactly(0));
+        assertEquals(4, sweeper.getGroupCount());
+        assertEquals(6, sweeper.getSessionCount());
+        assertEquals(0, sweeper.getFailedCount());
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void resumes_after_the_checkpoint() throws Exception {
+        File checkpoint = folder.newFile("sweep.checkpoint");
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(checkpoint),
+                StandardCharsets.UTF_8)) {
+            writer.write("# etherpad session sweep 1\ng.a\n");
+        }
+        SessionSweeper sweeper = new SessionSweeper(client, 2, 0,
+                checkpoint);
+
+        assertEquals(3, sweeper.sweep(NOW));
+
+        mockServer.verify(HttpRequest.request()
+                .withPath("/api/1.2.13/listSessionsOfGroup")
+                .withQueryStringParameter(new Parameter("groupID", "g.a")),
+                VerificationTimes.exactly(0));
+        assertEquals(2, sweeper.getGroupCount());
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void spaces_out_the_deletes() {
+        SessionSweeper sweeper = new SessionSweeper(client, 4, 10, null);
+
+        long start = System.nanoTime();
+        assertEquals(4, sweeper.sweep(NOW));
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertTrue("Took only " + elapsed + " ms", elapsed >= 250);
+    }
+
+    private void sessionsOf(String groupID, String sessions) {
+        mockServer.when(HttpRequest.request()
+                .withPath("/api/1.2.13/listSessionsOfGroup")
+                .withQueryStringParameter(
+                        new Parameter("groupID", groupID)))
+                .respond(ok(sessions));
+    }
+
+    private static String session(String groupID, long validUntil) {
+        return "{\"groupID\":\"" + groupID
+                + "\",\"authorID\":\"a.1\",\"validUntil\":" + validUntil
+                + "}";
+    }
+}
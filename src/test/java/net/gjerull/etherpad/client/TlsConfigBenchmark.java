@@ -0,0 +1,86 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per-call TLS setup cost: building a trust-all SSLContext before
+ * every request (what EPLiteConnection.call used to do) versus
+ * applying a TlsConfig built once. Both variants prepare an
+ * HttpsURLConnection without connecting it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TlsConfigBenchmark {
+
+    private static final TrustManager[] TRUST_ALL = new TrustManager[] {
+            new X509TrustManager() {
+                public X509Certificate[] getAcceptedIssuers() {
+                    return null;
+                }
+
+                public void checkClientTrusted(X509Certificate[] certs,
+                        String authType) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] certs,
+                        String authType) {
+                }
+            } };
+
+    private URL url;
+    private TlsConfig tlsConfig;
+
+    @Setup
+    public void setUp() throws Exception {
+        url = new URL("https://localhost:9001/api/1.2.13/getText");
+        tlsConfig = TlsConfig.trustAll();
+    }
+
+    @Benchmark
+    public URLConnection contextPerCall() throws Exception {
+        SSLContext sc = SSLContext.getInstance("SSL");
+        sc.init(null, TRUST_ALL, new SecureRandom());
+        HttpsURLConnection.setDefaultSSLSocketFactory(
+                sc.getSocketFactory());
+        return url.openConnection();
+    }
+
+    @Benchmark
+    public URLConnection sharedTlsConfig() throws Exception {
+        URLConnection con = url.openConnection();
+        tlsConfig.configure(con);
+        return con;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TlsConfigBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
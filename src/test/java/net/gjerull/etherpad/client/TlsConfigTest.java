@@ -0,0 +1,60 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.Test;
+
+public class TlsConfigTest {
+
+    @Test
+    public void configures_the_connection_without_touching_jvm_defaults()
+            throws Exception {
+        SSLSocketFactory defaultFactory = HttpsURLConnection
+                .getDefaultSSLSocketFactory();
+        TlsConfig tlsConfig = TlsConfig.trustAll();
+
+        HttpsURLConnection con = (HttpsURLConnection) new URL(
+                "https://example.com/api").openConnection();
+        tlsConfig.configure(con);
+
+        assertSame(tlsConfig.getSocketFactory(),
+                con.getSSLSocketFactory());
+        assertTrue(con.getHostnameVerifier().verify("other.host",
+                null));
+        assertSame(defaultFactory,
+                HttpsURLConnection.getDefaultSSLSocketFactory());
+    }
+
+    @Test
+    public void system_config_checks_host_names() throws Exception {
+        TlsConfig tlsConfig = TlsConfig.system();
+
+        HttpsURLConnection con = (HttpsURLConnection) new URL(
+                "https://example.com/api").openConnection();
+        tlsConfig.configure(con);
+
+        assertFalse(tlsConfig.isTrustAll());
+        assertSame(tlsConfig.getSocketFactory(),
+                con.getSSLSocketFactory());
+        assertNotSame(TlsConfig.trustAll().getSocketFactory(),
+                con.getSSLSocketFactory());
+        assertSame(HttpsURLConnection.getDefaultHostnameVerifier(),
+                con.getHostnameVerifier());
+    }
+
+    @Test
+    public void socket_factory_is_built_once() {
+        TlsConfig tlsConfig = TlsConfig.trustAll();
+
+        assertSame(tlsConfig.getSocketFactory(),
+                tlsConfig.getSocketFactory());
+    }
+}
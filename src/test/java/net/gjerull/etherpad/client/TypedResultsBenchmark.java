@@ -0,0 +1,108 @@
+package net.gjerull.etherpad.client;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Decoding small responses into json-simple Maps (and reading the
+ * fields back out of them) versus decoding them into typed
+ * results. Run with the GC profiler (as main does) and compare
+ * gc.alloc.rate.norm, the bytes allocated per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TypedResultsBenchmark {
+
+    private byte[] sessionInfo;
+    private byte[] padUsers;
+    private EPLiteConnection connection;
+
+    @Setup
+    public void setUp() {
+        sessionInfo = ("{\"code\":0,\"message\":\"ok\",\"data\":"
+                + "{\"authorID\":\"a.s8oes9dhwrvt0zif\","
+                + "\"groupID\":\"g.s8oes9dhwrvt0zif\","
+                + "\"validUntil\":1312201246}}")
+                        .getBytes(StandardCharsets.UTF_8);
+        StringBuilder users = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            users.append(i == 0 ? "" : ",")
+                    .append("{\"colorId\":\"#c1a9d9\",\"name\":\"user")
+                    .append(i).append("\",\"timestamp\":")
+                    .append(1345228793126L + i)
+                    .append(",\"id\":\"a.n4gEeMLsvg1245")
+                    .append(i).append("\"}");
+        }
+        padUsers = ("{\"code\":0,\"message\":\"ok\",\"data\":"
+                + "{\"padUsers\":[" + users + "]}}")
+                        .getBytes(StandardCharsets.UTF_8);
+        connection = new EPLiteConnection("http://localhost:9001",
+                "apikey", "1.2.13", "UTF-8");
+    }
+
+    @Benchmark
+    public long sessionInfoMap() throws Exception {
+        Map data = (Map) connection.handleResponse(
+                new ByteArrayInputStream(sessionInfo));
+        return data.get("authorID").hashCode()
+                + ((Long) data.get("validUntil")).longValue();
+    }
+
+    @Benchmark
+    public long sessionInfoTyped() throws Exception {
+        SessionInfo data = connection.handleResponse(
+                new ByteArrayInputStream(sessionInfo),
+                SessionInfo.BINDER);
+        return data.getAuthorID().hashCode() + data.getValidUntil();
+    }
+
+    @Benchmark
+    public long padUsersMap() throws Exception {
+        Map data = (Map) connection.handleResponse(
+                new ByteArrayInputStream(padUsers));
+        long sum = 0;
+        for (Object user : (List) data.get("padUsers")) {
+            sum += ((Long) ((Map) user).get("timestamp")).longValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long padUsersTyped() throws Exception {
+        PadUsers data = connection.handleResponse(
+                new ByteArrayInputStream(padUsers), PadUsers.BINDER);
+        long sum = 0;
+        for (PadUser user : data.getUsers()) {
+            sum += user.getTimestamp();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TypedResultsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
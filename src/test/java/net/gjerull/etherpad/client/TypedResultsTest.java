@@ -0,0 +1,96 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TypedResultsTest {
+    private static final String RESPONSE_TEMPLATE =
+            "{\"code\": %d, \"message\": \"%s\", \"data\": %s}";
+
+    private final EPLiteConnection connection = new EPLiteConnection(
+            "http://example.com/", "apikey", "1.2.13", "UTF-8");
+
+    @Test
+    public void decodes_pad_text() throws Exception {
+        PadText text = connection.handleResponse(
+                response("{\"text\": \"Welcome \\u2013 pad\\n\"}"),
+                PadText.BINDER);
+
+        assertEquals("Welcome – pad\n", text.getText());
+    }
+
+    @Test
+    public void decodes_revision_counts() throws Exception {
+        assertEquals(56L, connection.handleResponse(
+                response("{\"revisions\": 56}"),
+                RevisionCount.REVISIONS_BINDER).getCount());
+        assertEquals(42L, connection.handleResponse(
+                response("{\"savedRevisions\": 42}"),
+                RevisionCount.SAVED_REVISIONS_BINDER).getCount());
+    }
+
+    @Test
+    public void decodes_session_info() throws Exception {
+        SessionInfo session = connection.handleResponse(
+                response("{\"authorID\": \"a.s8oes9dhwrvt0zif\","
+                        + " \"groupID\": \"g.s8oes9dhwrvt0zif\","
+                        + " \"validUntil\": 1312201246,"
+                        + " \"extra\": [1, {\"x\": null}]}"),
+                SessionInfo.BINDER);
+
+        assertEquals("a.s8oes9dhwrvt0zif", session.getAuthorID());
+        assertEquals("g.s8oes9dhwrvt0zif", session.getGroupID());
+        assertEquals(1312201246L, session.getValidUntil());
+    }
+
+    @Test
+    public void decodes_pad_users() throws Exception {
+        PadUsers users = connection.handleResponse(
+                response("{\"padUsers\": [{\"colorId\": \"#c1a9d9\","
+                        + " \"name\": \"username1\","
+                        + " \"timestamp\": 1345228793126,"
+                        + " \"id\": \"a.n4gEeMLsvg12452n\"},"
+                        + " {\"colorId\": 12, \"name\": null,"
+                        + " \"timestamp\": 1345228796042,"
+                        + " \"id\": \"a.n4gEeMLsvg12452o\"}]}"),
+                PadUsers.BINDER);
+
+        assertEquals(2, users.size());
+        PadUser first = users.getUsers().get(0);
+        assertEquals("a.n4gEeMLsvg12452n", first.getId());
+        assertEquals("username1", first.getName());
+        assertEquals("#c1a9d9", first.getColorId());
+        assertEquals(1345228793126L, first.getTimestamp());
+        PadUser second = users.getUsers().get(1);
+        assertNull(second.getName());
+        assertEquals("12", second.getColorId());
+    }
+
+    @Test
+    public void reports_api_errors() throws Exception {
+        try {
+            connection.handleResponse(new ByteArrayInputStream(
+                    String.format(RESPONSE_TEMPLATE, 1,
+                            "padID does not exist", "null")
+                            .getBytes(StandardCharsets.UTF_8)),
+                    PadUsers.BINDER);
+            fail("Expected '" + EPLiteException.class.getName()
+                    + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+    }
+
+    private static InputStream response(String data) {
+        return new ByteArrayInputStream(String
+                .format(RESPONSE_TEMPLATE, 0, "ok", data)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,94 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.MockServers.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.Parameter;
+import org.mockserver.model.StringBody;
+import org.mockserver.verify.VerificationTimes;
+
+public class HttpClientTransportTest {
+    private static final int PORT = 9019;
+
+    private ClientAndServer mockServer;
+    private HttpClientTransport transport;
+    private EPLiteClient client;
+
+    @Before
+    public void startMockServer() {
+        mockServer = MockServers.start(PORT);
+        mockServer.when(HttpRequest.request().withMethod("GET")
+                .withPath("/api/1.2.13/getText")
+                .withQueryStringParameter(new Parameter("padID", "gone")))
+                .respond(HttpResponse.response().withStatusCode(503));
+        mockServer.when(HttpRequest.request().withMethod("GET")
+                .withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"gå \\\"foo\\\"\\n\"}"));
+        mockServer.when(HttpRequest.request().withMethod("POST")
+                .withPath("/api/1.2.13/setText"))
+                .respond(ok("null"));
+        transport = new HttpClientTransport();
+        client = EPLiteClient.builder("http://localhost:" + PORT,
+                "apikey").transport(transport).build();
+    }
+
+    @After
+    public void stopMockServer() {
+        transport.close();
+        mockServer.stop();
+    }
+
+    @Test
+    public void is_the_java11_implementation() {
+        assertTrue(HttpClientTransport.isAvailable());
+    }
+
+    @Test
+    public void sends_get_requests() {
+        Map response = client.getText("pad");
+
+        assertEquals("gå \"foo\"\n", response.get("text"));
+    }
+
+    @Test
+    public void sends_post_requests_with_a_form_body() {
+        client.setText("pad", "ø & more");
+
+        mockServer.verify(HttpRequest.request().withMethod("POST")
+                .withPath("/api/1.2.13/setText")
+                .withHeader("Content-Type",
+                        "application/x-www-form-urlencoded")
+                .withBody(new StringBody("text=%C3%B8+%26+more", true)),
+                VerificationTimes.once());
+    }
+
+    @Test
+    public void fails_on_error_statuses() {
+        try {
+            client.getText("gone");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("503"));
+        }
+    }
+
+    @Test
+    public void streams_responses() {
+        StringWriter out = new StringWriter();
+
+        client.getText("pad", out);
+
+        assertEquals("gå \"foo\"\n", out.toString());
+    }
+}